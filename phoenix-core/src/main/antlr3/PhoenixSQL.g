@@ -189,6 +189,14 @@ package org.apache.phoenix.parse;
         return CountAggregateFunction.NORMALIZED_NAME.equals(SchemaUtil.normalizeIdentifier(field));
     }
      
+    /**
+     * @return the text between the start and stop tokens as it appears in the input,
+     * as opposed to the text of the tokens (which for string literals excludes the quotes)
+     */
+    public String getInputText(Token start, Token stop) {
+        return ((CommonToken)start).getInputStream().substring(((CommonToken)start).getStartIndex(), ((CommonToken)stop).getStopIndex());
+    }
+
     public int line(Token t) {
         return t.getLine();
     }
@@ -319,6 +327,12 @@ nextStatement returns [BindableStatement ret]
     |  EOF
     ;
 
+// Parses a single expression, such as an indexed expression (expects an EOF after the expression).
+standaloneExpression returns [ParseNode ret]
+@init{ contextStack.push(new ParseContext()); }
+    :   e=condition EOF { contextStack.pop(); $ret=e; }
+    ;
+
 // Parses a single SQL statement (expects an EOF after the select statement).
 statement returns [BindableStatement ret]
     :   s=oneStatement {$ret = s;} EOF
@@ -379,11 +393,18 @@ create_view_node returns [CreateTableStatement ret]
 // Parse a create index statement.
 create_index_node returns [CreateIndexStatement ret]
     :   CREATE INDEX (IF NOT ex=EXISTS)? i=index_name ON t=from_table_name
-        (LPAREN pk=index_pk_constraint RPAREN)
+        (LPAREN ik=ik_constraint RPAREN)
         (INCLUDE (LPAREN icrefs=column_names RPAREN))?
+        (WHERE w=index_where)?
         (p=fam_properties)?
         (SPLIT ON v=list_expressions)?
-        {ret = factory.createIndex(i, factory.namedTable(null,t), pk, icrefs, v, p, ex!=null, getBindCount()); }
+        {ret = factory.createIndex(i, factory.namedTable(null,t), ik, icrefs, $w.ret, $w.whereStr, v, p, ex!=null, getBindCount()); }
+    ;
+
+// Parse the WHERE clause of a partial index, keeping its SQL text
+index_where returns [ParseNode ret, String whereStr]
+@init{ Token start = input.LT(1); Token stop = null; }
+    :   c=condition {stop = input.LT(-1); $ret = c; $whereStr = getInputText(start, stop);}
     ;
 
 // Parse a create sequence statement.
@@ -419,17 +440,15 @@ col_name_with_sort_order returns [Pair<ColumnName, SortOrder> ret]
     :   f=identifier (order=ASC|order=DESC)? {$ret = Pair.newPair(factory.columnName(f), order == null ? SortOrder.getDefault() : SortOrder.fromDDLValue(order.getText()));}
 ;
 
-index_pk_constraint returns [PrimaryKeyConstraint ret]
-    :   cols = col_def_name_with_sort_order_list {$ret = factory.primaryKey(null, cols); }
-    ;
-
-col_def_name_with_sort_order_list returns [List<Pair<ColumnName, SortOrder>> ret]
-@init{ret = new ArrayList<Pair<ColumnName, SortOrder>>(); }
-    :   p=col_def_name_with_sort_order {$ret.add(p);}  (COMMA p = col_def_name_with_sort_order {$ret.add(p);} )*
+ik_constraint returns [IndexKeyConstraint ret]
+@init{ List<Pair<ParseNode, SortOrder>> l = new ArrayList<Pair<ParseNode, SortOrder>>(); List<String> exprStrs = new ArrayList<String>(); }
+    :   p=expression_with_sort_order {l.add($p.ret); exprStrs.add($p.exprStr);}  (COMMA p = expression_with_sort_order {l.add($p.ret); exprStrs.add($p.exprStr);} )*
+        {$ret = factory.indexKey(l, exprStrs); }
 ;
 
-col_def_name_with_sort_order returns [Pair<ColumnName, SortOrder> ret]
-    :   c=column_name (order=ASC|order=DESC)? {$ret = Pair.newPair(c, order == null ? SortOrder.getDefault() : SortOrder.fromDDLValue(order.getText()));}
+expression_with_sort_order returns [Pair<ParseNode, SortOrder> ret, String exprStr]
+@init{ Token start = input.LT(1); Token stop = null; }
+    :   e=expression {stop = input.LT(-1);} (order=ASC|order=DESC)? {$ret = Pair.newPair(e, order == null ? SortOrder.getDefault() : SortOrder.fromDDLValue(order.getText())); $exprStr = getInputText(start, stop);}
 ;
 
 fam_properties returns [ListMultimap<String,Pair<String,Object>> ret]
@@ -42,6 +42,7 @@ import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Mutation;
@@ -49,6 +50,7 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
 import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
@@ -125,11 +127,11 @@ public class Indexer extends BaseRegionObserver {
   private static KeyValue BATCH_MARKER = new KeyValue();
 
   /**
-   * cache the failed updates to the various regions. Used for making the WAL recovery mechanisms
-   * more robust in the face of recoverying index regions that were on the same server as the
-   * primary table region
+   * cache the failed updates to the various regions, shared by all the regions of the region
+   * server. Used for making the WAL recovery mechanisms more robust in the face of recoverying index
+   * regions that were on the same server as the primary table region
    */
-  private PerRegionIndexWriteCache failedIndexEdits = new PerRegionIndexWriteCache();
+  private PerRegionIndexWriteCache failedIndexEdits;
 
   /**
    * IndexWriter for writing the recovered index edits. Separate from the main indexer since we need
@@ -153,7 +155,12 @@ public class Indexer extends BaseRegionObserver {
   public void start(CoprocessorEnvironment e) throws IOException {
       try {
         final RegionCoprocessorEnvironment env = (RegionCoprocessorEnvironment) e;
-        String serverName = env.getRegionServerServices().getServerName().getServerName();
+        ServerName server = env.getRegionServerServices().getServerName();
+        String serverName = server.getServerName();
+        // the failed edits of the region are cached along with those of the other regions of the
+        // server. Get the cache first, so that postOpen can clear them even if we end up disabled
+        this.failedIndexEdits =
+            PerRegionIndexWriteCache.getSharedCache(env.getConfiguration(), server);
         if (env.getConfiguration().getBoolean(CHECK_VERSION_CONF_KEY, true)) {
           // make sure the right version <-> combinations are allowed.
           String errormsg = Indexer.validateVersion(env.getHBaseVersion(), env.getConfiguration());
@@ -174,7 +181,8 @@ public class Indexer extends BaseRegionObserver {
         // setup the actual index writer
         this.writer = new IndexWriter(env, serverName + "-index-writer");
     
-        // setup the recovery writer that does retries on the failed edits
+        // setup the recovery writer that does retries on the failed edits, spilling them to disk
+        // if there are too many to keep in memory
         TrackingParallelWriterIndexCommitter recoveryCommmiter =
             new TrackingParallelWriterIndexCommitter();
     
@@ -205,6 +213,10 @@ public class Indexer extends BaseRegionObserver {
     if (this.stopped) {
       return;
     }
+    // the cache is shared with the other regions of the server, so only drop this region's edits
+    if (this.failedIndexEdits != null) {
+      this.failedIndexEdits.removeEdits(((RegionCoprocessorEnvironment) e).getRegion());
+    }
     if (this.disabled) {
         super.stop(e);
         return;
@@ -595,23 +607,26 @@ public class Indexer extends BaseRegionObserver {
 
   @Override
   public void postOpen(final ObserverContext<RegionCoprocessorEnvironment> c) {
-    Multimap<HTableInterfaceReference, Mutation> updates = failedIndexEdits.getEdits(c.getEnvironment().getRegion());
-    
+    HRegion region = c.getEnvironment().getRegion();
     if (this.disabled) {
+        // there's no writer to replay the edits with, but don't leave them behind in the shared cache
+        if (this.failedIndexEdits != null && this.failedIndexEdits.removeEdits(region)) {
+          LOG.error("Dropped the outstanding index updates of region " + region
+              + " that didn't succeed during WAL replay, as indexing is disabled");
+        }
         super.postOpen(c);
         return;
       }
-    LOG.info("Found some outstanding index updates that didn't succeed during"
-        + " WAL replay - attempting to replay now.");
-    //if we have no pending edits to complete, then we are done
-    if (updates == null || updates.size() == 0) {
-      return;
-    }
-    
-    // do the usual writer stuff, killing the server again, if we can't manage to make the index
+    LOG.info("Replaying any outstanding index updates that didn't succeed during WAL replay");
+
+    // the edits come back in batches of bounded size, as they may have been spilled to disk.
+    // Do the usual writer stuff, killing the server again, if we can't manage to make the index
     // writes succeed again
     try {
+      for (Multimap<HTableInterfaceReference, Mutation> updates = failedIndexEdits.getEdits(region);
+          updates != null; updates = failedIndexEdits.getEdits(region)) {
         writer.writeAndKillYourselfOnFailure(updates);
+      }
     } catch (IOException e) {
         LOG.error("Exception thrown instead of killing server during index writing", e);
     }
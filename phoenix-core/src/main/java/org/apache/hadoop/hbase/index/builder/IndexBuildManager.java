@@ -35,6 +35,7 @@ import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.Pair;
 
 import org.apache.hadoop.hbase.index.Indexer;
@@ -43,6 +44,8 @@ import org.apache.hadoop.hbase.index.parallel.Task;
 import org.apache.hadoop.hbase.index.parallel.TaskBatch;
 import org.apache.hadoop.hbase.index.parallel.ThreadPoolBuilder;
 import org.apache.hadoop.hbase.index.parallel.ThreadPoolManager;
+import org.apache.phoenix.metrics.MetricsIndexerSource;
+import org.apache.phoenix.metrics.MetricsIndexerSourceFactory;
 
 /**
  * Manage the building of index updates from primary table updates.
@@ -56,6 +59,8 @@ public class IndexBuildManager implements Stoppable {
   private final IndexBuilder delegate;
   private QuickFailingTaskRunner pool;
   private boolean stopped;
+  private final String dataTableName;
+  private final MetricsIndexerSource metricsSource = MetricsIndexerSourceFactory.getIndexerSource();
 
   /**
    * Set the number of threads with which we can concurrently build index updates. Unused threads
@@ -81,7 +86,7 @@ public class IndexBuildManager implements Stoppable {
    */
   public IndexBuildManager(RegionCoprocessorEnvironment env) throws IOException {
     this(getIndexBuilder(env), new QuickFailingTaskRunner(ThreadPoolManager.getExecutor(
-      getPoolBuilder(env), env)));
+      getPoolBuilder(env), env)), env.getRegion().getTableDesc().getNameAsString());
   }
 
   private static IndexBuilder getIndexBuilder(RegionCoprocessorEnvironment e) throws IOException {
@@ -110,16 +115,33 @@ public class IndexBuildManager implements Stoppable {
   }
 
   public IndexBuildManager(IndexBuilder builder, QuickFailingTaskRunner pool) {
+    this(builder, pool, null);
+  }
+
+  /**
+   * @param builder to build the index updates
+   * @param pool to build the index updates of each mutation in parallel
+   * @param dataTableName name of the table being indexed, used to report the build metrics. If
+   *          <tt>null</tt>, no metrics are reported.
+   */
+  public IndexBuildManager(IndexBuilder builder, QuickFailingTaskRunner pool, String dataTableName) {
     this.delegate = builder;
     this.pool = pool;
+    this.dataTableName = dataTableName;
   }
 
 
   public Collection<Pair<Mutation, byte[]>> getIndexUpdate(
       MiniBatchOperationInProgress<Pair<Mutation, Integer>> miniBatchOp,
       Collection<? extends Mutation> mutations) throws Throwable {
-    // notify the delegate that we have started processing a batch
+    // notify the delegate that we have started processing a batch, which is where builders read the
+    // prior state of the batch's rows in bulk
+    long start = EnvironmentEdgeManager.currentTimeMillis();
     this.delegate.batchStarted(miniBatchOp);
+    long batchStarted = EnvironmentEdgeManager.currentTimeMillis();
+    if (dataTableName != null) {
+      metricsSource.updateBatchPriorStateReadTime(dataTableName, batchStarted - start);
+    }
 
     // parallelize each mutation into its own task
     // each task is cancelable via two mechanisms: (1) underlying HRegion is closing (which would
@@ -156,6 +178,10 @@ public class IndexBuildManager implements Stoppable {
       results.addAll(result);
     }
 
+    if (dataTableName != null) {
+      metricsSource.updateIndexBuildTime(dataTableName, EnvironmentEdgeManager.currentTimeMillis()
+          - start);
+    }
     return results;
   }
 
@@ -168,7 +194,13 @@ public class IndexBuildManager implements Stoppable {
       return null;
     }
 
-    return delegate.getIndexUpdate(delete);
+    long start = EnvironmentEdgeManager.currentTimeMillis();
+    Collection<Pair<Mutation, byte[]>> results = delegate.getIndexUpdate(delete);
+    if (dataTableName != null) {
+      metricsSource.updateIndexBuildTime(dataTableName, EnvironmentEdgeManager.currentTimeMillis()
+          - start);
+    }
+    return results;
 
   }
 
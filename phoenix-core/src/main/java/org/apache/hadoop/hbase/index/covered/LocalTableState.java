@@ -35,8 +35,8 @@ import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
 import org.apache.hadoop.hbase.util.Pair;
 
-import org.apache.hadoop.hbase.index.covered.data.IndexMemStore;
 import org.apache.hadoop.hbase.index.covered.data.LocalHBaseState;
+import org.apache.hadoop.hbase.index.covered.data.SortedArrayKeyValueStore;
 import org.apache.hadoop.hbase.index.covered.update.ColumnReference;
 import org.apache.hadoop.hbase.index.covered.update.ColumnTracker;
 import org.apache.hadoop.hbase.index.covered.update.IndexedColumnGroup;
@@ -70,7 +70,8 @@ public class LocalTableState implements TableState {
     this.env = environment;
     this.table = table;
     this.update = update;
-    this.memstore = new IndexMemStore();
+    // only holds the state of a single row, so a sorted array is much cheaper than a skip list
+    this.memstore = new SortedArrayKeyValueStore();
     this.scannerBuilder = new ScannerBuilder(memstore, update);
     this.columnSet = new CoveredColumns();
   }
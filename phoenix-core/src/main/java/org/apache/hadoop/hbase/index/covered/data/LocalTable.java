@@ -32,9 +32,12 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 
 import org.apache.hadoop.hbase.index.covered.update.ColumnReference;
 import org.apache.hadoop.hbase.index.util.IndexManagementUtil;
+import org.apache.phoenix.metrics.MetricsIndexerSource;
+import org.apache.phoenix.metrics.MetricsIndexerSourceFactory;
 
 /**
  * Wrapper around a lazily instantiated, local HTable.
@@ -48,6 +51,7 @@ import org.apache.hadoop.hbase.index.util.IndexManagementUtil;
 public class LocalTable implements LocalHBaseState {
 
   private RegionCoprocessorEnvironment env;
+  private final MetricsIndexerSource metricsSource = MetricsIndexerSourceFactory.getIndexerSource();
 
   public LocalTable(RegionCoprocessorEnvironment env) {
     this.env = env;
@@ -56,6 +60,7 @@ public class LocalTable implements LocalHBaseState {
   @Override
   public Result getCurrentRowState(Mutation m, Collection<? extends ColumnReference> columns)
       throws IOException {
+    long start = EnvironmentEdgeManager.currentTimeMillis();
     byte[] row = m.getRow();
     // need to use a scan here so we can get raw state, which Get doesn't provide.
     Scan s = IndexManagementUtil.newLocalStateScan(Collections.singletonList(columns));
@@ -69,6 +74,8 @@ public class LocalTable implements LocalHBaseState {
 
     Result r = new Result(kvs);
     scanner.close();
+    metricsSource.updateRowPriorStateReadTime(region.getTableDesc().getNameAsString(),
+      EnvironmentEdgeManager.currentTimeMillis() - start);
     return r;
   }
 }
\ No newline at end of file
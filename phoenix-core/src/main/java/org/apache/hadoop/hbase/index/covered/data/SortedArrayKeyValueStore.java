@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.index.covered.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
+import org.apache.hadoop.hbase.regionserver.NonLazyKeyValueScanner;
+
+import org.apache.hadoop.hbase.index.covered.KeyValueStore;
+import org.apache.hadoop.hbase.index.covered.LocalTableState;
+
+/**
+ * Lightweight {@link KeyValueStore} for the state of a single row, backed by a sorted array of
+ * {@link KeyValue}s rather than a skip list like the {@link IndexMemStore}.
+ * <p>
+ * The {@link KeyValue}s added to the store are only buffered, and merged lazily into the sorted
+ * array when the store is next read (or rolled back), so loading the current state of a row and the
+ * pending update costs a couple of sorts and a linear merge rather than a skip list insert per
+ * {@link KeyValue}. The overwrite semantics are the same as the {@link IndexMemStore}:
+ * <ul>
+ * <li>an overwriting add replaces any existing {@link KeyValue} with the same key</li>
+ * <li>a non-overwriting add is ignored if there is already a {@link KeyValue} with the same key</li>
+ * </ul>
+ * which means that, for each key, the last overwriting add wins over anything else, and otherwise
+ * the stored or first added {@link KeyValue} is kept.
+ * <p>
+ * Each merge builds a new array, so scanners keep reading the state of the store at the time they
+ * were created. Methods are synchronized in case indexes are built in parallel.
+ * @see LocalTableState
+ */
+public class SortedArrayKeyValueStore implements KeyValueStore {
+
+  private final Comparator<KeyValue> comparator;
+  private List<KeyValue> kvs = new ArrayList<KeyValue>(0);
+  private List<KeyValue> pendingOverwrites = new ArrayList<KeyValue>();
+  private List<KeyValue> pendingAdds = new ArrayList<KeyValue>();
+
+  public SortedArrayKeyValueStore() {
+    this(IndexMemStore.COMPARATOR);
+  }
+
+  /**
+   * Create a store with the given comparator. This comparator is used to determine both sort order
+   * <b>as well as equality of {@link KeyValue}s</b>.
+   * <p>
+   * Exposed for subclassing/testing.
+   * @param comparator to use
+   */
+  SortedArrayKeyValueStore(Comparator<KeyValue> comparator) {
+    this.comparator = comparator;
+  }
+
+  @Override
+  public synchronized void add(KeyValue kv, boolean overwrite) {
+    if (overwrite) {
+      pendingOverwrites.add(kv);
+    } else {
+      pendingAdds.add(kv);
+    }
+  }
+
+  @Override
+  public synchronized void rollback(KeyValue kv) {
+    List<KeyValue> current = getSortedKeyValues();
+    int index = Collections.binarySearch(current, kv, comparator);
+    if (index >= 0) {
+      List<KeyValue> rolledBack = new ArrayList<KeyValue>(current);
+      rolledBack.remove(index);
+      this.kvs = rolledBack;
+    }
+  }
+
+  @Override
+  public synchronized KeyValueScanner getScanner() {
+    return new SortedArrayScanner(getSortedKeyValues());
+  }
+
+  /**
+   * @return the sorted {@link KeyValue}s, after merging any pending add
+   */
+  private List<KeyValue> getSortedKeyValues() {
+    if (pendingOverwrites.isEmpty() && pendingAdds.isEmpty()) {
+      return kvs;
+    }
+    // both sorts are stable, so the insertion order of equal keys is kept
+    Collections.sort(pendingOverwrites, comparator);
+    Collections.sort(pendingAdds, comparator);
+    List<KeyValue> merged =
+        new ArrayList<KeyValue>(kvs.size() + pendingOverwrites.size() + pendingAdds.size());
+    int k = 0, o = 0, a = 0;
+    while (k < kvs.size() || o < pendingOverwrites.size() || a < pendingAdds.size()) {
+      // find the smallest key across the three lists
+      KeyValue min = null;
+      if (k < kvs.size()) {
+        min = kvs.get(k);
+      }
+      if (o < pendingOverwrites.size()
+          && (min == null || comparator.compare(pendingOverwrites.get(o), min) < 0)) {
+        min = pendingOverwrites.get(o);
+      }
+      if (a < pendingAdds.size()
+          && (min == null || comparator.compare(pendingAdds.get(a), min) < 0)) {
+        min = pendingAdds.get(a);
+      }
+
+      // pick the winner for that key, and skip all the others with the same key
+      KeyValue winner = null;
+      while (o < pendingOverwrites.size() && comparator.compare(pendingOverwrites.get(o), min) == 0) {
+        // the last overwrite wins
+        winner = pendingOverwrites.get(o++);
+      }
+      if (k < kvs.size() && comparator.compare(kvs.get(k), min) == 0) {
+        if (winner == null) {
+          winner = kvs.get(k);
+        }
+        k++;
+      }
+      while (a < pendingAdds.size() && comparator.compare(pendingAdds.get(a), min) == 0) {
+        // the first add wins, if nothing else was there
+        KeyValue add = pendingAdds.get(a++);
+        if (winner == null) {
+          winner = add;
+        }
+      }
+      merged.add(winner);
+    }
+    this.kvs = merged;
+    this.pendingOverwrites.clear();
+    this.pendingAdds.clear();
+    return merged;
+  }
+
+  /**
+   * Scanner over a snapshot of the sorted {@link KeyValue}s. Like the {@link IndexMemStore}'s
+   * scanner, it supports seeking and reseeking within the row.
+   */
+  private class SortedArrayScanner extends NonLazyKeyValueScanner {
+    private final List<KeyValue> snapshot;
+    // index of the next KeyValue to return, or -1 if not seeked/closed
+    private int next = -1;
+
+    private SortedArrayScanner(List<KeyValue> snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the index of the first KeyValue at or after the key, starting from <tt>from</tt>
+     */
+    private int lowerBound(KeyValue key, int from) {
+      int low = from;
+      int high = snapshot.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (comparator.compare(snapshot.get(mid), key) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    @Override
+    public synchronized boolean seek(KeyValue key) {
+      if (key == null) {
+        close();
+        return false;
+      }
+      next = lowerBound(key, 0);
+      return next < snapshot.size();
+    }
+
+    @Override
+    public synchronized boolean reseek(KeyValue key) {
+      // only ever move forward
+      next = lowerBound(key, Math.max(0, next));
+      return next < snapshot.size();
+    }
+
+    @Override
+    public synchronized KeyValue peek() {
+      return next >= 0 && next < snapshot.size() ? snapshot.get(next) : null;
+    }
+
+    @Override
+    public synchronized KeyValue next() {
+      KeyValue kv = peek();
+      if (kv != null) {
+        next++;
+      }
+      return kv;
+    }
+
+    @Override
+    public synchronized void close() {
+      next = -1;
+    }
+
+    /**
+     * Returns max value as sequence id because it will always have the latest data among all
+     * files.
+     */
+    @Override
+    public long getSequenceID() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public boolean shouldUseScanner(Scan scan, SortedSet<byte[]> columns, long oldestUnexpiredTS) {
+      throw new UnsupportedOperationException(this.getClass().getName()
+          + " doesn't support checking to see if it should use a scanner!");
+    }
+  }
+}
@@ -47,17 +47,41 @@ public abstract class BaseTaskRunner implements TaskRunner {
   protected ListeningExecutorService writerPool;
   private boolean stopped;
 
+  private FairTaskScheduler scheduler;
+
   public BaseTaskRunner(ExecutorService service) {
     this.writerPool = MoreExecutors.listeningDecorator(service);
   }
 
+  /**
+   * @param service thread pool to which {@link Task}s are submitted
+   * @param maxThreadsPerQueue maximum number of threads of the pool used at once by the tasks of
+   *          the same {@link Task#getQueueName() queue}. Tasks are submitted directly to the pool
+   *          if it is not positive.
+   */
+  public BaseTaskRunner(ExecutorService service, int maxThreadsPerQueue) {
+    this(service);
+    if (maxThreadsPerQueue > 0) {
+      this.scheduler = FairTaskScheduler.getScheduler(service, maxThreadsPerQueue);
+    }
+  }
+
+  /**
+   * @return the scheduler limiting the threads used by each queue of tasks, or <tt>null</tt> if
+   *         tasks are submitted directly to the pool
+   */
+  public FairTaskScheduler getScheduler() {
+    return this.scheduler;
+  }
+
   @Override
   public <R> List<R> submit(TaskBatch<R> tasks) throws CancellationException, ExecutionException,
       InterruptedException {
     // submit each task to the pool and queue it up to be watched
     List<ListenableFuture<R>> futures = new ArrayList<ListenableFuture<R>>(tasks.size());
     for (Task<R> task : tasks.getTasks()) {
-      futures.add(this.writerPool.submit(task));
+      futures.add(this.scheduler == null ? this.writerPool.submit(task) : this.scheduler.submit(
+        task.getQueueName(), task));
     }
     try {
       // This logic is actually much more synchronized than the previous logic. Now we rely on a
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.index.parallel;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+/**
+ * Schedules tasks on a shared thread pool through named queues (e.g. one per index table), only
+ * letting a bounded number of the tasks of each queue run on the pool at once. The other tasks of
+ * the queue wait in the queue and are handed to the pool as the running ones complete. This way, a
+ * queue of slow tasks (e.g. writes to a degraded index table) cannot hold all the threads of the
+ * pool, and the tasks of the other queues keep getting threads.
+ * <p>
+ * Thread pools are shared across the regions of a server (see {@link ThreadPoolManager}), so the
+ * scheduler must be shared too: use {@link #getScheduler(ExecutorService, int)} to get the one of a
+ * pool.
+ */
+public class FairTaskScheduler {
+
+  private static final Log LOG = LogFactory.getLog(FairTaskScheduler.class);
+  private static final String DEFAULT_QUEUE_NAME = "";
+  private static final Map<ExecutorService, FairTaskScheduler> SCHEDULERS =
+      new HashMap<ExecutorService, FairTaskScheduler>();
+
+  private final ExecutorService pool;
+  private final int maxRunningPerQueue;
+  private final ConcurrentMap<String, TaskQueue> queues = new ConcurrentHashMap<String, TaskQueue>();
+
+  /**
+   * Get the scheduler of the given pool, creating it if necessary. The maximum number of running
+   * tasks per queue is set by the first caller for the pool.
+   * @param pool to run the tasks
+   * @param maxRunningPerQueue maximum number of tasks of each queue running at once
+   * @return the scheduler of the pool
+   */
+  public static synchronized FairTaskScheduler getScheduler(ExecutorService pool,
+      int maxRunningPerQueue) {
+    // drop the schedulers of the pools that have been shutdown, so they can be collected
+    for (Iterator<ExecutorService> pools = SCHEDULERS.keySet().iterator(); pools.hasNext();) {
+      if (pools.next().isShutdown()) {
+        pools.remove();
+      }
+    }
+    FairTaskScheduler scheduler = SCHEDULERS.get(pool);
+    if (scheduler == null) {
+      scheduler = new FairTaskScheduler(pool, maxRunningPerQueue);
+      SCHEDULERS.put(pool, scheduler);
+    }
+    return scheduler;
+  }
+
+  /**
+   * Exposed for TESTING - use {@link #getScheduler(ExecutorService, int)} instead.
+   */
+  FairTaskScheduler(ExecutorService pool, int maxRunningPerQueue) {
+    if (maxRunningPerQueue < 1) {
+      throw new IllegalArgumentException("Must allow at least one running task per queue, got "
+          + maxRunningPerQueue);
+    }
+    this.pool = pool;
+    this.maxRunningPerQueue = maxRunningPerQueue;
+  }
+
+  /**
+   * Schedule the task in the given queue.
+   * @param queueName name of the queue, or <tt>null</tt> for the default queue
+   * @param task to run
+   * @return the future result of the task. It is cancelled if the pool rejects the task.
+   */
+  public <R> ListenableFuture<R> submit(String queueName, Callable<R> task) {
+    ListenableFutureTask<R> future = ListenableFutureTask.create(task);
+    TaskQueue queue = getQueue(queueName == null ? DEFAULT_QUEUE_NAME : queueName);
+    queue.pending.add(future);
+    queue.schedule();
+    return future;
+  }
+
+  private TaskQueue getQueue(String queueName) {
+    TaskQueue queue = queues.get(queueName);
+    if (queue == null) {
+      TaskQueue newQueue = new TaskQueue(queueName);
+      queue = queues.putIfAbsent(queueName, newQueue);
+      if (queue == null) {
+        queue = newQueue;
+      }
+    }
+    return queue;
+  }
+
+  private class TaskQueue {
+    private final String name;
+    private final ConcurrentLinkedQueue<ListenableFutureTask<?>> pending =
+        new ConcurrentLinkedQueue<ListenableFutureTask<?>>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    private TaskQueue(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Hand pending tasks to the pool while there are less than the maximum number of them running.
+     * Called both when a task is added and when one completes, so a task can't be left pending
+     * while nothing of the queue is running.
+     */
+    private void schedule() {
+      while (!pending.isEmpty()) {
+        int current = running.get();
+        if (current >= maxRunningPerQueue) {
+          return;
+        }
+        if (!running.compareAndSet(current, current + 1)) {
+          continue;
+        }
+        final ListenableFutureTask<?> next = pending.poll();
+        if (next == null) {
+          // another thread got the last task
+          running.decrementAndGet();
+          continue;
+        }
+        try {
+          pool.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                next.run();
+              } finally {
+                running.decrementAndGet();
+                schedule();
+              }
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          running.decrementAndGet();
+          LOG.warn("Pool rejected task for queue '" + name + "', cancelling all pending tasks", e);
+          next.cancel(false);
+          for (ListenableFutureTask<?> task = pending.poll(); task != null; task = pending.poll()) {
+            task.cancel(false);
+          }
+          return;
+        }
+      }
+    }
+  }
+}
@@ -31,11 +31,24 @@ import org.apache.hadoop.hbase.Abortable;
 public abstract class Task<V> implements Callable<V> {
 
   private Abortable batch;
+  private String queueName;
 
   void setBatchMonitor(Abortable abort) {
     this.batch = abort;
   }
 
+  void setQueueName(String queueName) {
+    this.queueName = queueName;
+  }
+
+  /**
+   * @return the name of the queue in which the task is scheduled, when the {@link TaskRunner}
+   *         limits the number of threads used by each queue, or <tt>null</tt> for the default queue
+   */
+  public String getQueueName() {
+    return this.queueName;
+  }
+
   protected boolean isBatchFailed() {
     return this.batch.isAborted();
   }
@@ -50,6 +50,18 @@ public class TaskBatch<V> implements Abortable {
     task.setBatchMonitor(this);
   }
 
+  /**
+   * Add a task, scheduled in the given queue. A {@link TaskRunner} may limit the number of threads
+   * that tasks of the same queue can use at once, so a queue of slow tasks doesn't starve the
+   * others.
+   * @param task to add
+   * @param queueName name of the queue for the task, e.g. the table the task writes to
+   */
+  public void add(Task<V> task, String queueName) {
+    add(task);
+    task.setQueueName(queueName);
+  }
+
   public Collection<Task<V>> getTasks() {
     return this.tasks;
   }
@@ -46,6 +46,16 @@ public class WaitForCompletionTaskRunner extends BaseTaskRunner {
     super(service);
   }
 
+  /**
+   * @param service thread pool to which {@link Task}s are submitted. This service is then 'owned'
+   *          by <tt>this</tt> and will be shutdown on calls to {@link #stop(String)}.
+   * @param maxThreadsPerQueue maximum number of threads of the pool used at once by the tasks of
+   *          the same {@link Task#getQueueName() queue}, or 0 for no limit
+   */
+  public WaitForCompletionTaskRunner(ExecutorService service, int maxThreadsPerQueue) {
+    super(service, maxThreadsPerQueue);
+  }
+
   @Override
   public <R> ListenableFuture<List<R>> submitTasks(List<ListenableFuture<R>> futures) {
     return Futures.successfulAsList(futures);
@@ -0,0 +1,215 @@
+package org.apache.hadoop.hbase.index.wal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+
+/**
+ * Compact encoding of the {@link IndexedKeyValue}s within a single WAL edit.
+ * <p>
+ * The legacy encoding ({@link IndexedKeyValue#writeData(DataOutput)}) writes the full index table
+ * name, the mutation class name and the full serialized {@link Mutation} for each index update,
+ * which repeats the row and timestamp in every {@link KeyValue}. Instead, this encoding:
+ * <ul>
+ * <li>dictionary-encodes the index table names and column families, so each one is only written
+ * once per edit</li>
+ * <li>writes each row as the length of the prefix it shares with the previous row plus the
+ * remaining suffix, as the index rows of an edit tend to share the same leading columns</li>
+ * <li>writes each timestamp as a delta from the previous timestamp</li>
+ * <li>writes the row, family and timestamp of a {@link KeyValue} only once per {@link Mutation}</li>
+ * </ul>
+ * The encoding is stateful, so a new instance must be used for each edit, both when writing and
+ * reading it. Only plain {@link Put}s and {@link Delete}s without a row lock are supported - check
+ * {@link #canEncode(IndexedKeyValue)} and use the legacy encoding for anything else.
+ */
+public class CompactIndexedKeyValueCodec {
+
+  private static final byte PUT_TYPE = 0;
+  private static final byte DELETE_TYPE = 1;
+
+  // encoding-side dictionaries
+  private final Map<ImmutableBytesPtr, Integer> tableIndexes = new HashMap<ImmutableBytesPtr, Integer>();
+  private final Map<ImmutableBytesPtr, Integer> familyIndexes = new HashMap<ImmutableBytesPtr, Integer>();
+  // decoding-side dictionaries
+  private final List<byte[]> tables = new ArrayList<byte[]>();
+  private final List<byte[]> families = new ArrayList<byte[]>();
+
+  private byte[] previousRow = new byte[0];
+  private long previousTimestamp = 0;
+
+  /**
+   * @param kv to check
+   * @return <tt>true</tt> if the index update can be written in the compact encoding
+   */
+  public static boolean canEncode(IndexedKeyValue kv) {
+    Mutation mutation = kv.getMutation();
+    Class<?> clazz = mutation.getClass();
+    return (clazz == Put.class || clazz == Delete.class) && mutation.getLockId() == -1L;
+  }
+
+  /**
+   * Write the index update. Must be read back with {@link #read(DataInput)} by the instance reading
+   * the same edit.
+   * @param out to write to
+   * @param kv index update to write. Must pass {@link #canEncode(IndexedKeyValue)}.
+   * @throws IOException if there is an error writing
+   */
+  public void write(DataOutput out, IndexedKeyValue kv) throws IOException {
+    Mutation mutation = kv.getMutation();
+    boolean isPut = mutation instanceof Put;
+    writeEntry(out, tableIndexes, kv.getIndexTable());
+    out.writeByte(isPut ? PUT_TYPE : DELETE_TYPE);
+
+    byte[] row = mutation.getRow();
+    int prefixLength = commonPrefixLength(previousRow, row);
+    WritableUtils.writeVInt(out, prefixLength);
+    WritableUtils.writeVInt(out, row.length - prefixLength);
+    out.write(row, prefixLength, row.length - prefixLength);
+    previousRow = row;
+
+    long timestamp = isPut ? ((Put) mutation).getTimeStamp() : ((Delete) mutation).getTimeStamp();
+    writeTimestamp(out, timestamp);
+    out.writeBoolean(mutation.getWriteToWAL());
+
+    Map<byte[], List<KeyValue>> familyMap = mutation.getFamilyMap();
+    WritableUtils.writeVInt(out, familyMap.size());
+    for (Entry<byte[], List<KeyValue>> entry : familyMap.entrySet()) {
+      writeEntry(out, familyIndexes, entry.getKey());
+      List<KeyValue> kvs = entry.getValue();
+      WritableUtils.writeVInt(out, kvs.size());
+      for (KeyValue familyKv : kvs) {
+        WritableUtils.writeVInt(out, familyKv.getQualifierLength());
+        out.write(familyKv.getBuffer(), familyKv.getQualifierOffset(), familyKv.getQualifierLength());
+        writeTimestamp(out, familyKv.getTimestamp());
+        out.writeByte(familyKv.getType());
+        WritableUtils.writeVInt(out, familyKv.getValueLength());
+        out.write(familyKv.getBuffer(), familyKv.getValueOffset(), familyKv.getValueLength());
+      }
+    }
+
+    Map<String, byte[]> attributes = mutation.getAttributesMap();
+    WritableUtils.writeVInt(out, attributes.size());
+    for (Entry<String, byte[]> attribute : attributes.entrySet()) {
+      WritableUtils.writeString(out, attribute.getKey());
+      Bytes.writeByteArray(out, attribute.getValue());
+    }
+  }
+
+  /**
+   * Read the next index update, written by {@link #write(DataOutput, IndexedKeyValue)}.
+   * @param in to read from
+   * @return the index update
+   * @throws IOException if the index update cannot be read
+   */
+  public IndexedKeyValue read(DataInput in) throws IOException {
+    byte[] table = readEntry(in, tables);
+    byte type = in.readByte();
+
+    int prefixLength = WritableUtils.readVInt(in);
+    int suffixLength = WritableUtils.readVInt(in);
+    byte[] row = new byte[prefixLength + suffixLength];
+    System.arraycopy(previousRow, 0, row, 0, prefixLength);
+    in.readFully(row, prefixLength, suffixLength);
+    previousRow = row;
+
+    long timestamp = readTimestamp(in);
+    Mutation mutation;
+    if (type == PUT_TYPE) {
+      mutation = new Put(row, timestamp);
+    } else if (type == DELETE_TYPE) {
+      mutation = new Delete(row, timestamp, null);
+    } else {
+      throw new IOException("Unknown index mutation type: " + type);
+    }
+    mutation.setWriteToWAL(in.readBoolean());
+
+    int nFamilies = WritableUtils.readVInt(in);
+    Map<byte[], List<KeyValue>> familyMap = new TreeMap<byte[], List<KeyValue>>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < nFamilies; i++) {
+      byte[] family = readEntry(in, families);
+      int nKvs = WritableUtils.readVInt(in);
+      List<KeyValue> kvs = new ArrayList<KeyValue>(nKvs);
+      for (int j = 0; j < nKvs; j++) {
+        byte[] qualifier = new byte[WritableUtils.readVInt(in)];
+        in.readFully(qualifier);
+        long kvTimestamp = readTimestamp(in);
+        KeyValue.Type kvType = KeyValue.Type.codeToType(in.readByte());
+        byte[] value = new byte[WritableUtils.readVInt(in)];
+        in.readFully(value);
+        kvs.add(new KeyValue(row, family, qualifier, kvTimestamp, kvType, value));
+      }
+      familyMap.put(family, kvs);
+    }
+    mutation.setFamilyMap(familyMap);
+
+    int nAttributes = WritableUtils.readVInt(in);
+    for (int i = 0; i < nAttributes; i++) {
+      mutation.setAttribute(WritableUtils.readString(in), Bytes.readByteArray(in));
+    }
+    return new IndexedKeyValue(table, mutation);
+  }
+
+  private static int commonPrefixLength(byte[] a, byte[] b) {
+    int maxLength = Math.min(a.length, b.length);
+    int i = 0;
+    while (i < maxLength && a[i] == b[i]) {
+      i++;
+    }
+    return i;
+  }
+
+  private void writeTimestamp(DataOutput out, long timestamp) throws IOException {
+    WritableUtils.writeVLong(out, timestamp - previousTimestamp);
+    previousTimestamp = timestamp;
+  }
+
+  private long readTimestamp(DataInput in) throws IOException {
+    previousTimestamp += WritableUtils.readVLong(in);
+    return previousTimestamp;
+  }
+
+  /**
+   * Write the dictionary index of the entry, followed by the entry itself the first time it's seen.
+   */
+  private static void writeEntry(DataOutput out, Map<ImmutableBytesPtr, Integer> dictionary,
+      byte[] entry) throws IOException {
+    ImmutableBytesPtr key = new ImmutableBytesPtr(entry);
+    Integer index = dictionary.get(key);
+    if (index != null) {
+      WritableUtils.writeVInt(out, index);
+      return;
+    }
+    WritableUtils.writeVInt(out, dictionary.size());
+    Bytes.writeByteArray(out, entry);
+    dictionary.put(key, dictionary.size());
+  }
+
+  private static byte[] readEntry(DataInput in, List<byte[]> dictionary) throws IOException {
+    int index = WritableUtils.readVInt(in);
+    if (index < dictionary.size()) {
+      return dictionary.get(index);
+    }
+    if (index != dictionary.size()) {
+      throw new IOException("Invalid dictionary index " + index + ", only " + dictionary.size()
+          + " entries have been read");
+    }
+    byte[] entry = Bytes.readByteArray(in);
+    dictionary.add(entry);
+    return entry;
+  }
+}
@@ -21,6 +21,13 @@ public class KeyValueCodec {
    */
   public static final int INDEX_TYPE_LENGTH_MARKER = -1;
 
+  /**
+   * KeyValue length marker specifying that its an {@link IndexedKeyValue} written with the
+   * {@link CompactIndexedKeyValueCodec} of the current edit. Older WALs only contain the
+   * {@link #INDEX_TYPE_LENGTH_MARKER}, so they can still be read.
+   */
+  public static final int COMPACT_INDEX_TYPE_LENGTH_MARKER = -2;
+
   /**
    * Read a {@link List} of {@link KeyValue} from the input stream - may contain regular
    * {@link KeyValue}s or {@link IndexedKeyValue}s.
@@ -34,8 +41,9 @@ public class KeyValueCodec {
       return Collections.<KeyValue>emptyList();
     }
     List<KeyValue> kvs = new ArrayList<KeyValue>(size);
+    CompactIndexedKeyValueCodec compactCodec = new CompactIndexedKeyValueCodec();
     for (int i = 0; i < size; i++) {
-      kvs.add(readKeyValue(in));
+      kvs.add(readKeyValue(in, compactCodec));
     }
     return kvs;
   }
@@ -48,12 +56,27 @@ public class KeyValueCodec {
    * @throws IOException if the next {@link KeyValue} cannot be read
    */
   public static KeyValue readKeyValue(DataInput in) throws IOException {
+    return readKeyValue(in, new CompactIndexedKeyValueCodec());
+  }
+
+  /**
+   * Read a single {@link KeyValue} from the input stream - may either be a regular {@link KeyValue}
+   * or an {@link IndexedKeyValue}, in either the legacy or the compact encoding.
+   * @param in to read from
+   * @param compactCodec codec of the current edit, used to read compact {@link IndexedKeyValue}s
+   * @return the next {@link KeyValue}, if one is available
+   * @throws IOException if the next {@link KeyValue} cannot be read
+   */
+  public static KeyValue readKeyValue(DataInput in, CompactIndexedKeyValueCodec compactCodec)
+      throws IOException {
     int length = in.readInt();
     KeyValue kv;
     // its a special IndexedKeyValue
     if (length == INDEX_TYPE_LENGTH_MARKER) {
       kv = new IndexedKeyValue();
       kv.readFields(in);
+    } else if (length == COMPACT_INDEX_TYPE_LENGTH_MARKER) {
+      kv = compactCodec.read(in);
     } else {
       kv = new KeyValue();
       kv.readFields(length, in);
@@ -76,4 +99,24 @@ public class KeyValueCodec {
       kv.write(out);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Write a {@link KeyValue} or an {@link IndexedKeyValue} to the output stream, using the compact
+   * encoding for {@link IndexedKeyValue}s when possible. These can be read back via
+   * {@link #readKeyValue(DataInput, CompactIndexedKeyValueCodec)} with a codec that has read the
+   * same preceding entries of the edit, or {@link #readKeyValues(DataInput)}.
+   * @param out to write to
+   * @param kv {@link KeyValue} to which to write
+   * @param compactCodec codec of the current edit
+   * @throws IOException if there is an error writing
+   */
+  public static void write(DataOutput out, KeyValue kv, CompactIndexedKeyValueCodec compactCodec)
+      throws IOException {
+    if (kv instanceof IndexedKeyValue && CompactIndexedKeyValueCodec.canEncode((IndexedKeyValue) kv)) {
+      out.writeInt(COMPACT_INDEX_TYPE_LENGTH_MARKER);
+      compactCodec.write(out, (IndexedKeyValue) kv);
+    } else {
+      write(out, kv);
+    }
+  }
+}
@@ -36,8 +36,12 @@ import org.apache.hadoop.hbase.util.Pair;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import org.apache.hadoop.hbase.index.exception.IndexWriteException;
+import org.apache.hadoop.hbase.index.exception.MultiIndexWriteFailureException;
+import org.apache.hadoop.hbase.index.exception.SingleIndexWriteFailureException;
 import org.apache.hadoop.hbase.index.table.HTableInterfaceReference;
 import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.metrics.MetricsIndexerSource;
+import org.apache.phoenix.metrics.MetricsIndexerSourceFactory;
 
 /**
  * Do the actual work of writing to the index tables. Ensures that if we do fail to write to the
@@ -54,6 +58,7 @@ public class IndexWriter implements Stoppable {
   private AtomicBoolean stopped = new AtomicBoolean(false);
   private IndexCommitter writer;
   private IndexFailurePolicy failurePolicy;
+  private final MetricsIndexerSource metricsSource;
 
   /**
    * @throws IOException if the {@link IndexWriter} or {@link IndexFailurePolicy} cannot be
@@ -113,8 +118,17 @@ public class IndexWriter implements Stoppable {
    * @param policy to handle failures
    */
   IndexWriter(IndexCommitter committer, IndexFailurePolicy policy) {
+    this(committer, policy, MetricsIndexerSourceFactory.getIndexerSource());
+  }
+
+  /**
+   * Exposed for TESTING
+   */
+  IndexWriter(IndexCommitter committer, IndexFailurePolicy policy,
+      MetricsIndexerSource metricsSource) {
     this.writer = committer;
     this.failurePolicy = policy;
+    this.metricsSource = metricsSource;
   }
   
   /**
@@ -148,10 +162,36 @@ public class IndexWriter implements Stoppable {
         LOG.trace("Done writing all index updates!\n\t" + toWrite);
       }
     } catch (Exception e) {
+      updateFailureMetrics(toWrite, e);
       this.failurePolicy.handleFailure(toWrite, e);
     }
   }
 
+  /**
+   * Count a failure for each index table that couldn't be written to. If the failure doesn't tell
+   * us which tables failed, we count it against all the tables we attempted to write to.
+   */
+  private void updateFailureMetrics(Multimap<HTableInterfaceReference, Mutation> attempted,
+      Exception cause) {
+    if (cause instanceof MultiIndexWriteFailureException) {
+      for (HTableInterfaceReference table : ((MultiIndexWriteFailureException) cause)
+          .getFailedTables()) {
+        metricsSource.incrementIndexWriteFailures(table.getTableName());
+      }
+      return;
+    }
+    if (cause instanceof SingleIndexWriteFailureException) {
+      String tableName = ((SingleIndexWriteFailureException) cause).getTableName();
+      if (tableName != null) {
+        metricsSource.incrementIndexWriteFailures(tableName);
+        return;
+      }
+    }
+    for (HTableInterfaceReference table : attempted.keySet()) {
+      metricsSource.incrementIndexWriteFailures(table.getTableName());
+    }
+  }
+
   /**
    * Write the mutations to their respective table.
    * <p>
@@ -35,6 +35,7 @@ import org.apache.hadoop.hbase.Stoppable;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 
 import com.google.common.collect.Multimap;
 import org.apache.hadoop.hbase.index.exception.SingleIndexWriteFailureException;
@@ -47,6 +48,8 @@ import org.apache.hadoop.hbase.index.parallel.ThreadPoolManager;
 import org.apache.hadoop.hbase.index.table.CachingHTableFactory;
 import org.apache.hadoop.hbase.index.table.HTableFactory;
 import org.apache.hadoop.hbase.index.table.HTableInterfaceReference;
+import org.apache.phoenix.metrics.MetricsIndexerSource;
+import org.apache.phoenix.metrics.MetricsIndexerSourceFactory;
 
 /**
  * Write index updates to the index tables in parallel. We attempt to early exit from the writes if
@@ -64,22 +67,35 @@ public class ParallelWriterIndexCommitter implements IndexCommitter {
   private static final int DEFAULT_CONCURRENT_INDEX_WRITER_THREADS = 10;
   private static final String INDEX_WRITER_KEEP_ALIVE_TIME_CONF_KEY =
       "index.writer.threads.keepalivetime";
+  /**
+   * Configuration key for the maximum number of writer threads used at once to write to the same
+   * index table, so a slow index table doesn't starve the writes to the other ones. Defaults to
+   * half the writer threads. Set to 0 for no limit.
+   */
+  public static final String NUM_CONCURRENT_INDEX_WRITER_THREADS_PER_TABLE_CONF_KEY =
+      "index.writer.threads.pertable.max";
   private static final Log LOG = LogFactory.getLog(ParallelWriterIndexCommitter.class);
 
   private HTableFactory factory;
+  private final MetricsIndexerSource metricsSource = MetricsIndexerSourceFactory.getIndexerSource();
   private Stoppable stopped;
   private QuickFailingTaskRunner pool;
 
   @Override
   public void setup(IndexWriter parent, RegionCoprocessorEnvironment env, String name) {
     Configuration conf = env.getConfiguration();
+    int maxThreads =
+        conf.getInt(NUM_CONCURRENT_INDEX_WRITER_THREADS_CONF_KEY,
+          DEFAULT_CONCURRENT_INDEX_WRITER_THREADS);
     setup(IndexWriterUtils.getDefaultDelegateHTableFactory(env),
       ThreadPoolManager.getExecutor(
         new ThreadPoolBuilder(name, conf).
           setMaxThread(NUM_CONCURRENT_INDEX_WRITER_THREADS_CONF_KEY,
             DEFAULT_CONCURRENT_INDEX_WRITER_THREADS).
           setCoreTimeout(INDEX_WRITER_KEEP_ALIVE_TIME_CONF_KEY), env),
-      env.getRegionServerServices(), parent, CachingHTableFactory.getCacheSize(conf));
+      env.getRegionServerServices(), parent, CachingHTableFactory.getCacheSize(conf),
+      conf.getInt(NUM_CONCURRENT_INDEX_WRITER_THREADS_PER_TABLE_CONF_KEY,
+        Math.max(1, maxThreads / 2)));
   }
 
   /**
@@ -89,8 +105,18 @@ public class ParallelWriterIndexCommitter implements IndexCommitter {
    */
   void setup(HTableFactory factory, ExecutorService pool, Abortable abortable, Stoppable stop,
       int cacheSize) {
+    setup(factory, pool, abortable, stop, cacheSize, 0);
+  }
+
+  /**
+   * Setup <tt>this</tt>, limiting the number of threads writing to the same index table at once.
+   * <p>
+   * Exposed for TESTING
+   */
+  void setup(HTableFactory factory, ExecutorService pool, Abortable abortable, Stoppable stop,
+      int cacheSize, int maxThreadsPerTable) {
     this.factory = new CachingHTableFactory(factory, cacheSize);
-    this.pool = new QuickFailingTaskRunner(pool);
+    this.pool = new QuickFailingTaskRunner(pool, maxThreadsPerTable);
     this.stopped = stop;
   }
 
@@ -143,7 +169,10 @@ public class ParallelWriterIndexCommitter implements IndexCommitter {
           try {
             HTableInterface table = factory.getTable(tableReference.get());
             throwFailureIfDone();
+            long start = EnvironmentEdgeManager.currentTimeMillis();
             table.batch(mutations);
+            metricsSource.updateIndexWriteTime(tableReference.getTableName(), mutations.size(),
+              EnvironmentEdgeManager.currentTimeMillis() - start);
           } catch (SingleIndexWriteFailureException e) {
             throw e;
           } catch (IOException e) {
@@ -163,7 +192,7 @@ public class ParallelWriterIndexCommitter implements IndexCommitter {
           }
 
         }
-      });
+      }, tableReference.getTableName());
     }
 
     // actually submit the tasks to the pool and wait for them to finish/fail
@@ -19,47 +19,339 @@
  */
 package org.apache.hadoop.hbase.index.write.recovery;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import org.apache.hadoop.hbase.index.table.HTableInterfaceReference;
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.hadoop.hbase.index.wal.IndexedKeyValue;
+import org.apache.hadoop.hbase.index.wal.KeyValueCodec;
 
-
+/**
+ * Cache of the index edits that failed to be written during WAL replay, so they can be retried once
+ * the region is opened.
+ * <p>
+ * When an index table is down for a while, the number of failed edits can grow without bounds. The
+ * edits are kept in memory up to {@link #MAX_HEAP_SIZE_CONF_KEY} bytes (across all the regions
+ * using the cache), after which the in-memory edits of each region are appended to a local spill
+ * file for that region. {@link #getEdits(HRegion)} then returns the edits of a region in batches
+ * bounded by the same size, streaming them back from the spill files, so the memory used by the
+ * recovery stays constant regardless of the backlog. The regions of a region server share a single
+ * cache - see {@link #getSharedCache(Configuration, ServerName)} - so the bound applies to the
+ * whole server rather than to each region.
+ * <p>
+ * The spill files are only a cache of the WAL - they're deleted once replayed, when the edits of a
+ * region are {@link #removeEdits(HRegion) removed} or when the cache is {@link #close() closed}.
+ * Spill files left behind by a region server that died are deleted when the region server's cache
+ * is next created, as the failed edits are recovered again from the WAL.
+ */
 public class PerRegionIndexWriteCache {
 
-  private Map<HRegion, Multimap<HTableInterfaceReference, Mutation>> cache =
-      new HashMap<HRegion, Multimap<HTableInterfaceReference, Mutation>>();
+  private static final Log LOG = LogFactory.getLog(PerRegionIndexWriteCache.class);
+
+  /** Configuration key for the maximum estimated heap size of the failed edits kept in memory */
+  public static final String MAX_HEAP_SIZE_CONF_KEY = "index.recovery.cache.maxheapsize";
+  public static final long DEFAULT_MAX_HEAP_SIZE = 64 * 1024 * 1024;
+  /** Configuration key for the local directory to which failed edits are spilled */
+  public static final String SPILL_DIR_CONF_KEY = "index.recovery.cache.spill.dir";
+  private static final String SPILL_FILE_PREFIX = "index-edits-";
+
+  /** Caches shared by the regions of each region server, by spill directory */
+  private static final Map<File, PerRegionIndexWriteCache> SHARED_CACHES =
+      new HashMap<File, PerRegionIndexWriteCache>();
+
+  private final Map<HRegion, RegionEdits> cache = new HashMap<HRegion, RegionEdits>();
+  private final long maxHeapSize;
+  private final File spillDir;
+  private long heapSize = 0;
+
+  /**
+   * Create a cache that keeps all the failed edits in memory
+   */
+  public PerRegionIndexWriteCache() {
+    this(Long.MAX_VALUE, null);
+  }
+
+  /**
+   * @param maxHeapSize maximum estimated heap size of the edits kept in memory, and of each batch
+   *          returned by {@link #getEdits(HRegion)}
+   * @param spillDir local directory to which edits are spilled once <tt>maxHeapSize</tt> is
+   *          reached. If <tt>null</tt>, edits are never spilled.
+   */
+  public PerRegionIndexWriteCache(long maxHeapSize, File spillDir) {
+    this.maxHeapSize = maxHeapSize;
+    this.spillDir = spillDir;
+  }
+
+  /**
+   * Get the cache shared by all the regions of the given region server, configured by
+   * {@link #MAX_HEAP_SIZE_CONF_KEY} and {@link #SPILL_DIR_CONF_KEY}. The spill directory defaults to
+   * a directory under <tt>hbase.tmp.dir</tt>, and the region server spills to its own subdirectory
+   * of it. The first time the cache of a region server is requested, any spill file left behind by
+   * a previous run of the region server is deleted.
+   * @param conf to read the configuration from
+   * @param serverName region server whose regions share the cache
+   * @return the shared cache
+   */
+  public static PerRegionIndexWriteCache getSharedCache(Configuration conf, ServerName serverName) {
+    String spillDirName = conf.get(SPILL_DIR_CONF_KEY);
+    if (spillDirName == null) {
+      spillDirName = conf.get("hbase.tmp.dir", System.getProperty("java.io.tmpdir"))
+          + File.separator + "index-recovery-cache";
+    }
+    File spillDir =
+        new File(spillDirName, serverName.getHostname() + "_" + serverName.getPort());
+    synchronized (SHARED_CACHES) {
+      PerRegionIndexWriteCache cache = SHARED_CACHES.get(spillDir);
+      if (cache == null) {
+        cache =
+            new PerRegionIndexWriteCache(conf.getLong(MAX_HEAP_SIZE_CONF_KEY, DEFAULT_MAX_HEAP_SIZE),
+                spillDir);
+        cache.deleteSpillFiles();
+        SHARED_CACHES.put(spillDir, cache);
+      }
+      return cache;
+    }
+  }
 
+  /**
+   * Delete the spill files in the spill directory, which can only have been left behind by a
+   * previous run of the region server
+   */
+  private void deleteSpillFiles() {
+    if (spillDir == null) {
+      return;
+    }
+    File[] files = spillDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.getName().startsWith(SPILL_FILE_PREFIX)) {
+        if (file.delete()) {
+          LOG.info("Deleted stale index edits spill file " + file);
+        } else {
+          LOG.warn("Could not delete stale index edits spill file " + file);
+        }
+      }
+    }
+  }
 
   /**
-   * Get the edits for the current region. Removes the edits from the cache. To add them back, call
-   * {@link #addEdits(HRegion, HTableInterfaceReference, Collection)}.
+   * Get the next batch of edits for the current region. Removes the edits from the cache. To add
+   * them back, call {@link #addEdits(HRegion, HTableInterfaceReference, Collection)}. Edits that
+   * were spilled to disk are returned first, so callers should keep getting edits until
+   * <tt>null</tt> is returned.
    * @param region
-   * @return Get the edits for the given region. Returns <tt>null</tt> if there are no pending edits
-   *         for the region
+   * @return Get the next batch of edits for the given region. Returns <tt>null</tt> if there are no
+   *         more pending edits for the region
+   * @throws IOException if the spilled edits cannot be read
    */
-  public Multimap<HTableInterfaceReference, Mutation> getEdits(HRegion region) {
-    return cache.remove(region);
+  public synchronized Multimap<HTableInterfaceReference, Mutation> getEdits(HRegion region)
+      throws IOException {
+    RegionEdits regionEdits = cache.get(region);
+    if (regionEdits == null) {
+      return null;
+    }
+    try {
+      while (regionEdits.replayIn != null || regionEdits.spillOut != null) {
+        if (regionEdits.replayIn == null) {
+          regionEdits.startReplay();
+        }
+        Multimap<HTableInterfaceReference, Mutation> batch = regionEdits.readBatch(maxHeapSize);
+        if (!batch.isEmpty()) {
+          return batch;
+        }
+      }
+    } catch (IOException e) {
+      cache.remove(region);
+      this.heapSize -= regionEdits.heapSize;
+      regionEdits.close();
+      throw e;
+    }
+    cache.remove(region);
+    if (regionEdits.edits.isEmpty()) {
+      return null;
+    }
+    this.heapSize -= regionEdits.heapSize;
+    return regionEdits.edits;
   }
 
   /**
    * @param region
    * @param table
    * @param collection
+   * @throws IOException if the edits need to be spilled to disk, but cannot be written
    */
-  public void addEdits(HRegion region, HTableInterfaceReference table,
-      Collection<Mutation> collection) {
-    Multimap<HTableInterfaceReference, Mutation> edits = cache.get(region);
-    if (edits == null) {
+  public synchronized void addEdits(HRegion region, HTableInterfaceReference table,
+      Collection<Mutation> collection) throws IOException {
+    RegionEdits regionEdits = cache.get(region);
+    if (regionEdits == null) {
+      regionEdits = new RegionEdits();
+      cache.put(region, regionEdits);
+    }
+    regionEdits.edits.putAll(table, collection);
+    for (Mutation m : collection) {
+      long size = estimateHeapSize(m);
+      regionEdits.heapSize += size;
+      this.heapSize += size;
+    }
+
+    if (this.heapSize > maxHeapSize && spillDir != null) {
+      for (Entry<HRegion, RegionEdits> entry : cache.entrySet()) {
+        RegionEdits toSpill = entry.getValue();
+        if (toSpill.edits.isEmpty()) {
+          continue;
+        }
+        LOG.info("Spilling " + toSpill.edits.size() + " failed index edits for region "
+            + entry.getKey() + " to disk");
+        toSpill.spill(spillDir);
+        this.heapSize -= toSpill.heapSize;
+        toSpill.heapSize = 0;
+      }
+    }
+  }
+
+  private static long estimateHeapSize(Mutation m) {
+    long size = m.getRow().length;
+    for (List<KeyValue> kvs : m.getFamilyMap().values()) {
+      for (KeyValue kv : kvs) {
+        size += kv.heapSize();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Drop the cached edits of the given region, deleting any spill file of the region
+   * @param region
+   * @return <tt>true</tt> if there were edits for the region
+   */
+  public synchronized boolean removeEdits(HRegion region) {
+    RegionEdits regionEdits = cache.remove(region);
+    if (regionEdits == null) {
+      return false;
+    }
+    this.heapSize -= regionEdits.heapSize;
+    regionEdits.close();
+    return true;
+  }
+
+  /**
+   * Drop all the cached edits, deleting any spill file
+   */
+  public synchronized void close() {
+    for (RegionEdits regionEdits : cache.values()) {
+      regionEdits.close();
+    }
+    cache.clear();
+    this.heapSize = 0;
+  }
+
+  /**
+   * Failed edits of a single region, in memory and spilled to disk. A region is only spilled to a
+   * single append-only file at a time - once its replay starts, further edits are spilled to a new
+   * file which is replayed after the current one.
+   */
+  private static class RegionEdits {
+    private Multimap<HTableInterfaceReference, Mutation> edits =
+        ArrayListMultimap.<HTableInterfaceReference, Mutation> create();
+    private long heapSize = 0;
+    private File spillFile;
+    private DataOutputStream spillOut;
+    private File replayFile;
+    private DataInputStream replayIn;
+
+    private void spill(File spillDir) throws IOException {
+      if (spillOut == null) {
+        if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+          throw new IOException("Could not create index edits spill directory " + spillDir);
+        }
+        spillFile = File.createTempFile(SPILL_FILE_PREFIX, ".spill", spillDir);
+        spillOut =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile, true)));
+      }
+      for (Entry<HTableInterfaceReference, Mutation> entry : edits.entries()) {
+        ImmutableBytesPtr tableName = entry.getKey().get();
+        KeyValueCodec.write(spillOut, new IndexedKeyValue(tableName.copyBytesIfNecessary(),
+            entry.getValue()));
+      }
+      spillOut.flush();
       edits = ArrayListMultimap.<HTableInterfaceReference, Mutation> create();
-      cache.put(region, edits);
     }
-    edits.putAll(table, collection);
+
+    private void startReplay() throws IOException {
+      spillOut.close();
+      spillOut = null;
+      replayFile = spillFile;
+      spillFile = null;
+      replayIn = new DataInputStream(new BufferedInputStream(new FileInputStream(replayFile)));
+    }
+
+    private Multimap<HTableInterfaceReference, Mutation> readBatch(long maxHeapSize)
+        throws IOException {
+      Multimap<HTableInterfaceReference, Mutation> batch =
+          ArrayListMultimap.<HTableInterfaceReference, Mutation> create();
+      long batchSize = 0;
+      while (batchSize < maxHeapSize) {
+        IndexedKeyValue kv;
+        try {
+          kv = (IndexedKeyValue) KeyValueCodec.readKeyValue(replayIn);
+        } catch (EOFException e) {
+          finishReplay();
+          break;
+        }
+        batch.put(new HTableInterfaceReference(new ImmutableBytesPtr(kv.getIndexTable())),
+          kv.getMutation());
+        batchSize += estimateHeapSize(kv.getMutation());
+      }
+      return batch;
+    }
+
+    private void finishReplay() throws IOException {
+      replayIn.close();
+      replayIn = null;
+      if (!replayFile.delete()) {
+        LOG.warn("Could not delete replayed index edits spill file " + replayFile);
+      }
+      replayFile = null;
+    }
+
+    private void close() {
+      try {
+        if (spillOut != null) {
+          spillOut.close();
+          spillFile.delete();
+        }
+        if (replayIn != null) {
+          replayIn.close();
+          replayFile.delete();
+        }
+      } catch (IOException e) {
+        LOG.warn("Could not close index edits spill file", e);
+      }
+    }
   }
-}
\ No newline at end of file
+}
@@ -36,6 +36,7 @@ import org.apache.hadoop.hbase.Stoppable;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 
 import com.google.common.collect.Multimap;
 import org.apache.hadoop.hbase.index.CapturingAbortable;
@@ -55,6 +56,8 @@ import org.apache.hadoop.hbase.index.write.IndexCommitter;
 import org.apache.hadoop.hbase.index.write.IndexWriter;
 import org.apache.hadoop.hbase.index.write.IndexWriterUtils;
 import org.apache.hadoop.hbase.index.write.ParallelWriterIndexCommitter;
+import org.apache.phoenix.metrics.MetricsIndexerSource;
+import org.apache.phoenix.metrics.MetricsIndexerSourceFactory;
 
 /**
  * Like the {@link ParallelWriterIndexCommitter}, but blocks until all writes have attempted to
@@ -87,22 +90,35 @@ public class TrackingParallelWriterIndexCommitter implements IndexCommitter {
   private static final int DEFAULT_CONCURRENT_INDEX_WRITER_THREADS = 10;
   private static final String INDEX_WRITER_KEEP_ALIVE_TIME_CONF_KEY =
       "index.trackingwriter.threads.keepalivetime";
+  /**
+   * Configuration key for the maximum number of writer threads used at once to write to the same
+   * index table, so a slow index table doesn't starve the writes to the other ones. Defaults to
+   * half the writer threads. Set to 0 for no limit.
+   */
+  public static final String NUM_CONCURRENT_INDEX_WRITER_THREADS_PER_TABLE_CONF_KEY =
+      "index.trackingwriter.threads.pertable.max";
   
   private TaskRunner pool;
   private HTableFactory factory;
+  private final MetricsIndexerSource metricsSource = MetricsIndexerSourceFactory.getIndexerSource();
   private CapturingAbortable abortable;
   private Stoppable stopped;
 
   @Override
   public void setup(IndexWriter parent, RegionCoprocessorEnvironment env, String name) {
     Configuration conf = env.getConfiguration();
+    int maxThreads =
+        conf.getInt(NUM_CONCURRENT_INDEX_WRITER_THREADS_CONF_KEY,
+          DEFAULT_CONCURRENT_INDEX_WRITER_THREADS);
     setup(IndexWriterUtils.getDefaultDelegateHTableFactory(env),
       ThreadPoolManager.getExecutor(
         new ThreadPoolBuilder(name, conf).
           setMaxThread(NUM_CONCURRENT_INDEX_WRITER_THREADS_CONF_KEY,
             DEFAULT_CONCURRENT_INDEX_WRITER_THREADS).
           setCoreTimeout(INDEX_WRITER_KEEP_ALIVE_TIME_CONF_KEY), env),
-      env.getRegionServerServices(), parent, CachingHTableFactory.getCacheSize(conf));
+      env.getRegionServerServices(), parent, CachingHTableFactory.getCacheSize(conf),
+      conf.getInt(NUM_CONCURRENT_INDEX_WRITER_THREADS_PER_TABLE_CONF_KEY,
+        Math.max(1, maxThreads / 2)));
   }
 
   /**
@@ -112,7 +128,17 @@ public class TrackingParallelWriterIndexCommitter implements IndexCommitter {
    */
   void setup(HTableFactory factory, ExecutorService pool, Abortable abortable, Stoppable stop,
       int cacheSize) {
-    this.pool = new WaitForCompletionTaskRunner(pool);
+    setup(factory, pool, abortable, stop, cacheSize, 0);
+  }
+
+  /**
+   * Setup <tt>this</tt>, limiting the number of threads writing to the same index table at once.
+   * <p>
+   * Exposed for TESTING
+   */
+  void setup(HTableFactory factory, ExecutorService pool, Abortable abortable, Stoppable stop,
+      int cacheSize, int maxThreadsPerTable) {
+    this.pool = new WaitForCompletionTaskRunner(pool, maxThreadsPerTable);
     this.factory = new CachingHTableFactory(factory, cacheSize);
     this.abortable = new CapturingAbortable(abortable);
     this.stopped = stop;
@@ -159,7 +185,10 @@ public class TrackingParallelWriterIndexCommitter implements IndexCommitter {
             }
             HTableInterface table = factory.getTable(tableReference.get());
             throwFailureIfDone();
+            long start = EnvironmentEdgeManager.currentTimeMillis();
             table.batch(mutations);
+            metricsSource.updateIndexWriteTime(tableReference.getTableName(), mutations.size(),
+              EnvironmentEdgeManager.currentTimeMillis() - start);
           } catch (InterruptedException e) {
             // reset the interrupt status on the thread
             Thread.currentThread().interrupt();
@@ -178,7 +207,7 @@ public class TrackingParallelWriterIndexCommitter implements IndexCommitter {
           }
 
         }
-      });
+      }, tableReference.getTableName());
     }
 
     List<Boolean> results = null;
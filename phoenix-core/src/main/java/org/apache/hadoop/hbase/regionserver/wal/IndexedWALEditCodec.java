@@ -13,6 +13,7 @@ import org.apache.hadoop.hbase.codec.BaseEncoder;
 import org.apache.hadoop.hbase.codec.Decoder;
 import org.apache.hadoop.hbase.codec.Encoder;
 
+import org.apache.hadoop.hbase.index.wal.CompactIndexedKeyValueCodec;
 import org.apache.hadoop.hbase.index.wal.IndexedKeyValue;
 import org.apache.hadoop.hbase.index.wal.KeyValueCodec;
 
@@ -23,6 +24,10 @@ import org.apache.hadoop.hbase.index.wal.KeyValueCodec;
  * Currently, we don't support reading older WAL files - only new WAL files. Therefore, this should
  * not be installed on a running cluster, but rather one that has been cleanly shutdown and requires
  * no WAL replay on startup.
+ * <p>
+ * {@link IndexedKeyValue}s are written with a {@link CompactIndexedKeyValueCodec}, which is created
+ * for each encoder/decoder and so for each edit. WALs written with the legacy encoding of
+ * {@link IndexedKeyValue}s can still be read.
  */
 public class IndexedWALEditCodec extends WALEditCodec {
 
@@ -74,6 +79,7 @@ public class IndexedWALEditCodec extends WALEditCodec {
    * Custom {@link Decoder} that can handle a stream of regular and indexed {@link KeyValue}s.
    */
   public class IndexKeyValueDecoder extends BaseDecoder {
+    private final CompactIndexedKeyValueCodec compactCodec = new CompactIndexedKeyValueCodec();
 
     /**
      * Create a {@link Decoder} on the given input stream with the given {@link Decoder} to parse
@@ -86,13 +92,14 @@ public class IndexedWALEditCodec extends WALEditCodec {
 
     @Override
     protected KeyValue parseCell() throws IOException{
-      return KeyValueCodec.readKeyValue((DataInput) this.in);
+      return KeyValueCodec.readKeyValue((DataInput) this.in, compactCodec);
     }
   }
 
   public class CompressedIndexKeyValueDecoder extends BaseDecoder {
 
     private Decoder decoder;
+    private final CompactIndexedKeyValueCodec compactCodec = new CompactIndexedKeyValueCodec();
 
     /**
      * Create a {@link Decoder} on the given input stream with the given {@link Decoder} to parse
@@ -124,7 +131,7 @@ public class IndexedWALEditCodec extends WALEditCodec {
       }
 
       // its an indexedKeyValue, so parse it out specially
-      return KeyValueCodec.readKeyValue((DataInput) this.in);
+      return KeyValueCodec.readKeyValue((DataInput) this.in, compactCodec);
     }
   }
 
@@ -133,6 +140,8 @@ public class IndexedWALEditCodec extends WALEditCodec {
    * compression.
    */
   private static class IndexKeyValueEncoder extends BaseEncoder {
+    private final CompactIndexedKeyValueCodec compactCodec = new CompactIndexedKeyValueCodec();
+
     public IndexKeyValueEncoder(OutputStream os) {
       super(os);
     }
@@ -148,7 +157,7 @@ public class IndexedWALEditCodec extends WALEditCodec {
       checkFlushed();
 
       // use the standard encoding mechanism
-      KeyValueCodec.write((DataOutput) this.out, cell);
+      KeyValueCodec.write((DataOutput) this.out, cell, compactCodec);
     }
   }
 
@@ -159,6 +168,7 @@ public class IndexedWALEditCodec extends WALEditCodec {
    */
   private static class CompressedIndexKeyValueEncoder extends BaseEncoder {
     private Encoder compressedKvEncoder;
+    private final CompactIndexedKeyValueCodec compactCodec = new CompactIndexedKeyValueCodec();
 
     public CompressedIndexKeyValueEncoder(OutputStream os, Encoder compressedKvEncoder) {
       super(os);
@@ -188,7 +198,7 @@ public class IndexedWALEditCodec extends WALEditCodec {
         this.compressedKvEncoder.write(cell);
       }
       else{
-        KeyValueCodec.write((DataOutput) out, cell);
+        KeyValueCodec.write((DataOutput) out, cell, compactCodec);
       }
     }
   }
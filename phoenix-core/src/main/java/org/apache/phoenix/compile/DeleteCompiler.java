@@ -282,7 +282,7 @@ public class DeleteCompiler {
                 public MutationState execute() throws SQLException {
                     // TODO: share this block of code with UPSERT SELECT
                     ImmutableBytesWritable ptr = context.getTempPtr();
-                    tableRef.getTable().getIndexMaintainers(ptr);
+                    tableRef.getTable().getIndexMaintainers(ptr, connection);
                     ServerCache cache = null;
                     try {
                         if (ptr.getLength() > 0) {
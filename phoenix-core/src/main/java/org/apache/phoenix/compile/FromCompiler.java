@@ -156,6 +156,14 @@ public class FromCompiler {
         return visitor;
     }
     
+    /**
+     * Get a resolver for the given, already resolved, table. Used to compile expressions
+     * against a table without going back to the server for its metadata.
+     */
+    public static ColumnResolver getResolver(TableRef tableRef, PhoenixConnection connection) {
+        return new SingleTableColumnResolver(connection, tableRef);
+    }
+    
     public static ColumnResolver getResolver(SingleTableSQLStatement statement, PhoenixConnection connection,
             List<ColumnDef> dyn_columns) throws SQLException {
         SingleTableColumnResolver visitor = new SingleTableColumnResolver(connection, statement.getTable(), true);
@@ -186,6 +194,12 @@ public class FromCompiler {
            tableRefs = ImmutableList.of(new TableRef(alias, theTable, timeStamp, !table.getDynamicColumns().isEmpty()));
        }
        
+        public SingleTableColumnResolver(PhoenixConnection connection, TableRef tableRef) {
+            super(connection);
+            alias = tableRef.getTableAlias();
+            tableRefs = ImmutableList.of(tableRef);
+        }
+        
         public SingleTableColumnResolver(PhoenixConnection connection, NamedTableNode table, boolean updateCacheOnlyIfAutoCommit) throws SQLException {
             super(connection);
             alias = table.getAlias();
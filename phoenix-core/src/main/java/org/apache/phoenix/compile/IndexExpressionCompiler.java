@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.ParseNode;
+import org.apache.phoenix.parse.SQLParser;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.TableRef;
+
+/**
+ *
+ * Compiles the indexed expressions of an index against its data table. The same
+ * compilation is used when the index is created, when its IndexMaintainer is built,
+ * and when the expressions of a query are matched against the indexed ones, so that
+ * an expression always compiles to an equal {@link Expression}.
+ *
+ *
+ * @since 3.0.0
+ */
+public class IndexExpressionCompiler {
+    private final StatementContext context;
+
+    /**
+     * @param connection the connection to the cluster
+     * @param dataTable the data table against which column references are resolved
+     */
+    public IndexExpressionCompiler(PhoenixConnection connection, PTable dataTable) throws SQLException {
+        this(connection, FromCompiler.getResolver(new TableRef(dataTable), connection));
+    }
+
+    /**
+     * @param connection the connection to the cluster
+     * @param dataResolver the resolver of the column references of a query over the data table
+     */
+    public IndexExpressionCompiler(PhoenixConnection connection, ColumnResolver dataResolver) {
+        this.context = new StatementContext(new PhoenixStatement(connection), dataResolver, Collections.<Object>emptyList(), new Scan());
+    }
+
+    /**
+     * Compile the given expression, checking that it may be indexed. An indexed expression
+     * must reference at least one column, must not be an aggregate, and must evaluate to the
+     * same value every time for the same row.
+     * @param node the parsed expression
+     * @return the compiled expression
+     * @throws SQLException if the expression cannot be compiled or may not be indexed
+     */
+    public Expression compile(ParseNode node) throws SQLException {
+        ExpressionCompiler compiler = new ExpressionCompiler(context);
+        int nSequences = context.getSequenceManager().getSequenceCount();
+        Expression expression = node.accept(compiler);
+        if (compiler.isAggregate()) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.AGGREGATE_EXPRESSION_NOT_ALLOWED_IN_INDEX).setMessage(node.toString()).build().buildException();
+        }
+        if (context.getSequenceManager().getSequenceCount() > nSequences) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INVALID_USE_OF_NEXT_VALUE_FOR).setMessage(node.toString()).build().buildException();
+        }
+        if (!expression.isDeterministic()) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.NON_DETERMINISTIC_EXPRESSION_NOT_ALLOWED_IN_INDEX).setMessage(node.toString()).build().buildException();
+        }
+        if (expression.isStateless()) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.STATELESS_EXPRESSION_NOT_ALLOWED_IN_INDEX).setMessage(node.toString()).build().buildException();
+        }
+        return expression;
+    }
+
+    /**
+     * Compile the SQL text of an indexed expression, as stored in the index metadata.
+     * @see #compile(ParseNode)
+     */
+    public Expression compile(String expressionStr) throws SQLException {
+        return compile(SQLParser.parseExpression(expressionStr));
+    }
+}
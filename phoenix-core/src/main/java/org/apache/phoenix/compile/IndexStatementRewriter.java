@@ -1,31 +1,64 @@
 package org.apache.phoenix.compile;
 
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.parse.ColumnParseNode;
+import org.apache.phoenix.parse.CompoundParseNode;
 import org.apache.phoenix.parse.FamilyWildcardParseNode;
 import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.ParseNodeFactory;
 import org.apache.phoenix.parse.ParseNodeRewriter;
+import org.apache.phoenix.parse.SQLParser;
 import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.StringConcatParseNode;
 import org.apache.phoenix.parse.TableName;
 import org.apache.phoenix.parse.WildcardParseNode;
 import org.apache.phoenix.schema.ColumnRef;
+import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.util.IndexUtil;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 public class IndexStatementRewriter extends ParseNodeRewriter {
     private static final ParseNodeFactory FACTORY = new ParseNodeFactory();
     
     private Map<TableRef, TableRef> multiTableRewriteMap;
+    // Index column name by compiled indexed expression, for an index with indexed expressions
+    private Map<Expression, String> indexedExpressions;
+    // Classes of the parse nodes of the indexed expressions, to only compile potential matches
+    private Set<Class<? extends ParseNode>> indexedExpressionNodeClasses;
+    private IndexExpressionCompiler expressionCompiler;
     
     public IndexStatementRewriter(ColumnResolver dataResolver, Map<TableRef, TableRef> multiTableRewriteMap) {
         super(dataResolver);
         this.multiTableRewriteMap = multiTableRewriteMap;
     }
     
+    private IndexStatementRewriter(ColumnResolver dataResolver, PTable index, PhoenixConnection connection) throws SQLException {
+        super(dataResolver);
+        this.indexedExpressions = Maps.newHashMap();
+        this.indexedExpressionNodeClasses = Sets.newHashSet();
+        IndexExpressionCompiler indexCompiler = new IndexExpressionCompiler(connection, dataResolver.getTables().get(0).getTable());
+        for (PColumn column : index.getPKColumns()) {
+            String expressionStr = column.getExpressionStr();
+            if (expressionStr != null) {
+                ParseNode node = SQLParser.parseExpression(expressionStr);
+                indexedExpressions.put(indexCompiler.compile(node), column.getName().getString());
+                indexedExpressionNodeClasses.add(node.getClass());
+            }
+        }
+        this.expressionCompiler = new IndexExpressionCompiler(connection, dataResolver);
+    }
+    
     /**
      * Rewrite the select statement by translating all data table column references to
      * references to the corresponding index column.
@@ -51,6 +84,61 @@ public class IndexStatementRewriter extends ParseNodeRewriter {
         return rewrite(statement, new IndexStatementRewriter(dataResolver, multiTableRewriteMap));
     }
 
+    /**
+     * Rewrite the select statement by translating all data table column references, as well as
+     * all the expressions indexed by the given index, to references to the corresponding index column.
+     * @param statement the select statement
+     * @param dataResolver the column resolver
+     * @param index the index with indexed expressions
+     * @param connection the connection used to compile the expressions
+     * @return new select statement or the same one if nothing was rewritten.
+     * @throws SQLException 
+     */
+    public static SelectStatement translate(SelectStatement statement, ColumnResolver dataResolver, PTable index, PhoenixConnection connection) throws SQLException {
+        return rewrite(statement, new IndexStatementRewriter(dataResolver, index, connection));
+    }
+
+    /**
+     * Get the reference to the index column of the given expression over the data table
+     * @return the index column reference or null if the expression isn't indexed
+     */
+    private ParseNode getIndexedExpressionNode(ParseNode node) {
+        if (indexedExpressions == null || !indexedExpressionNodeClasses.contains(node.getClass())) {
+            return null;
+        }
+        Expression expression;
+        try {
+            expression = expressionCompiler.compile(node);
+        } catch (SQLException e) {
+            return null; // Not an expression that could have been indexed
+        }
+        String indexColName = indexedExpressions.get(expression);
+        if (indexColName == null) {
+            return null;
+        }
+        // Alias the index column by the expression so that it is projected under the same name
+        ParseNode indexColNode = new ColumnParseNode(null, '"' + indexColName + '"', '"' + expression.toString() + '"');
+        PDataType dataType = expression.getDataType();
+        PDataType indexColType = IndexUtil.getIndexColumnDataType(true, dataType);
+        // Coerce back to the type of the expression, as we do for column references below
+        if (!isTopLevel() && indexColType != dataType) {
+            indexColNode = FACTORY.cast(indexColNode, dataType);
+        }
+        return indexColNode;
+    }
+
+    @Override
+    protected ParseNode leaveCompoundNode(CompoundParseNode node, List<ParseNode> children, CompoundNodeFactory factory) {
+        ParseNode indexColNode = getIndexedExpressionNode(node);
+        return indexColNode == null ? super.leaveCompoundNode(node, children, factory) : indexColNode;
+    }
+
+    @Override
+    public ParseNode visitLeave(StringConcatParseNode node, List<ParseNode> l) throws SQLException {
+        ParseNode indexColNode = getIndexedExpressionNode(node);
+        return indexColNode == null ? super.visitLeave(node, l) : indexColNode;
+    }
+
     @Override
     public ParseNode visit(ColumnParseNode node) throws SQLException {
         ColumnRef dataColRef = getResolver().resolveColumn(node.getSchemaName(), node.getTableName(), node.getName());
@@ -138,7 +138,7 @@ public class PostDDLCompiler {
                                     // In the case of a row deletion, add index metadata so mutable secondary indexing works
                                     /* TODO
                                     ImmutableBytesWritable ptr = context.getTempPtr();
-                                    tableRef.getTable().getIndexMaintainers(ptr);
+                                    tableRef.getTable().getIndexMaintainers(ptr, connection);
                                     if (ptr.getLength() > 0) {
                                         IndexMetaDataCacheClient client = new IndexMetaDataCacheClient(connection, tableRef);
                                         cache = client.addIndexMetadataCache(context.getScanRanges(), ptr);
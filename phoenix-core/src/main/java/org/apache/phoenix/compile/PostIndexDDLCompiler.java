@@ -20,22 +20,47 @@
 package org.apache.phoenix.compile;
 
 import java.sql.ParameterMetaData;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
+import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
+import org.apache.phoenix.coprocessor.UngroupedAggregateRegionObserver;
+import org.apache.phoenix.execute.AggregatePlan;
 import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.index.IndexBuildProgress;
+import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixParameterMetaData;
-import org.apache.phoenix.schema.ColumnNotFoundException;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.ColumnRef;
+import org.apache.phoenix.schema.MetaDataClient;
 import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PColumnFamily;
+import org.apache.phoenix.schema.PDataType;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableImpl;
 import org.apache.phoenix.schema.TableRef;
-import org.apache.phoenix.util.IndexUtil;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.SchemaUtil;
+
+import com.google.common.collect.Lists;
 
 
 /**
  * Class that compiles plan to generate initial data values after a DDL command for
- * index table.
+ * index table. The index rows are built server-side by each region of the data table
+ * in parallel (see {@link UngroupedAggregateRegionObserver}), with the progress of each
+ * region checkpointed in SYSTEM.INDEX_BUILD so that a failed build may be resumed.
  */
 public class PostIndexDDLCompiler {
     private final PhoenixConnection connection;
@@ -47,6 +72,16 @@ public class PostIndexDDLCompiler {
     }
 
     public MutationPlan compile(final PTable indexTable) throws SQLException {
+        return compile(indexTable, false);
+    }
+
+    /**
+     * Compile the plan that builds the given index
+     * @param indexTable the index to build
+     * @param resume true to skip the data rows indexed by a prior, failed, build of the index
+     * and false to build the index from scratch.
+     */
+    public MutationPlan compile(final PTable indexTable, final boolean resume) throws SQLException {
         return new MutationPlan() {
 
             @Override
@@ -66,54 +101,153 @@ public class PostIndexDDLCompiler {
 
             @Override
             public MutationState execute() throws SQLException {
-                boolean wasAutoCommit = connection.getAutoCommit();
-                try {
-                    connection.setAutoCommit(true);
-                    /*
-                     * Handles:
-                     * 1) Populate a newly created table with contents.
-                     * 2) Activate the index by setting the INDEX_STATE to 
-                     */
-                    // NOTE: For first version, we would use a upsert/select to populate the new index table and
-                    //   returns synchronously. Creating an index on an existing table with large amount of data
-                    //   will as a result take a very very long time.
-                    //   In the long term, we should change this to an asynchronous process to populate the index
-                    //   that would allow the user to easily monitor the process of index creation.
-                    StringBuilder indexColumns = new StringBuilder();
-                    StringBuilder dataColumns = new StringBuilder();
-                    for (PColumn col: dataTableRef.getTable().getColumns()) {
-                        String indexColName = IndexUtil.getIndexColumnName(col);
-                        try {
-                            indexTable.getColumn(indexColName);
-                            if (col.getFamilyName() != null) {
-                                dataColumns.append('"').append(col.getFamilyName()).append("\".");
-                            }
-                            dataColumns.append('"').append(col.getName()).append("\",");
-                            indexColumns.append('"').append(indexColName).append("\",");
-                        } catch (ColumnNotFoundException e) {
-                            // Catch and ignore - means that this data column is not in the index
-                        }
+                /*
+                 * Handles:
+                 * 1) Populate a newly created table with contents, as of the time stamp of the data table.
+                 * 2) Catch up on the data rows that changed while the index was being populated.
+                 * Activating the index by setting the INDEX_STATE is left to the caller.
+                 */
+                TableRef tableRef = dataTableRef;
+                List<KeyRange> completedRanges = Collections.emptyList();
+                if (resume) {
+                    IndexBuildProgress progress = IndexBuildProgress.read(connection, indexTable);
+                    if (!progress.isEmpty()) {
+                        // Build as of the same time stamp as the prior attempt, so that the index rows line up
+                        tableRef = new TableRef(null, dataTableRef.getTable(), progress.getBuildTimeStamp(), false);
+                        completedRanges = progress.getCompletedRanges();
+                    }
+                } else {
+                    IndexBuildProgress.clear(connection, indexTable);
+                }
+                long rowCount = buildIndex(indexTable, tableRef, completedRanges, null);
+                // Without an SCN, the data table may have been changed by clients that did not yet know about the index
+                if (connection.getSCN() == null) {
+                    PTable dataTable = dataTableRef.getTable();
+                    long catchUpTimeStamp = new MetaDataClient(connection).getCurrentTime(dataTable.getSchemaName().getString(), dataTable.getTableName().getString());
+                    if (catchUpTimeStamp > tableRef.getTimeStamp()) {
+                        buildIndex(indexTable, new TableRef(null, dataTable, catchUpTimeStamp, false), Collections.<KeyRange>emptyList(), tableRef.getTimeStamp());
                     }
-                    dataColumns.setLength(dataColumns.length()-1);
-                    indexColumns.setLength(indexColumns.length()-1);
-                    String schemaName = dataTableRef.getTable().getSchemaName().getString();
-                    String tableName = indexTable.getTableName().getString();
-                    
-                    StringBuilder updateStmtStr = new StringBuilder();
-                    updateStmtStr.append("UPSERT /*+ NO_INDEX */ INTO ").append(schemaName.length() == 0 ? "" : '"' + schemaName + "\".").append('"').append(tableName).append("\"(")
-                        .append(indexColumns).append(") SELECT ").append(dataColumns).append(" FROM ")
-                        .append(schemaName.length() == 0 ? "" : '"' + schemaName + "\".").append('"').append(dataTableRef.getTable().getTableName().getString()).append('"');
-                    PreparedStatement updateStmt = connection.prepareStatement(updateStmtStr.toString());
-                    int rowsUpdated = 0;
-                    updateStmt.execute();
-                    rowsUpdated = updateStmt.getUpdateCount();
-                    // Return number of rows built for index
-                    return new MutationState(rowsUpdated, connection);
-                } finally {
-                    if (!wasAutoCommit) connection.setAutoCommit(false);
                 }
+                IndexBuildProgress.clear(connection, indexTable);
+                // Return number of rows built for index
+                final long count = rowCount;
+                return new MutationState(1, connection) {
+                    @Override
+                    public long getUpdateCount() {
+                        return count;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Compile the plan that rebuilds only the index rows of the data rows that changed since
+     * the given time stamp, as of the time stamp of the data table. The data rows deleted since
+     * then have their index rows deleted. Used to recover an index that missed updates, without
+     * having to rebuild it from scratch.
+     * @param indexTable the index to rebuild
+     * @param minTimeStamp the time stamp of the earliest update that the index may have missed
+     */
+    public MutationPlan compileRebuild(final PTable indexTable, final long minTimeStamp) throws SQLException {
+        return new MutationPlan() {
+
+            @Override
+            public PhoenixConnection getConnection() {
+                return connection;
+            }
+
+            @Override
+            public ParameterMetaData getParameterMetaData() {
+                return PhoenixParameterMetaData.EMPTY_PARAMETER_META_DATA;
+            }
+
+            @Override
+            public ExplainPlan getExplainPlan() throws SQLException {
+                return ExplainPlan.EMPTY_PLAN;
+            }
+
+            @Override
+            public MutationState execute() throws SQLException {
+                final long count = buildIndex(indexTable, dataTableRef, Collections.<KeyRange>emptyList(), minTimeStamp);
+                return new MutationState(1, connection) {
+                    @Override
+                    public long getUpdateCount() {
+                        return count;
+                    }
+                };
             }
         };
     }
 
+    private long buildIndex(final PTable indexTable, final TableRef tableRef, List<KeyRange> completedRanges, Long catchUpTimeStamp) throws SQLException {
+        PTable dataTable = tableRef.getTable();
+        if (!dataTable.getIndexes().contains(indexTable)) {
+            // The data table was resolved before the index was created
+            List<PTable> indexes = Lists.newArrayList(dataTable.getIndexes());
+            indexes.add(indexTable);
+            dataTable = PTableImpl.makePTable(dataTable, dataTable.getTimeStamp(), indexes);
+        }
+        Scan scan = new Scan();
+        scan.setAttribute(UngroupedAggregateRegionObserver.UNGROUPED_AGG, QueryConstants.TRUE);
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        IndexMaintainer.serialize(dataTable, ptr, Collections.singletonList(indexTable), connection);
+        scan.setAttribute(UngroupedAggregateRegionObserver.BUILD_INDEX, ByteUtil.copyKeyBytesIfNecessary(ptr));
+        if (!completedRanges.isEmpty()) {
+            scan.setAttribute(UngroupedAggregateRegionObserver.BUILD_INDEX_COMPLETED, IndexBuildProgress.serialize(completedRanges));
+        }
+        if (catchUpTimeStamp != null) {
+            scan.setAttribute(UngroupedAggregateRegionObserver.BUILD_INDEX_CATCH_UP, Bytes.toBytes(catchUpTimeStamp));
+        }
+        SelectStatement select = SelectStatement.COUNT_ONE;
+        // We need to use this tableRef
+        ColumnResolver resolver = new ColumnResolver() {
+            @Override
+            public List<TableRef> getTables() {
+                return Collections.singletonList(tableRef);
+            }
+            @Override
+            public ColumnRef resolveColumn(String schemaName, String tableName, String colName) throws SQLException {
+                PColumn column = tableName != null
+                        ? tableRef.getTable().getColumnFamily(tableName).getColumn(colName)
+                        : tableRef.getTable().getColumn(colName);
+                return new ColumnRef(tableRef, column.getPosition());
+            }
+        };
+        StatementContext context = new StatementContext(new PhoenixStatement(connection), resolver, Collections.<Object>emptyList(), scan);
+        RowProjector projector = ProjectionCompiler.compile(context, select, GroupBy.EMPTY_GROUP_BY);
+        // Project all column families, since the index rows are built from the full data rows
+        scan.getFamilyMap().clear();
+        scan.addFamily(SchemaUtil.getEmptyColumnFamily(dataTable));
+        for (PColumnFamily family : dataTable.getColumnFamilies()) {
+            scan.addFamily(family.getName().getBytes());
+        }
+        projector = new RowProjector(projector,false);
+        WhereCompiler.compile(context, select); // Push where clause into scan
+        QueryPlan plan = new AggregatePlan(context, select, tableRef, projector, null, OrderBy.EMPTY_ORDER_BY, null, GroupBy.EMPTY_GROUP_BY, null);
+        SQLException sqlE = null;
+        ResultIterator iterator = plan.iterator();
+        try {
+            Tuple row = iterator.next();
+            return (Long)projector.getColumnProjector(0).getValue(row, PDataType.LONG, ptr);
+        } catch (SQLException e) {
+            sqlE = e;
+        } finally {
+            try {
+                iterator.close();
+            } catch (SQLException e) {
+                if (sqlE == null) {
+                    sqlE = e;
+                } else {
+                    sqlE.setNextException(e);
+                }
+            } finally {
+                if (sqlE != null) {
+                    throw sqlE;
+                }
+            }
+        }
+        throw new IllegalStateException(); // impossible
+    }
+
 }
@@ -121,6 +121,12 @@ public class ProjectionCompiler {
         PTable table = context.getConnection().getPMetaData().getTable(index.getParentName().getString());
         int tableOffset = table.getBucketNum() == null ? 0 : 1;
         int indexOffset = index.getBucketNum() == null ? 0 : 1;
+        // Indexed expressions are not columns of the data table
+        for (PColumn column : index.getPKColumns()) {
+            if (column.getExpressionStr() != null) {
+                indexOffset++;
+            }
+        }
         if (index.getColumns().size()-indexOffset != table.getColumns().size()-tableOffset) {
             // We'll end up not using this by the optimizer, so just throw
             throw new ColumnNotFoundException(WildcardParseNode.INSTANCE.toString());
@@ -760,6 +760,31 @@ public class WhereOptimizer {
                                 ByteUtil.copyKeyBytesIfNecessary(node.getMinKey()), true,
                                 ByteUtil.copyKeyBytesIfNecessary(node.getMaxKey()), true)), null);
             }
+            Expression child = node.getChildren().get(0);
+            if (childPart instanceof BaseKeyPart && child instanceof RowKeyColumnExpression && !node.containsNull()) {
+                // The values of the IN list are already sorted and coerced to the type of the
+                // column, so form the point ranges straight from them, in row key order.
+                PColumn column = childPart.getColumn();
+                Integer byteSize = column.getDataType().isFixedWidth() ? column.getByteSize() : null;
+                ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+                for (int i = 0; i < node.getValueCount(); i++) {
+                    node.getValue(i, ptr);
+                    byte[] key = sortOrder == SortOrder.DESC 
+                            ? SortOrder.invert(ptr.get(), ptr.getOffset(), ptr.getLength()) 
+                            : ByteUtil.copyKeyBytesIfNecessary(ptr);
+                    if (byteSize != null) {
+                        key = ByteUtil.fillKey(key, byteSize);
+                    }
+                    KeyRange range = ByteUtil.getKeyRange(key, CompareOp.EQUAL, column.getDataType());
+                    if (range != KeyRange.EMPTY_RANGE) {
+                        if (sortOrder == SortOrder.DESC) {
+                            range = range.invert();
+                        }
+                        ranges.add(range);
+                    }
+                }
+                return newKeyParts(childSlot, node, ranges, null);
+            }
             // Handles cases like WHERE substr(foo,1,3) IN ('aaa','bbb')
             for (Expression key : keyExpressions) {
                 KeyRange range = childPart.getKeyRange(CompareOp.EQUAL, key);
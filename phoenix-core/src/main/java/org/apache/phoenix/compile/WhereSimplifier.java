@@ -0,0 +1,335 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.IsNullExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.OrExpression;
+import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.schema.PDataType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * Simplifies the compiled WHERE clause before the key ranges are extracted from it:
+ * <ul>
+ * <li>nested ANDs and ORs are flattened and their duplicate terms removed</li>
+ * <li>the comparisons of an AND between the same expression and constants are reduced
+ *  to the tightest bounds, or to false if they contradict each other, and an IS NOT NULL
+ *  implied by such a comparison is removed</li>
+ * <li>the equality comparisons of an OR between the same expression and constants are
+ *  turned into an IN list</li>
+ * </ul>
+ * Constants, including bound parameters, are already folded while compiling the expression.
+ *
+ * Only the ANDs and ORs reached from the top of the WHERE clause through other ANDs and ORs
+ * are simplified, where a null result has the same effect as false: replacing a contradiction
+ * by false under a NOT would wrongly turn a null result into true.
+ *
+ *
+ * @since 3.0.0
+ */
+public class WhereSimplifier {
+
+    private WhereSimplifier() {
+    }
+
+    /**
+     * Simplify the expression of a WHERE clause.
+     * @param where the compiled WHERE clause
+     * @return the simplified expression, which may be the expression itself
+     * @throws SQLException
+     */
+    public static Expression simplify(Expression where) throws SQLException {
+        return simplify(where, new ImmutableBytesWritable());
+    }
+
+    private static Expression simplify(Expression node, ImmutableBytesWritable ptr) throws SQLException {
+        if (node instanceof AndExpression) {
+            return simplifyAnd(node, ptr);
+        }
+        if (node instanceof OrExpression) {
+            return simplifyOr(node, ptr);
+        }
+        return node;
+    }
+
+    private static List<Expression> flatten(Expression node, Class<? extends Expression> clazz, ImmutableBytesWritable ptr) throws SQLException {
+        List<Expression> terms = Lists.newArrayListWithExpectedSize(node.getChildren().size());
+        for (Expression child : node.getChildren()) {
+            Expression simplifiedChild = simplify(child, ptr);
+            if (clazz.isInstance(simplifiedChild)) {
+                for (Expression term : simplifiedChild.getChildren()) {
+                    addIfAbsent(terms, term);
+                }
+            } else {
+                addIfAbsent(terms, simplifiedChild);
+            }
+        }
+        return terms;
+    }
+
+    private static void addIfAbsent(List<Expression> terms, Expression term) {
+        if (!terms.contains(term)) {
+            terms.add(term);
+        }
+    }
+
+    private static Expression simplifyAnd(Expression node, ImmutableBytesWritable ptr) throws SQLException {
+        List<Expression> terms = flatten(node, AndExpression.class, ptr);
+        Map<ComparedExpression, Bounds> boundsMap = Maps.newLinkedHashMap();
+        for (Expression term : terms) {
+            ComparedExpression compared = ComparedExpression.of(term);
+            if (compared != null) {
+                Bounds bounds = boundsMap.get(compared);
+                if (bounds == null) {
+                    bounds = new Bounds();
+                    boundsMap.put(compared, bounds);
+                }
+                bounds.add((ComparisonExpression)term, ptr);
+            }
+        }
+        List<Expression> simplifiedTerms = Lists.newArrayListWithExpectedSize(terms.size());
+        for (Expression term : terms) {
+            ComparedExpression compared = ComparedExpression.of(term);
+            if (compared != null) {
+                Bounds bounds = boundsMap.get(compared);
+                if (!bounds.isAdded) {
+                    bounds.isAdded = true;
+                    simplifiedTerms.addAll(bounds.getTerms(ptr));
+                }
+            } else if (term instanceof IsNullExpression && ((IsNullExpression)term).isNegate()
+                    && isCompared(((IsNullExpression)term).getChildren().get(0), boundsMap)) {
+                // Implied by the comparison with a non null constant
+                continue;
+            } else {
+                simplifiedTerms.add(term);
+            }
+        }
+        if (simplifiedTerms.equals(node.getChildren())) {
+            return node;
+        }
+        return AndExpression.create(simplifiedTerms);
+    }
+
+    private static boolean isCompared(Expression expression, Map<ComparedExpression, Bounds> boundsMap) {
+        for (ComparedExpression compared : boundsMap.keySet()) {
+            if (compared.expression.equals(expression)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Expression simplifyOr(Expression node, ImmutableBytesWritable ptr) throws SQLException {
+        List<Expression> terms = flatten(node, OrExpression.class, ptr);
+        Map<ComparedExpression, List<Expression>> inListMap = Maps.newLinkedHashMap();
+        for (Expression term : terms) {
+            ComparedExpression compared = ComparedExpression.of(term);
+            if (compared != null && ((ComparisonExpression)term).getFilterOp() == CompareOp.EQUAL) {
+                List<Expression> inList = inListMap.get(compared);
+                if (inList == null) {
+                    inList = Lists.newArrayList(compared.expression);
+                    inListMap.put(compared, inList);
+                }
+                inList.add(term.getChildren().get(1));
+            }
+        }
+        List<Expression> simplifiedTerms = Lists.newArrayListWithExpectedSize(terms.size());
+        for (Expression term : terms) {
+            ComparedExpression compared = ComparedExpression.of(term);
+            List<Expression> inList = compared == null || ((ComparisonExpression)term).getFilterOp() != CompareOp.EQUAL 
+                    ? null : inListMap.get(compared);
+            if (inList == null || inList.size() == 2) {
+                simplifiedTerms.add(term);
+            } else if (!inList.isEmpty()) {
+                simplifiedTerms.add(InListExpression.create(Lists.newArrayList(inList), false, ptr));
+                // The other equalities are already part of the IN list
+                inList.clear();
+            }
+        }
+        if (simplifiedTerms.equals(node.getChildren())) {
+            return node;
+        }
+        return or(simplifiedTerms);
+    }
+
+    private static Expression or(List<Expression> terms) {
+        List<Expression> children = Lists.newArrayListWithExpectedSize(terms.size());
+        for (Expression term : terms) {
+            if (LiteralExpression.isTrue(term)) {
+                return term;
+            }
+            if (!LiteralExpression.isFalse(term)) {
+                children.add(term);
+            }
+        }
+        if (children.isEmpty()) {
+            return LiteralExpression.newConstant(false, true);
+        }
+        if (children.size() == 1) {
+            return children.get(0);
+        }
+        return new OrExpression(children);
+    }
+
+    /**
+     * The expression compared to a non null constant by a comparison other than !=,
+     * along with the type of the constant.
+     */
+    private static class ComparedExpression {
+        private final Expression expression;
+        private final PDataType constantType;
+
+        private ComparedExpression(Expression expression, PDataType constantType) {
+            this.expression = expression;
+            this.constantType = constantType;
+        }
+
+        private static ComparedExpression of(Expression term) {
+            if (!(term instanceof ComparisonExpression) || ((ComparisonExpression)term).getFilterOp() == CompareOp.NOT_EQUAL) {
+                return null;
+            }
+            Expression lhs = term.getChildren().get(0);
+            Expression rhs = term.getChildren().get(1);
+            if (lhs.isStateless() || !lhs.isDeterministic() || lhs instanceof RowValueConstructorExpression
+                    || !(rhs instanceof LiteralExpression) || ((LiteralExpression)rhs).getValue() == null) {
+                return null;
+            }
+            return new ComparedExpression(lhs, rhs.getDataType());
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * expression.hashCode() + constantType.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            ComparedExpression other = (ComparedExpression)obj;
+            return constantType == other.constantType && expression.equals(other.expression);
+        }
+    }
+
+    /**
+     * The tightest comparisons of an expression with constants in an AND.
+     */
+    private static class Bounds {
+        private ComparisonExpression equal;
+        private ComparisonExpression lower;
+        private ComparisonExpression upper;
+        private boolean isEmpty;
+        private boolean isAdded;
+
+        private void add(ComparisonExpression term, ImmutableBytesWritable ptr) {
+            switch (term.getFilterOp()) {
+            case EQUAL:
+                if (equal == null) {
+                    equal = term;
+                } else if (compare(term, equal, ptr) != 0) {
+                    isEmpty = true;
+                }
+                break;
+            case GREATER:
+            case GREATER_OR_EQUAL:
+                if (lower == null) {
+                    lower = term;
+                } else {
+                    int c = compare(term, lower, ptr);
+                    if (c > 0 || (c == 0 && term.getFilterOp() == CompareOp.GREATER)) {
+                        lower = term;
+                    }
+                }
+                break;
+            case LESS:
+            case LESS_OR_EQUAL:
+                if (upper == null) {
+                    upper = term;
+                } else {
+                    int c = compare(term, upper, ptr);
+                    if (c < 0 || (c == 0 && term.getFilterOp() == CompareOp.LESS)) {
+                        upper = term;
+                    }
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        private List<Expression> getTerms(ImmutableBytesWritable ptr) {
+            if (!isEmpty && equal != null) {
+                if (lower != null) {
+                    int c = compare(equal, lower, ptr);
+                    isEmpty = c < 0 || (c == 0 && lower.getFilterOp() == CompareOp.GREATER);
+                }
+                if (!isEmpty && upper != null) {
+                    int c = compare(equal, upper, ptr);
+                    isEmpty = c > 0 || (c == 0 && upper.getFilterOp() == CompareOp.LESS);
+                }
+                if (!isEmpty) {
+                    return Lists.<Expression>newArrayList(equal);
+                }
+            }
+            if (!isEmpty && lower != null && upper != null) {
+                int c = compare(lower, upper, ptr);
+                isEmpty = c > 0 || (c == 0 && (lower.getFilterOp() == CompareOp.GREATER || upper.getFilterOp() == CompareOp.LESS));
+            }
+            if (isEmpty) {
+                return Lists.<Expression>newArrayList(LiteralExpression.newConstant(false, true));
+            }
+            List<Expression> terms = Lists.newArrayListWithExpectedSize(2);
+            if (lower != null) {
+                terms.add(lower);
+            }
+            if (upper != null) {
+                terms.add(upper);
+            }
+            return terms;
+        }
+
+        /**
+         * Compare the constants of two comparisons the way the compared expression is compared to them
+         */
+        private static int compare(ComparisonExpression term1, ComparisonExpression term2, ImmutableBytesWritable ptr) {
+            Expression constant1 = term1.getChildren().get(1);
+            Expression constant2 = term2.getChildren().get(1);
+            constant1.evaluate(null, ptr);
+            ImmutableBytesWritable ptr1 = new ImmutableBytesWritable(ptr.copyBytes());
+            constant2.evaluate(null, ptr);
+            return constant1.getDataType().compareTo(ptr1, constant1.getSortOrder(), ptr, constant2.getSortOrder(), constant2.getDataType());
+        }
+    }
+}
@@ -58,6 +58,7 @@ import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.cache.GlobalCache;
 import org.apache.phoenix.cache.TenantCache;
 import org.apache.phoenix.cache.aggcache.SpillableGroupByCache;
+import org.apache.phoenix.expression.CommonSubexpressionEliminator;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.aggregator.Aggregator;
@@ -116,6 +117,18 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
                 ServerAggregators.deserialize(scan
                         .getAttribute(GroupedAggregateRegionObserver.AGGREGATORS), c
                         .getEnvironment().getConfiguration());
+        // Evaluate the subexpressions shared by the group by and aggregated expressions once per row
+        CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+        for (Expression expression : expressions) {
+            eliminator.add(expression);
+        }
+        aggregators.addExpressions(eliminator);
+        if (eliminator.hasCommonSubexpressions()) {
+            for (int i = 0; i < expressions.size(); i++) {
+                expressions.set(i, eliminator.rewrite(expressions.get(i)));
+            }
+            aggregators.rewriteExpressions(eliminator);
+        }
 
         final ScanProjector p = ScanProjector.deserializeProjectorFromScan(scan);
         final HashJoinInfo j = HashJoinInfo.deserializeHashJoinFromScan(scan);
@@ -128,9 +141,9 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
 
         if (keyOrdered) { // Optimize by taking advantage that the rows are
                           // already in the required group by key order
-            return scanOrdered(c, scan, innerScanner, expressions, aggregators);
+            return scanOrdered(c, scan, innerScanner, expressions, aggregators, eliminator);
         } else { // Otherwse, collect them all up in an in memory map
-            return scanUnordered(c, scan, innerScanner, expressions, aggregators);
+            return scanUnordered(c, scan, innerScanner, expressions, aggregators, eliminator);
         }
     }
 
@@ -335,7 +348,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
      */
     private RegionScanner scanUnordered(ObserverContext<RegionCoprocessorEnvironment> c, Scan scan,
             final RegionScanner s, final List<Expression> expressions,
-            final ServerAggregators aggregators) throws IOException {
+            final ServerAggregators aggregators, CommonSubexpressionEliminator eliminator) throws IOException {
         if (logger.isDebugEnabled()) {
             logger.debug("Grouped aggregation over unordered rows with scan " + scan
                     + ", group by " + expressions + ", aggregators " + aggregators);
@@ -381,6 +394,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
                     hasMore = s.nextRaw(results, null);
                     if (!results.isEmpty()) {
                         result.setKeyValues(results);
+                        eliminator.nextRow();
                         ImmutableBytesWritable key =
                                 TupleUtil.getConcatenatedValue(result, expressions);
                         Aggregator[] rowAggregators = groupByCache.cache(key);
@@ -413,7 +427,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
      */
     private RegionScanner scanOrdered(final ObserverContext<RegionCoprocessorEnvironment> c,
             Scan scan, final RegionScanner s, final List<Expression> expressions,
-            final ServerAggregators aggregators) {
+            final ServerAggregators aggregators, final CommonSubexpressionEliminator eliminator) {
 
         if (logger.isDebugEnabled()) {
             logger.debug("Grouped aggregation over ordered rows with scan " + scan + ", group by "
@@ -453,6 +467,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
                         hasMore = s.nextRaw(kvs, null);
                         if (!kvs.isEmpty()) {
                             result.setKeyValues(kvs);
+                            eliminator.nextRow();
                             key = TupleUtil.getConcatenatedValue(result, expressions);
                             aggBoundary = currentKey != null && currentKey.compareTo(key) != 0;
                             if (!aggBoundary) {
@@ -72,7 +72,9 @@ public interface MetaDataProtocol extends CoprocessorProtocol {
     // as the first column to the existing system table.
     // For 3.1 (SNAPSHOT) and above, we use MIN_TABLE_TIMESTAMP + 9 so that we can add
     // the multi_tenant and multi_type columns for multi tenancy
-    public static final long MIN_SYSTEM_TABLE_TIMESTAMP = MIN_TABLE_TIMESTAMP + 9;
+    // For 3.1 (SNAPSHOT) and above, we use MIN_TABLE_TIMESTAMP + 10 so that we can add
+    // the index_disable_timestamp and index_where columns for index rebuilds and partial indexes
+    public static final long MIN_SYSTEM_TABLE_TIMESTAMP = MIN_TABLE_TIMESTAMP + 10;
     public static final int DEFAULT_MAX_META_DATA_VERSIONS = 1000;
 
     // TODO: pare this down to minimum, as we don't need duplicates for both table and column errors, nor should we need
@@ -19,22 +19,232 @@
  */
 package org.apache.phoenix.coprocessor;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.CoprocessorEnvironment;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
-
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.compile.FromCompiler;
+import org.apache.phoenix.compile.MutationPlan;
+import org.apache.phoenix.compile.PostIndexDDLCompiler;
+import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
+import org.apache.phoenix.coprocessor.MetaDataProtocol.MutationCode;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.parse.ColumnDef;
+import org.apache.phoenix.parse.NamedTableNode;
+import org.apache.phoenix.parse.TableName;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PIndexState;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.SchemaUtil;
 
 
 /**
  * Coprocessor for metadata related operations. This coprocessor would only be registered
- * to SYSTEM.TABLE.
+ * to SYSTEM.TABLE. It also periodically rebuilds the indexes that were disabled because
+ * of a failure to write to them, replaying only the data rows that changed since the
+ * first failed write (as recorded in the INDEX_DISABLE_TIMESTAMP column) before
+ * making them active again.
  */
 public class MetaDataRegionObserver extends BaseRegionObserver {
+    private static final Log LOG = LogFactory.getLog(MetaDataRegionObserver.class);
+    private ScheduledThreadPoolExecutor executor;
+    private boolean enableRebuildIndex;
+    private long rebuildIndexTimeInterval;
+
+    @Override
+    public void start(CoprocessorEnvironment env) throws IOException {
+        enableRebuildIndex = env.getConfiguration().getBoolean(QueryServices.INDEX_FAILURE_HANDLING_REBUILD_ATTRIB,
+                QueryServicesOptions.DEFAULT_INDEX_FAILURE_HANDLING_REBUILD);
+        rebuildIndexTimeInterval = env.getConfiguration().getLong(QueryServices.INDEX_FAILURE_HANDLING_REBUILD_INTERVAL_ATTRIB,
+                QueryServicesOptions.DEFAULT_INDEX_FAILURE_HANDLING_REBUILD_INTERVAL);
+    }
 
     @Override
     public void preClose(final ObserverContext<RegionCoprocessorEnvironment> c,
             boolean abortRequested) {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
         GlobalCache.getInstance(c.getEnvironment()).getMetaDataCache().clear();
     }
+
+    @Override
+    public void postOpen(ObserverContext<RegionCoprocessorEnvironment> e) {
+        if (!enableRebuildIndex) {
+            return;
+        }
+        final RegionCoprocessorEnvironment env = e.getEnvironment();
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Index rebuilder for " + env.getRegion().getRegionNameAsString());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.scheduleWithFixedDelay(new BuildIndexScheduleTask(env), rebuildIndexTimeInterval, rebuildIndexTimeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Task that looks for the indexes in the region that were disabled because of a write failure and
+     * rebuilds them from the data rows that changed since the failure.
+     */
+    private static class BuildIndexScheduleTask implements Runnable {
+        private final RegionCoprocessorEnvironment env;
+
+        public BuildIndexScheduleTask(RegionCoprocessorEnvironment env) {
+            this.env = env;
+        }
+
+        @Override
+        public void run() {
+            RegionScanner scanner = null;
+            try {
+                Scan scan = new Scan();
+                byte[] family = PhoenixDatabaseMetaData.TABLE_FAMILY_BYTES;
+                SingleColumnValueFilter filter = new SingleColumnValueFilter(family, PhoenixDatabaseMetaData.INDEX_DISABLE_TIMESTAMP_BYTES,
+                        CompareOp.NOT_EQUAL, PDataType.LONG.toBytes(0L));
+                filter.setFilterIfMissing(true);
+                scan.setFilter(filter);
+                scan.addColumn(family, PhoenixDatabaseMetaData.DATA_TABLE_NAME_BYTES);
+                scan.addColumn(family, PhoenixDatabaseMetaData.INDEX_STATE_BYTES);
+                scan.addColumn(family, PhoenixDatabaseMetaData.INDEX_DISABLE_TIMESTAMP_BYTES);
+                scanner = env.getRegion().getScanner(scan);
+                boolean hasMore;
+                do {
+                    List<KeyValue> results = new ArrayList<KeyValue>();
+                    hasMore = scanner.next(results);
+                    if (results.isEmpty()) {
+                        continue;
+                    }
+                    KeyValue dataTableNameKV = getKeyValue(results, PhoenixDatabaseMetaData.DATA_TABLE_NAME_BYTES);
+                    KeyValue indexStateKV = getKeyValue(results, PhoenixDatabaseMetaData.INDEX_STATE_BYTES);
+                    KeyValue disableTimeStampKV = getKeyValue(results, PhoenixDatabaseMetaData.INDEX_DISABLE_TIMESTAMP_BYTES);
+                    if (dataTableNameKV == null || indexStateKV == null || disableTimeStampKV == null
+                            || PIndexState.fromSerializedValue(indexStateKV.getBuffer()[indexStateKV.getValueOffset()]) != PIndexState.DISABLE) {
+                        continue;
+                    }
+                    long disableTimeStamp = PDataType.LONG.getCodec().decodeLong(disableTimeStampKV.getBuffer(), disableTimeStampKV.getValueOffset(), SortOrder.getDefault());
+                    String dataTableName = Bytes.toString(dataTableNameKV.getBuffer(), dataTableNameKV.getValueOffset(), dataTableNameKV.getValueLength());
+                    rebuildIndex(dataTableNameKV.getRow(), dataTableName, disableTimeStamp);
+                } while (hasMore);
+            } catch (Throwable t) {
+                LOG.warn("Failed to rebuild disabled indexes of " + env.getRegion().getRegionNameAsString(), t);
+            } finally {
+                if (scanner != null) {
+                    try {
+                        scanner.close();
+                    } catch (IOException e) {
+                        LOG.warn("Failed to close scanner of " + env.getRegion().getRegionNameAsString(), e);
+                    }
+                }
+            }
+        }
+
+        private static KeyValue getKeyValue(List<KeyValue> results, byte[] qualifier) {
+            for (KeyValue kv : results) {
+                if (Bytes.equals(kv.getBuffer(), kv.getQualifierOffset(), kv.getQualifierLength(), qualifier, 0, qualifier.length)) {
+                    return kv;
+                }
+            }
+            return null;
+        }
+
+        private void rebuildIndex(byte[] indexTableKey, String dataTableName, long disableTimeStamp) throws IOException, SQLException {
+            byte[][] rowKeyMetaData = new byte[3][];
+            SchemaUtil.getVarChars(indexTableKey, rowKeyMetaData);
+            String tenantId = Bytes.toString(rowKeyMetaData[PhoenixDatabaseMetaData.TENANT_ID_INDEX]);
+            String schemaName = Bytes.toString(rowKeyMetaData[PhoenixDatabaseMetaData.SCHEMA_NAME_INDEX]);
+            String indexName = Bytes.toString(rowKeyMetaData[PhoenixDatabaseMetaData.TABLE_NAME_INDEX]);
+            String fullIndexName = SchemaUtil.getTableName(schemaName, indexName);
+            // Resume maintaining the index before replaying the data rows, so that no update is missed
+            if (!updateIndexState(indexTableKey, PIndexState.BUILDING)) {
+                return;
+            }
+            boolean success = false;
+            try {
+                Properties props = new Properties();
+                if (tenantId.length() > 0) {
+                    props.setProperty(PhoenixRuntime.TENANT_ID_ATTRIB, tenantId);
+                }
+                PhoenixConnection conn = QueryUtil.getConnection(env.getConfiguration(), props);
+                try {
+                    NamedTableNode dataTableNode = NamedTableNode.create(null, TableName.create(schemaName, dataTableName), Collections.<ColumnDef>emptyList());
+                    TableRef dataTableRef = FromCompiler.getResolver(dataTableNode, conn).getTables().get(0);
+                    PTable index = null;
+                    for (PTable table : dataTableRef.getTable().getIndexes()) {
+                        if (table.getTableName().getString().equals(indexName)) {
+                            index = table;
+                            break;
+                        }
+                    }
+                    if (index == null) { // Index was dropped in the meantime
+                        return;
+                    }
+                    LOG.info("Rebuilding index " + fullIndexName + " from data rows changed since " + disableTimeStamp);
+                    MutationPlan plan = new PostIndexDDLCompiler(conn, dataTableRef).compileRebuild(index, disableTimeStamp);
+                    long rowCount = conn.getQueryServices().updateData(plan).getUpdateCount();
+                    LOG.info("Rebuilt index " + fullIndexName + " from " + rowCount + " data rows");
+                } finally {
+                    conn.close();
+                }
+                // Clears the INDEX_DISABLE_TIMESTAMP, unless the index was disabled again in the meantime
+                success = updateIndexState(indexTableKey, PIndexState.ACTIVE);
+            } finally {
+                if (!success) {
+                    // Try again next time
+                    updateIndexState(indexTableKey, PIndexState.DISABLE);
+                }
+            }
+        }
+
+        private boolean updateIndexState(byte[] indexTableKey, PIndexState newState) throws IOException {
+            HTableInterface systemTable = env.getTable(PhoenixDatabaseMetaData.TYPE_TABLE_NAME_BYTES);
+            try {
+                MetaDataProtocol mdProxy = systemTable.coprocessorProxy(MetaDataProtocol.class, indexTableKey);
+                // Mimic the Put that gets generated by the client on an update of the index state
+                Put put = new Put(indexTableKey);
+                put.add(PhoenixDatabaseMetaData.TABLE_FAMILY_BYTES, PhoenixDatabaseMetaData.INDEX_STATE_BYTES, newState.getSerializedBytes());
+                List<Mutation> tableMetadata = Collections.<Mutation>singletonList(put);
+                MetaDataMutationResult result = mdProxy.updateIndexState(tableMetadata);
+                if (result.getMutationCode() != MutationCode.TABLE_ALREADY_EXISTS) {
+                    LOG.warn("Attempt to update the state of index " + Bytes.toStringBinary(indexTableKey) + " to " + newState + " failed with code = " + result.getMutationCode());
+                    return false;
+                }
+                return true;
+            } finally {
+                systemTable.close();
+            }
+        }
+    }
 }
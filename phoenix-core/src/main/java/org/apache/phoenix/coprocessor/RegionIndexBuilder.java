@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.index.ValueGetter;
+import org.apache.hadoop.hbase.index.covered.update.ColumnReference;
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.index.IndexBuildProgress;
+import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ByteUtil;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ *
+ * Builds the index rows for the data rows of a region scan and writes them directly to
+ * the index tables, without round tripping through the client. Used by
+ * {@link UngroupedAggregateRegionObserver} for a server-side index build, in which all
+ * regions of the data table are processed in parallel.
+ *
+ * The index build is done in two passes. The first pass indexes the data rows as of the
+ * time stamp at which the build started and checkpoints its progress in SYSTEM.INDEX_BUILD
+ * after every batch, so that a failed build may skip the data rows already indexed. The
+ * second, catch up, pass only looks at data rows that changed since the first pass started
+ * and replaces their prior index rows with one built from their current state. It scans
+ * raw, so that the rows deleted since the first pass started have their index rows deleted
+ * too. The catch up pass is also used on its own to recover an index that missed updates.
+ *
+ *
+ * @since 3.0.0
+ */
+class RegionIndexBuilder {
+    private final RegionCoprocessorEnvironment env;
+    private final List<IndexMaintainer> maintainers;
+    private final List<KeyRange> completedRanges;
+    private final int batchSize;
+    private final long buildTimeStamp;
+    private final long catchUpTimeStamp;
+    private final byte[] startKey;
+    private final byte[] endKey;
+    private final Map<ImmutableBytesPtr, List<Mutation>> indexMutations = Maps.newHashMap();
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private int completedRangeIndex;
+    private int mutationCount;
+    private long rowCount;
+    private byte[] lastKey = ByteUtil.EMPTY_BYTE_ARRAY;
+
+    RegionIndexBuilder(RegionCoprocessorEnvironment env, Scan scan, List<IndexMaintainer> maintainers, int batchSize) {
+        this.env = env;
+        this.maintainers = maintainers;
+        this.batchSize = Math.max(1, batchSize);
+        this.completedRanges = IndexBuildProgress.deserialize(scan.getAttribute(UngroupedAggregateRegionObserver.BUILD_INDEX_COMPLETED));
+        byte[] catchUpTimeStamp = scan.getAttribute(UngroupedAggregateRegionObserver.BUILD_INDEX_CATCH_UP);
+        this.catchUpTimeStamp = catchUpTimeStamp == null ? QueryConstants.UNSET_TIMESTAMP : Bytes.toLong(catchUpTimeStamp);
+        // Index rows are written at the time stamp as of which the data rows were read, so that any
+        // concurrent update made through the Indexer coprocessor wins over the index build.
+        this.buildTimeStamp = scan.getTimeRange().getMax();
+        HRegionInfo regionInfo = env.getRegion().getRegionInfo();
+        this.startKey = Bytes.compareTo(scan.getStartRow(), regionInfo.getStartKey()) > 0 ? scan.getStartRow() : regionInfo.getStartKey();
+        byte[] stopRow = scan.getStopRow();
+        byte[] regionEndKey = regionInfo.getEndKey();
+        this.endKey = stopRow.length == 0 || (regionEndKey.length > 0 && Bytes.compareTo(regionEndKey, stopRow) < 0) ? regionEndKey : stopRow;
+    }
+
+    private boolean isCatchUp() {
+        return catchUpTimeStamp != QueryConstants.UNSET_TIMESTAMP;
+    }
+
+    /**
+     * Determine whether or not the given row was already indexed by a prior attempt of the build.
+     * @param kv first key value of the row
+     * @return null if the row must be indexed and otherwise the row key to reseek to in order to
+     * skip the rows indexed by the prior attempt, with an empty array if no rows are left to index.
+     */
+    byte[] getNextRowToBuild(KeyValue kv) {
+        byte[] b = kv.getBuffer();
+        int o = kv.getRowOffset();
+        int l = kv.getRowLength();
+        while (completedRangeIndex < completedRanges.size()
+                && completedRanges.get(completedRangeIndex).compareUpperToLowerBound(b, o, l) < 0) {
+            completedRangeIndex++;
+        }
+        if (completedRangeIndex == completedRanges.size()) {
+            return null;
+        }
+        KeyRange range = completedRanges.get(completedRangeIndex);
+        if (range.compareLowerToUpperBound(b, o, l) > 0) {
+            return null;
+        }
+        if (range.upperUnbound()) {
+            return ByteUtil.EMPTY_BYTE_ARRAY;
+        }
+        // Smallest row key after an inclusive upper bound is the bound followed by a zero byte
+        return range.isUpperInclusive() ? ByteUtil.concat(range.getUpperRange(), QueryConstants.SEPARATOR_BYTE_ARRAY) : range.getUpperRange();
+    }
+
+    private static ValueGetter newValueGetter(final Tuple tuple) {
+        return new ValueGetter() {
+            @Override
+            public ImmutableBytesPtr getLatestValue(ColumnReference ref) {
+                // Always return null for our empty key value, so that the index maintainer
+                // treats the data row as a new row and writes the empty key value of the index row.
+                if (Bytes.compareTo(QueryConstants.EMPTY_COLUMN_BYTES, ref.getQualifier()) == 0) {
+                    return null;
+                }
+                KeyValue kv = tuple.getValue(ref.getFamily(), ref.getQualifier());
+                if (kv == null) {
+                    return null;
+                }
+                return new ImmutableBytesPtr(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+            }
+        };
+    }
+
+    /**
+     * Get the state of a row as of the given time stamp, applying the delete markers of the row.
+     * @param rowVersions all versions and delete markers of the row, as returned by a raw scan
+     * @param timeStamp the exclusive upper bound of the time stamp of the key values
+     */
+    private static Result getResultAsOf(List<KeyValue> rowVersions, long timeStamp) {
+        List<KeyValue> kvs = Lists.newArrayListWithExpectedSize(rowVersions.size());
+        KeyValue lastKV = null;
+        long familyDeleteTimeStamp = -1;
+        long columnDeleteTimeStamp = -1;
+        long versionDeleteTimeStamp = -1;
+        boolean hasColumnValue = false;
+        // A family delete marker sorts before the columns of its family, a column delete marker before the
+        // versions of its column, and versions of the same column are sorted from newest to oldest with the
+        // delete marker of a version sorting before the version itself.
+        for (KeyValue kv : rowVersions) {
+            long ts = kv.getTimestamp();
+            if (ts >= timeStamp) {
+                continue;
+            }
+            if (lastKV == null || !lastKV.matchingFamily(kv.getFamily())) {
+                familyDeleteTimeStamp = -1;
+            }
+            if (lastKV == null || !lastKV.matchingColumn(kv.getFamily(), kv.getQualifier())) {
+                columnDeleteTimeStamp = -1;
+                versionDeleteTimeStamp = -1;
+                hasColumnValue = false;
+            }
+            lastKV = kv;
+            byte type = kv.getType();
+            if (type == KeyValue.Type.DeleteFamily.getCode()) {
+                familyDeleteTimeStamp = Math.max(familyDeleteTimeStamp, ts);
+            } else if (type == KeyValue.Type.DeleteColumn.getCode()) {
+                columnDeleteTimeStamp = Math.max(columnDeleteTimeStamp, ts);
+            } else if (type == KeyValue.Type.Delete.getCode()) {
+                versionDeleteTimeStamp = ts;
+            } else if (type == KeyValue.Type.Put.getCode() && !hasColumnValue
+                    && ts > familyDeleteTimeStamp && ts > columnDeleteTimeStamp && ts != versionDeleteTimeStamp) {
+                kvs.add(kv);
+                hasColumnValue = true;
+            }
+        }
+        return new Result(kvs);
+    }
+
+    /**
+     * Get the states of a row that the index may have been built from: the state of the row
+     * right before the catch up time stamp plus each state the row went through since then,
+     * including the states before and after it was deleted.
+     */
+    private List<Result> getPriorResults(List<KeyValue> rowVersions) {
+        SortedSet<Long> timeStamps = Sets.newTreeSet();
+        timeStamps.add(catchUpTimeStamp);
+        for (KeyValue kv : rowVersions) {
+            if (kv.getTimestamp() >= catchUpTimeStamp) {
+                // State as of right after the key value or delete marker was written
+                timeStamps.add(kv.getTimestamp() + 1);
+            }
+        }
+        List<Result> priorResults = Lists.newArrayListWithExpectedSize(timeStamps.size());
+        for (Long timeStamp : timeStamps) {
+            Result priorResult = getResultAsOf(rowVersions, timeStamp);
+            if (!priorResult.isEmpty()) {
+                priorResults.add(priorResult);
+            }
+        }
+        return priorResults;
+    }
+
+    /**
+     * Get every version and delete marker of a row. A raw scan is used since the versions of a
+     * row deleted during the catch up window are hidden from a regular get.
+     */
+    private List<KeyValue> getRowVersions(byte[] row) throws IOException {
+        // Smallest row key after our row is the row followed by a zero byte
+        Scan scan = new Scan(row, ByteUtil.concat(row, QueryConstants.SEPARATOR_BYTE_ARRAY));
+        scan.setRaw(true);
+        scan.setMaxVersions();
+        scan.setTimeRange(MetaDataProtocol.MIN_TABLE_TIMESTAMP, buildTimeStamp);
+        List<KeyValue> rowVersions = Lists.newArrayList();
+        RegionScanner scanner = env.getRegion().getScanner(scan);
+        try {
+            boolean hasMore;
+            do {
+                hasMore = scanner.next(rowVersions);
+            } while (hasMore);
+        } finally {
+            scanner.close();
+        }
+        return rowVersions;
+    }
+
+    private void addMutation(IndexMaintainer maintainer, Mutation mutation) {
+        // No index row when the data row doesn't satisfy the WHERE clause of a partial index
+        if (mutation == null) {
+            return;
+        }
+        ImmutableBytesPtr tableName = new ImmutableBytesPtr(maintainer.getIndexTableName());
+        List<Mutation> mutations = indexMutations.get(tableName);
+        if (mutations == null) {
+            mutations = Lists.newArrayListWithExpectedSize(batchSize);
+            indexMutations.put(tableName, mutations);
+        }
+        mutations.add(mutation);
+        mutationCount++;
+    }
+
+    /**
+     * Build and buffer the index rows of a data row, committing them when the batch is full.
+     * @param result the data row
+     * @throws IOException
+     */
+    @SuppressWarnings("deprecation")
+    void buildIndexRows(Tuple result) throws IOException {
+        result.getKey(ptr);
+        byte[] row = ptr.copyBytes();
+        if (isCatchUp()) {
+            // The scan only returned the key values and delete markers written since the catch up time
+            // stamp, so look up every version of the row to find each index row that may have been
+            // written from the state of the row since then, in addition to its current index row.
+            List<KeyValue> rowVersions = getRowVersions(row);
+            List<Result> priorResults = getPriorResults(rowVersions);
+            Result currentResult = getResultAsOf(rowVersions, buildTimeStamp);
+            for (IndexMaintainer maintainer : maintainers) {
+                Set<ImmutableBytesPtr> priorIndexRowKeys = Sets.newHashSetWithExpectedSize(priorResults.size());
+                for (Result priorResult : priorResults) {
+                    // Delete right below our time stamp so that we may put the same index row back
+                    byte[] priorIndexRowKey = maintainer.buildRowKey(newValueGetter(new ResultTuple(priorResult)), ptr);
+                    if (priorIndexRowKeys.add(new ImmutableBytesPtr(priorIndexRowKey))) {
+                        Delete delete = new Delete(priorIndexRowKey, buildTimeStamp - 1, null);
+                        addMutation(maintainer, delete);
+                    }
+                }
+                if (!currentResult.isEmpty()) {
+                    Put put = maintainer.buildUpdateMutation(newValueGetter(new ResultTuple(currentResult)), ptr, buildTimeStamp);
+                    addMutation(maintainer, put);
+                }
+            }
+        } else {
+            ValueGetter valueGetter = newValueGetter(result);
+            for (IndexMaintainer maintainer : maintainers) {
+                Put put = maintainer.buildUpdateMutation(valueGetter, ptr, buildTimeStamp);
+                addMutation(maintainer, put);
+            }
+        }
+        lastKey = row;
+        rowCount++;
+        if (mutationCount >= batchSize) {
+            commit();
+            checkpoint(false);
+        }
+    }
+
+    private void commit() throws IOException {
+        for (Map.Entry<ImmutableBytesPtr, List<Mutation>> entry : indexMutations.entrySet()) {
+            HTableInterface table = env.getTable(entry.getKey().copyBytesIfNecessary());
+            try {
+                table.batch(entry.getValue());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                table.close();
+            }
+        }
+        indexMutations.clear();
+        mutationCount = 0;
+    }
+
+    private void checkpoint(boolean isComplete) throws IOException {
+        // Nothing to resume for the catch up pass, as it only processes the few rows that changed during the build
+        if (isCatchUp()) {
+            return;
+        }
+        List<Put> checkpoints = Lists.newArrayListWithExpectedSize(maintainers.size());
+        for (IndexMaintainer maintainer : maintainers) {
+            checkpoints.add(IndexBuildProgress.newCheckpoint(maintainer.getIndexTableName(), startKey, endKey, lastKey, buildTimeStamp, rowCount, isComplete));
+        }
+        HTableInterface table = env.getTable(PhoenixDatabaseMetaData.INDEX_BUILD_TABLE_NAME_BYTES);
+        try {
+            table.put(checkpoints);
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Commit the remaining index rows and mark the scan of the region as complete.
+     * @throws IOException
+     */
+    void close() throws IOException {
+        commit();
+        checkpoint(true);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.phoenix.schema.tuple.RowBatch;
+
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Region scanner that returns up to a given number of rows of the scanner it
+ * wraps at a time, encoded as a single {@link RowBatch} KeyValue.
+ *
+ *
+ * @since 3.0.0
+ */
+public class RowBatchingRegionScanner extends BaseRegionScanner {
+    private final RegionScanner s;
+    private final int batchSize;
+
+    public RowBatchingRegionScanner(RegionScanner s, int batchSize) {
+        this.s = s;
+        this.batchSize = batchSize;
+    }
+
+    private boolean nextBatch(List<KeyValue> results, boolean isRaw, String metric) throws IOException {
+        List<List<KeyValue>> rows = Lists.newArrayListWithExpectedSize(batchSize);
+        boolean hasMore = true;
+        while (hasMore && rows.size() < batchSize) {
+            List<KeyValue> row = Lists.newArrayList();
+            if (isRaw) {
+                hasMore = s.nextRaw(row, metric);
+            } else {
+                hasMore = metric == null ? s.next(row) : s.next(row, metric);
+            }
+            // A row may be entirely filtered out
+            if (!row.isEmpty()) {
+                rows.add(row);
+            }
+        }
+        if (!rows.isEmpty()) {
+            results.add(RowBatch.toKeyValue(rows));
+        }
+        return hasMore;
+    }
+
+    @Override
+    public boolean next(List<KeyValue> results) throws IOException {
+        return nextBatch(results, false, null);
+    }
+
+    @Override
+    public boolean next(List<KeyValue> results, String metric) throws IOException {
+        return nextBatch(results, false, metric);
+    }
+
+    @Override
+    public boolean nextRaw(List<KeyValue> result, String metric) throws IOException {
+        return nextBatch(result, true, metric);
+    }
+
+    @Override
+    public boolean nextRaw(List<KeyValue> result, int limit, String metric) throws IOException {
+        return nextBatch(result, true, metric);
+    }
+
+    @Override
+    public boolean isFilterDone() {
+        return s.isFilterDone();
+    }
+
+    @Override
+    public HRegionInfo getRegionInfo() {
+        return s.getRegionInfo();
+    }
+
+    @Override
+    public long getMvccReadPoint() {
+        return s.getMvccReadPoint();
+    }
+
+    @Override
+    public void close() throws IOException {
+        s.close();
+    }
+}
@@ -66,6 +66,7 @@ import org.apache.phoenix.util.ServerUtil;
 public class ScanRegionObserver extends BaseScannerRegionObserver {
     public static final String NON_AGGREGATE_QUERY = "NonAggregateQuery";
     private static final String TOPN = "TopN";
+    private static final String ROW_BATCH_SIZE = "RowBatchSize";
 
     public static void serializeIntoScan(Scan scan, int thresholdBytes, int limit, List<OrderByExpression> orderByExpressions, int estimatedRowSize) {
         ByteArrayOutputStream stream = new ByteArrayOutputStream(); // TODO: size?
@@ -139,11 +140,36 @@ public class ScanRegionObserver extends BaseScannerRegionObserver {
         }
         
         final OrderedResultIterator iterator = deserializeFromScan(scan,innerScanner);
+        int rowBatchSize = getRowBatchSize(scan);
         if (iterator == null) {
+            if (rowBatchSize > 0) {
+                innerScanner = new RowBatchingRegionScanner(innerScanner, rowBatchSize);
+            }
             return getWrappedScanner(c, innerScanner);
         }
         
-        return getTopNScanner(c, innerScanner, iterator, tenantId);
+        RegionScanner topNScanner = getTopNScanner(c, innerScanner, iterator, tenantId);
+        if (rowBatchSize > 0) {
+            topNScanner = new RowBatchingRegionScanner(topNScanner, rowBatchSize);
+        }
+        return topNScanner;
+    }
+    
+    /**
+     * Have the rows of a scan returned in batches of up to the given number of rows,
+     * encoded as a {@link org.apache.phoenix.schema.tuple.RowBatch}.
+     */
+    public static void setRowBatchSize(Scan scan, int rowBatchSize) {
+        scan.setAttribute(ROW_BATCH_SIZE, Bytes.toBytes(rowBatchSize));
+    }
+    
+    private static int getRowBatchSize(Scan scan) {
+        byte[] rowBatchSize = scan.getAttribute(ROW_BATCH_SIZE);
+        // A row may only hold a single version of each column in a batch
+        if (rowBatchSize == null || scan.getMaxVersions() != 1) {
+            return 0;
+        }
+        return Bytes.toInt(rowBatchSize);
     }
     
     /**
@@ -60,11 +60,12 @@ import com.google.common.collect.Sets;
 
 import org.apache.phoenix.client.KeyValueBuilder;
 import org.apache.phoenix.exception.ValueTypeIncompatibleException;
+import org.apache.phoenix.expression.CommonSubexpressionEliminator;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.aggregator.Aggregator;
-import org.apache.phoenix.expression.aggregator.Aggregators;
 import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.index.PhoenixIndexCodec;
 import org.apache.phoenix.join.HashJoinInfo;
 import org.apache.phoenix.join.ScanProjector;
@@ -100,6 +101,9 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
     public static final String DELETE_CQ = "DeleteCQ";
     public static final String DELETE_CF = "DeleteCF";
     public static final String EMPTY_CF = "EmptyCF";
+    public static final String BUILD_INDEX = "BuildIndex";
+    public static final String BUILD_INDEX_COMPLETED = "BuildIndexCompleted";
+    public static final String BUILD_INDEX_CATCH_UP = "BuildIndexCatchUp";
     private KeyValueBuilder kvBuilder;
     
     @Override
@@ -124,6 +128,18 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
         scan.setAttribute(UNGROUPED_AGG, QueryConstants.TRUE);
     }
 
+    @Override
+    public RegionScanner preScannerOpen(final ObserverContext<RegionCoprocessorEnvironment> c, final Scan scan, final RegionScanner s) throws IOException {
+        byte[] catchUpTimeStamp = scan.getAttribute(BUILD_INDEX_CATCH_UP);
+        if (catchUpTimeStamp != null) {
+            // Only scan the key values that changed since the index build started, including
+            // the delete markers so that the rows deleted since then are caught up too
+            scan.setTimeRange(Bytes.toLong(catchUpTimeStamp), scan.getTimeRange().getMax());
+            scan.setRaw(true);
+        }
+        return s;
+    }
+
     @Override
     protected RegionScanner doPostScannerOpen(final ObserverContext<RegionCoprocessorEnvironment> c, final Scan scan, final RegionScanner s) throws IOException {
         byte[] isUngroupedAgg = scan.getAttribute(UNGROUPED_AGG);
@@ -140,6 +156,7 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
         final RegionScanner innerScanner = theScanner;
         
         byte[] indexUUID = scan.getAttribute(PhoenixIndexCodec.INDEX_UUID);
+        byte[] buildIndexMetaData = scan.getAttribute(BUILD_INDEX);
         PTable projectedTable = null;
         List<Expression> selectExpressions = null;
         byte[] upsertSelectTable = scan.getAttribute(UPSERT_SELECT_TABLE);
@@ -175,8 +192,29 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
             mutations = Lists.newArrayListWithExpectedSize(1024);
             batchSize = c.getEnvironment().getConfiguration().getInt(MUTATE_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE);
         }
-        Aggregators aggregators = ServerAggregators.deserialize(
+        RegionIndexBuilder indexBuilder = null;
+        if (buildIndexMetaData != null) {
+            int indexBatchSize = c.getEnvironment().getConfiguration().getInt(MUTATE_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE);
+            indexBuilder = new RegionIndexBuilder(c.getEnvironment(), scan, IndexMaintainer.deserialize(buildIndexMetaData, kvBuilder), indexBatchSize);
+        }
+        ServerAggregators aggregators = ServerAggregators.deserialize(
                 scan.getAttribute(GroupedAggregateRegionObserver.AGGREGATORS), c.getEnvironment().getConfiguration());
+        // Evaluate the subexpressions shared by the upserted and aggregated expressions once per row
+        CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+        if (selectExpressions != null) {
+            for (Expression expression : selectExpressions) {
+                eliminator.add(expression);
+            }
+        }
+        aggregators.addExpressions(eliminator);
+        if (eliminator.hasCommonSubexpressions()) {
+            if (selectExpressions != null) {
+                for (int i = 0; i < selectExpressions.size(); i++) {
+                    selectExpressions.set(i, eliminator.rewrite(selectExpressions.get(i)));
+                }
+            }
+            aggregators.rewriteExpressions(eliminator);
+        }
         Aggregator[] rowAggregators = aggregators.getAggregators();
         boolean hasMore;
         boolean hasAny = false;
@@ -195,10 +233,24 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
                 // ones returned
                 hasMore = innerScanner.nextRaw(results, null);
                 if (!results.isEmpty()) {
+                    if (indexBuilder != null) {
+                        byte[] nextRow = indexBuilder.getNextRowToBuild(results.get(0));
+                        if (nextRow != null) {
+                            // Skip over the rows indexed by a prior attempt of the index build
+                            if (nextRow.length == 0) {
+                                break;
+                            }
+                            innerScanner.reseek(nextRow);
+                            continue;
+                        }
+                    }
                 	rowCount++;
                     result.setKeyValues(results);
+                    eliminator.nextRow();
                     try {
-                        if (isDelete) {
+                        if (indexBuilder != null) {
+                            indexBuilder.buildIndexRows(result);
+                        } else if (isDelete) {
                             @SuppressWarnings("deprecation") // FIXME: Remove when unintentionally deprecated method is fixed (HBASE-7870).
                             // FIXME: the version of the Delete constructor without the lock args was introduced
                             // in 0.94.4, thus if we try to use it here we can no longer use the 0.94.2 version
@@ -303,6 +355,9 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
         if (!mutations.isEmpty()) {
             commitBatch(region,mutations, indexUUID);
         }
+        if (indexBuilder != null) {
+            indexBuilder.close();
+        }
 
         final boolean hadAny = hasAny;
         KeyValue keyValue = null;
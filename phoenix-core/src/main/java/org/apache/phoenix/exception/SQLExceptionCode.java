@@ -211,6 +211,9 @@ public enum SQLExceptionCode {
     INSUFFICIENT_MULTI_TENANT_COLUMNS(1040, "42Y96", "A MULTI_TENANT table must have 2 or more PK columns with the first column being VARCHAR or CHAR."),
     VIEW_WHERE_IS_CONSTANT(1045, "43A02", "WHERE clause in VIEW should not evaluate to a constant."),
     CANNOT_UPDATE_VIEW_COLUMN(1046, "43A03", "Column used in WHERE clause of VIEW may not be updated."),
+    AGGREGATE_EXPRESSION_NOT_ALLOWED_IN_INDEX(1047, "43A04", "Aggregate expression not allowed in an index."),
+    NON_DETERMINISTIC_EXPRESSION_NOT_ALLOWED_IN_INDEX(1048, "43A05", "Non-deterministic expression not allowed in an index."),
+    STATELESS_EXPRESSION_NOT_ALLOWED_IN_INDEX(1049, "43A06", "Stateless expression not allowed in an index."),
         
     /** Sequence related */
     SEQUENCE_ALREADY_EXIST(1200, "42Z00", "Sequence already exists.", new Factory() {
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import java.sql.ParameterMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.ExplainPlan;
+import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
+import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
+import org.apache.phoenix.compile.QueryCompiler;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.FilterableStatement;
+import org.apache.phoenix.parse.ParseNode;
+import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Query plan that uses an index which doesn't cover all the columns referenced by
+ * the query. The index is scanned to find the row keys of the matching data rows,
+ * and the query is then run against the data table restricted to these row keys,
+ * which turns into a skip scan over the data table. If the index finds too many
+ * rows, the query is run against the data table as if there was no index.
+ *
+ *
+ * @since 3.0.0
+ */
+public class IndexJoinBackPlan implements QueryPlan {
+    private static final ParseNodeFactory FACTORY = new ParseNodeFactory();
+
+    private final PhoenixStatement statement;
+    private final SelectStatement select;
+    private final List<? extends PDatum> targetColumns;
+    private final QueryPlan dataPlan;
+    private final QueryPlan indexPlan;
+    private final List<PColumn> pkColumns;
+    private final ParseNode pkNode;
+    private final int maxKeys;
+
+    /**
+     * @param statement the statement being compiled
+     * @param select the query over the data table
+     * @param targetColumns the target columns used to compile the query
+     * @param dataPlan the plan of the query over the data table, used when the index finds too many rows
+     * @param indexPlan the plan of the query over the index, projecting the primary key columns of the data table
+     * @param pkColumns the primary key columns of the data table, in the order they're projected by indexPlan
+     * @param pkNode the reference to the primary key columns of the data table, as a row value constructor
+     * if there's more than one
+     * @param maxKeys the maximum number of data row keys to look up
+     */
+    public IndexJoinBackPlan(PhoenixStatement statement, SelectStatement select, List<? extends PDatum> targetColumns, QueryPlan dataPlan,
+            QueryPlan indexPlan, List<PColumn> pkColumns, ParseNode pkNode, int maxKeys) {
+        this.statement = statement;
+        this.select = select;
+        this.targetColumns = targetColumns;
+        this.dataPlan = dataPlan;
+        this.indexPlan = indexPlan;
+        this.pkColumns = pkColumns;
+        this.pkNode = pkNode;
+        this.maxKeys = maxKeys;
+    }
+
+    public QueryPlan getIndexPlan() {
+        return indexPlan;
+    }
+
+    @Override
+    public ResultIterator iterator() throws SQLException {
+        List<ParseNode> keyNodes = Lists.newArrayList();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        List<? extends ColumnProjector> projectors = indexPlan.getProjector().getColumnProjectors();
+        ResultIterator indexIterator = indexPlan.iterator();
+        try {
+            for (Tuple tuple = indexIterator.next(); tuple != null; tuple = indexIterator.next()) {
+                if (keyNodes.size() == maxKeys) {
+                    // Too many matching rows for the skip scan to beat a scan over the data table
+                    return dataPlan.iterator();
+                }
+                List<ParseNode> valueNodes = Lists.newArrayListWithExpectedSize(pkColumns.size());
+                for (int i = 0; i < pkColumns.size(); i++) {
+                    Object value = projectors.get(i).getValue(tuple, pkColumns.get(i).getDataType(), ptr);
+                    if (value == null) {
+                        // A null key value cannot be matched through an IN list
+                        return dataPlan.iterator();
+                    }
+                    valueNodes.add(FACTORY.literal(value));
+                }
+                keyNodes.add(valueNodes.size() == 1 ? valueNodes.get(0) : FACTORY.rowValueConstructor(valueNodes));
+            }
+        } finally {
+            indexIterator.close();
+        }
+        ParseNode keyNode;
+        if (keyNodes.isEmpty()) {
+            keyNode = FACTORY.literal(Boolean.FALSE);
+        } else if (keyNodes.size() == 1) {
+            keyNode = FACTORY.equal(pkNode, keyNodes.get(0));
+        } else {
+            keyNodes.add(0, pkNode);
+            keyNode = FACTORY.inList(keyNodes, false);
+        }
+        ParseNode where = select.getWhere() == null ? keyNode : FACTORY.and(Arrays.asList(keyNode, select.getWhere()));
+        QueryCompiler compiler = new QueryCompiler(statement, targetColumns, null);
+        QueryPlan plan = compiler.compile(FACTORY.select(select, where, select.getHaving()));
+        return plan.iterator();
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return dataPlan.getEstimatedSize();
+    }
+
+    @Override
+    public TableRef getTableRef() {
+        return dataPlan.getTableRef();
+    }
+
+    @Override
+    public RowProjector getProjector() {
+        return dataPlan.getProjector();
+    }
+
+    @Override
+    public Integer getLimit() {
+        return dataPlan.getLimit();
+    }
+
+    @Override
+    public OrderBy getOrderBy() {
+        return dataPlan.getOrderBy();
+    }
+
+    @Override
+    public GroupBy getGroupBy() {
+        return dataPlan.getGroupBy();
+    }
+
+    @Override
+    public List<KeyRange> getSplits() {
+        return indexPlan.getSplits();
+    }
+
+    /**
+     * @return the context of the index plan, as the scan over the index is
+     * what determines the cost of the plan.
+     */
+    @Override
+    public StatementContext getContext() {
+        return indexPlan.getContext();
+    }
+
+    @Override
+    public FilterableStatement getStatement() {
+        return dataPlan.getStatement();
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() {
+        return dataPlan.getParameterMetaData();
+    }
+
+    @Override
+    public ExplainPlan getExplainPlan() throws SQLException {
+        List<String> planSteps = Lists.newArrayList(indexPlan.getExplainPlan().getPlanSteps());
+        planSteps.add("    SKIP-SCAN-JOIN BACK TO " + dataPlan.getTableRef().getTable().getName().getString() + " (MAX " + maxKeys + " KEYS)");
+        return new ExplainPlan(planSteps);
+    }
+}
@@ -21,10 +21,15 @@ package org.apache.phoenix.execute;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
@@ -38,16 +43,20 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.cache.ServerCacheClient;
 import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
+import org.apache.phoenix.coprocessor.MetaDataProtocol.MutationCode;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.index.IndexMetaDataCacheClient;
 import org.apache.phoenix.index.PhoenixIndexCodec;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.IllegalDataException;
 import org.apache.phoenix.schema.MetaDataClient;
 import org.apache.phoenix.schema.PColumn;
@@ -70,6 +79,22 @@ import org.apache.phoenix.util.ServerUtil;
 public class MutationState implements SQLCloseable {
     private static final Logger logger = LoggerFactory.getLogger(MutationState.class);
 
+    /**
+     * How the index mutations of tables with immutable rows, which are generated on the client,
+     * are committed relative to the data mutations.
+     */
+    public enum ImmutableIndexCommitMode {
+        /** Write the index mutations once the data mutations have been written */
+        SEQUENTIAL,
+        /** Write the index mutations concurrently with the data mutations, and wait for all of them */
+        CONCURRENT,
+        /**
+         * Return once the data mutations have been written, while the index mutations are written
+         * in the background. Failures to write the index disable the index, as the index then misses rows.
+         */
+        EVENTUAL
+    }
+
     private PhoenixConnection connection;
     private final long maxSize;
     private final ImmutableBytesPtr tempPtr = new ImmutableBytesPtr();
@@ -201,7 +226,7 @@ public class MutationState implements SQLCloseable {
                 try {
                     indexMutations =
                             IndexUtil.generateIndexData(tableRef.getTable(), index, mutations,
-                                tempPtr, connection.getKeyValueBuilder());
+                                tempPtr, connection.getKeyValueBuilder(), connection);
                 } catch (SQLException e) {
                     throw new IllegalDataException(e);
                 }
@@ -335,11 +360,20 @@ public class MutationState implements SQLCloseable {
             Map<ImmutableBytesPtr,Map<PColumn,byte[]>> valuesMap = entry.getValue();
             TableRef tableRef = entry.getKey();
             PTable table = tableRef.getTable();
-            table.getIndexMaintainers(tempPtr);
+            table.getIndexMaintainers(tempPtr, connection);
             boolean hasIndexMaintainers = tempPtr.getLength() > 0;
             boolean isDataTable = true;
             long serverTimestamp = serverTimeStamps[i++];
             Iterator<Pair<byte[],List<Mutation>>> mutationsIterator = addRowMutations(tableRef, valuesMap, serverTimestamp, false);
+            if (table.isImmutableRows() && !table.getIndexes().isEmpty()) {
+                ImmutableIndexCommitMode commitMode = getImmutableIndexCommitMode();
+                if (commitMode != ImmutableIndexCommitMode.SEQUENTIAL) {
+                    commitImmutableRows(entry, mutationsIterator, commitMode, committedList);
+                    numRows -= entry.getValue().size();
+                    iterator.remove(); // Remove batches as we process them
+                    continue;
+                }
+            }
             while (mutationsIterator.hasNext()) {
                 Pair<byte[],List<Mutation>> pair = mutationsIterator.next();
                 byte[] htableName = pair.getFirst();
@@ -433,6 +467,129 @@ public class MutationState implements SQLCloseable {
         assert(this.mutations.isEmpty());
     }
     
+    private ImmutableIndexCommitMode getImmutableIndexCommitMode() {
+        String commitMode = connection.getQueryServices().getProps().get(QueryServices.IMMUTABLE_INDEX_COMMIT_MODE_ATTRIB,
+                QueryServicesOptions.DEFAULT_IMMUTABLE_INDEX_COMMIT_MODE);
+        try {
+            return ImmutableIndexCommitMode.valueOf(commitMode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + QueryServices.IMMUTABLE_INDEX_COMMIT_MODE_ATTRIB + " of " + commitMode, e);
+        }
+    }
+    
+    /**
+     * Commit the data and index mutations of a table with immutable rows. As the index mutations are generated
+     * on the client and there's no index metadata to send to the server, the index tables can be written
+     * independently of the data table: concurrently with it for {@link ImmutableIndexCommitMode#CONCURRENT}, or
+     * in the background once the data table has been written for {@link ImmutableIndexCommitMode#EVENTUAL}.
+     */
+    private void commitImmutableRows(Map.Entry<TableRef, Map<ImmutableBytesPtr,Map<PColumn,byte[]>>> entry,
+            Iterator<Pair<byte[],List<Mutation>>> mutationsIterator, ImmutableIndexCommitMode commitMode,
+            List<Map.Entry<TableRef, Map<ImmutableBytesPtr,Map<PColumn,byte[]>>>> committedList) throws SQLException {
+        final String tableName = entry.getKey().getTable().getName().getString();
+        Pair<byte[],List<Mutation>> dataMutations = mutationsIterator.next();
+        List<Pair<byte[],List<Mutation>>> indexMutations = Lists.newArrayList(mutationsIterator);
+        List<Future<Void>> indexFutures = Lists.newArrayListWithExpectedSize(indexMutations.size());
+        try {
+            if (commitMode == ImmutableIndexCommitMode.CONCURRENT) {
+                for (Pair<byte[],List<Mutation>> pair : indexMutations) {
+                    indexFutures.add(submitBatch(pair, tableName, false));
+                }
+            }
+            batch(dataMutations, tableName);
+            if (commitMode == ImmutableIndexCommitMode.CONCURRENT) {
+                for (Future<Void> future : indexFutures) {
+                    future.get();
+                }
+            } else {
+                for (Pair<byte[],List<Mutation>> pair : indexMutations) {
+                    submitBatch(pair, tableName, true);
+                }
+            }
+            committedList.add(entry);
+        } catch (Exception e) {
+            if (e instanceof ExecutionException && e.getCause() instanceof Exception) {
+                e = (Exception)e.getCause();
+            } else if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Wait for the index writes still in flight, so that none of them outlives the failed commit
+            for (Future<Void> future : indexFutures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignore) {
+                    // Either the failure being reported, or one that it supersedes
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            SQLException inferredE = ServerUtil.parseServerExceptionOrNull(e);
+            // Throw to client with both what was committed so far and what is left to be committed.
+            throw new CommitException(inferredE == null ? e : inferredE, this, new MutationState(committedList, this.sizeOffset, this.maxSize, this.connection));
+        }
+    }
+    
+    /**
+     * Write the mutations from the query executor, or from the calling thread if the executor is saturated.
+     * @param disableOnFailure if true, failures disable the index being written rather than being reported
+     * through the returned future, which is the case for index writes that nothing waits on
+     */
+    private Future<Void> submitBatch(final Pair<byte[],List<Mutation>> mutations, final String tableName, final boolean disableOnFailure) throws Exception {
+        Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    batch(mutations, tableName);
+                } catch (Exception e) {
+                    if (!disableOnFailure) {
+                        throw e;
+                    }
+                    logger.error("Failed to write " + mutations.getSecond().size() + " index mutations of " + tableName + " into " + Bytes.toString(mutations.getFirst()), e);
+                    disableIndex(mutations, tableName);
+                }
+                return null;
+            }
+        };
+        try {
+            return connection.getQueryServices().getExecutor().submit(task);
+        } catch (RejectedExecutionException e) {
+            task.call();
+            return Futures.<Void>immediateFuture(null);
+        }
+    }
+    
+    /**
+     * Disable an index whose mutations failed to be written, as is done on the server for
+     * mutable indexes, so that it's no longer used by queries until it's rebuilt.
+     */
+    private void disableIndex(Pair<byte[],List<Mutation>> failedMutations, String tableName) {
+        String indexTableName = Bytes.toString(failedMutations.getFirst());
+        try {
+            List<Mutation> tableMetadata = Collections.singletonList(IndexUtil.newDisableIndexMutation(indexTableName, failedMutations.getSecond()));
+            MetaDataMutationResult result = connection.getQueryServices().updateIndexState(tableMetadata, tableName);
+            if (result.getMutationCode() == MutationCode.TABLE_ALREADY_EXISTS) {
+                logger.info("Disabled index " + indexTableName + " due to an exception while writing updates");
+            } else {
+                logger.error("Attempt to disable index " + indexTableName + " failed with code = " + result.getMutationCode());
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to disable index " + indexTableName, e);
+        }
+    }
+    
+    private void batch(Pair<byte[],List<Mutation>> mutations, String tableName) throws Exception {
+        HTableInterface hTable = connection.getQueryServices().getTable(mutations.getFirst());
+        try {
+            if (logger.isDebugEnabled()) logMutationSize(hTable, mutations.getSecond());
+            long startTime = System.currentTimeMillis();
+            hTable.batch(mutations.getSecond());
+            if (logger.isDebugEnabled()) logger.debug("Total time for batch call of  " + mutations.getSecond().size() + " mutations into " + tableName + ": " + (System.currentTimeMillis() - startTime) + " ms");
+        } finally {
+            hTable.close();
+        }
+    }
+    
     public void rollback(PhoenixConnection connection) throws SQLException {
         this.mutations.clear();
         numRows = 0;
@@ -45,6 +45,7 @@ import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.SaltingUtil;
 import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.ScanUtil;
 
 
@@ -77,6 +78,14 @@ public class ScanPlan extends BasicQueryPlan {
     protected ResultIterator newIterator() throws SQLException {
         // Set any scan attributes before creating the scanner, as it will be too late afterwards
         context.getScan().setAttribute(ScanRegionObserver.NON_AGGREGATE_QUERY, QueryConstants.TRUE);
+        ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+        int rowBatchSize = props.getInt(QueryServices.ROW_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_ROW_BATCH_SIZE);
+        if (rowBatchSize > 1) {
+            ScanRegionObserver.setRowBatchSize(context.getScan(), rowBatchSize);
+            // Fetch about as many rows per round trip as without batches
+            int scanCacheSize = props.getInt(QueryServices.SCAN_CACHE_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_SCAN_CACHE_SIZE);
+            context.getScan().setCaching(Math.max(1, scanCacheSize / rowBatchSize));
+        }
         if (OrderBy.REV_ROW_KEY_ORDER_BY.equals(orderBy)) {
             ScanUtil.setReversed(context.getScan());
         }
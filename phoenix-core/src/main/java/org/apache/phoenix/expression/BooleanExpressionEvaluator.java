@@ -0,0 +1,317 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PDataType.PDataCodec;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+/**
+ *
+ * Evaluates a boolean expression through a tree of nodes specialized, when the expression
+ * is set up, for the operators and the types of their operands. AND, OR and NOT combine
+ * the truth values of their children directly, while comparisons between integral values
+ * and the integral arithmetic feeding them work on primitive longs, instead of serializing
+ * every intermediate result into the shared pointer and decoding it again in the parent.
+ * Any other node is evaluated by the expression itself, as before.
+ *
+ * Like {@link Expression#evaluate(Tuple, ImmutableBytesWritable)}, a node may not be able
+ * to evaluate yet when the tuple is incomplete, which is reported as {@link #UNKNOWN}.
+ *
+ *
+ * @since 3.0.0
+ */
+public abstract class BooleanExpressionEvaluator {
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+    /**
+     * The expression is null, or can't be evaluated yet because the values it needs
+     * aren't all available
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final EnumSet<PDataType> INTEGRAL_TYPES = EnumSet.of(
+            PDataType.LONG, PDataType.INTEGER, PDataType.SMALLINT, PDataType.TINYINT,
+            PDataType.UNSIGNED_LONG, PDataType.UNSIGNED_INT, PDataType.UNSIGNED_SMALLINT, PDataType.UNSIGNED_TINYINT);
+
+    /**
+     * Evaluate the expression against the tuple
+     * @param tuple the row to evaluate against
+     * @return {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}
+     */
+    public abstract int evaluate(Tuple tuple);
+
+    /**
+     * Compile a boolean expression into specialized nodes
+     * @param expression the boolean expression
+     * @return the evaluator, or null if no part of the expression could be specialized,
+     *  in which case the expression is best evaluated directly
+     */
+    public static BooleanExpressionEvaluator compile(Expression expression) {
+        BooleanExpressionEvaluator evaluator = compileBoolean(expression);
+        return evaluator instanceof InterpretedEvaluator ? null : evaluator;
+    }
+
+    private static BooleanExpressionEvaluator compileBoolean(Expression expression) {
+        if (expression instanceof AndOrExpression) {
+            List<Expression> children = expression.getChildren();
+            BooleanExpressionEvaluator[] childEvaluators = new BooleanExpressionEvaluator[children.size()];
+            for (int i = 0; i < childEvaluators.length; i++) {
+                childEvaluators[i] = compileBoolean(children.get(i));
+            }
+            return new AndOrEvaluator(childEvaluators, expression instanceof OrExpression);
+        }
+        if (expression instanceof NotExpression) {
+            return new NotEvaluator(compileBoolean(expression.getChildren().get(0)));
+        }
+        if (expression instanceof ComparisonExpression) {
+            Expression lhs = expression.getChildren().get(0);
+            Expression rhs = expression.getChildren().get(1);
+            if (isIntegral(lhs) && isIntegral(rhs)) {
+                return new LongComparisonEvaluator(((ComparisonExpression)expression).getFilterOp(), compileLong(lhs), compileLong(rhs));
+            }
+        }
+        return new InterpretedEvaluator(expression);
+    }
+
+    private static boolean isIntegral(Expression expression) {
+        return INTEGRAL_TYPES.contains(expression.getDataType());
+    }
+
+    private static LongEvaluator compileLong(Expression expression) {
+        if (expression instanceof LiteralExpression) {
+            ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+            if (expression.evaluate(null, ptr) && ptr.getLength() > 0) {
+                return new LongConstant(expression.getDataType().getCodec().decodeLong(ptr, expression.getSortOrder()));
+            }
+        } else if (expression instanceof LongAddExpression || expression instanceof LongSubtractExpression
+                || expression instanceof LongMultiplyExpression || expression instanceof LongDivideExpression) {
+            List<Expression> children = expression.getChildren();
+            LongEvaluator[] childEvaluators = new LongEvaluator[children.size()];
+            boolean isIntegral = true;
+            for (int i = 0; i < childEvaluators.length && isIntegral; i++) {
+                isIntegral = isIntegral(children.get(i));
+                childEvaluators[i] = isIntegral ? compileLong(children.get(i)) : null;
+            }
+            if (isIntegral) {
+                int operator = expression instanceof LongAddExpression ? LongArithmeticEvaluator.ADD
+                        : expression instanceof LongSubtractExpression ? LongArithmeticEvaluator.SUBTRACT
+                        : expression instanceof LongMultiplyExpression ? LongArithmeticEvaluator.MULTIPLY
+                        : LongArithmeticEvaluator.DIVIDE;
+                return new LongArithmeticEvaluator(operator, childEvaluators);
+            }
+        }
+        return new InterpretedLongEvaluator(expression);
+    }
+
+    /**
+     * Evaluates a boolean expression through the expression itself.
+     */
+    private static class InterpretedEvaluator extends BooleanExpressionEvaluator {
+        private final Expression expression;
+        private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+        private InterpretedEvaluator(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public int evaluate(Tuple tuple) {
+            if (!expression.evaluate(tuple, ptr) || ptr.getLength() == 0) {
+                return UNKNOWN;
+            }
+            return Boolean.TRUE.equals(PDataType.BOOLEAN.toObject(ptr, expression.getDataType())) ? TRUE : FALSE;
+        }
+    }
+
+    /**
+     * Stops at the first child evaluating to its stop value, FALSE for AND and TRUE
+     * for OR, and is UNKNOWN if any other child is.
+     */
+    private static class AndOrEvaluator extends BooleanExpressionEvaluator {
+        private final BooleanExpressionEvaluator[] children;
+        private final int stopValue;
+
+        private AndOrEvaluator(BooleanExpressionEvaluator[] children, boolean isOr) {
+            this.children = children;
+            this.stopValue = isOr ? TRUE : FALSE;
+        }
+
+        @Override
+        public int evaluate(Tuple tuple) {
+            int result = TRUE - stopValue;
+            for (int i = 0; i < children.length; i++) {
+                int childResult = children[i].evaluate(tuple);
+                if (childResult == stopValue) {
+                    return stopValue;
+                }
+                if (childResult == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class NotEvaluator extends BooleanExpressionEvaluator {
+        private final BooleanExpressionEvaluator child;
+
+        private NotEvaluator(BooleanExpressionEvaluator child) {
+            this.child = child;
+        }
+
+        @Override
+        public int evaluate(Tuple tuple) {
+            int childResult = child.evaluate(tuple);
+            return childResult == UNKNOWN ? UNKNOWN : TRUE - childResult;
+        }
+    }
+
+    private static class LongComparisonEvaluator extends BooleanExpressionEvaluator {
+        private final CompareOp op;
+        private final LongEvaluator lhs;
+        private final LongEvaluator rhs;
+
+        private LongComparisonEvaluator(CompareOp op, LongEvaluator lhs, LongEvaluator rhs) {
+            this.op = op;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public int evaluate(Tuple tuple) {
+            if (!lhs.evaluate(tuple) || !rhs.evaluate(tuple)) {
+                return UNKNOWN;
+            }
+            long l = lhs.value;
+            long r = rhs.value;
+            boolean result;
+            switch (op) {
+            case LESS: result = l < r; break;
+            case LESS_OR_EQUAL: result = l <= r; break;
+            case EQUAL: result = l == r; break;
+            case NOT_EQUAL: result = l != r; break;
+            case GREATER_OR_EQUAL: result = l >= r; break;
+            case GREATER: result = l > r; break;
+            default: throw new IllegalStateException("Unsupported comparison operator: " + op);
+            }
+            return result ? TRUE : FALSE;
+        }
+    }
+
+    /**
+     * Evaluates an integral expression into a primitive long, held by the node until
+     * its next evaluation.
+     */
+    private static abstract class LongEvaluator {
+        protected long value;
+
+        /**
+         * @return false if the value is null or can't be evaluated yet, and true otherwise,
+         *  in which case the value is set
+         */
+        protected abstract boolean evaluate(Tuple tuple);
+    }
+
+    private static class LongConstant extends LongEvaluator {
+        private LongConstant(long value) {
+            this.value = value;
+        }
+
+        @Override
+        protected boolean evaluate(Tuple tuple) {
+            return true;
+        }
+    }
+
+    /**
+     * Evaluates an integral expression, typically a column, through the expression
+     * itself and decodes its value.
+     */
+    private static class InterpretedLongEvaluator extends LongEvaluator {
+        private final Expression expression;
+        private final PDataCodec codec;
+        private final SortOrder sortOrder;
+        private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+        private InterpretedLongEvaluator(Expression expression) {
+            this.expression = expression;
+            this.codec = expression.getDataType().getCodec();
+            this.sortOrder = expression.getSortOrder();
+        }
+
+        @Override
+        protected boolean evaluate(Tuple tuple) {
+            if (!expression.evaluate(tuple, ptr) || ptr.getLength() == 0) {
+                return false;
+            }
+            value = codec.decodeLong(ptr, sortOrder);
+            return true;
+        }
+    }
+
+    /**
+     * Matches the LongAddExpression, LongSubtractExpression, LongMultiplyExpression and
+     * LongDivideExpression evaluation, including its overflow behavior.
+     */
+    private static class LongArithmeticEvaluator extends LongEvaluator {
+        private static final int ADD = 0;
+        private static final int SUBTRACT = 1;
+        private static final int MULTIPLY = 2;
+        private static final int DIVIDE = 3;
+
+        private final int operator;
+        private final LongEvaluator[] children;
+
+        private LongArithmeticEvaluator(int operator, LongEvaluator[] children) {
+            this.operator = operator;
+            this.children = children;
+        }
+
+        @Override
+        protected boolean evaluate(Tuple tuple) {
+            if (!children[0].evaluate(tuple)) {
+                return false;
+            }
+            long result = children[0].value;
+            for (int i = 1; i < children.length; i++) {
+                if (!children[i].evaluate(tuple)) {
+                    return false;
+                }
+                long childValue = children[i].value;
+                switch (operator) {
+                case ADD: result += childValue; break;
+                case SUBTRACT: result -= childValue; break;
+                case MULTIPLY: result *= childValue; break;
+                default: result /= childValue; break;
+                }
+            }
+            value = result;
+            return true;
+        }
+    }
+}
@@ -77,6 +77,7 @@ public class CoerceExpression extends BaseSingleExpression {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + children.hashCode();
         result = prime * result + ((byteSize == null) ? 0 : byteSize.hashCode());
         result = prime * result + ((toSortOrder == null) ? 0 : toSortOrder.hashCode());
         result = prime * result + ((toType == null) ? 0 : toType.hashCode());
@@ -89,6 +90,7 @@ public class CoerceExpression extends BaseSingleExpression {
         if (obj == null) return false;
         if (getClass() != obj.getClass()) return false;
         CoerceExpression other = (CoerceExpression)obj;
+        if (!children.equals(other.children)) return false;
         if (byteSize == null) {
             if (other.byteSize != null) return false;
         } else if (!byteSize.equals(other.byteSize)) return false;
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.function.AggregateFunction;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * Shares the deterministic subexpressions that occur more than once in a set of
+ * expressions evaluated against the same rows, such as the GROUP BY expressions and
+ * the aggregated expressions of a query, so that each of them is evaluated once per row.
+ *
+ * The expressions are first registered through {@link #add(Expression)}, then rewritten
+ * through {@link #rewrite(Expression)}, which replaces every occurrence of a repeated
+ * subexpression by a single node remembering its value. {@link #nextRow()} must be
+ * called before the rewritten expressions are evaluated against a new row.
+ *
+ * The rewriting is done in place and the rewritten expressions can't be serialized,
+ * so it's only meant for the expressions deserialized on the server side. An instance
+ * is not thread safe, like the expressions it rewrites.
+ *
+ *
+ * @since 3.0.0
+ */
+public class CommonSubexpressionEliminator {
+    private final Map<ExpressionKey, Integer> occurrences = Maps.newHashMap();
+    private final Map<ExpressionKey, MemoizedExpression> memoizedExpressions = Maps.newHashMap();
+    private boolean hasCommonSubexpressions;
+    private long rowNumber;
+
+    /**
+     * Register the subexpressions of an expression to be rewritten.
+     * @param expression the expression
+     */
+    public void add(Expression expression) {
+        if (isMemoizable(expression)) {
+            ExpressionKey key = new ExpressionKey(expression);
+            Integer count = occurrences.get(key);
+            if (count != null) {
+                occurrences.put(key, count + 1);
+                hasCommonSubexpressions = true;
+                // Its subexpressions will already be evaluated only once
+                return;
+            }
+            occurrences.put(key, 1);
+        }
+        List<Expression> children = expression.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            add(children.get(i));
+        }
+    }
+
+    /**
+     * @return true if some subexpressions of the registered expressions occur more than once
+     */
+    public boolean hasCommonSubexpressions() {
+        return hasCommonSubexpressions;
+    }
+
+    /**
+     * Rewrite an expression previously registered so that the subexpressions it has in
+     * common with the registered expressions are evaluated only once per row.
+     * @param expression the expression
+     * @return the rewritten expression, which may be the expression itself
+     */
+    public Expression rewrite(Expression expression) {
+        ExpressionKey key = null;
+        if (isMemoizable(expression)) {
+            key = new ExpressionKey(expression);
+            MemoizedExpression memoizedExpression = memoizedExpressions.get(key);
+            if (memoizedExpression != null) {
+                return memoizedExpression;
+            }
+            Integer count = occurrences.get(key);
+            if (count == null || count < 2) {
+                key = null;
+            }
+        }
+        List<Expression> children = expression.getChildren();
+        List<Expression> newChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            Expression child = children.get(i);
+            Expression newChild = rewrite(child);
+            if (newChild != child) {
+                if (newChildren == null) {
+                    newChildren = Lists.newArrayList(children);
+                }
+                newChildren.set(i, newChild);
+            }
+        }
+        if (newChildren != null) {
+            setChildren(expression, newChildren);
+        }
+        if (key == null) {
+            return expression;
+        }
+        MemoizedExpression memoizedExpression = new MemoizedExpression(expression);
+        memoizedExpressions.put(key, memoizedExpression);
+        return memoizedExpression;
+    }
+
+    /**
+     * Invalidate the values remembered for the previous row.
+     */
+    public void nextRow() {
+        rowNumber++;
+    }
+
+    private static boolean isMemoizable(Expression expression) {
+        return !expression.getChildren().isEmpty()
+                && expression.isDeterministic()
+                && !expression.isStateless()
+                && !(expression instanceof AggregateFunction)
+                // Keeps state across evaluations of partial rows
+                && !(expression instanceof RowValueConstructorExpression);
+    }
+
+    private static void setChildren(Expression expression, List<Expression> children) {
+        if (expression instanceof BaseCompoundExpression) {
+            ((BaseCompoundExpression)expression).children = ImmutableList.copyOf(children);
+        } else if (expression instanceof BaseSingleExpression) {
+            ((BaseSingleExpression)expression).children = ImmutableList.copyOf(children);
+        }
+    }
+
+    /**
+     * Compares expressions structurally: not all expressions take their children into
+     * account in their equals method. Shared subexpressions are seen through, since the
+     * registered expressions are rewritten while they're referenced by the keys.
+     */
+    private static class ExpressionKey {
+        private final Expression expression;
+        private final int hashCode;
+
+        private ExpressionKey(Expression expression) {
+            this.expression = expression;
+            this.hashCode = hashCode(expression);
+        }
+
+        private static int hashCode(Expression expression) {
+            expression = unwrap(expression);
+            int result = expression.hashCode();
+            List<Expression> children = expression.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                result = 31 * result + hashCode(children.get(i));
+            }
+            return result;
+        }
+
+        private static boolean equals(Expression e1, Expression e2) {
+            e1 = unwrap(e1);
+            e2 = unwrap(e2);
+            if (e1 == e2) {
+                return true;
+            }
+            if (!e1.equals(e2)) {
+                return false;
+            }
+            List<Expression> children1 = e1.getChildren();
+            List<Expression> children2 = e2.getChildren();
+            if (children1.size() != children2.size()) {
+                return false;
+            }
+            for (int i = 0; i < children1.size(); i++) {
+                if (!equals(children1.get(i), children2.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Expression unwrap(Expression expression) {
+            return expression instanceof MemoizedExpression ? ((MemoizedExpression)expression).getChild() : expression;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            ExpressionKey other = (ExpressionKey)obj;
+            return hashCode == other.hashCode && equals(expression, other.expression);
+        }
+    }
+
+    /**
+     * Remembers the value of its child for the current row. The value is copied, as nothing
+     * guarantees that the buffer the child evaluated into isn't reused before the next row,
+     * for example by an expression that evaluates into a buffer of its own. The copy is made
+     * once per row and never reused, since callers such as the group by key or the distinct
+     * value aggregators hold on to the value beyond the row it was evaluated for.
+     */
+    private class MemoizedExpression extends BaseSingleExpression {
+        private long evaluatedRowNumber = -1;
+        private boolean isEvaluated;
+        private byte[] value;
+
+        private MemoizedExpression(Expression expression) {
+            super(expression);
+        }
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            if (evaluatedRowNumber != rowNumber) {
+                isEvaluated = getChild().evaluate(tuple, ptr);
+                value = isEvaluated ? ptr.copyBytes() : null;
+                evaluatedRowNumber = rowNumber;
+            }
+            if (isEvaluated) {
+                ptr.set(value);
+            }
+            return isEvaluated;
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            evaluatedRowNumber = -1;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return getChild().getDataType();
+        }
+
+        @Override
+        public Integer getByteSize() {
+            return getChild().getByteSize();
+        }
+
+        @Override
+        public Integer getMaxLength() {
+            return getChild().getMaxLength();
+        }
+
+        @Override
+        public Integer getScale() {
+            return getChild().getScale();
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return getChild().getSortOrder();
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return getChild().isDeterministic();
+        }
+
+        @Override
+        public boolean isStateless() {
+            return getChild().isStateless();
+        }
+
+        @Override
+        public String toString() {
+            return getChild().toString();
+        }
+    }
+}
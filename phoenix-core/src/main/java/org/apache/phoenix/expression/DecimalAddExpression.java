@@ -29,11 +29,14 @@ import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.PDataType;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.NumberUtil;
+import org.apache.phoenix.util.ScaledLong;
 
 
 public class DecimalAddExpression extends AddExpression {
     private Integer maxLength;
     private Integer scale;
+    private final ScaledLong scaledResult = new ScaledLong();
+    private final ScaledLong scaledValue = new ScaledLong();
 
     public DecimalAddExpression() {
     }
@@ -55,6 +58,8 @@ public class DecimalAddExpression extends AddExpression {
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
         BigDecimal result = null;
+        // Use long arithmetic until the values no longer fit
+        boolean isScaledLong = true;
         for (int i=0; i<children.size(); i++) {
             Expression childExpr = children.get(i);
             if (!childExpr.evaluate(tuple, ptr)) {
@@ -66,6 +71,16 @@ public class DecimalAddExpression extends AddExpression {
             
             PDataType childType = childExpr.getDataType();
             SortOrder childSortOrder = childExpr.getSortOrder();
+            if (isScaledLong) {
+                if (i == 0 ? scaledResult.set(ptr, childType, childSortOrder)
+                        : scaledValue.set(ptr, childType, childSortOrder) && scaledResult.add(scaledValue)) {
+                    continue;
+                }
+                isScaledLong = false;
+                if (i > 0) {
+                    result = scaledResult.toBigDecimal();
+                }
+            }
             BigDecimal bd = (BigDecimal)PDataType.DECIMAL.toObject(ptr, childType, childSortOrder);
             
             if (result == null) {
@@ -74,6 +89,13 @@ public class DecimalAddExpression extends AddExpression {
                 result = result.add(bd);
             }
         }
+        if (isScaledLong) {
+            if (maxLength == null || scale == null || scaledResult.setDecimalWidthAndScale(maxLength, scale)) {
+                ptr.set(scaledResult.toBytes());
+                return true;
+            }
+            result = scaledResult.toBigDecimal();
+        }
         if (maxLength != null && scale != null) {
             result = NumberUtil.setDecimalWidthAndScale(result, maxLength, scale);
         }
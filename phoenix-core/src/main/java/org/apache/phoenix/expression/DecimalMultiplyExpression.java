@@ -29,9 +29,12 @@ import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.PDataType;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.NumberUtil;
+import org.apache.phoenix.util.ScaledLong;
 
 
 public class DecimalMultiplyExpression extends MultiplyExpression {
+    private final ScaledLong scaledResult = new ScaledLong();
+    private final ScaledLong scaledValue = new ScaledLong();
 
     public DecimalMultiplyExpression() {
     }
@@ -43,6 +46,8 @@ public class DecimalMultiplyExpression extends MultiplyExpression {
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
         BigDecimal result = null;
+        // Use long arithmetic until the values no longer fit
+        boolean isScaledLong = true;
         for (int i=0; i<children.size(); i++) {
             Expression childExpr = children.get(i);
             if (!childExpr.evaluate(tuple, ptr)) {
@@ -54,6 +59,16 @@ public class DecimalMultiplyExpression extends MultiplyExpression {
             
             PDataType childType = children.get(i).getDataType();
             SortOrder childSortOrder = children.get(i).getSortOrder();
+            if (isScaledLong) {
+                if (i == 0 ? scaledResult.set(ptr, childType, childSortOrder)
+                        : scaledValue.set(ptr, childType, childSortOrder) && scaledResult.multiply(scaledValue)) {
+                    continue;
+                }
+                isScaledLong = false;
+                if (i > 0) {
+                    result = scaledResult.toBigDecimal();
+                }
+            }
             BigDecimal bd = (BigDecimal)PDataType.DECIMAL.toObject(ptr, childType, childSortOrder);
             
             if (result == null) {
@@ -62,6 +77,13 @@ public class DecimalMultiplyExpression extends MultiplyExpression {
                 result = result.multiply(bd);
             }
         }
+        if (isScaledLong) {
+            if (getMaxLength() == null || getScale() == null || scaledResult.setDecimalWidthAndScale(getMaxLength(), getScale())) {
+                ptr.set(scaledResult.toBytes());
+                return true;
+            }
+            result = scaledResult.toBigDecimal();
+        }
         if (getMaxLength() != null && getScale() != null) {
             result = NumberUtil.setDecimalWidthAndScale(result, getMaxLength(), getScale());
         }
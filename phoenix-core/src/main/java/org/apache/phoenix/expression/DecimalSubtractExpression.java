@@ -29,6 +29,7 @@ import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.PDataType;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.NumberUtil;
+import org.apache.phoenix.util.ScaledLong;
 
 
 /**
@@ -41,6 +42,8 @@ import org.apache.phoenix.util.NumberUtil;
 public class DecimalSubtractExpression extends SubtractExpression {
     private Integer maxLength;
     private Integer scale;
+    private final ScaledLong scaledResult = new ScaledLong();
+    private final ScaledLong scaledValue = new ScaledLong();
 
     public DecimalSubtractExpression() {
     }
@@ -62,6 +65,8 @@ public class DecimalSubtractExpression extends SubtractExpression {
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
         BigDecimal result = null;
+        // Use long arithmetic until the values no longer fit
+        boolean isScaledLong = true;
         for (int i=0; i<children.size(); i++) {
             Expression childExpr = children.get(i);
             if (!childExpr.evaluate(tuple, ptr)) { 
@@ -72,8 +77,19 @@ public class DecimalSubtractExpression extends SubtractExpression {
             }
             
             PDataType childType = childExpr.getDataType();
-            boolean isDate = childType.isCoercibleTo(PDataType.DATE);
             SortOrder childSortOrder = childExpr.getSortOrder();
+            // Dates are not decimal or integral numbers, so they take the BigDecimal path
+            if (isScaledLong) {
+                if (i == 0 ? scaledResult.set(ptr, childType, childSortOrder)
+                        : scaledValue.set(ptr, childType, childSortOrder) && scaledResult.subtract(scaledValue)) {
+                    continue;
+                }
+                isScaledLong = false;
+                if (i > 0) {
+                    result = scaledResult.toBigDecimal();
+                }
+            }
+            boolean isDate = childType.isCoercibleTo(PDataType.DATE);
             BigDecimal bd = isDate ?
                     BigDecimal.valueOf(childType.getCodec().decodeLong(ptr, childSortOrder)) :
                     (BigDecimal)PDataType.DECIMAL.toObject(ptr, childType, childSortOrder);
@@ -91,6 +107,13 @@ public class DecimalSubtractExpression extends SubtractExpression {
                 }
             }
         }
+        if (isScaledLong) {
+            if (maxLength == null || scale == null || scaledResult.setDecimalWidthAndScale(maxLength, scale)) {
+                ptr.set(scaledResult.toBytes());
+                return true;
+            }
+            result = scaledResult.toBigDecimal();
+        }
         if (maxLength != null && scale != null) {
             result = NumberUtil.setDecimalWidthAndScale(result, maxLength, scale);
         }
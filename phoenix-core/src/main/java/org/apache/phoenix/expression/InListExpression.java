@@ -24,9 +24,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Arrays;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
 import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
@@ -41,22 +39,28 @@ import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ByteUtil;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 
 /*
  * Implementation of a SQL foo IN (a,b,c) expression. Other than the first
  * expression, child expressions must be constants.
  *
+ * The distinct values of the list are kept sorted and concatenated in a single
+ * buffer, which is searched with a binary search and serialized as is, so that
+ * large IN lists stay compact both in memory and on the wire.
+ *
  */
 public class InListExpression extends BaseSingleExpression {
-    private LinkedHashSet<ImmutableBytesPtr> values;
+    // The distinct values, as the first child evaluates to them, sorted and concatenated
+    private byte[] valuesBytes;
+    // The offsets of the values in valuesBytes followed by the end of the last one,
+    // or null if all the values have the same fixed width
+    private int[] valueOffsets;
+    private int valueCount;
     private ImmutableBytesPtr minValue;
     private ImmutableBytesPtr maxValue;
-    private int valuesByteLength;
     private boolean containsNull;
     private int fixedWidth = -1;
-    private ImmutableBytesPtr value = new ImmutableBytesPtr();
     private List<Expression> keyExpressions; // client side only
 
     public static Expression create (List<Expression> children, boolean isNegate, ImmutableBytesWritable ptr) throws SQLException {
@@ -71,9 +75,8 @@ public class InListExpression extends BaseSingleExpression {
         }
         
         boolean addedNull = false;
-        List<Expression> keys = Lists.newArrayListWithExpectedSize(children.size());
+        List<ImmutableBytesPtr> values = Lists.newArrayListWithExpectedSize(children.size() - 1);
         List<Expression> coercedKeyExpressions = Lists.newArrayListWithExpectedSize(children.size());
-        keys.add(firstChild);
         coercedKeyExpressions.add(firstChild);
         for (int i = 1; i < children.size(); i++) {
             Expression rhs = children.get(i);
@@ -81,14 +84,17 @@ public class InListExpression extends BaseSingleExpression {
                 if (ptr.getLength() == 0) {
                     if (!addedNull) {
                         addedNull = true;
-                        keys.add(LiteralExpression.newConstant(null, PDataType.VARBINARY, true));
                         coercedKeyExpressions.add(LiteralExpression.newConstant(null, firstChildType, true));
                     }
                 } else {
-                    // Don't specify the firstChild SortOrder here, as we specify it in the LiteralExpression creation below
+                    // Coerce to the ascending form of the first child type, and match its SortOrder below
                     try {
                         firstChildType.coerceBytes(ptr, rhs.getDataType(), rhs.getSortOrder(), SortOrder.getDefault());
-                        keys.add(LiteralExpression.newConstant(ByteUtil.copyKeyBytesIfNecessary(ptr), PDataType.VARBINARY, firstChild.getSortOrder(), true));
+                        if (firstChild.getSortOrder() == SortOrder.DESC) {
+                            values.add(new ImmutableBytesPtr(SortOrder.invert(ptr.get(), ptr.getOffset(), ptr.getLength())));
+                        } else {
+                            values.add(new ImmutableBytesPtr(ByteUtil.copyKeyBytesIfNecessary(ptr)));
+                        }
                         if(rhs.getDataType() == firstChildType) {
                             coercedKeyExpressions.add(rhs);
                         } else {
@@ -100,16 +106,16 @@ public class InListExpression extends BaseSingleExpression {
             }
             
         }
-        if (keys.size() == 1) {
+        if (values.isEmpty() && !addedNull) {
             return LiteralExpression.newConstant(false, PDataType.BOOLEAN, true);
         }
-        if (keys.size() == 2 && addedNull) {
+        if (values.isEmpty()) {
             return LiteralExpression.newConstant(null, PDataType.BOOLEAN, true);
         }
         // TODO: if inChildren.isEmpty() then Oracle throws a type mismatch exception. This means
         // that none of the list elements match in type and there's no null element. We'd return
         // false in this case. Should we throw?
-        Expression expression = new InListExpression(keys, coercedKeyExpressions);
+        Expression expression = new InListExpression(values, addedNull, coercedKeyExpressions);
         if (isNegate) { 
             expression = NotExpression.create(expression, ptr);
         }
@@ -126,39 +132,79 @@ public class InListExpression extends BaseSingleExpression {
     public InListExpression() {
     }
 
-    private InListExpression(List<Expression> keys, List<Expression> keyExpressions) throws SQLException {
+    private InListExpression(List<ImmutableBytesPtr> values, boolean containsNull, List<Expression> keyExpressions) {
         super(keyExpressions.get(0));
         this.keyExpressions = keyExpressions.subList(1, keyExpressions.size());
-        Set<ImmutableBytesPtr> values = Sets.newHashSetWithExpectedSize(keys.size()-1);
-        int fixedWidth = -1;
-        boolean isFixedLength = true;
-        for (int i = 1; i < keys.size(); i++) {
-            ImmutableBytesPtr ptr = new ImmutableBytesPtr();
-            Expression child = keys.get(i);
-            assert(child.getDataType() == PDataType.VARBINARY);
-            child.evaluate(null, ptr);
-            if (ptr.getLength() == 0) {
-                containsNull = true;
-            } else {
-                if (values.add(ptr)) {
-                    int length = ptr.getLength();
-                    if (fixedWidth == -1) {
-                        fixedWidth = length;
-                    } else {
-                        isFixedLength &= fixedWidth == length;
-                    }
-                    
-                    valuesByteLength += ptr.getLength();
+        this.containsNull = containsNull;
+        // Sort values by byte value so we can binary search them and get min/max easily
+        ImmutableBytesPtr[] valuesArray = values.toArray(new ImmutableBytesPtr[values.size()]);
+        Arrays.sort(valuesArray, ByteUtil.BYTES_PTR_COMPARATOR);
+        int distinctCount = 0;
+        int byteLength = 0;
+        int fixedWidth = valuesArray[0].getLength();
+        for (int i = 0; i < valuesArray.length; i++) {
+            if (i == 0 || !valuesArray[i].equals(valuesArray[distinctCount - 1])) {
+                valuesArray[distinctCount++] = valuesArray[i];
+                byteLength += valuesArray[i].getLength();
+                if (fixedWidth != valuesArray[i].getLength()) {
+                    fixedWidth = -1;
                 }
             }
         }
-        this.fixedWidth = isFixedLength ? fixedWidth : -1;
-        // Sort values by byte value so we can get min/max easily
-        ImmutableBytesPtr[] valuesArray = values.toArray(new ImmutableBytesPtr[values.size()]);
-        Arrays.sort(valuesArray, ByteUtil.BYTES_PTR_COMPARATOR);
-        this.minValue = valuesArray[0];
-        this.maxValue = valuesArray[valuesArray.length-1];
-        this.values = new LinkedHashSet<ImmutableBytesPtr>(Arrays.asList(valuesArray));
+        this.fixedWidth = fixedWidth;
+        this.valueCount = distinctCount;
+        this.valuesBytes = new byte[byteLength];
+        this.valueOffsets = fixedWidth == -1 ? new int[distinctCount + 1] : null;
+        int offset = 0;
+        for (int i = 0; i < distinctCount; i++) {
+            ImmutableBytesPtr value = valuesArray[i];
+            System.arraycopy(value.get(), value.getOffset(), valuesBytes, offset, value.getLength());
+            if (valueOffsets != null) {
+                valueOffsets[i] = offset;
+            }
+            offset += value.getLength();
+        }
+        if (valueOffsets != null) {
+            valueOffsets[distinctCount] = offset;
+        }
+        initMinMaxValues();
+    }
+
+    private void initMinMaxValues() {
+        if (valueCount == 0) {
+            minValue = maxValue = new ImmutableBytesPtr(ByteUtil.EMPTY_BYTE_ARRAY);
+        } else {
+            minValue = new ImmutableBytesPtr(valuesBytes, getValueOffset(0), getValueLength(0));
+            maxValue = new ImmutableBytesPtr(valuesBytes, getValueOffset(valueCount - 1), getValueLength(valueCount - 1));
+        }
+    }
+
+    private int getValueOffset(int index) {
+        return valueOffsets == null ? index * fixedWidth : valueOffsets[index];
+    }
+
+    private int getValueLength(int index) {
+        return valueOffsets == null ? fixedWidth : valueOffsets[index + 1] - valueOffsets[index];
+    }
+
+    private boolean contains(byte[] b, int offset, int length) {
+        if (fixedWidth != -1 && length != fixedWidth) {
+            return false;
+        }
+        int low = 0;
+        int high = valueCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Bytes.compareTo(valuesBytes, getValueOffset(mid), getValueLength(mid), b, offset, length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -166,8 +212,7 @@ public class InListExpression extends BaseSingleExpression {
         if (!getChild().evaluate(tuple, ptr)) {
             return false;
         }
-        value.set(ptr);
-        if (values.contains(value)) {
+        if (contains(ptr.get(), ptr.getOffset(), ptr.getLength())) {
             ptr.set(PDataType.TRUE_BYTES);
             return true;
         }
@@ -183,8 +228,9 @@ public class InListExpression extends BaseSingleExpression {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + children.hashCode();
         result = prime * result + (containsNull ? 1231 : 1237);
-        result = prime * result + values.hashCode();
+        result = prime * result + Arrays.hashCode(valuesBytes);
         return result;
     }
 
@@ -194,8 +240,11 @@ public class InListExpression extends BaseSingleExpression {
         if (obj == null) return false;
         if (getClass() != obj.getClass()) return false;
         InListExpression other = (InListExpression)obj;
+        if (!children.equals(other.children)) return false;
         if (containsNull != other.containsNull) return false;
-        if (!values.equals(other.values)) return false;
+        if (fixedWidth != other.fixedWidth) return false;
+        if (!Arrays.equals(valuesBytes, other.valuesBytes)) return false;
+        if (!Arrays.equals(valueOffsets, other.valueOffsets)) return false;
         return true;
     }
 
@@ -209,36 +258,26 @@ public class InListExpression extends BaseSingleExpression {
         return super.isNullable() || containsNull;
     }
 
-    private int readValue(DataInput input, byte[] valuesBytes, int offset, ImmutableBytesPtr ptr) throws IOException {
-        int valueLen = fixedWidth == -1 ? WritableUtils.readVInt(input) : fixedWidth;
-        values.add(new ImmutableBytesPtr(valuesBytes,offset,valueLen));
-        return offset + valueLen;
-    }
-    
     @Override
     public void readFields(DataInput input) throws IOException {
         super.readFields(input);
         containsNull = input.readBoolean();
         fixedWidth = WritableUtils.readVInt(input);
-        byte[] valuesBytes = Bytes.readByteArray(input);
-        valuesByteLength = valuesBytes.length;
-        int len = fixedWidth == -1 ? WritableUtils.readVInt(input) : valuesByteLength / fixedWidth;
-        values = Sets.newLinkedHashSetWithExpectedSize(len);
-        int offset = 0;
-        int i  = 0;
-        if (i < len) {
-            offset = readValue(input, valuesBytes, offset, minValue = new ImmutableBytesPtr());
-            while (++i < len-1) {
-                offset = readValue(input, valuesBytes, offset, new ImmutableBytesPtr());
-            }
-            if (i < len) {
-                offset = readValue(input, valuesBytes, offset, maxValue = new ImmutableBytesPtr());
-            } else {
-                maxValue = minValue;
+        valuesBytes = Bytes.readByteArray(input);
+        if (fixedWidth == -1) {
+            valueCount = WritableUtils.readVInt(input);
+            valueOffsets = new int[valueCount + 1];
+            int offset = 0;
+            for (int i = 0; i < valueCount; i++) {
+                valueOffsets[i] = offset;
+                offset += WritableUtils.readVInt(input);
             }
+            valueOffsets[valueCount] = offset;
         } else {
-            minValue = maxValue = new ImmutableBytesPtr(ByteUtil.EMPTY_BYTE_ARRAY);
+            valueCount = fixedWidth == 0 ? 0 : valuesBytes.length / fixedWidth;
+            valueOffsets = null;
         }
+        initMinMaxValues();
     }
 
     @Override
@@ -246,14 +285,11 @@ public class InListExpression extends BaseSingleExpression {
         super.write(output);
         output.writeBoolean(containsNull);
         WritableUtils.writeVInt(output, fixedWidth);
-        WritableUtils.writeVInt(output, valuesByteLength);
-        for (ImmutableBytesPtr ptr : values) {
-            output.write(ptr.get(), ptr.getOffset(), ptr.getLength());
-        }
+        Bytes.writeByteArray(output, valuesBytes);
         if (fixedWidth == -1) {
-            WritableUtils.writeVInt(output, values.size());
-            for (ImmutableBytesPtr ptr : values) {
-                WritableUtils.writeVInt(output, ptr.getLength());
+            WritableUtils.writeVInt(output, valueCount);
+            for (int i = 0; i < valueCount; i++) {
+                WritableUtils.writeVInt(output, getValueLength(i));
             }
         }
     }
@@ -272,6 +308,30 @@ public class InListExpression extends BaseSingleExpression {
         return keyExpressions;
     }
 
+    /**
+     * @return true if the list contains null, which isn't counted as a value
+     */
+    public boolean containsNull() {
+        return containsNull;
+    }
+
+    /**
+     * @return the number of distinct non null values of the list
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Point ptr at a value of the list, in the form the first child evaluates to,
+     * including its sort order. The values are in ascending byte order.
+     * @param index the index of the value, less than {@link #getValueCount()}
+     * @param ptr the pointer to set
+     */
+    public void getValue(int index, ImmutableBytesWritable ptr) {
+        ptr.set(valuesBytes, getValueOffset(index), getValueLength(index));
+    }
+
     public ImmutableBytesWritable getMinKey() {
         return minValue;
     }
@@ -289,7 +349,8 @@ public class InListExpression extends BaseSingleExpression {
         if (containsNull) {
             buf.append("null,");
         }
-        for (ImmutableBytesPtr value : values) {
+        for (int i = 0; i < valueCount; i++) {
+            ImmutableBytesPtr value = new ImmutableBytesPtr(valuesBytes, getValueOffset(i), getValueLength(i));
             if (firstChild.getSortOrder() != null) {
                 type.coerceBytes(value, type, firstChild.getSortOrder(), SortOrder.getDefault());
             }
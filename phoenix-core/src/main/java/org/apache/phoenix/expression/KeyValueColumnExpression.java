@@ -28,6 +28,7 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.expression.visitor.ExpressionVisitor;
 import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.tuple.PositionalTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.SchemaUtil;
 
@@ -43,6 +44,7 @@ public class KeyValueColumnExpression extends ColumnExpression {
     private byte[] cf;
     private byte[] cq;
     private String displayName; // client-side only
+    private int position = -1; // position of the column in the previous tuple, checked first
 
     public KeyValueColumnExpression() {
     }
@@ -97,6 +99,15 @@ public class KeyValueColumnExpression extends ColumnExpression {
 
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (tuple instanceof PositionalTuple) {
+            PositionalTuple positionalTuple = (PositionalTuple)tuple;
+            int position = positionalTuple.getColumnPosition(cf, cq, this.position);
+            if (position < 0) {
+                return false;
+            }
+            this.position = position;
+            return positionalTuple.getColumnValue(position, ptr);
+        }
         return tuple.getValue(cf, cq, ptr);
     }
 
@@ -25,12 +25,16 @@ import java.util.List;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.phoenix.expression.visitor.ExpressionVisitor;
 import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.LikeMatcher;
+import org.apache.phoenix.util.PatternCache;
 import org.apache.phoenix.util.StringUtil;
 
 
@@ -188,6 +192,8 @@ public class LikeExpression extends BaseCompoundExpression {
 //    }
 
     private Pattern pattern;
+    private LikeMatcher matcher;
+    private PatternCache<LikeMatcher> matcherCache;
     
     public LikeExpression() {
     }
@@ -207,6 +213,14 @@ public class LikeExpression extends BaseCompoundExpression {
             LiteralExpression patternExpression = (LiteralExpression)e;
             String value = (String)patternExpression.getValue();
             pattern = Pattern.compile(toPattern(value));
+            matcher = LikeMatcher.compile(value);
+        } else {
+            matcherCache = new PatternCache<LikeMatcher>() {
+                @Override
+                protected LikeMatcher compile(String pattern) {
+                    return LikeMatcher.compile(pattern);
+                }
+            };
         }
     }
 
@@ -220,19 +234,24 @@ public class LikeExpression extends BaseCompoundExpression {
 
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
-        Pattern pattern = this.pattern;
-        if (pattern == null) { // TODO: don't allow? this is going to be slooowwww
+        LikeMatcher matcher = this.matcher;
+        String patternValue = null;
+        if (matcher == null) {
             if (!getPatternExpression().evaluate(tuple, ptr)) {
                 if (logger.isDebugEnabled()) {
                     logger.debug("LIKE is FALSE: pattern is null");
                 }
                 return false;
             }
-            String value = (String)PDataType.VARCHAR.toObject(ptr, getPatternExpression().getSortOrder());
-            pattern = Pattern.compile(toPattern(value));
+            // A null pattern makes the LIKE null
+            if (ptr.getLength() == 0) {
+                return true;
+            }
             if (logger.isDebugEnabled()) {
-                logger.debug("LIKE pattern is expression: " + pattern.pattern());
+                patternValue = (String)PDataType.VARCHAR.toObject(ptr, getPatternExpression().getSortOrder());
+                logger.debug("LIKE pattern is expression: " + patternValue);
             }
+            matcher = matcherCache.get(ptr, getPatternExpression().getSortOrder());
         }
         
         if (!getStrExpression().evaluate(tuple, ptr)) {
@@ -245,12 +264,20 @@ public class LikeExpression extends BaseCompoundExpression {
             return true;
         }
         
-        String value = (String)PDataType.VARCHAR.toObject(ptr, getStrExpression().getSortOrder());
-        boolean matched = pattern.matcher(value).matches();
-        ptr.set(matched ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
+        // Match the UTF-8 bytes of the value directly, without decoding them into a String
+        byte[] b = ptr.get();
+        int offset = ptr.getOffset();
+        int length = ptr.getLength();
+        if (getStrExpression().getSortOrder() == SortOrder.DESC) {
+            b = SortOrder.invert(b, offset, length);
+            offset = 0;
+        }
+        boolean matched = matcher.matches(b, offset, length);
         if (logger.isDebugEnabled()) {
-            logger.debug("LIKE(value='" + value + "'pattern='" + pattern.pattern() + "' is " + matched);
+            logger.debug("LIKE(value='" + Bytes.toString(b, offset, length) + "'pattern='"
+                    + (patternValue == null ? getPatternExpression() : patternValue) + "' is " + matched);
         }
+        ptr.set(matched ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
         return true;
     }
 
@@ -35,6 +35,7 @@ import org.apache.phoenix.util.SizedUtil;
 public class CountAggregator extends BaseAggregator {
 
     private long count = 0;
+    // Reused across evaluations and resets
     private byte[] buffer = null;
 
     public CountAggregator() {
@@ -74,7 +75,6 @@ public class CountAggregator extends BaseAggregator {
     @Override
     public void reset() {
         count = 0;
-        buffer = null;
         super.reset();
     }
 
@@ -26,6 +26,7 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.PDataType;
 import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ScaledLong;
 import org.apache.phoenix.util.SizedUtil;
 
 
@@ -38,13 +39,22 @@ import org.apache.phoenix.util.SizedUtil;
  */
 public class DecimalSumAggregator extends BaseAggregator {
     private BigDecimal sum = BigDecimal.ZERO;
+    private boolean hasValue;
+    // Reused across evaluations and resets
     private byte[] sumBuffer;
+    // The sum is kept as a long until it no longer fits
+    private final ScaledLong scaledSum = new ScaledLong();
+    private final ScaledLong scaledValue = new ScaledLong();
+    private boolean isScaledLong = true;
     
     public DecimalSumAggregator(SortOrder sortOrder, ImmutableBytesWritable ptr) {
         super(sortOrder);
         if (ptr != null) {
-            initBuffer();
-            sum = (BigDecimal)PDataType.DECIMAL.toObject(ptr);
+            hasValue = true;
+            if (!scaledSum.set(ptr, PDataType.DECIMAL, SortOrder.getDefault())) {
+                isScaledLong = false;
+                sum = (BigDecimal)PDataType.DECIMAL.toObject(ptr);
+            }
         }
     }
     
@@ -56,25 +66,29 @@ public class DecimalSumAggregator extends BaseAggregator {
         return getDataType().getByteSize();
     }
 
-    private void initBuffer() {
-        sumBuffer = new byte[getBufferLength()];
-    }
-    
     @Override
     public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+        hasValue = true;
+        if (isScaledLong) {
+            if (scaledValue.set(ptr, getInputDataType(), sortOrder) && scaledSum.add(scaledValue)) {
+                return;
+            }
+            isScaledLong = false;
+            sum = scaledSum.toBigDecimal();
+        }
         BigDecimal value = (BigDecimal)getDataType().toObject(ptr, getInputDataType(), sortOrder);
         sum = sum.add(value);
-        if (sumBuffer == null) {
-            sumBuffer = new byte[getDataType().getByteSize()];
-        }
     }
     
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
-        if (sumBuffer == null) {
+        if (!hasValue) {
             return false;
         }
-        int len = getDataType().toBytes(sum, sumBuffer, 0);
+        if (sumBuffer == null) {
+            sumBuffer = new byte[getBufferLength()];
+        }
+        int len = isScaledLong ? scaledSum.toBytes(sumBuffer, 0) : getDataType().toBytes(sum, sumBuffer, 0);
         ptr.set(sumBuffer, 0, len);
         return true;
     }
@@ -87,17 +101,20 @@ public class DecimalSumAggregator extends BaseAggregator {
     @Override
     public void reset() {
         sum = BigDecimal.ZERO;
-        sumBuffer = null;
+        scaledSum.set(0, 0);
+        isScaledLong = true;
+        hasValue = false;
         super.reset();
     }
 
     @Override
     public String toString() {
-        return "DECIMAL SUM [sum=" + sum + "]";
+        return "DECIMAL SUM [sum=" + (isScaledLong ? scaledSum.toBigDecimal() : sum) + "]";
     }
 
     @Override
     public int getSize() {
-        return super.getSize() + SizedUtil.BIG_DECIMAL_SIZE + SizedUtil.ARRAY_SIZE + getDataType().getByteSize();
+        return super.getSize() + SizedUtil.BIG_DECIMAL_SIZE + SizedUtil.ARRAY_SIZE + getDataType().getByteSize()
+                + 2 * (SizedUtil.OBJECT_SIZE + SizedUtil.LONG_SIZE + SizedUtil.INT_SIZE + SizedUtil.POINTER_SIZE);
     }
 }
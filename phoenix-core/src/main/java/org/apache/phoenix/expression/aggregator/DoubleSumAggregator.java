@@ -29,12 +29,14 @@ import org.apache.phoenix.util.SizedUtil;
 public class DoubleSumAggregator extends BaseAggregator {
     
     private double sum = 0;
+    private boolean hasValue;
+    // Reused across evaluations and resets
     private byte[] buffer;
 
     public DoubleSumAggregator(SortOrder sortOrder, ImmutableBytesWritable ptr) {
         super(sortOrder);
         if (ptr != null) {
-            initBuffer();
+            hasValue = true;
             sum = PDataType.DOUBLE.getCodec().decodeDouble(ptr, sortOrder);
         }
     }
@@ -42,27 +44,21 @@ public class DoubleSumAggregator extends BaseAggregator {
     protected PDataType getInputDataType() {
         return PDataType.DOUBLE;
     }
-    
-    private void initBuffer() {
-        buffer = new byte[getDataType().getByteSize()];
-    }
 
     @Override
     public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
         double value = getInputDataType().getCodec().decodeDouble(ptr, sortOrder);
         sum += value;
-        if (buffer == null) {
-            initBuffer();
-        }
+        hasValue = true;
     }
 
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (!hasValue && isNullable()) {
+            return false;
+        }
         if (buffer == null) {
-            if (isNullable()) {
-                return false;
-            }
-            initBuffer();
+            buffer = new byte[getDataType().getByteSize()];
         }
         getDataType().getCodec().encodeDouble(sum, buffer, 0);
         ptr.set(buffer);
@@ -82,13 +78,13 @@ public class DoubleSumAggregator extends BaseAggregator {
     @Override
     public void reset() {
         sum = 0;
-        buffer = null;
+        hasValue = false;
         super.reset();
     }
     
     @Override
     public int getSize() {
-        return super.getSize() + SizedUtil.LONG_SIZE + SizedUtil.ARRAY_SIZE + getDataType().getByteSize();
+        return super.getSize() + SizedUtil.LONG_SIZE + 1 + SizedUtil.ARRAY_SIZE + getDataType().getByteSize();
     }
 
 }
@@ -37,6 +37,8 @@ import org.apache.phoenix.util.SizedUtil;
 abstract public class MinAggregator extends BaseAggregator {
     /** Used to store the accumulate the results of the MIN function */
     protected final ImmutableBytesWritable value = new ImmutableBytesWritable(ByteUtil.EMPTY_BYTE_ARRAY);
+    // Owned copy of the value, reused across updates and resets while large enough
+    private byte[] buffer;
     
     public MinAggregator(SortOrder sortOrder) {
         super(sortOrder);
@@ -50,7 +52,9 @@ abstract public class MinAggregator extends BaseAggregator {
 
     @Override
     public int getSize() {
-        return super.getSize() + /*value*/ SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE;
+        Integer byteSize = getDataType().getByteSize();
+        return super.getSize() + /*value*/ SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE
+                + /*buffer*/ SizedUtil.ARRAY_SIZE + (byteSize == null ? 0 : byteSize);
     }
 
     /**
@@ -72,13 +76,15 @@ abstract public class MinAggregator extends BaseAggregator {
     
     @Override
     public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
-        if (isNull()) {
-            value.set(ptr.get(), ptr.getOffset(), ptr.getLength());
-        } else {
-            if (!keepFirst(value, ptr)) {
-                // replace the value with the new value
-                value.set(ptr.get(), ptr.getOffset(), ptr.getLength());
+        if (isNull() || !keepFirst(value, ptr)) {
+            // replace the value with a copy of the new value, as ptr points into
+            // the row or into a buffer reused by the expression that produced it
+            int length = ptr.getLength();
+            if (buffer == null || buffer.length < length) {
+                buffer = new byte[length];
             }
+            System.arraycopy(ptr.get(), ptr.getOffset(), buffer, 0, length);
+            value.set(buffer, 0, length);
         }
     }
     
@@ -35,6 +35,8 @@ import org.apache.phoenix.util.SizedUtil;
  */
 abstract public class NumberSumAggregator extends BaseAggregator {
     private long sum = 0;
+    private boolean hasValue;
+    // Reused across evaluations and resets
     private byte[] buffer;
 
     public NumberSumAggregator(SortOrder sortOrder) {
@@ -45,7 +47,7 @@ abstract public class NumberSumAggregator extends BaseAggregator {
             ImmutableBytesWritable ptr) {
         this(sortOrder);
         if (ptr != null) {
-            initBuffer();
+            hasValue = true;
             sum = PDataType.LONG.getCodec().decodeLong(ptr, sortOrder);
         }
     }
@@ -60,28 +62,22 @@ abstract public class NumberSumAggregator extends BaseAggregator {
         return getDataType().getByteSize();
     }
 
-    private void initBuffer() {
-        buffer = new byte[getBufferLength()];
-    }
-
     @Override
     public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
         // Get either IntNative or LongNative depending on input type
         long value = getInputDataType().getCodec().decodeLong(ptr,
                 sortOrder);
         sum += value;
-        if (buffer == null) {
-            initBuffer();
-        }
+        hasValue = true;
     }
 
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (!hasValue && isNullable()) {
+            return false;
+        }
         if (buffer == null) {
-            if (isNullable()) {
-                return false;
-            }
-            initBuffer();
+            buffer = new byte[getBufferLength()];
         }
         getDataType().getCodec().encodeLong(sum, buffer, 0);
         ptr.set(buffer);
@@ -96,7 +92,7 @@ abstract public class NumberSumAggregator extends BaseAggregator {
     @Override
     public void reset() {
         sum = 0;
-        buffer = null;
+        hasValue = false;
         super.reset();
     }
 
@@ -107,7 +103,7 @@ abstract public class NumberSumAggregator extends BaseAggregator {
 
     @Override
     public int getSize() {
-        return super.getSize() + SizedUtil.LONG_SIZE + SizedUtil.ARRAY_SIZE
+        return super.getSize() + SizedUtil.LONG_SIZE + 1 + SizedUtil.ARRAY_SIZE
                 + getBufferLength();
     }
 
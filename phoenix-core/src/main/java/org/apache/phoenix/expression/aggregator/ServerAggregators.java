@@ -30,6 +30,7 @@ import java.util.List;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.WritableUtils;
 
+import org.apache.phoenix.expression.CommonSubexpressionEliminator;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.function.SingleAggregateFunction;
@@ -65,6 +66,27 @@ public class ServerAggregators extends Aggregators {
         }
     }
     
+    /**
+     * Register the expressions evaluated for the aggregators
+     * @param eliminator the eliminator of the subexpressions common to the expressions evaluated for each row
+     */
+    public void addExpressions(CommonSubexpressionEliminator eliminator) {
+        for (int i = 0; i < expressions.length; i++) {
+            eliminator.add(expressions[i]);
+        }
+    }
+
+    /**
+     * Rewrite the expressions evaluated for the aggregators, after they've been registered
+     * through {@link #addExpressions(CommonSubexpressionEliminator)}
+     * @param eliminator the eliminator of the subexpressions common to the expressions evaluated for each row
+     */
+    public void rewriteExpressions(CommonSubexpressionEliminator eliminator) {
+        for (int i = 0; i < expressions.length; i++) {
+            expressions[i] = eliminator.rewrite(expressions[i]);
+        }
+    }
+    
     /**
      * Serialize an Aggregator into a byte array
      * @param aggFuncs list of aggregator to serialize
@@ -32,6 +32,7 @@ import org.apache.phoenix.parse.FunctionParseNode.Argument;
 import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
 import org.apache.phoenix.schema.PDataType;
 import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.PatternCache;
 
 
 /**
@@ -58,6 +59,7 @@ public class RegexpReplaceFunction extends ScalarFunction {
 
     private boolean hasReplaceStr;
     private Pattern pattern;
+    private PatternCache<Pattern> patternCache;
     
     public RegexpReplaceFunction() { }
 
@@ -68,15 +70,34 @@ public class RegexpReplaceFunction extends ScalarFunction {
     }
 
     private void init() {
-        hasReplaceStr = ((LiteralExpression)getReplaceStrExpression()).getValue() != null;
-        Object patternString = ((LiteralExpression)children.get(1)).getValue();
-        if (patternString != null) {
-            pattern = Pattern.compile((String)patternString);
+        Expression replaceStrExpression = getReplaceStrExpression();
+        hasReplaceStr = !(replaceStrExpression instanceof LiteralExpression) || ((LiteralExpression)replaceStrExpression).getValue() != null;
+        Expression patternExpression = getPatternExpression();
+        if (patternExpression instanceof LiteralExpression) {
+            Object patternString = ((LiteralExpression)patternExpression).getValue();
+            if (patternString != null) {
+                pattern = Pattern.compile((String)patternString);
+            }
+        } else {
+            patternCache = new PatternCache<Pattern>() {
+                @Override
+                protected Pattern compile(String pattern) {
+                    return Pattern.compile(pattern);
+                }
+            };
         }
     }
 
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        Pattern pattern = this.pattern;
+        if (patternCache != null) {
+            Expression patternExpression = getPatternExpression();
+            if (!patternExpression.evaluate(tuple, ptr) || ptr.getLength() == 0) {
+                return false;
+            }
+            pattern = patternCache.get(ptr, patternExpression.getSortOrder());
+        }
         // Can't parse if there is no replacement pattern.
         if (pattern == null) {
             return false;
@@ -89,14 +110,15 @@ public class RegexpReplaceFunction extends ScalarFunction {
         if (sourceStr == null) {
             return false;
         }
-        String replaceStr;
+        String replaceStr = null;
         if (hasReplaceStr) {
             Expression replaceStrExpression = this.getReplaceStrExpression();
             if (!replaceStrExpression.evaluate(tuple, ptr)) {
                 return false;
             }
             replaceStr = (String)PDataType.VARCHAR.toObject(ptr, replaceStrExpression.getSortOrder());
-        } else {
+        }
+        if (replaceStr == null) {
             replaceStr = "";
         }
         String replacedStr = pattern.matcher(sourceStr).replaceAll(replaceStr);
@@ -108,6 +130,10 @@ public class RegexpReplaceFunction extends ScalarFunction {
         return children.get(0);
     }
 
+    private Expression getPatternExpression() {
+        return children.get(1);
+    }
+
     private Expression getReplaceStrExpression() {
         return children.get(2);
     }
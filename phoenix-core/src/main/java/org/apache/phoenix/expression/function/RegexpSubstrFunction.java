@@ -19,6 +19,8 @@
  */
 package org.apache.phoenix.expression.function;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -32,6 +34,7 @@ import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
 import org.apache.phoenix.schema.PDataType;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.PatternCache;
 
 
 /**
@@ -54,6 +57,7 @@ public class RegexpSubstrFunction extends PrefixFunction {
     public static final String NAME = "REGEXP_SUBSTR";
 
     private Pattern pattern;
+    private PatternCache<Pattern> patternCache;
     private boolean isOffsetConstant;
     private Integer byteSize;
 
@@ -65,16 +69,26 @@ public class RegexpSubstrFunction extends PrefixFunction {
     }
 
     private void init() {
-        Object patternString = ((LiteralExpression)children.get(1)).getValue();
-        if (patternString != null) {
-            pattern = Pattern.compile((String)patternString);
+        Expression patternExpression = getPatternExpression();
+        if (patternExpression instanceof LiteralExpression) {
+            Object patternString = ((LiteralExpression)patternExpression).getValue();
+            if (patternString != null) {
+                pattern = Pattern.compile((String)patternString);
+            }
+        } else {
+            patternCache = new PatternCache<Pattern>() {
+                @Override
+                protected Pattern compile(String pattern) {
+                    return Pattern.compile(pattern);
+                }
+            };
         }
         // If the source string has a fixed width, then the max length would be the length 
         // of the source string minus the offset, or the absolute value of the offset if 
         // it's negative. Offset number is a required argument. However, if the source string
         // is not fixed width, the maxLength would be null.
         isOffsetConstant = getOffsetExpression() instanceof LiteralExpression;
-        Number offsetNumber = (Number)((LiteralExpression)getOffsetExpression()).getValue();
+        Number offsetNumber = isOffsetConstant ? (Number)((LiteralExpression)getOffsetExpression()).getValue() : null;
         if (offsetNumber != null) {
             int offset = offsetNumber.intValue();
             if (getSourceStrExpression().getDataType().isFixedWidth()) {
@@ -89,6 +103,14 @@ public class RegexpSubstrFunction extends PrefixFunction {
 
     @Override
     public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        Pattern pattern = this.pattern;
+        if (patternCache != null) {
+            Expression patternExpression = getPatternExpression();
+            if (!patternExpression.evaluate(tuple, ptr) || ptr.getLength() == 0) {
+                return false;
+            }
+            pattern = patternCache.get(ptr, patternExpression.getSortOrder());
+        }
         if (pattern == null) {
             return false;
         }
@@ -152,6 +174,16 @@ public class RegexpSubstrFunction extends PrefixFunction {
         return preservesOrder() == OrderPreserving.NO ? NO_TRAVERSAL : 0;
     }
 
+    @Override
+    public void readFields(DataInput input) throws IOException {
+        super.readFields(input);
+        init();
+    }
+
+    private Expression getPatternExpression() {
+        return children.get(1);
+    }
+
     private Expression getOffsetExpression() {
         return children.get(2);
     }
@@ -19,18 +19,24 @@
  */
 package org.apache.phoenix.filter;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 
 import org.apache.hadoop.hbase.filter.FilterBase;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.expression.BooleanExpressionEvaluator;
+import org.apache.phoenix.expression.CommonSubexpressionEliminator;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.schema.IllegalDataException;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
 
 
 /**
@@ -43,6 +49,13 @@ import org.apache.phoenix.util.ServerUtil;
 abstract public class BooleanExpressionFilter extends FilterBase {
 
     protected Expression expression;
+    // Expression evaluated: the expression itself, or a copy of it rewritten to share its
+    // repeated subexpressions, which must not be serialized or compared
+    private Expression evaluatedExpression;
+    // Specialized evaluation of the expression, or null if it's evaluated directly
+    private BooleanExpressionEvaluator evaluator;
+    // Shares the repeated subexpressions of the expression, or null if there are none
+    private CommonSubexpressionEliminator eliminator;
     protected boolean evaluateOnCompletion;
     private ImmutableBytesWritable tempPtr = new ImmutableBytesWritable();
     
@@ -51,6 +64,8 @@ abstract public class BooleanExpressionFilter extends FilterBase {
 
     public BooleanExpressionFilter(Expression expression) {
         this.expression = expression;
+        this.evaluatedExpression = expression;
+        this.evaluator = BooleanExpressionEvaluator.compile(expression);
     }
 
     protected void setEvaluateOnCompletion(boolean evaluateOnCompletion) {
@@ -89,13 +104,20 @@ abstract public class BooleanExpressionFilter extends FilterBase {
             justification="Returns null by design.")
     protected Boolean evaluate(Tuple input) {
         try {
-            if (!expression.evaluate(input, tempPtr)) {
+            if (eliminator != null) {
+                eliminator.nextRow();
+            }
+            if (evaluator != null) {
+                int result = evaluator.evaluate(input);
+                return result == BooleanExpressionEvaluator.UNKNOWN ? null : Boolean.valueOf(result == BooleanExpressionEvaluator.TRUE);
+            }
+            if (!evaluatedExpression.evaluate(input, tempPtr)) {
                 return null;
             }
         } catch (IllegalDataException e) {
             return Boolean.FALSE;
         }
-        return (Boolean)expression.getDataType().toObject(tempPtr);
+        return (Boolean)evaluatedExpression.getDataType().toObject(tempPtr);
     }
 
     @Override
@@ -103,11 +125,35 @@ abstract public class BooleanExpressionFilter extends FilterBase {
         try {
             expression = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
             expression.readFields(input);
+            evaluatedExpression = expression;
+            this.eliminator = null;
+            // Only rewritten on the server side. The rewriting is done in place, so a copy is
+            // rewritten to keep the expression as is for serialization, equals and hashCode.
+            CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+            eliminator.add(expression);
+            if (eliminator.hasCommonSubexpressions()) {
+                Expression copy = copy(expression);
+                eliminator = new CommonSubexpressionEliminator();
+                eliminator.add(copy);
+                evaluatedExpression = eliminator.rewrite(copy);
+                this.eliminator = eliminator;
+            }
+            evaluator = BooleanExpressionEvaluator.compile(evaluatedExpression);
         } catch (Throwable t) { // Catches incompatibilities during reading/writing and doesn't retry
             ServerUtil.throwIOException("BooleanExpressionFilter failed during reading", t);
         }
     }
 
+    private static Expression copy(Expression expression) throws IOException {
+        TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(128);
+        DataOutputStream output = new DataOutputStream(stream);
+        expression.write(output);
+        output.flush();
+        Expression copy = ExpressionType.valueOf(expression).newInstance();
+        copy.readFields(new DataInputStream(new ByteArrayInputStream(stream.getBuffer(), 0, stream.size())));
+        return copy;
+    }
+
     @Override
     public void write(DataOutput output) throws IOException {
         try {
@@ -121,5 +167,8 @@ abstract public class BooleanExpressionFilter extends FilterBase {
     @Override
     public void reset() {
         expression.reset();
+        if (evaluatedExpression != expression) {
+            evaluatedExpression.reset();
+        }
     }
 }
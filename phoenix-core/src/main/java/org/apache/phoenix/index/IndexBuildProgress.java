@@ -0,0 +1,255 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Progress of a server-side index build, as checkpointed in the SYSTEM.INDEX_BUILD table.
+ * Each region scan of an index build writes one row keyed by the index name and the
+ * first data row key of the scan. The row records the last data row key for which
+ * index rows have been committed and whether the scan ran to completion, so that a
+ * failed build may be resumed by skipping over the data rows that were already indexed.
+ *
+ *
+ * @since 3.0.0
+ */
+public class IndexBuildProgress {
+    private static final byte[] EMPTY_KEY_VALUE_BYTES = ByteUtil.EMPTY_BYTE_ARRAY;
+
+    private final List<KeyRange> completedRanges;
+    private final long buildTimeStamp;
+
+    private IndexBuildProgress(List<KeyRange> completedRanges, long buildTimeStamp) {
+        this.completedRanges = completedRanges;
+        this.buildTimeStamp = buildTimeStamp;
+    }
+
+    /**
+     * @return the sorted, non overlapping data row key ranges for which index rows were already built.
+     */
+    public List<KeyRange> getCompletedRanges() {
+        return completedRanges;
+    }
+
+    /**
+     * @return the earliest time stamp at which a checkpointed build scanned the data table, or
+     * {@link QueryConstants#UNSET_TIMESTAMP} if there are no checkpoints.
+     */
+    public long getBuildTimeStamp() {
+        return buildTimeStamp;
+    }
+
+    public boolean isEmpty() {
+        return completedRanges.isEmpty();
+    }
+
+    private static byte[] getKeyPrefix(byte[] physicalIndexName) {
+        String fullName = Bytes.toString(physicalIndexName);
+        return ByteUtil.concat(Bytes.toBytes(SchemaUtil.getSchemaNameFromFullName(fullName)),
+                QueryConstants.SEPARATOR_BYTE_ARRAY, Bytes.toBytes(SchemaUtil.getTableNameFromFullName(fullName)));
+    }
+
+    /**
+     * Get the row key in SYSTEM.INDEX_BUILD of the checkpoint for the given index and start key
+     * @param physicalIndexName the physical name of the index table
+     * @param startKey the first data row key covered by the checkpoint
+     */
+    public static byte[] getRowKey(byte[] physicalIndexName, byte[] startKey) {
+        byte[] prefix = getKeyPrefix(physicalIndexName);
+        // Trailing null START_KEY is not terminated by a separator byte
+        if (startKey.length == 0) {
+            return prefix;
+        }
+        return ByteUtil.concat(prefix, QueryConstants.SEPARATOR_BYTE_ARRAY, startKey);
+    }
+
+    /**
+     * Server-side creation of a checkpoint for the data rows in [startKey, lastKey] of a region scan.
+     */
+    public static Put newCheckpoint(byte[] physicalIndexName, byte[] startKey, byte[] endKey, byte[] lastKey,
+            long buildTimeStamp, long rowCount, boolean isComplete) {
+        byte[] family = PhoenixDatabaseMetaData.INDEX_BUILD_FAMILY_BYTES;
+        Put put = new Put(getRowKey(physicalIndexName, startKey));
+        put.add(family, QueryConstants.EMPTY_COLUMN_BYTES, EMPTY_KEY_VALUE_BYTES);
+        put.add(family, PhoenixDatabaseMetaData.END_KEY_BYTES, endKey);
+        put.add(family, PhoenixDatabaseMetaData.LAST_KEY_BYTES, lastKey);
+        put.add(family, PhoenixDatabaseMetaData.BUILD_TIMESTAMP_BYTES, PDataType.LONG.toBytes(buildTimeStamp));
+        put.add(family, PhoenixDatabaseMetaData.ROW_COUNT_BYTES, PDataType.LONG.toBytes(rowCount));
+        put.add(family, PhoenixDatabaseMetaData.IS_COMPLETE_BYTES, PDataType.BOOLEAN.toBytes(isComplete));
+        return put;
+    }
+
+    private static Scan newScan(byte[] physicalIndexName) {
+        byte[] prefix = getKeyPrefix(physicalIndexName);
+        // Include the row with a null START_KEY, but not the rows of another index that shares our name as a prefix
+        byte[] stopRow = ByteUtil.nextKey(ByteUtil.concat(prefix, QueryConstants.SEPARATOR_BYTE_ARRAY));
+        Scan scan = new Scan(prefix, stopRow);
+        scan.addFamily(PhoenixDatabaseMetaData.INDEX_BUILD_FAMILY_BYTES);
+        return scan;
+    }
+
+    /**
+     * Client-side read of all the checkpoints of a prior build of the given index
+     * @param connection the connection to the cluster
+     * @param index the index being built
+     * @return the progress of the build
+     * @throws SQLException
+     */
+    public static IndexBuildProgress read(PhoenixConnection connection, PTable index) throws SQLException {
+        byte[] physicalIndexName = index.getPhysicalName().getBytes();
+        int prefixLength = getKeyPrefix(physicalIndexName).length;
+        byte[] family = PhoenixDatabaseMetaData.INDEX_BUILD_FAMILY_BYTES;
+        List<KeyRange> ranges = Lists.newArrayList();
+        long buildTimeStamp = QueryConstants.UNSET_TIMESTAMP;
+        HTableInterface htable = connection.getQueryServices().getTable(PhoenixDatabaseMetaData.INDEX_BUILD_TABLE_NAME_BYTES);
+        try {
+            ResultScanner scanner = htable.getScanner(newScan(physicalIndexName));
+            try {
+                for (Result result = scanner.next(); result != null; result = scanner.next()) {
+                    byte[] row = result.getRow();
+                    byte[] startKey = row.length == prefixLength ? ByteUtil.EMPTY_BYTE_ARRAY : Bytes.tail(row, row.length - prefixLength - 1);
+                    KeyValue kv = result.getColumnLatest(family, PhoenixDatabaseMetaData.BUILD_TIMESTAMP_BYTES);
+                    long ts = (Long)PDataType.LONG.toObject(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+                    if (buildTimeStamp == QueryConstants.UNSET_TIMESTAMP || ts < buildTimeStamp) {
+                        buildTimeStamp = ts;
+                    }
+                    kv = result.getColumnLatest(family, PhoenixDatabaseMetaData.IS_COMPLETE_BYTES);
+                    boolean isComplete = Boolean.TRUE.equals(PDataType.BOOLEAN.toObject(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength()));
+                    if (isComplete) {
+                        byte[] endKey = result.getValue(family, PhoenixDatabaseMetaData.END_KEY_BYTES);
+                        ranges.add(KeyRange.getKeyRange(startKey, true, endKey, false));
+                    } else {
+                        byte[] lastKey = result.getValue(family, PhoenixDatabaseMetaData.LAST_KEY_BYTES);
+                        ranges.add(KeyRange.getKeyRange(startKey, true, lastKey, true));
+                    }
+                }
+            } finally {
+                scanner.close();
+            }
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        } finally {
+            try {
+                htable.close();
+            } catch (IOException e) {
+                throw ServerUtil.parseServerException(e);
+            }
+        }
+        return new IndexBuildProgress(ranges.isEmpty() ? ranges : KeyRange.coalesce(ranges), buildTimeStamp);
+    }
+
+    /**
+     * Client-side removal of all the checkpoints of the given index, called once the
+     * build is complete or before building an index from scratch.
+     * @param connection the connection to the cluster
+     * @param index the index
+     * @throws SQLException
+     */
+    public static void clear(PhoenixConnection connection, PTable index) throws SQLException {
+        HTableInterface htable = connection.getQueryServices().getTable(PhoenixDatabaseMetaData.INDEX_BUILD_TABLE_NAME_BYTES);
+        try {
+            List<Delete> deletes = Lists.newArrayList();
+            ResultScanner scanner = htable.getScanner(newScan(index.getPhysicalName().getBytes()));
+            try {
+                for (Result result = scanner.next(); result != null; result = scanner.next()) {
+                    deletes.add(new Delete(result.getRow()));
+                }
+            } finally {
+                scanner.close();
+            }
+            if (!deletes.isEmpty()) {
+                htable.delete(deletes);
+            }
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        } finally {
+            try {
+                htable.close();
+            } catch (IOException e) {
+                throw ServerUtil.parseServerException(e);
+            }
+        }
+    }
+
+    public static byte[] serialize(List<KeyRange> ranges) {
+        TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(ranges.size() * 32 + 1);
+        DataOutput output = new DataOutputStream(stream);
+        try {
+            WritableUtils.writeVInt(output, ranges.size());
+            for (KeyRange range : ranges) {
+                range.write(output);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e); // Impossible
+        }
+        return stream.toByteArray();
+    }
+
+    public static List<KeyRange> deserialize(byte[] b) {
+        if (b == null) {
+            return Collections.emptyList();
+        }
+        DataInput input = new DataInputStream(new ByteArrayInputStream(b));
+        try {
+            int size = WritableUtils.readVInt(input);
+            List<KeyRange> ranges = Lists.newArrayListWithExpectedSize(size);
+            for (int i = 0; i < size; i++) {
+                KeyRange range = new KeyRange();
+                range.readFields(input);
+                ranges.add(range);
+            }
+            return ranges;
+        } catch (IOException e) {
+            throw new RuntimeException(e); // Impossible
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -45,6 +46,12 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.client.KeyValueBuilder;
+import org.apache.phoenix.compile.IndexExpressionCompiler;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.visitor.KeyValueExpressionVisitor;
+import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PColumnFamily;
@@ -57,6 +64,8 @@ import org.apache.phoenix.schema.SaltingUtil;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.ValueSchema;
 import org.apache.phoenix.schema.ValueSchema.Field;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.tuple.ValueGetterTuple;
 import org.apache.phoenix.util.BitSet;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.IndexUtil;
@@ -73,7 +82,7 @@ import com.google.common.collect.Sets;
  * 
  * Class that builds index row key from data row key and current state of
  * row and caches any covered columns. Client-side serializes into byte array using 
- * @link #serialize(PTable, ImmutableBytesWritable)}
+ * @link #serialize(PTable, ImmutableBytesWritable, PhoenixConnection)}
  * and transmits to server-side through either the 
  * {@link org.apache.phoenix.index.PhoenixIndexCodec#INDEX_MD}
  * Mutation attribute or as a separate RPC call using 
@@ -84,30 +93,63 @@ import com.google.common.collect.Sets;
  */
 public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     
-    public static IndexMaintainer create(PTable dataTable, PTable index) {
+    public static IndexMaintainer create(PTable dataTable, PTable index, PhoenixConnection connection) throws SQLException {
         if (dataTable.getType() == PTableType.INDEX || index.getType() != PTableType.INDEX || !dataTable.getIndexes().contains(index)) {
             throw new IllegalArgumentException();
         }
         int indexPosOffset = index.getBucketNum() == null ? 0 : 1;
-        IndexMaintainer maintainer = new IndexMaintainer(dataTable, index);
+        final IndexMaintainer maintainer = new IndexMaintainer(dataTable, index);
         RowKeyMetaData rowKeyMetaData = maintainer.getRowKeyMetaData();
+        List<Expression> indexedExpressions = Lists.newArrayListWithExpectedSize(index.getPKColumns().size());
+        IndexExpressionCompiler expressionCompiler = null;
         for (int i = indexPosOffset; i < index.getPKColumns().size(); i++) {
             PColumn indexColumn = index.getPKColumns().get(i);
             int indexPos = i - indexPosOffset;
-            PColumn column = IndexUtil.getDataColumn(dataTable, indexColumn.getName().getString());
-            boolean isPKColumn = SchemaUtil.isPKColumn(column);
-            if (isPKColumn) {
-                int dataPkPos = dataTable.getPKColumns().indexOf(column) - (dataTable.getBucketNum() == null ? 0 : 1);
-                rowKeyMetaData.setIndexPkPosition(dataPkPos, indexPos);
+            String expressionStr = indexColumn.getExpressionStr();
+            if (expressionStr != null) {
+                if (expressionCompiler == null) {
+                    expressionCompiler = new IndexExpressionCompiler(connection, dataTable);
+                }
+                Expression expression = expressionCompiler.compile(expressionStr);
+                // Track the columns referenced by the expression, as the index row changes when they change
+                expression.accept(new KeyValueExpressionVisitor() {
+                    @Override
+                    public Void visit(KeyValueColumnExpression expression) {
+                        maintainer.getIndexedColumns().add(new ColumnReference(expression.getColumnFamily(), expression.getColumnName()));
+                        return null;
+                    }
+                });
+                indexedExpressions.add(expression);
+                maintainer.getIndexedColumnTypes().add(expression.getDataType());
+                maintainer.getIndexedColumnSizes().add(expression.getByteSize());
             } else {
-                maintainer.getIndexedColumnTypes().add(column.getDataType());
-                maintainer.getIndexedColumnSizes().add(column.getByteSize());
-                maintainer.getIndexedColumns().add(new ColumnReference(column.getFamilyName().getBytes(), column.getName().getBytes()));
+                PColumn column = IndexUtil.getDataColumn(dataTable, indexColumn.getName().getString());
+                boolean isPKColumn = SchemaUtil.isPKColumn(column);
+                if (isPKColumn) {
+                    int dataPkPos = dataTable.getPKColumns().indexOf(column) - (dataTable.getBucketNum() == null ? 0 : 1);
+                    rowKeyMetaData.setIndexPkPosition(dataPkPos, indexPos);
+                } else {
+                    indexedExpressions.add(new KeyValueColumnExpression(column));
+                    maintainer.getIndexedColumnTypes().add(column.getDataType());
+                    maintainer.getIndexedColumnSizes().add(column.getByteSize());
+                    maintainer.getIndexedColumns().add(new ColumnReference(column.getFamilyName().getBytes(), column.getName().getBytes()));
+                }
             }
             if (indexColumn.getSortOrder() == SortOrder.DESC) {
                 rowKeyMetaData.getDescIndexColumnBitSet().set(indexPos);
             }
         }
+        // Only evaluate expressions when there are indexed expressions, otherwise look the values up directly
+        if (expressionCompiler != null) {
+            maintainer.indexedExpressions = indexedExpressions;
+        }
+        String indexWhere = index.getIndexWhere();
+        if (indexWhere != null) {
+            if (expressionCompiler == null) {
+                expressionCompiler = new IndexExpressionCompiler(connection, dataTable);
+            }
+            maintainer.indexWhere = expressionCompiler.compile(indexWhere);
+        }
         for (int i = 0; i < index.getColumnFamilies().size(); i++) {
             PColumnFamily family = index.getColumnFamilies().get(i);
             for (PColumn indexColumn : family.getColumns()) {
@@ -132,19 +174,34 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
      * For client-side to serialize all IndexMaintainers for a given table
      * @param dataTable data table
      * @param ptr bytes pointer to hold returned serialized value
+     * @param connection connection used to compile the indexed expressions of the indexes
+     */
+    public static void serialize(PTable dataTable, ImmutableBytesWritable ptr, PhoenixConnection connection) throws SQLException {
+        if (dataTable.isImmutableRows()) {
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            return;
+        }
+        serialize(dataTable, ptr, Lists.newArrayList(nonDisabledIndexIterator(dataTable.getIndexes().iterator())), connection);
+    }
+    
+    /**
+     * For client-side to serialize the IndexMaintainers of a given set of indexes, regardless of
+     * their state or of whether the data table has immutable rows. Used to ship index metadata to
+     * the server for a server-side index build.
+     * @param dataTable data table
+     * @param ptr bytes pointer to hold returned serialized value
+     * @param indexes indexes of dataTable for which to serialize the IndexMaintainer
+     * @param connection connection used to compile the indexed expressions of the indexes
      */
-    public static void serialize(PTable dataTable, ImmutableBytesWritable ptr) {
-        Iterator<PTable> indexes = nonDisabledIndexIterator(dataTable.getIndexes().iterator());
-        if (dataTable.isImmutableRows() || !indexes.hasNext()) {
+    public static void serialize(PTable dataTable, ImmutableBytesWritable ptr, List<PTable> indexes, PhoenixConnection connection) throws SQLException {
+        if (indexes.isEmpty()) {
             ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
             return;
         }
-        int nIndexes = 0;
+        int nIndexes = indexes.size();
         int estimatedSize = dataTable.getRowKeySchema().getEstimatedByteSize() + 2;
-        while (indexes.hasNext()) {
-            nIndexes++;
-            PTable index = indexes.next();
-            estimatedSize += index.getIndexMaintainer(dataTable).getEstimatedByteSize();
+        for (PTable index : indexes) {
+            estimatedSize += index.getIndexMaintainer(dataTable, connection).getEstimatedByteSize();
         }
         TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(estimatedSize + 1);
         DataOutput output = new DataOutputStream(stream);
@@ -153,9 +210,8 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
             WritableUtils.writeVInt(output, nIndexes * (dataTable.getBucketNum() == null ? 1 : -1));
             // Write out data row key schema once, since it's the same for all index maintainers
             dataTable.getRowKeySchema().write(output);
-            indexes = nonDisabledIndexIterator(dataTable.getIndexes().iterator());
-            while (indexes.hasNext()) {
-                    indexes.next().getIndexMaintainer(dataTable).write(output);
+            for (PTable index : indexes) {
+                index.getIndexMaintainer(dataTable, connection).write(output);
             }
         } catch (IOException e) {
             throw new RuntimeException(e); // Impossible
@@ -198,6 +254,10 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     }
 
     private Set<ColumnReference> indexedColumns;
+    // One per indexed data column or expression, only set if the index has indexed expressions
+    private List<Expression> indexedExpressions;
+    // WHERE clause of a partial index, or null if every data row is indexed
+    private Expression indexWhere;
     private Set<ColumnReference> coveredColumns;
     private Set<ColumnReference> allColumns;
     private List<PDataType> indexedColumnTypes;
@@ -215,6 +275,7 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     private final RowKeySchema dataRowKeySchema;
     
     private List<ImmutableBytesPtr> indexQualifiers;
+    private Set<ColumnReference> indexWhereColumns;
     private int estimatedIndexRowKeyBytes;
     private int[] dataPkPosition;
     private int maxTrailingNulls;
@@ -286,6 +347,7 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
             BitSet descIndexColumnBitSet = rowKeyMetaData.getDescIndexColumnBitSet();
             int j = 0;
             Iterator<ColumnReference> iterator = indexedColumns.iterator();
+            Tuple tuple = indexedExpressions == null ? null : new ValueGetterTuple(valueGetter, rowKeyPtr, indexedColumns);
             for (int i = 0; i < nIndexedColumns; i++) {
                 PDataType dataColumnType;
                 boolean isNullable = true;
@@ -293,11 +355,20 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
                 SortOrder dataSortOrder = SortOrder.getDefault();
                 if (dataPkPosition[i] == -1) {
                     dataColumnType = indexedColumnTypes.get(j);
-                    ImmutableBytesPtr value = valueGetter.getLatestValue(iterator.next());
-                    if (value == null) {
-                        ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+                    if (tuple == null) {
+                        ImmutableBytesPtr value = valueGetter.getLatestValue(iterator.next());
+                        if (value == null) {
+                            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+                        } else {
+                            ptr.set(value.copyBytesIfNecessary());
+                        }
                     } else {
-                        ptr.set(value.copyBytesIfNecessary());
+                        Expression expression = indexedExpressions.get(j);
+                        if (!expression.evaluate(tuple, ptr)) {
+                            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+                        }
+                        dataSortOrder = expression.getSortOrder();
+                        isDataColumnInverted = dataSortOrder != SortOrder.ASC;
                     }
                     j++;
                } else {
@@ -352,9 +423,13 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
 
     @SuppressWarnings("deprecation")
     public Put buildUpdateMutation(ValueGetter valueGetter, ImmutableBytesWritable dataRowKeyPtr, long ts) throws IOException {
+        if (!isRowIndexed(valueGetter, dataRowKeyPtr)) {
+            return null;
+        }
         Put put = null;
-        // New row being inserted: add the empty key value
-        if (valueGetter.getLatestValue(dataEmptyKeyValueRef) == null) {
+        // New row being inserted: add the empty key value. For a partial index, an existing
+        // data row may only now satisfy the WHERE clause, so always add it.
+        if (indexWhere != null || valueGetter.getLatestValue(dataEmptyKeyValueRef) == null) {
             byte[] indexRowKey = this.buildRowKey(valueGetter, dataRowKeyPtr);
             put = new Put(indexRowKey);
             // add the keyvalue for the empty row
@@ -389,6 +464,44 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
         return buildDeleteMutation(valueGetter, dataRowKeyPtr, pendingUpdates, HConstants.LATEST_TIMESTAMP);
     }
     
+    /**
+     * @return true if the data row satisfies the WHERE clause of a partial index, and
+     * thus has an index row, and true for every data row if the index is not partial.
+     */
+    public boolean isRowIndexed(ValueGetter valueGetter, ImmutableBytesWritable dataRowKeyPtr) {
+        if (indexWhere == null) {
+            return true;
+        }
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        return indexWhere.evaluate(new ValueGetterTuple(valueGetter, dataRowKeyPtr, indexWhereColumns), ptr)
+                && Boolean.TRUE.equals(indexWhere.getDataType().toObject(ptr));
+    }
+    
+    /**
+     * Get the state of a row after the pending updates are applied to it.
+     */
+    private static ValueGetter newPendingStateGetter(final ValueGetter oldState, Collection<KeyValue> pendingUpdates) {
+        final Map<ColumnReference,KeyValue> newState = Maps.newHashMapWithExpectedSize(pendingUpdates.size());
+        final Set<ImmutableBytesPtr> deletedFamilies = Sets.newHashSet();
+        for (KeyValue kv : pendingUpdates) {
+            if (kv.getType() == KeyValue.Type.DeleteFamily.getCode()) {
+                deletedFamilies.add(new ImmutableBytesPtr(kv.getFamily()));
+            } else {
+                newState.put(new ColumnReference(kv.getFamily(), kv.getQualifier()), kv);
+            }
+        }
+        return new ValueGetter() {
+            @Override
+            public ImmutableBytesPtr getLatestValue(ColumnReference ref) throws IOException {
+                KeyValue kv = newState.get(ref);
+                if (kv == null) {
+                    return deletedFamilies.contains(new ImmutableBytesPtr(ref.getFamily())) ? null : oldState.getLatestValue(ref);
+                }
+                return kv.getType() == KeyValue.Type.Put.getCode() ? new ImmutableBytesPtr(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength()) : null;
+            }
+        };
+    }
+    
     public boolean isRowDeleted(Collection<KeyValue> pendingUpdates) {
         int nDeleteCF = 0;
         for (KeyValue kv : pendingUpdates) {
@@ -438,9 +551,15 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     
     @SuppressWarnings("deprecation")
     public Delete buildDeleteMutation(ValueGetter oldState, ImmutableBytesWritable dataRowKeyPtr, Collection<KeyValue> pendingUpdates, long ts) throws IOException {
+        // Nothing to delete if the data row did not satisfy the WHERE clause of a partial index
+        if (oldState != null && !isRowIndexed(oldState, dataRowKeyPtr)) {
+            return null;
+        }
         byte[] indexRowKey = this.buildRowKey(oldState, dataRowKeyPtr);
-        // Delete the entire row if any of the indexed columns changed
-        if (oldState == null || isRowDeleted(pendingUpdates) || hasIndexedColumnChanged(oldState, pendingUpdates)) { // Deleting the entire row
+        // Delete the entire row if any of the indexed columns changed or if the data row
+        // no longer satisfies the WHERE clause of a partial index
+        if (oldState == null || isRowDeleted(pendingUpdates) || hasIndexedColumnChanged(oldState, pendingUpdates)
+                || (indexWhere != null && !isRowIndexed(newPendingStateGetter(oldState, pendingUpdates), dataRowKeyPtr))) { // Deleting the entire row
             Delete delete = new Delete(indexRowKey, ts, null);
             delete.setWriteToWAL(!indexWALDisabled);
             return delete;
@@ -477,6 +596,13 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     public Set<ColumnReference> getAllColumns() {
         return allColumns;
     }
+
+    /**
+     * @return the data columns referenced by the WHERE clause of a partial index
+     */
+    public Set<ColumnReference> getIndexWhereColumns() {
+        return indexWhereColumns;
+    }
     
     private ImmutableBytesPtr getEmptyKeyValueFamily() {
         // Since the metadata of an index table will never change,
@@ -500,20 +626,41 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     @Override
     public void readFields(DataInput input) throws IOException {
         nIndexSaltBuckets = WritableUtils.readVInt(input);
+        // Encode whether or not the index is partial in the sign of nIndexSaltBuckets
+        boolean hasIndexWhere = nIndexSaltBuckets < 0;
+        if (hasIndexWhere) {
+            nIndexSaltBuckets = -nIndexSaltBuckets - 1;
+        }
         int nIndexedColumns = WritableUtils.readVInt(input);
+        // Encode whether or not there are indexed expressions in the sign of nIndexedColumns
+        boolean hasIndexedExpressions = nIndexedColumns < 0;
+        if (hasIndexedExpressions) {
+            nIndexedColumns = -nIndexedColumns - 1;
+        }
         indexedColumns = Sets.newLinkedHashSetWithExpectedSize(nIndexedColumns);
         for (int i = 0; i < nIndexedColumns; i++) {
             byte[] cf = Bytes.readByteArray(input);
             byte[] cq = Bytes.readByteArray(input);
             indexedColumns.add(new ColumnReference(cf,cq));
         }
-        indexedColumnTypes = Lists.newArrayListWithExpectedSize(nIndexedColumns);
-        for (int i = 0; i < nIndexedColumns; i++) {
+        int nIndexedValues = nIndexedColumns;
+        indexedExpressions = null;
+        if (hasIndexedExpressions) {
+            nIndexedValues = WritableUtils.readVInt(input);
+            indexedExpressions = Lists.newArrayListWithExpectedSize(nIndexedValues);
+            for (int i = 0; i < nIndexedValues; i++) {
+                Expression expression = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
+                expression.readFields(input);
+                indexedExpressions.add(expression);
+            }
+        }
+        indexedColumnTypes = Lists.newArrayListWithExpectedSize(nIndexedValues);
+        for (int i = 0; i < nIndexedValues; i++) {
             PDataType type = PDataType.values()[WritableUtils.readVInt(input)];
             indexedColumnTypes.add(type);
         }
-        indexedColumnByteSizes = Lists.newArrayListWithExpectedSize(nIndexedColumns);
-        for (int i = 0; i < nIndexedColumns; i++) {
+        indexedColumnByteSizes = Lists.newArrayListWithExpectedSize(nIndexedValues);
+        for (int i = 0; i < nIndexedValues; i++) {
             int byteSize = WritableUtils.readVInt(input);
             indexedColumnByteSizes.add(byteSize == 0 ? null : Integer.valueOf(byteSize));
         }
@@ -534,18 +681,32 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
         // Encode indexWALDisabled in nDataCFs
         indexWALDisabled = nDataCFs < 0;
         this.nDataCFs = Math.abs(nDataCFs) - 1;
+        indexWhere = null;
+        if (hasIndexWhere) {
+            indexWhere = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
+            indexWhere.readFields(input);
+        }
         
         initCachedState();
     }
     
     @Override
     public void write(DataOutput output) throws IOException {
-        WritableUtils.writeVInt(output, nIndexSaltBuckets);
-        WritableUtils.writeVInt(output, indexedColumns.size());
+        // Encode whether or not the index is partial in the sign of nIndexSaltBuckets
+        WritableUtils.writeVInt(output, indexWhere == null ? nIndexSaltBuckets : -(nIndexSaltBuckets + 1));
+        // Encode whether or not there are indexed expressions in the sign of nIndexedColumns
+        WritableUtils.writeVInt(output, indexedExpressions == null ? indexedColumns.size() : -(indexedColumns.size() + 1));
         for (ColumnReference ref : indexedColumns) {
             Bytes.writeByteArray(output, ref.getFamily());
             Bytes.writeByteArray(output, ref.getQualifier());
         }
+        if (indexedExpressions != null) {
+            WritableUtils.writeVInt(output, indexedExpressions.size());
+            for (Expression expression : indexedExpressions) {
+                WritableUtils.writeVInt(output, ExpressionType.valueOf(expression).ordinal());
+                expression.write(output);
+            }
+        }
         for (int i = 0; i < indexedColumnTypes.size(); i++) {
             PDataType type = indexedColumnTypes.get(i);
             WritableUtils.writeVInt(output, type.ordinal());
@@ -567,6 +728,10 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
         rowKeyMetaData.write(output);
         // Encode indexWALDisabled in nDataCFs
         WritableUtils.writeVInt(output, (nDataCFs + 1) * (indexWALDisabled ? -1 : 1));
+        if (indexWhere != null) {
+            WritableUtils.writeVInt(output, ExpressionType.valueOf(indexWhere).ordinal());
+            indexWhere.write(output);
+        }
     }
 
     private int estimateIndexRowKeyByteSize() {
@@ -592,9 +757,21 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
         }
         estimatedIndexRowKeyBytes = estimateIndexRowKeyByteSize();
 
-        this.allColumns = Sets.newLinkedHashSetWithExpectedSize(indexedColumns.size() + coveredColumns.size());
+        indexWhereColumns = Sets.newLinkedHashSet();
+        if (indexWhere != null) {
+            // Track the columns referenced by the WHERE clause, as whether the row is indexed changes when they change
+            indexWhere.accept(new KeyValueExpressionVisitor() {
+                @Override
+                public Void visit(KeyValueColumnExpression expression) {
+                    indexWhereColumns.add(new ColumnReference(expression.getColumnFamily(), expression.getColumnName()));
+                    return null;
+                }
+            });
+        }
+        this.allColumns = Sets.newLinkedHashSetWithExpectedSize(indexedColumns.size() + coveredColumns.size() + indexWhereColumns.size());
         allColumns.addAll(indexedColumns);
         allColumns.addAll(coveredColumns);
+        allColumns.addAll(indexWhereColumns);
         
         int dataPkOffset = isDataTableSalted ? 1 : 0;
         int nIndexPkColumns = getIndexPkColumnCount();
@@ -636,7 +813,7 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     }
 
     private int getIndexPkColumnCount() {
-        return dataRowKeySchema.getFieldCount() + indexedColumns.size() - (isDataTableSalted ? 1 : 0);
+        return dataRowKeySchema.getFieldCount() + indexedColumnTypes.size() - (isDataTableSalted ? 1 : 0);
     }
     
     private RowKeyMetaData newRowKeyMetaData() {
@@ -656,6 +833,11 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
             size += WritableUtils.getVIntSize(ref.getQualifier().length);
             size += ref.getQualifier().length;
         }
+        if (indexedExpressions != null) {
+            // Rough estimate, as the buffer will grow if necessary
+            size += WritableUtils.getVIntSize(indexedExpressions.size());
+            size += indexedExpressions.size() * ESTIMATED_EXPRESSION_BYTE_SIZE;
+        }
         size += indexedColumnTypes.size();
         size += indexedColumnByteSizes.size();
         size += WritableUtils.getVIntSize(coveredColumns.size());
@@ -669,6 +851,9 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
         size += rowKeyMetaData.getByteSize();
         size += dataEmptyKeyValueCF.length + + WritableUtils.getVIntSize(dataEmptyKeyValueCF.length);
         size += WritableUtils.getVIntSize(nDataCFs+1);
+        if (indexWhere != null) {
+            size += ESTIMATED_EXPRESSION_BYTE_SIZE;
+        }
         return size;
     }
     
@@ -714,6 +899,7 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     }
     
     private static int BYTE_OFFSET = 127;
+    private static final int ESTIMATED_EXPRESSION_BYTE_SIZE = 32;
     
     private class ByteSizeRowKeyMetaData extends RowKeyMetaData {
         private byte[] indexPkPosition;
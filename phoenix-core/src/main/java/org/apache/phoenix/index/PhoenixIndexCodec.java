@@ -132,10 +132,14 @@ public class PhoenixIndexCodec extends BaseIndexCodec {
             ValueGetter valueGetter = IndexManagementUtil.createGetterFromScanner(scanner, dataRowKey);
             ptr.set(dataRowKey);
             Put put = maintainer.buildUpdateMutation(valueGetter, ptr, state.getCurrentTimestamp());
-            indexUpdate.setTable(maintainer.getIndexTableName());
-            indexUpdate.setUpdate(put);
             //make sure we close the scanner when we are done
             scanner.close();
+            // No index row when the data row doesn't satisfy the WHERE clause of a partial index
+            if (put == null) {
+                continue;
+            }
+            indexUpdate.setTable(maintainer.getIndexTableName());
+            indexUpdate.setUpdate(put);
             indexUpdates.add(indexUpdate);
         }
         return indexUpdates;
@@ -163,6 +167,9 @@ public class PhoenixIndexCodec extends BaseIndexCodec {
                 maintainer.buildDeleteMutation(valueGetter, ptr, state.getPendingUpdate(),
                   state.getCurrentTimestamp());
             scanner.close();
+            if (delete == null) {
+                continue;
+            }
             indexUpdate.setUpdate(delete);
             indexUpdates.add(indexUpdate);
         }
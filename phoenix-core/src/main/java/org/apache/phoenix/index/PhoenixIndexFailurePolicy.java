@@ -30,7 +30,6 @@ import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.Stoppable;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Mutation;
-import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 
 import com.google.common.collect.Multimap;
@@ -40,7 +39,7 @@ import org.apache.phoenix.coprocessor.MetaDataProtocol;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MutationCode;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
-import org.apache.phoenix.schema.PIndexState;
+import org.apache.phoenix.util.IndexUtil;
 import org.apache.phoenix.util.SchemaUtil;
 
 /**
@@ -78,10 +77,7 @@ public class PhoenixIndexFailurePolicy extends  KillServerOnFailurePolicy {
                 byte[] indexTableKey = SchemaUtil.getTableKeyFromFullName(indexTableName);
                 HTableInterface systemTable = env.getTable(PhoenixDatabaseMetaData.TYPE_TABLE_NAME_BYTES);
                 MetaDataProtocol mdProxy = systemTable.coprocessorProxy(MetaDataProtocol.class, indexTableKey);
-                // Mimic the Put that gets generated by the client on an update of the index state
-                Put put = new Put(indexTableKey);
-                put.add(PhoenixDatabaseMetaData.TABLE_FAMILY_BYTES, PhoenixDatabaseMetaData.INDEX_STATE_BYTES, PIndexState.DISABLE.getSerializedBytes());
-                List<Mutation> tableMetadata = Collections.<Mutation>singletonList(put);
+                List<Mutation> tableMetadata = Collections.singletonList(IndexUtil.newDisableIndexMutation(indexTableName, attempted.get(ref)));
                 MetaDataMutationResult result = mdProxy.updateIndexState(tableMetadata);
                 if (result.getMutationCode() != MutationCode.TABLE_ALREADY_EXISTS) {
                     LOG.warn("Attempt to disable index " + indexTableName + " failed with code = " + result.getMutationCode() + ". Will use default failure policy instead.");
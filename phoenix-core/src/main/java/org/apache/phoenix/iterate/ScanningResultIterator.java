@@ -27,12 +27,15 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 
 import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.RowBatch;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ServerUtil;
 
 
 public class ScanningResultIterator implements ResultIterator {
     private final ResultScanner scanner;
+    private RowBatch batch;
+    private int batchIndex;
     
     public ScanningResultIterator(ResultScanner scanner) {
         this.scanner = scanner;
@@ -46,10 +49,21 @@ public class ScanningResultIterator implements ResultIterator {
     @Override
     public Tuple next() throws SQLException {
         try {
+            if (batch != null && batchIndex < batch.size()) {
+                return batch.getRow(batchIndex++);
+            }
             Result result = scanner.next();
+            if (result == null) {
+                return null;
+            }
+            if (RowBatch.isRowBatch(result)) {
+                batch = new RowBatch(result.raw()[0]);
+                batchIndex = 1;
+                return batch.getRow(0);
+            }
             // TODO: use ResultTuple.setResult(result)
             // Need to create a new one if holding on to it (i.e. OrderedResultIterator)
-            return result == null ? null : new ResultTuple(result);
+            return new ResultTuple(result);
         } catch (IOException e) {
             throw ServerUtil.parseServerException(e);
         }
@@ -177,6 +177,10 @@ public class PhoenixDatabaseMetaData implements DatabaseMetaData, org.apache.pho
     public static final byte[] VIEW_TYPE_BYTES = Bytes.toBytes(VIEW_TYPE);
     public static final String LINK_TYPE = "LINK_TYPE";
     public static final byte[] LINK_TYPE_BYTES = Bytes.toBytes(LINK_TYPE);
+    public static final String INDEX_DISABLE_TIMESTAMP = "INDEX_DISABLE_TIMESTAMP";
+    public static final byte[] INDEX_DISABLE_TIMESTAMP_BYTES = Bytes.toBytes(INDEX_DISABLE_TIMESTAMP);
+    public static final String INDEX_WHERE = "INDEX_WHERE";
+    public static final byte[] INDEX_WHERE_BYTES = Bytes.toBytes(INDEX_WHERE);
     public static final String ARRAY_SIZE = "ARRAY_SIZE";
     public static final byte[] ARRAY_SIZE_BYTES = Bytes.toBytes(ARRAY_SIZE);
 
@@ -198,6 +202,22 @@ public class PhoenixDatabaseMetaData implements DatabaseMetaData, org.apache.pho
     public static final String CACHE_SIZE = "CACHE_SIZE";
     public static final byte[] CACHE_SIZE_BYTES = Bytes.toBytes(CACHE_SIZE);
     
+    public static final String TYPE_INDEX_BUILD = "INDEX_BUILD";
+    public static final byte[] INDEX_BUILD_FAMILY_BYTES = QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES;
+    public static final String INDEX_BUILD_TABLE_NAME = TYPE_SCHEMA + ".\"" + TYPE_INDEX_BUILD + "\"";
+    public static final byte[] INDEX_BUILD_TABLE_NAME_BYTES = SchemaUtil.getTableNameAsBytes(TYPE_SCHEMA, TYPE_INDEX_BUILD);
+    public static final String START_KEY = "START_KEY";
+    public static final String END_KEY = "END_KEY";
+    public static final byte[] END_KEY_BYTES = Bytes.toBytes(END_KEY);
+    public static final String LAST_KEY = "LAST_KEY";
+    public static final byte[] LAST_KEY_BYTES = Bytes.toBytes(LAST_KEY);
+    public static final String BUILD_TIMESTAMP = "BUILD_TIMESTAMP";
+    public static final byte[] BUILD_TIMESTAMP_BYTES = Bytes.toBytes(BUILD_TIMESTAMP);
+    public static final String ROW_COUNT = "ROW_COUNT";
+    public static final byte[] ROW_COUNT_BYTES = Bytes.toBytes(ROW_COUNT);
+    public static final String IS_COMPLETE = "IS_COMPLETE";
+    public static final byte[] IS_COMPLETE_BYTES = Bytes.toBytes(IS_COMPLETE);
+    
     private final PhoenixConnection connection;
     private final ResultSet emptyResultSet;
 
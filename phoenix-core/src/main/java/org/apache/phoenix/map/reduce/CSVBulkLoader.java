@@ -30,6 +30,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.cli.CommandLine;
@@ -42,8 +44,6 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.HTable;
-import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat;
 import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.hbase.regionserver.metrics.SchemaMetrics;
 import org.apache.hadoop.mapreduce.Job;
@@ -51,9 +51,12 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
+import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
+import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.map.reduce.util.ConfigReader;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.SchemaUtil;
 import org.apache.phoenix.util.StringUtil;
@@ -104,7 +107,7 @@ public class CSVBulkLoader {
 	 * -mr		MapReduce Job Tracker IP:<port>
 	 * -hd		HDFS NameNode IP:<port>
 	 * -o		Output directory path in hdfs (Optional)
-	 * -idx  	Phoenix index table name (Optional)
+	 * -idx  	Phoenix index table name, to only generate the HFiles of this index (Optional, defaults to all the indexes)
 	 * -error    	Ignore error while reading rows from CSV ? (1 - YES/0 - NO, defaults to 1) (OPtional)
 	 * -help	Print all options (Optional)
 	 */
@@ -214,8 +217,10 @@ public class CSVBulkLoader {
         else
             dataTable = SchemaUtil.normalizeIdentifier(tableName);
         
+        List<String> outputTables = null;
         try {
             validateTable();
+            outputTables = getOutputTables(dataTable);
         } catch (SQLException e) {
             System.err.println(e.getMessage());
             System.exit(0);
@@ -234,22 +239,34 @@ public class CSVBulkLoader {
 		FileOutputFormat.setOutputPath(job, outPath);
 		
 		job.setMapperClass(MapReduceJob.PhoenixMapper.class);
-		job.setMapOutputKeyClass(ImmutableBytesWritable.class);
+		job.setMapOutputKeyClass(TableRowkeyPair.class);
 		job.setMapOutputValueClass(KeyValue.class);
 		
 		SchemaMetrics.configureGlobally(conf);
 
-		HTable hDataTable = new HTable(conf, dataTable);
+		List<HTable> hTables = Lists.newArrayListWithExpectedSize(outputTables.size());
+		for(String outputTable : outputTables){
+			hTables.add(new HTable(conf, outputTable));
+		}
 		
-		// Auto configure partitioner and reducer according to the Main Data table
-    	HFileOutputFormat.configureIncrementalLoad(job, hDataTable);
+		// Auto configure partitioner and reducer according to the regions of the data table and its indexes
+		MultiHFileOutputFormat.configureIncrementalLoad(job, hTables);
 
-		job.waitForCompletion(true);
+		if(!job.waitForCompletion(true)){
+			System.err.println("The bulk import job failed, nothing was loaded");
+			System.exit(1);
+		}
 	    
 		log("[TS - M-R HFile generated..Now dumping to HBase] :: " + new Date() + "\n");
 		
-    		LoadIncrementalHFiles loader = new LoadIncrementalHFiles(conf);
-    		loader.doBulkLoad(new Path(outFile), hDataTable);
+		// Load the indexes before the data table, so that the data rows never show up without their index rows
+		LoadIncrementalHFiles loader = new LoadIncrementalHFiles(conf);
+		for(int i = hTables.size() - 1; i >= 0; i--){
+			Path tablePath = MultiHFileOutputFormat.getTableOutputPath(outPath, outputTables.get(i));
+			if(fs.exists(tablePath)){
+				loader.doBulkLoad(tablePath, hTables.get(i));
+			}
+		}
 	    
 		log("[TS - FINISH] :: " + new Date() + "\n");
 		if(isDebug) bw.close();
@@ -312,6 +329,34 @@ public class CSVBulkLoader {
         }
     }
     
+	/**
+	 * Get the physical names of the tables whose HFiles are generated: the data table first,
+	 * followed by its enabled indexes, or only the one given through -idx.
+	 * @throws SQLException if the table or the requested index can't be found
+	 */
+	private static List<String> getOutputTables(String dataTable) throws SQLException {
+		List<String> tables = Lists.newArrayList();
+		Connection conn = DriverManager.getConnection(getUrl());
+		try {
+			PTable table = PhoenixRuntime.getTable(conn, dataTable);
+			tables.add(table.getPhysicalName().getString());
+			String indexName = idxTable == null || idxTable.trim().length() == 0 ? null : SchemaUtil.normalizeIdentifier(idxTable);
+			Iterator<PTable> indexes = IndexMaintainer.nonDisabledIndexIterator(table.getIndexes().iterator());
+			while (indexes.hasNext()) {
+				PTable index = indexes.next();
+				if (indexName == null || indexName.equals(index.getTableName().getString())) {
+					tables.add(index.getPhysicalName().getString());
+				}
+			}
+			if (indexName != null && tables.size() == 1) {
+				throw new SQLException("CSV Bulk Loader error: No enabled index " + indexName + " on table " + dataTable);
+			}
+		} finally {
+			conn.close();
+		}
+		return tables;
+	}
+	
 	private static String getUrl() {
         	return PhoenixRuntime.JDBC_PROTOCOL + PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR + zookeeperIP;
     	}
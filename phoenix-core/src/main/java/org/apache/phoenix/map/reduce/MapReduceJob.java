@@ -33,24 +33,32 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import au.com.bytecode.opencsv.CSVReader;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hbase.KeyValue;
-import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
+import com.google.common.collect.Sets;
+
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.IllegalDataException;
 import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.util.CSVRowEncoder;
+import org.apache.phoenix.util.CSVTokenizer;
 import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.SchemaUtil;
 
 public class MapReduceJob {
 
-	public static class PhoenixMapper extends Mapper<LongWritable, Text, ImmutableBytesWritable, KeyValue>{
+	public static class PhoenixMapper extends Mapper<LongWritable, Text, TableRowkeyPair, KeyValue>{
 		
 		private Connection conn_zk 	= null;
 		private PreparedStatement[] stmtCache;
@@ -59,6 +67,11 @@ public class MapReduceJob {
 		Map<Integer, Integer> colDetails = new LinkedHashMap<Integer, Integer>();
 		boolean ignoreUpsertError = true;
 		private String zookeeperIP;
+		//The data table and the index tables whose HFiles are being generated
+		private Set<String> outputTables;
+		//Encodes the CSV fields straight from the bytes of the line, when the table supports it
+		private CSVRowEncoder encoder;
+		private final CSVTokenizer tokenizer = new CSVTokenizer();
 		
 		/**
 		 * Get the phoenix jdbc connection.
@@ -87,15 +100,20 @@ public class MapReduceJob {
 				schemaName			= context.getConfiguration().get("schemaName");
 				tableName 			= context.getConfiguration().get("tableName");
 				ignoreUpsertError 	= context.getConfiguration().get("IGNORE.INVALID.ROW").equalsIgnoreCase("0") ? false : true;
+				outputTables		= Sets.newHashSet(context.getConfiguration().getStrings(MultiTableTotalOrderPartitioner.TABLES_CONF_KEY, new String[0]));
 				
 				//Get the resultset from the actual zookeeper connection. Connectionless mode throws "UnSupportedOperation" exception for this
 				ResultSet rs 		= conn_zk.getMetaData().getColumns(null, schemaName, tableName, null);
 				//This map holds the key-value pair of col-position and its data type
 				int i = 1;
+				List<String> columnNames = new ArrayList<String>();
 				while(rs.next()){
 					colDetails.put(i, rs.getInt(QueryUtil.DATA_TYPE_POSITION));
+					columnNames.add(rs.getString(QueryUtil.COLUMN_NAME_POSITION));
 					i++;
 				}
+				String fullTableName = SchemaUtil.getTableName(schemaName == null ? null : SchemaUtil.normalizeIdentifier(schemaName), SchemaUtil.normalizeIdentifier(tableName));
+				encoder = CSVRowEncoder.newInstance(conn_zk.unwrap(PhoenixConnection.class), fullTableName, columnNames);
 				
 				stmtCache = new PreparedStatement[colDetails.size()];
 				ArrayList<String> cols = new ArrayList<String>();
@@ -125,14 +143,69 @@ public class MapReduceJob {
 		/* Tokenize the text input line based on the "," delimeter.
 		*  TypeCast the token based on the col-data-type using the convertTypeSpecificValue API below.
 		*  Upsert the data. DO NOT COMMIT.
-		*  Use Phoenix's getUncommittedDataIterator API to parse the uncommited data to KeyValue pairs.
-		*  Emit the row-key and KeyValue pairs from Mapper to allow sorting based on row-key.
+		*  Use Phoenix's getUncommittedDataIterator API to parse the uncommited data to KeyValue pairs,
+		*  including the rows of the index tables, built through their IndexMaintainer.
+		*  Emit the table name, row-key and KeyValue pairs from Mapper to allow sorting based on table and row-key.
 		*  Finally, do connection.rollback( to preserve table state).
 		*/
 		
 		@Override
 		public void map(LongWritable key, Text line, Context context) throws IOException, InterruptedException{
 			
+			if(encoder != null){
+				encodeLine(line);
+			}else{
+				upsertLine(line);
+			}
+			
+			Iterator<Pair<byte[],List<KeyValue>>> dataIterator = null;
+			try {
+				dataIterator = PhoenixRuntime.getUncommittedDataIterator(conn_zk, true);
+			} catch (SQLException e) {
+				System.err.println("Failed to retrieve the data iterator for Phoenix table :: " + e.getMessage());
+			}
+			
+			while(dataIterator != null && dataIterator.hasNext()){
+				Pair<byte[],List<KeyValue>> row = dataIterator.next();
+				//Skip the index tables that were not selected for loading
+				if(!outputTables.contains(Bytes.toString(row.getFirst()))){
+					continue;
+				}
+				for(KeyValue kv : row.getSecond()){
+					context.write(new TableRowkeyPair(row.getFirst(), kv.getRow()), kv);
+				}
+			}
+			
+			try {
+			    conn_zk.rollback();
+			} catch (SQLException e) {
+				System.err.println("Transaction rollback failed.");
+			}
+		}
+		
+		/*
+		* Tokenize the line and encode its fields into the row key and column values of the table,
+		* without going through Strings and the upsert statement.
+		*/
+		
+		private void encodeLine(Text line) throws InterruptedException {
+			try {
+				if(!tokenizer.tokenize(line.getBytes(), 0, line.getLength())){
+					throw new IllegalDataException("Unterminated quoted field");
+				}
+				encoder.addRow(tokenizer);
+				encoder.flush();
+			} catch (SQLException e) {
+				System.err.println("Failed to upsert data in the Phoenix :: " + e.getMessage());
+				if(!ignoreUpsertError){
+					throw (new InterruptedException(e.getMessage()));
+				}
+			} catch (Exception e) {
+				System.err.println("Failed to upsert data in the Phoenix :: " + e.getMessage());
+			}
+		}
+		
+		private void upsertLine(Text line) throws IOException, InterruptedException {
 			CSVReader reader = new CSVReader(new InputStreamReader(new ByteArrayInputStream(line.toString().getBytes())), ',');			
 			try {
 				String[] tokens = reader.readNext();
@@ -161,26 +234,6 @@ public class MapReduceJob {
 			}finally {
 				reader.close();
        			} 
-			
-			Iterator<Pair<byte[],List<KeyValue>>> dataIterator = null;
-			try {
-				dataIterator = PhoenixRuntime.getUncommittedDataIterator(conn_zk);
-			} catch (SQLException e) {
-				System.err.println("Failed to retrieve the data iterator for Phoenix table :: " + e.getMessage());
-			}
-			
-			while(dataIterator != null && dataIterator.hasNext()){
-				Pair<byte[],List<KeyValue>> row = dataIterator.next();
-				for(KeyValue kv : row.getSecond()){
-					context.write(new ImmutableBytesWritable(kv.getRow()), kv);
-				}
-			}
-			
-			try {
-			    conn_zk.rollback();
-			} catch (SQLException e) {
-				System.err.println("Transaction rollback failed.");
-			}
 		}
 		
 		/*
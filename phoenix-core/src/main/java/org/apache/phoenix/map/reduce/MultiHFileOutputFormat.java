@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.map.reduce;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.io.hfile.AbstractHFileWriter;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.Compression;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * Writes the HFiles of several tables in a single job, so that a data table and its
+ * indexes are loaded from the same input. The HFiles of each table are written to
+ * <output dir>/<table name>/<column family>, which can be handed to
+ * {@link org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles} table by table.
+ *
+ * Like {@link org.apache.hadoop.hbase.mapreduce.HFileOutputFormat}, each reducer is
+ * expected to receive the sorted rows of a single region, which is what
+ * {@link #configureIncrementalLoad(Job, List)} sets up.
+ *
+ *
+ * @since 3.0.0
+ */
+public class MultiHFileOutputFormat extends FileOutputFormat<TableRowkeyPair, KeyValue> {
+    private static final String COMPRESSION_CONF_KEY_PREFIX = "phoenix.mapreduce.hfile.compression.";
+    private static final String BLOOM_TYPE_CONF_KEY_PREFIX = "phoenix.mapreduce.hfile.bloomtype.";
+    private static final String BLOCK_SIZE_CONF_KEY = "hbase.mapreduce.hfileoutputformat.blocksize";
+
+    @Override
+    public RecordWriter<TableRowkeyPair, KeyValue> getRecordWriter(final TaskAttemptContext context) throws IOException, InterruptedException {
+        final Path outputDir = ((FileOutputCommitter)getOutputCommitter(context)).getWorkPath();
+        final Configuration conf = context.getConfiguration();
+        final FileSystem fs = outputDir.getFileSystem(conf);
+        final long maxFileSize = conf.getLong(HConstants.HREGION_MAX_FILESIZE, HConstants.DEFAULT_MAX_FILE_SIZE);
+        final int blockSize = conf.getInt(BLOCK_SIZE_CONF_KEY, HFile.DEFAULT_BLOCKSIZE);
+        // Writing HFiles doesn't need a block cache, so keep the writers from allocating one
+        final Configuration writerConf = new Configuration(conf);
+        writerConf.setFloat("hfile.block.cache.size", 0.0f);
+        final String taskAttemptId = context.getTaskAttemptID().toString();
+
+        return new RecordWriter<TableRowkeyPair, KeyValue>() {
+            private final Map<String, Map<String, String>> compressionByTable = Maps.newHashMap();
+            private final Map<String, Map<String, String>> bloomTypeByTable = Maps.newHashMap();
+            // Writer of each table and column family, keyed by their output directory
+            private final Map<Path, WriterLength> writers = Maps.newHashMap();
+            private byte[] previousRow = HConstants.EMPTY_BYTE_ARRAY;
+            private final byte[] now = Bytes.toBytes(System.currentTimeMillis());
+
+            @Override
+            public void write(TableRowkeyPair key, KeyValue kv) throws IOException {
+                // Flush all the writers, which start new files, when the row changes
+                // and one of them got too big, like HFileOutputFormat does.
+                if (Bytes.compareTo(previousRow, kv.getRow()) != 0) {
+                    for (WriterLength wl : writers.values()) {
+                        if (wl.written >= maxFileSize) {
+                            rollWriters();
+                            break;
+                        }
+                    }
+                }
+                String tableName = Bytes.toString(key.getTableName());
+                byte[] family = kv.getFamily();
+                Path familyDir = new Path(getTableOutputPath(outputDir, tableName), Bytes.toString(family));
+                WriterLength wl = writers.get(familyDir);
+                if (wl == null) {
+                    fs.mkdirs(familyDir);
+                    wl = new WriterLength();
+                    writers.put(familyDir, wl);
+                }
+                if (wl.writer == null) {
+                    wl.writer = getNewWriter(tableName, Bytes.toString(family), familyDir);
+                }
+                kv.updateLatestStamp(now);
+                wl.writer.append(kv);
+                wl.written += kv.getLength();
+                previousRow = kv.getRow();
+            }
+
+            private StoreFile.Writer getNewWriter(String tableName, String family, Path familyDir) throws IOException {
+                String compression = getFamilySettings(compressionByTable, COMPRESSION_CONF_KEY_PREFIX, tableName).get(family);
+                String bloomType = getFamilySettings(bloomTypeByTable, BLOOM_TYPE_CONF_KEY_PREFIX, tableName).get(family);
+                return new StoreFile.WriterBuilder(writerConf, new CacheConfig(writerConf), fs, blockSize)
+                        .withOutputDir(familyDir)
+                        .withCompression(compression == null ? Compression.Algorithm.NONE : AbstractHFileWriter.compressionByName(compression))
+                        .withBloomType(bloomType == null ? StoreFile.BloomType.NONE : StoreFile.BloomType.valueOf(bloomType))
+                        .withComparator(KeyValue.COMPARATOR)
+                        .build();
+            }
+
+            private Map<String, String> getFamilySettings(Map<String, Map<String, String>> settingsByTable, String confKeyPrefix, String tableName) throws IOException {
+                Map<String, String> settings = settingsByTable.get(tableName);
+                if (settings == null) {
+                    settings = decodeFamilySettings(conf.get(confKeyPrefix + tableName, ""));
+                    settingsByTable.put(tableName, settings);
+                }
+                return settings;
+            }
+
+            private void rollWriters() throws IOException {
+                for (WriterLength wl : writers.values()) {
+                    if (wl.writer != null) {
+                        close(wl.writer);
+                    }
+                    wl.writer = null;
+                    wl.written = 0;
+                }
+            }
+
+            private void close(StoreFile.Writer w) throws IOException {
+                w.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, now);
+                w.appendFileInfo(StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes(taskAttemptId));
+                w.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(true));
+                w.appendFileInfo(StoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(false));
+                w.appendTrackedTimestampsToMetadata();
+                w.close();
+            }
+
+            @Override
+            public void close(TaskAttemptContext c) throws IOException, InterruptedException {
+                rollWriters();
+            }
+        };
+    }
+
+    private static class WriterLength {
+        private long written = 0;
+        private StoreFile.Writer writer = null;
+    }
+
+    /**
+     * Sorts the KeyValues of each row, as the HFile writers need them in order.
+     */
+    public static class KeyValueSortReducer extends Reducer<TableRowkeyPair, KeyValue, TableRowkeyPair, KeyValue> {
+        @Override
+        protected void reduce(TableRowkeyPair key, Iterable<KeyValue> values, Context context) throws IOException, InterruptedException {
+            TreeSet<KeyValue> sorted = new TreeSet<KeyValue>(KeyValue.COMPARATOR);
+            for (KeyValue kv : values) {
+                // The framework reuses the instance passed in
+                sorted.add(kv.clone());
+            }
+            for (KeyValue kv : sorted) {
+                context.write(key, kv);
+            }
+        }
+    }
+
+    /**
+     * Get the path of the HFiles of a table within the output directory of the job
+     * @param outputDir the output directory of the job
+     * @param tableName the name of the HBase table
+     * @return the directory to bulk load in the table
+     */
+    public static Path getTableOutputPath(Path outputDir, String tableName) {
+        return new Path(outputDir, tableName);
+    }
+
+    /**
+     * Configure the job to write the HFiles of all the given tables: sets up the partitioner
+     * so that each reducer handles a single region of one of the tables, and passes along the
+     * compression and bloom filter settings of their column families.
+     * @param job the job to configure
+     * @param tables the tables being loaded, typically a data table followed by its indexes
+     * @throws IOException if the regions or the descriptor of a table can't be retrieved
+     */
+    public static void configureIncrementalLoad(Job job, List<HTable> tables) throws IOException {
+        Configuration conf = job.getConfiguration();
+        String[] tableNames = new String[tables.size()];
+        byte[][][] startKeys = new byte[tables.size()][][];
+        for (int i = 0; i < tables.size(); i++) {
+            HTable table = tables.get(i);
+            tableNames[i] = Bytes.toString(table.getTableName());
+            startKeys[i] = table.getStartKeys();
+            Map<String, String> compression = Maps.newTreeMap();
+            Map<String, String> bloomType = Maps.newTreeMap();
+            for (HColumnDescriptor family : table.getTableDescriptor().getFamilies()) {
+                compression.put(family.getNameAsString(), family.getCompression().getName());
+                bloomType.put(family.getNameAsString(), family.getBloomFilterType().toString());
+            }
+            conf.set(COMPRESSION_CONF_KEY_PREFIX + tableNames[i], encodeFamilySettings(compression));
+            conf.set(BLOOM_TYPE_CONF_KEY_PREFIX + tableNames[i], encodeFamilySettings(bloomType));
+        }
+        int numPartitions = MultiTableTotalOrderPartitioner.configure(conf, tableNames, startKeys);
+
+        job.setOutputKeyClass(TableRowkeyPair.class);
+        job.setOutputValueClass(KeyValue.class);
+        job.setOutputFormatClass(MultiHFileOutputFormat.class);
+        job.setPartitionerClass(MultiTableTotalOrderPartitioner.class);
+        job.setReducerClass(KeyValueSortReducer.class);
+        job.setNumReduceTasks(numPartitions);
+    }
+
+    private static String encodeFamilySettings(Map<String, String> settings) throws UnsupportedEncodingException {
+        StringBuilder buf = new StringBuilder();
+        for (Map.Entry<String, String> entry : settings.entrySet()) {
+            if (buf.length() > 0) {
+                buf.append('&');
+            }
+            buf.append(URLEncoder.encode(entry.getKey(), "UTF-8"));
+            buf.append('=');
+            buf.append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+        }
+        return buf.toString();
+    }
+
+    private static Map<String, String> decodeFamilySettings(String encoded) throws UnsupportedEncodingException {
+        Map<String, String> settings = Maps.newHashMap();
+        if (encoded.length() == 0) {
+            return settings;
+        }
+        for (String setting : encoded.split("&")) {
+            String[] familyAndValue = setting.split("=");
+            if (familyAndValue.length != 2) {
+                continue;
+            }
+            settings.put(URLDecoder.decode(familyAndValue[0], "UTF-8"), URLDecoder.decode(familyAndValue[1], "UTF-8"));
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.map.reduce;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Base64;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * Total order partitioner over several tables. Each region of each table gets its own
+ * partition, so that each reducer writes the HFiles of a single region. The partitions
+ * of the first table come first, followed by the ones of the second table, and so on.
+ *
+ *
+ * @since 3.0.0
+ */
+public class MultiTableTotalOrderPartitioner extends Partitioner<TableRowkeyPair, KeyValue> implements Configurable {
+    /** Comma separated list of the tables being loaded */
+    public static final String TABLES_CONF_KEY = "phoenix.mapreduce.partitioner.tables";
+    /** Prefix of the comma separated list of Base64 encoded region start keys of each table, excluding the first one */
+    public static final String SPLITS_CONF_KEY_PREFIX = "phoenix.mapreduce.partitioner.splits.";
+
+    private Configuration conf;
+    private final Map<ImmutableBytesWritable, byte[][]> splitsByTable = Maps.newHashMap();
+    private final Map<ImmutableBytesWritable, Integer> offsetsByTable = Maps.newHashMap();
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private int numPartitions;
+
+    /**
+     * Set the tables and their region start keys in the configuration
+     * @param conf the job configuration
+     * @param tableNames the names of the tables being loaded
+     * @param startKeys the region start keys of each table, as returned by HTable#getStartKeys
+     * @return the number of partitions, which is the total number of regions
+     */
+    public static int configure(Configuration conf, String[] tableNames, byte[][][] startKeys) {
+        int numPartitions = 0;
+        for (int i = 0; i < tableNames.length; i++) {
+            StringBuilder buf = new StringBuilder();
+            // The first region starts with the empty key, which doesn't split anything
+            for (int j = 1; j < startKeys[i].length; j++) {
+                if (buf.length() > 0) {
+                    buf.append(',');
+                }
+                buf.append(Base64.encodeBytes(startKeys[i][j], Base64.DONT_BREAK_LINES));
+            }
+            conf.set(SPLITS_CONF_KEY_PREFIX + tableNames[i], buf.toString());
+            numPartitions += Math.max(1, startKeys[i].length);
+        }
+        conf.setStrings(TABLES_CONF_KEY, tableNames);
+        return numPartitions;
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        splitsByTable.clear();
+        offsetsByTable.clear();
+        int offset = 0;
+        for (String tableName : conf.getStrings(TABLES_CONF_KEY, new String[0])) {
+            String[] encodedSplits = conf.getStrings(SPLITS_CONF_KEY_PREFIX + tableName, new String[0]);
+            byte[][] splits = new byte[encodedSplits.length][];
+            for (int i = 0; i < encodedSplits.length; i++) {
+                splits[i] = Base64.decode(encodedSplits[i]);
+            }
+            ImmutableBytesWritable key = new ImmutableBytesWritable(Bytes.toBytes(tableName));
+            splitsByTable.put(key, splits);
+            offsetsByTable.put(key, offset);
+            offset += splits.length + 1;
+        }
+        numPartitions = offset;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public int getPartition(TableRowkeyPair key, KeyValue value, int numReduceTasks) {
+        ptr.set(key.getTableName());
+        byte[][] splits = splitsByTable.get(ptr);
+        if (splits == null) {
+            throw new IllegalArgumentException("Unknown table " + Bytes.toString(key.getTableName()));
+        }
+        int pos = Arrays.binarySearch(splits, key.getRowkey(), Bytes.BYTES_COMPARATOR);
+        // Number of region start keys less than or equal to the row
+        int region = pos < 0 ? -(pos + 1) : pos + 1;
+        int partition = offsetsByTable.get(ptr) + region;
+        // Only happens if the number of reducers was changed from the one we configured
+        return numReduceTasks == numPartitions ? partition : partition % numReduceTasks;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.map.reduce;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ *
+ * Map output key of the bulk loader: the row key along with the name of the table
+ * (the data table or one of its indexes) the row belongs to. Sorts by table and
+ * then by row key, so that the rows of each table reach the reducers in row key order.
+ *
+ *
+ * @since 3.0.0
+ */
+public class TableRowkeyPair implements WritableComparable<TableRowkeyPair> {
+    private byte[] tableName;
+    private byte[] rowkey;
+
+    public TableRowkeyPair() {
+    }
+
+    public TableRowkeyPair(byte[] tableName, byte[] rowkey) {
+        this.tableName = tableName;
+        this.rowkey = rowkey;
+    }
+
+    public byte[] getTableName() {
+        return tableName;
+    }
+
+    public byte[] getRowkey() {
+        return rowkey;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        Bytes.writeByteArray(out, tableName);
+        Bytes.writeByteArray(out, rowkey);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        tableName = Bytes.readByteArray(in);
+        rowkey = Bytes.readByteArray(in);
+    }
+
+    @Override
+    public int compareTo(TableRowkeyPair other) {
+        int c = Bytes.compareTo(tableName, other.tableName);
+        if (c != 0) {
+            return c;
+        }
+        return Bytes.compareTo(rowkey, other.rowkey);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Bytes.hashCode(tableName) + Bytes.hashCode(rowkey);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        TableRowkeyPair other = (TableRowkeyPair)obj;
+        return Bytes.equals(tableName, other.tableName) && Bytes.equals(rowkey, other.rowkey);
+    }
+
+    @Override
+    public String toString() {
+        return Bytes.toString(tableName) + "/" + Bytes.toStringBinary(rowkey);
+    }
+
+    /**
+     * Compares the serialized form of the keys, so the keys don't need to be
+     * deserialized while sorting the map output.
+     */
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(TableRowkeyPair.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                int tableLengthSize1 = WritableUtils.decodeVIntSize(b1[s1]);
+                int tableLength1 = readVInt(b1, s1);
+                int tableLengthSize2 = WritableUtils.decodeVIntSize(b2[s2]);
+                int tableLength2 = readVInt(b2, s2);
+                int c = compareBytes(b1, s1 + tableLengthSize1, tableLength1, b2, s2 + tableLengthSize2, tableLength2);
+                if (c != 0) {
+                    return c;
+                }
+                int rowOffset1 = s1 + tableLengthSize1 + tableLength1;
+                int rowOffset2 = s2 + tableLengthSize2 + tableLength2;
+                int rowLengthSize1 = WritableUtils.decodeVIntSize(b1[rowOffset1]);
+                int rowLength1 = readVInt(b1, rowOffset1);
+                int rowLengthSize2 = WritableUtils.decodeVIntSize(b2[rowOffset2]);
+                int rowLength2 = readVInt(b2, rowOffset2);
+                return compareBytes(b1, rowOffset1 + rowLengthSize1, rowLength1, b2, rowOffset2 + rowLengthSize2, rowLength2);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    static {
+        WritableComparator.define(TableRowkeyPair.class, new Comparator());
+    }
+}
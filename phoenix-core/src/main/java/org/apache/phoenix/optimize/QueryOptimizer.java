@@ -4,17 +4,32 @@ import java.sql.SQLException;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.ColumnResolver;
+import org.apache.phoenix.compile.IndexExpressionCompiler;
 import org.apache.phoenix.compile.IndexStatementRewriter;
 import org.apache.phoenix.compile.QueryCompiler;
 import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.execute.IndexJoinBackPlan;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.iterate.ParallelIterators.ParallelIteratorFactory;
+import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.AliasedNode;
+import org.apache.phoenix.parse.AndParseNode;
+import org.apache.phoenix.parse.ColumnParseNode;
 import org.apache.phoenix.parse.HintNode;
 import org.apache.phoenix.parse.HintNode.Hint;
+import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.ParseNodeFactory;
 import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.StatelessTraverseAllParseNodeVisitor;
 import org.apache.phoenix.parse.TableNode;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
@@ -24,8 +39,11 @@ import org.apache.phoenix.schema.PDatum;
 import org.apache.phoenix.schema.PIndexState;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.util.IndexUtil;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class QueryOptimizer {
     private static final ParseNodeFactory FACTORY = new ParseNodeFactory();
@@ -74,18 +92,18 @@ public class QueryOptimizer {
         SelectStatement translatedIndexSelect = IndexStatementRewriter.translate(select, dataPlan.getContext().getResolver());
         List<QueryPlan> plans = Lists.newArrayListWithExpectedSize(1 + indexes.size());
         plans.add(dataPlan);
-        QueryPlan hintedPlan = getHintedQueryPlan(statement, translatedIndexSelect, indexes, targetColumns, parallelIteratorFactory, plans);
+        QueryPlan hintedPlan = getHintedQueryPlan(statement, select, translatedIndexSelect, indexes, targetColumns, parallelIteratorFactory, plans);
         if (hintedPlan != null) {
             return hintedPlan;
         }
         for (PTable index : indexes) {
-            addPlan(statement, translatedIndexSelect, index, targetColumns, parallelIteratorFactory, plans);
+            addPlan(statement, select, translatedIndexSelect, index, targetColumns, parallelIteratorFactory, plans, false);
         }
         
         return chooseBestPlan(select, plans);
     }
     
-    private static QueryPlan getHintedQueryPlan(PhoenixStatement statement, SelectStatement select, List<PTable> indexes, List<? extends PDatum> targetColumns, ParallelIteratorFactory parallelIteratorFactory, List<QueryPlan> plans) throws SQLException {
+    private static QueryPlan getHintedQueryPlan(PhoenixStatement statement, SelectStatement select, SelectStatement translatedIndexSelect, List<PTable> indexes, List<? extends PDatum> targetColumns, ParallelIteratorFactory parallelIteratorFactory, List<QueryPlan> plans) throws SQLException {
         QueryPlan dataPlan = plans.get(0);
         String indexHint = select.getHint().getHint(Hint.INDEX);
         if (indexHint == null) {
@@ -120,7 +138,7 @@ public class QueryOptimizer {
                 int indexPos = getIndexPosition(indexes, indexName);
                 if (indexPos >= 0) {
                     // Hinted index is applicable, so return it. It'll be the plan at position 1, after the data plan
-                    if (addPlan(statement, select, indexes.get(indexPos), targetColumns, parallelIteratorFactory, plans)) {
+                    if (addPlan(statement, select, translatedIndexSelect, indexes.get(indexPos), targetColumns, parallelIteratorFactory, plans, true)) {
                         return plans.get(1);
                     }
                     indexes.remove(indexPos);
@@ -140,17 +158,25 @@ public class QueryOptimizer {
         return -1;
     }
     
-    private static boolean addPlan(PhoenixStatement statement, SelectStatement select, PTable index, List<? extends PDatum> targetColumns, ParallelIteratorFactory parallelIteratorFactory, List<QueryPlan> plans) throws SQLException {
+    private static boolean addPlan(PhoenixStatement statement, SelectStatement select, SelectStatement translatedIndexSelect, PTable index, List<? extends PDatum> targetColumns, ParallelIteratorFactory parallelIteratorFactory, List<QueryPlan> plans, boolean isHinted) throws SQLException {
         QueryPlan dataPlan = plans.get(0);
         int nColumns = dataPlan.getProjector().getColumnCount();
         String alias = '"' + dataPlan.getTableRef().getTableAlias() + '"'; // double quote in case it's case sensitive
         String schemaName = dataPlan.getTableRef().getTable().getSchemaName().getString();
         schemaName = schemaName.length() == 0 ? null :  '"' + schemaName + '"';
 
+        // A partial index may only be used if every row selected by the query is indexed
+        if (index.getIndexWhere() != null && !isIndexWhereImplied(statement, select, dataPlan, index)) {
+            return false;
+        }
         String tableName = '"' + index.getTableName().getString() + '"';
         List<? extends TableNode> tables = Collections.singletonList(FACTORY.namedTable(alias, FACTORY.table(schemaName, tableName)));
         try {
-            SelectStatement indexSelect = FACTORY.select(select, tables);            
+            // Expressions in the query that are indexed by the index are translated to index column references as well
+            if (IndexUtil.hasIndexedExpression(index)) {
+                translatedIndexSelect = IndexStatementRewriter.translate(select, dataPlan.getContext().getResolver(), index, statement.getConnection());
+            }
+            SelectStatement indexSelect = FACTORY.select(translatedIndexSelect, tables);            
             QueryCompiler compiler = new QueryCompiler(statement, targetColumns, parallelIteratorFactory);
             QueryPlan plan = compiler.compile(indexSelect);
             // Checking the index status and number of columns handles the wildcard cases correctly
@@ -161,28 +187,168 @@ public class QueryOptimizer {
             }
         } catch (ColumnNotFoundException e) {
             /* Means that a column is being used that's not in our index.
-             * Since we currently don't keep stats, we don't know the selectivity of the index.
-             * For now, we just don't use this index (as opposed to trying to join back from
-             * the index table to the data table.
+             * Use the index to find the matching data rows and join back to the data table
+             * to get the other columns, if the index narrows down the rows to look at.
              */
+            if (parallelIteratorFactory == null) {
+                return addJoinBackPlan(statement, select, index, tables, targetColumns, plans, isHinted);
+            }
         }
         return false;
     }
     
+    /**
+     * Add a plan that scans the index to find the row keys of the data rows matching the conjuncts of
+     * the WHERE clause that only reference indexed columns, and then does a skip scan over the data table
+     * on these row keys. Since we don't keep stats, the plan is only considered if the scan over the
+     * index is narrowed by its row key, unless the index is hinted.
+     */
+    private static boolean addJoinBackPlan(PhoenixStatement statement, SelectStatement select, PTable index, List<? extends TableNode> tables, List<? extends PDatum> targetColumns, List<QueryPlan> plans, boolean isHinted) throws SQLException {
+        QueryPlan dataPlan = plans.get(0);
+        PTable dataTable = dataPlan.getTableRef().getTable();
+        PhoenixConnection connection = statement.getConnection();
+        if (select.getWhere() == null || (dataTable.isMultiTenant() && connection.getTenantId() != null)) {
+            return false;
+        }
+        ColumnResolver dataResolver = dataPlan.getContext().getResolver();
+        List<ParseNode> conjuncts = Lists.newArrayList();
+        addConjuncts(select.getWhere(), conjuncts);
+        List<ParseNode> indexConjuncts = Lists.newArrayListWithExpectedSize(conjuncts.size());
+        for (ParseNode conjunct : conjuncts) {
+            IndexedColumnsVisitor visitor = new IndexedColumnsVisitor(dataResolver, index);
+            conjunct.accept(visitor);
+            if (visitor.isIndexed()) {
+                indexConjuncts.add(conjunct);
+            }
+        }
+        if (indexConjuncts.isEmpty()) {
+            return false;
+        }
+        List<PColumn> pkColumns = dataTable.getPKColumns();
+        pkColumns = pkColumns.subList(dataTable.getBucketNum() == null ? 0 : 1, pkColumns.size());
+        List<ParseNode> pkColumnNodes = Lists.newArrayListWithExpectedSize(pkColumns.size());
+        List<AliasedNode> pkSelect = Lists.newArrayListWithExpectedSize(pkColumns.size());
+        for (PColumn pkColumn : pkColumns) {
+            ParseNode pkColumnNode = FACTORY.column(null, '"' + pkColumn.getName().getString() + '"', null);
+            pkColumnNodes.add(pkColumnNode);
+            pkSelect.add(FACTORY.aliasedNode(null, pkColumnNode));
+        }
+        int maxKeys = connection.getQueryServices().getProps().getInt(QueryServices.INDEX_JOIN_BACK_MAX_KEYS_ATTRIB, QueryServicesOptions.DEFAULT_INDEX_JOIN_BACK_MAX_KEYS);
+        // Stop the scan over the index as soon as we know it finds too many rows
+        SelectStatement keySelect = FACTORY.select(select.getFrom(), select.getHint(), false, pkSelect, 
+                indexConjuncts.size() == 1 ? indexConjuncts.get(0) : FACTORY.and(indexConjuncts), 
+                null, null, null, FACTORY.limit(FACTORY.literal(maxKeys + 1)), select.getBindCount(), false);
+        try {
+            SelectStatement translatedKeySelect = IndexUtil.hasIndexedExpression(index)
+                    ? IndexStatementRewriter.translate(keySelect, dataResolver, index, connection)
+                    : IndexStatementRewriter.translate(keySelect, dataResolver);
+            QueryCompiler compiler = new QueryCompiler(statement);
+            QueryPlan indexPlan = compiler.compile(FACTORY.select(translatedKeySelect, tables));
+            if (indexPlan.getTableRef().getTable().getIndexState() != PIndexState.ACTIVE
+                    || (!isHinted && indexPlan.getContext().getScanRanges().isEverything())) {
+                return false;
+            }
+            ParseNode pkNode = pkColumnNodes.size() == 1 ? pkColumnNodes.get(0) : FACTORY.rowValueConstructor(pkColumnNodes);
+            plans.add(new IndexJoinBackPlan(statement, select, targetColumns, dataPlan, indexPlan, pkColumns, pkNode, maxKeys));
+            return true;
+        } catch (ColumnNotFoundException e) {
+            // An indexed expression isn't in the index after all
+        }
+        return false;
+    }
+    
+    /**
+     * Visitor that determines whether all the columns referenced by an expression are in an index.
+     */
+    private static class IndexedColumnsVisitor extends StatelessTraverseAllParseNodeVisitor {
+        private final ColumnResolver dataResolver;
+        private final PTable index;
+        private boolean isIndexed = true;
+        
+        private IndexedColumnsVisitor(ColumnResolver dataResolver, PTable index) {
+            this.dataResolver = dataResolver;
+            this.index = index;
+        }
+        
+        public boolean isIndexed() {
+            return isIndexed;
+        }
+        
+        @Override
+        public Void visit(ColumnParseNode node) throws SQLException {
+            PColumn column = dataResolver.resolveColumn(node.getSchemaName(), node.getTableName(), node.getName()).getColumn();
+            try {
+                index.getColumn(IndexUtil.getIndexColumnName(column));
+            } catch (ColumnNotFoundException e) {
+                isIndexed = false;
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Determine whether the WHERE clause of the query implies the WHERE clause of a partial index.
+     * This is the case when each conjunct of the index WHERE clause, once compiled, is equal to a
+     * conjunct of the query WHERE clause.
+     */
+    private static boolean isIndexWhereImplied(PhoenixStatement statement, SelectStatement select, QueryPlan dataPlan, PTable index) throws SQLException {
+        if (select.getWhere() == null) {
+            return false;
+        }
+        PhoenixConnection connection = statement.getConnection();
+        IndexExpressionCompiler queryCompiler = new IndexExpressionCompiler(connection, dataPlan.getContext().getResolver());
+        List<ParseNode> queryNodes = Lists.newArrayList();
+        addConjuncts(select.getWhere(), queryNodes);
+        Set<Expression> queryConjuncts = Sets.newHashSetWithExpectedSize(queryNodes.size());
+        for (ParseNode node : queryNodes) {
+            try {
+                queryConjuncts.add(queryCompiler.compile(node));
+            } catch (SQLException e) {
+                // Not an expression that could be part of an index WHERE clause
+            }
+        }
+        IndexExpressionCompiler indexCompiler = new IndexExpressionCompiler(connection, dataPlan.getTableRef().getTable());
+        List<Expression> indexConjuncts = Lists.newArrayList();
+        addConjuncts(indexCompiler.compile(index.getIndexWhere()), indexConjuncts);
+        return queryConjuncts.containsAll(indexConjuncts);
+    }
+    
+    private static void addConjuncts(ParseNode node, List<ParseNode> conjuncts) {
+        if (node instanceof AndParseNode) {
+            for (ParseNode child : node.getChildren()) {
+                addConjuncts(child, conjuncts);
+            }
+        } else {
+            conjuncts.add(node);
+        }
+    }
+    
+    private static void addConjuncts(Expression expression, List<Expression> conjuncts) {
+        if (expression instanceof AndExpression) {
+            for (Expression child : expression.getChildren()) {
+                addConjuncts(child, conjuncts);
+            }
+        } else {
+            conjuncts.add(expression);
+        }
+    }
+    
     /**
      * Choose the best plan among all the possible ones.
-     * Since we don't keep stats yet, we use the following simple algorithm:
+     * We don't keep row counts, so we use the following simple algorithm:
      * 1) If the query is a point lookup (i.e. we have a set of exact row keys), choose among those.
      * 2) If the query has an ORDER BY and a LIMIT, choose the plan that has all the ORDER BY expression
      * in the same order as the row key columns.
      * 3) If there are more than one plan that meets (1&2), choose the plan with:
-     *    a) the most row key columns that may be used to form the start/stop scan key.
-     *    b) the plan that preserves ordering for a group by.
-     *    c) the data table plan
+     *    a) the fewest estimated bytes scanned, if the region boundaries and guide posts of both
+     *       tables give us an estimate of the fraction of the table scanned (see {@link QueryPlanCost}).
+     *    b) the most row key columns that may be used to form the start/stop scan key.
+     *    c) the plan that preserves ordering for a group by.
+     *    d) the data table plan
      * @param plans the list of candidate plans
      * @return
      */
-    private QueryPlan chooseBestPlan(SelectStatement select, List<QueryPlan> plans) {
+    private QueryPlan chooseBestPlan(SelectStatement select, List<QueryPlan> plans) throws SQLException {
         QueryPlan firstPlan = plans.get(0);
         if (plans.size() == 1) {
             return firstPlan;
@@ -221,13 +387,37 @@ public class QueryOptimizer {
         if (bestCandidates.isEmpty()) {
             bestCandidates.addAll(stillCandidates);
         }
+        if (bestCandidates.size() == 1) {
+            return bestCandidates.get(0);
+        }
         final int comparisonOfDataVersusIndexTable = select.getHint().hasHint(Hint.USE_DATA_OVER_INDEX_TABLE) ? -1 : 1;
+        final Map<QueryPlan, QueryPlanCost> costs = Maps.newIdentityHashMap();
+        // Only trust the cost estimates when we know which part of the tables is scanned for
+        // every candidate, deciding it once so that all the candidates are ordered the same way
+        boolean allHaveStats = true;
+        Map<ImmutableBytesPtr, List<HRegionLocation>> tableRegions = Maps.newHashMap();
+        for (QueryPlan plan : bestCandidates) {
+            QueryPlanCost cost = QueryPlanCost.estimate(plan, tableRegions);
+            costs.put(plan, cost);
+            allHaveStats &= cost.hasStats();
+        }
+        final boolean useCosts = allHaveStats;
         Collections.sort(bestCandidates, new Comparator<QueryPlan>() {
 
             @Override
             public int compare(QueryPlan plan1, QueryPlan plan2) {
+                if (useCosts) {
+                    int c = costs.get(plan1).compareTo(costs.get(plan2));
+                    if (c != 0) return c;
+                }
                 int c = plan2.getContext().getScanRanges().getRanges().size() - plan1.getContext().getScanRanges().getRanges().size();
                 if (c != 0) return c;
+                // Avoid joining back to the data table
+                boolean isJoinBack1 = plan1 instanceof IndexJoinBackPlan;
+                boolean isJoinBack2 = plan2 instanceof IndexJoinBackPlan;
+                if (isJoinBack1 != isJoinBack2) {
+                    return isJoinBack1 ? 1 : -1;
+                }
                 if (plan1.getGroupBy()!=null && plan2.getGroupBy()!=null) {
                     if (plan1.getGroupBy().isOrderPreserving() != plan2.getGroupBy().isOrderPreserving()) {
                         return plan1.getGroupBy().isOrderPreserving() ? -1 : 1;
@@ -252,7 +442,7 @@ public class QueryOptimizer {
             
         });
         
-        return candidates.get(0);
+        return bestCandidates.get(0);
         
     }
 
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.optimize;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.execute.IndexJoinBackPlan;
+import org.apache.phoenix.iterate.DefaultParallelIteratorRegionSplitter;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PColumnFamily;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.ValueSchema;
+import org.apache.phoenix.schema.stat.PTableStats;
+import org.apache.phoenix.util.SchemaUtil;
+
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * Estimate of the cost of a query plan, as the number of bytes it scans per row of the table.
+ * We don't keep row counts, so instead:
+ * 1) the fraction of the table scanned is estimated from the number of chunks of the table
+ * that intersect the scan, where the region boundaries and the guide posts of each region
+ * delimit the chunks.
+ * 2) the width of a row is estimated from the column types, including the KeyValue overhead
+ * of each column, as the row key, column family and column qualifier is repeated in each of them.
+ * Since an index has as many rows as its data table, the costs of plans over a table and its
+ * indexes are comparable.
+ *
+ *
+ * @since 3.0.0
+ */
+public class QueryPlanCost implements Comparable<QueryPlanCost> {
+    // Looking up the data rows is a random read per row, as opposed to a sequential scan
+    private static final int JOIN_BACK_READ_FACTOR = 2;
+    private static final int KEY_VALUE_OVERHEAD = KeyValue.KEYVALUE_INFRASTRUCTURE_SIZE + KeyValue.KEY_INFRASTRUCTURE_SIZE;
+
+    private final int scannedChunks;
+    private final int totalChunks;
+    private final int rowWidth;
+    private final int joinBackRowWidth;
+
+    QueryPlanCost(int scannedChunks, int totalChunks, int rowWidth, int joinBackRowWidth) {
+        this.scannedChunks = scannedChunks;
+        this.totalChunks = totalChunks;
+        this.rowWidth = rowWidth;
+        this.joinBackRowWidth = joinBackRowWidth;
+    }
+
+    /**
+     * Estimate the cost of a compiled query plan
+     * @param plan the query plan
+     * @return the cost estimate
+     * @throws SQLException if the regions of the table cannot be retrieved
+     */
+    public static QueryPlanCost estimate(QueryPlan plan) throws SQLException {
+        return estimate(plan, Maps.<ImmutableBytesPtr, List<HRegionLocation>>newHashMap());
+    }
+
+    /**
+     * Estimate the cost of a compiled query plan
+     * @param plan the query plan
+     * @param tableRegions regions of the tables by physical table name, to which the regions
+     * of the table of the plan are added if they're not already known, so that the regions of
+     * each table are only looked up once when estimating the cost of several plans.
+     * @return the cost estimate
+     * @throws SQLException if the regions of the table cannot be retrieved
+     */
+    public static QueryPlanCost estimate(QueryPlan plan, Map<ImmutableBytesPtr, List<HRegionLocation>> tableRegions) throws SQLException {
+        if (plan instanceof IndexJoinBackPlan) {
+            QueryPlanCost indexCost = estimate(((IndexJoinBackPlan)plan).getIndexPlan(), tableRegions);
+            return new QueryPlanCost(indexCost.scannedChunks, indexCost.totalChunks, indexCost.rowWidth, estimateRowWidth(plan.getTableRef().getTable()));
+        }
+        PTable table = plan.getTableRef().getTable();
+        if (plan.getContext().getScanRanges().isDegenerate()) {
+            return new QueryPlanCost(0, 1, estimateRowWidth(table), 0);
+        }
+        Scan scan = plan.getContext().getScan();
+        ImmutableBytesPtr physicalName = new ImmutableBytesPtr(table.getPhysicalName().getBytes());
+        List<HRegionLocation> allRegions = tableRegions.get(physicalName);
+        if (allRegions == null) {
+            allRegions = plan.getContext().getConnection().getQueryServices().getAllTableRegions(physicalName.copyBytesIfNecessary());
+            tableRegions.put(physicalName, allRegions);
+        }
+        return estimate(table, allRegions, scan.getStartRow(), scan.getStopRow());
+    }
+
+    // exposed for tests
+    public static QueryPlanCost estimate(PTable table, List<HRegionLocation> allRegions, byte[] startKey, byte[] stopKey) {
+        PTableStats stats = table.getTableStats();
+        int totalChunks = 0;
+        for (HRegionLocation region : allRegions) {
+            byte[][] guidePosts = stats == null ? null : stats.getRegionGuidePosts(region.getRegionInfo());
+            totalChunks += guidePosts == null ? 1 : guidePosts.length + 1;
+        }
+        int scannedChunks = 0;
+        KeyRange scanRange = KeyRange.getKeyRange(startKey, true, stopKey, false);
+        for (HRegionLocation region : DefaultParallelIteratorRegionSplitter.filterRegions(allRegions, startKey, stopKey)) {
+            HRegionInfo regionInfo = region.getRegionInfo();
+            byte[][] guidePosts = stats == null ? null : stats.getRegionGuidePosts(regionInfo);
+            scannedChunks++;
+            if (guidePosts != null) {
+                // Each guide post within the scanned range starts another chunk to scan
+                for (byte[] guidePost : guidePosts) {
+                    if (scanRange.compareLowerToUpperBound(guidePost, 0, guidePost.length, false) < 0
+                            && scanRange.compareUpperToLowerBound(guidePost, 0, guidePost.length, false) > 0) {
+                        scannedChunks++;
+                    }
+                }
+            }
+        }
+        return new QueryPlanCost(scannedChunks, Math.max(1, totalChunks), estimateRowWidth(table), 0);
+    }
+
+    /**
+     * Estimate the number of bytes stored for a row of the table, with all its columns set
+     */
+    static int estimateRowWidth(PTable table) {
+        int rowKeyWidth = 0;
+        for (PColumn column : table.getPKColumns()) {
+            rowKeyWidth += estimateByteSize(column);
+        }
+        // Every row has the empty key value
+        int rowWidth = KEY_VALUE_OVERHEAD + rowKeyWidth + SchemaUtil.getEmptyColumnFamily(table).length + QueryConstants.EMPTY_COLUMN_BYTES.length;
+        for (PColumnFamily family : table.getColumnFamilies()) {
+            int familyWidth = family.getName().getBytes().length;
+            for (PColumn column : family.getColumns()) {
+                rowWidth += KEY_VALUE_OVERHEAD + rowKeyWidth + familyWidth + column.getName().getBytes().length + estimateByteSize(column);
+            }
+        }
+        return rowWidth;
+    }
+
+    private static int estimateByteSize(PDatum column) {
+        Integer byteSize = column.getByteSize();
+        return byteSize == null ? ValueSchema.ESTIMATED_VARIABLE_LENGTH_SIZE : byteSize;
+    }
+
+    /**
+     * @return true if the estimate is based on more than a single chunk of the table, in which
+     * case the fraction of the table scanned is meaningful.
+     */
+    public boolean hasStats() {
+        return totalChunks > 1;
+    }
+
+    public int getScannedChunks() {
+        return scannedChunks;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    /**
+     * @return the estimated fraction of the table scanned
+     */
+    public double getScannedFraction() {
+        return (double)scannedChunks / totalChunks;
+    }
+
+    public int getRowWidth() {
+        return rowWidth;
+    }
+
+    /**
+     * @return the estimated number of bytes read per row of the table, including the
+     * rows looked up in the data table when joining back from an index.
+     */
+    public double getBytesPerTableRow() {
+        return getScannedFraction() * (rowWidth + JOIN_BACK_READ_FACTOR * joinBackRowWidth);
+    }
+
+    @Override
+    public int compareTo(QueryPlanCost other) {
+        return Double.compare(getBytesPerTableRow(), other.getBytesPerTableRow());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("ESTIMATED " + Math.round(getBytesPerTableRow()) + " BYTES SCANNED PER TABLE ROW");
+        buf.append(" (" + scannedChunks + "/" + totalChunks + " CHUNKS OF " + rowWidth + " BYTE ROWS");
+        if (joinBackRowWidth > 0) {
+            buf.append(", JOINED BACK TO " + joinBackRowWidth + " BYTE ROWS");
+        }
+        buf.append(")");
+        return buf.toString();
+    }
+}
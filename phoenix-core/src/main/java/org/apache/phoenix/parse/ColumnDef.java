@@ -47,9 +47,15 @@ public class ColumnDef {
     private final SortOrder sortOrder;
     private final boolean isArray;
     private final Integer arrSize;
+    private final String expressionStr;
  
     ColumnDef(ColumnName columnDefName, String sqlTypeName, boolean isArray, Integer arrSize, boolean isNull, Integer maxLength,
     		            Integer scale, boolean isPK, SortOrder sortOrder) {
+        this(columnDefName, sqlTypeName, isArray, arrSize, isNull, maxLength, scale, isPK, sortOrder, null);
+    }
+
+    ColumnDef(ColumnName columnDefName, String sqlTypeName, boolean isArray, Integer arrSize, boolean isNull, Integer maxLength,
+                        Integer scale, boolean isPK, SortOrder sortOrder, String expressionStr) {
    	 try {
          Preconditions.checkNotNull(sortOrder);
    	     PDataType localType = null;
@@ -131,6 +137,7 @@ public class ColumnDef {
          this.scale = scale;
          this.isPK = isPK;
          this.sortOrder = sortOrder;
+         this.expressionStr = expressionStr;
          if(this.isArray) {
              this.dataType = localType;
          }
@@ -178,4 +185,12 @@ public class ColumnDef {
 	public Integer getArraySize() {
 		return arrSize;
 	}
+
+    /**
+     * @return the SQL text of the expression from which the value of the column is
+     * derived, or null for a regular column. Only set for indexed expressions.
+     */
+    public String getExpressionStr() {
+        return expressionStr;
+    }
 }
@@ -29,32 +29,51 @@ import com.google.common.collect.ListMultimap;
 
 public class CreateIndexStatement extends SingleTableSQLStatement {
     private final TableName indexTableName;
-    private final PrimaryKeyConstraint indexConstraint;
+    private final IndexKeyConstraint indexKeyConstraint;
     private final List<ColumnName> includeColumns;
+    private final ParseNode where;
+    private final String whereStr;
     private final List<ParseNode> splitNodes;
     private final ListMultimap<String,Pair<String,Object>> props;
     private final boolean ifNotExists;
 
     public CreateIndexStatement(NamedNode indexTableName, NamedTableNode dataTable, 
-            PrimaryKeyConstraint indexConstraint, List<ColumnName> includeColumns, List<ParseNode> splits,
+            IndexKeyConstraint indexKeyConstraint, List<ColumnName> includeColumns, ParseNode where, String whereStr, List<ParseNode> splits,
             ListMultimap<String,Pair<String,Object>> props, boolean ifNotExists, int bindCount) {
         super(dataTable, bindCount);
         this.indexTableName =TableName.createNormalized(dataTable.getName().getSchemaName(),indexTableName.getName());
-        this.indexConstraint = indexConstraint == null ? PrimaryKeyConstraint.EMPTY : indexConstraint;
+        this.indexKeyConstraint = indexKeyConstraint == null ? IndexKeyConstraint.EMPTY : indexKeyConstraint;
         this.includeColumns = includeColumns == null ? Collections.<ColumnName>emptyList() : includeColumns;
+        this.where = where;
+        this.whereStr = whereStr;
         this.splitNodes = splits == null ? Collections.<ParseNode>emptyList() : splits;
         this.props = props;
         this.ifNotExists = ifNotExists;
     }
 
-    public PrimaryKeyConstraint getIndexConstraint() {
-        return indexConstraint;
+    public IndexKeyConstraint getIndexConstraint() {
+        return indexKeyConstraint;
     }
 
     public List<ColumnName> getIncludeColumns() {
         return includeColumns;
     }
 
+    /**
+     * @return the WHERE clause of a partial index, restricting the data rows that are indexed,
+     * or null if every data row is indexed
+     */
+    public ParseNode getWhere() {
+        return where;
+    }
+
+    /**
+     * @return the SQL text of the WHERE clause of a partial index, or null if there is none
+     */
+    public String getWhereString() {
+        return whereStr;
+    }
+
     public TableName getIndexTableName() {
         return indexTableName;
     }
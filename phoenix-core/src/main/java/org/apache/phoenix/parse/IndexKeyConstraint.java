@@ -19,6 +19,7 @@
  */
 package org.apache.phoenix.parse;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.hadoop.hbase.util.Pair;
@@ -26,14 +27,37 @@ import org.apache.hadoop.hbase.util.Pair;
 import com.google.common.collect.ImmutableList;
 import org.apache.phoenix.schema.SortOrder;
 
+/**
+ * 
+ * The indexed expressions of a CREATE INDEX statement, each of which is either a
+ * column reference or an arbitrary expression over the columns of the data table.
+ * The SQL text of each expression is kept as written, as it's stored in the index
+ * metadata from which the expression is later recompiled.
+ *
+ */
 public class IndexKeyConstraint {
-    private final List<Pair<ColumnParseNode, SortOrder>> columnNameToSortOrder;
+    public static final IndexKeyConstraint EMPTY = new IndexKeyConstraint(Collections.<Pair<ParseNode, SortOrder>>emptyList(), Collections.<String>emptyList());
+
+    private final List<Pair<ParseNode, SortOrder>> parseNodeAndSortOrder;
+    private final List<String> expressionStrs;
     
-    IndexKeyConstraint(List<Pair<ColumnParseNode, SortOrder>> columnNameAndSortOrder) {
-        this.columnNameToSortOrder = ImmutableList.copyOf(columnNameAndSortOrder);
+    IndexKeyConstraint(List<Pair<ParseNode, SortOrder>> parseNodeAndSortOrder, List<String> expressionStrs) {
+        if (parseNodeAndSortOrder.size() != expressionStrs.size()) {
+            throw new IllegalArgumentException();
+        }
+        this.parseNodeAndSortOrder = ImmutableList.copyOf(parseNodeAndSortOrder);
+        this.expressionStrs = ImmutableList.copyOf(expressionStrs);
     }
 
-    public List<Pair<ColumnParseNode, SortOrder>> getColumns() {
-        return columnNameToSortOrder;
+    public List<Pair<ParseNode, SortOrder>> getColumns() {
+        return parseNodeAndSortOrder;
+    }
+    
+    /**
+     * @param index position of the indexed expression
+     * @return the SQL text, as written, of the indexed expression at the given position
+     */
+    public String getExpressionString(int index) {
+        return expressionStrs.get(index);
     }
-}
\ No newline at end of file
+}
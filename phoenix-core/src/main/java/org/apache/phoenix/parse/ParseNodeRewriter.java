@@ -214,11 +214,11 @@ public class ParseNodeRewriter extends TraverseAllParseNodeVisitor<ParseNode> {
         this.nodeCount = 0;
     }
     
-    private static interface CompoundNodeFactory {
+    protected static interface CompoundNodeFactory {
         ParseNode createNode(List<ParseNode> children);
     }
     
-    private ParseNode leaveCompoundNode(CompoundParseNode node, List<ParseNode> children, CompoundNodeFactory factory) {
+    protected ParseNode leaveCompoundNode(CompoundParseNode node, List<ParseNode> children, CompoundNodeFactory factory) {
         if (children.equals(node.getChildren())) {
             return node;
         } else { // Child nodes have been inverted (because a literal was found on LHS)
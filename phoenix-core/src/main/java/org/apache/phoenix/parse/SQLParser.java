@@ -49,6 +49,12 @@ public class SQLParser {
         SQLParser parser = new SQLParser(expression);
         return parser.parseCondition();
     }
+
+    public static ParseNode parseExpression(String expression) throws SQLException {
+        if (expression == null) return null;
+        SQLParser parser = new SQLParser(expression);
+        return parser.parseExpression();
+    }
     
     public SQLParser(String query) {
         this(query,DEFAULT_NODE_FACTORY);
@@ -160,6 +166,24 @@ public class SQLParser {
         }
     }
 
+    /**
+     * Parses the input as a single SQL expression, which may contain function calls.
+     * @throws SQLException 
+     */
+    public ParseNode parseExpression() throws SQLException {
+        try {
+            ParseNode node = parser.standaloneExpression();
+            return node;
+        } catch (RecognitionException e) {
+            throw PhoenixParserException.newException(e, parser.getTokenNames());
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw PhoenixParserException.newException(e, parser.getTokenNames());
+        }
+    }
+
     /**
      * Parses the input as a SQL literal
      * @throws SQLException 
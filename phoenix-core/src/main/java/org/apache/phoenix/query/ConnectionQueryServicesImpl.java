@@ -89,6 +89,7 @@ import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.schema.ReadOnlyTableException;
 import org.apache.phoenix.schema.Sequence;
 import org.apache.phoenix.schema.SequenceKey;
+import org.apache.phoenix.schema.TableAlreadyExistsException;
 import org.apache.phoenix.schema.TableNotFoundException;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.JDBCUtil;
@@ -1002,6 +1003,11 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
             } catch (NewerTableAlreadyExistsException ignore) {
                 // Ignore, as this will happen if the SYSTEM.TABLE already exists at this fixed timestamp.
                 // A TableAlreadyExistsException is not thrown, since the table only exists *after* this fixed timestamp.
+            } catch (TableAlreadyExistsException ignore) {
+                // An older SYSTEM.TABLE exists, so add the columns that were added to it since
+                metaConnection = addColumnsIfNotExists(metaConnection, MetaDataProtocol.MIN_SYSTEM_TABLE_TIMESTAMP,
+                        PhoenixDatabaseMetaData.INDEX_DISABLE_TIMESTAMP + " BIGINT, " +
+                        PhoenixDatabaseMetaData.INDEX_WHERE + " VARCHAR");
             }
             try {
                 metaConnection.createStatement().executeUpdate(QueryConstants.CREATE_SEQUENCE_METADATA);
@@ -1009,6 +1015,12 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
                 // Ignore, as this will happen if the SYSTEM.SEQUENCE already exists at this fixed timestamp.
                 // A TableAlreadyExistsException is not thrown, since the table only exists *after* this fixed timestamp.
             }
+            try {
+                metaConnection.createStatement().executeUpdate(QueryConstants.CREATE_INDEX_BUILD_METADATA);
+            } catch (NewerTableAlreadyExistsException ignore) {
+                // Ignore, as this will happen if the SYSTEM.INDEX_BUILD already exists at this fixed timestamp.
+                // A TableAlreadyExistsException is not thrown, since the table only exists *after* this fixed timestamp.
+            }
         } catch (SQLException e) {
             sqlE = e;
         } finally {
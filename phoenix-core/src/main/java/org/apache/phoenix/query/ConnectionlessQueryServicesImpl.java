@@ -206,6 +206,12 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices imple
                 // Ignore, as this will happen if the SYSTEM.SEQUENCE already exists at this fixed timestamp.
                 // A TableAlreadyExistsException is not thrown, since the table only exists *after* this fixed timestamp.
             }
+            try {
+                metaConnection.createStatement().executeUpdate(QueryConstants.CREATE_INDEX_BUILD_METADATA);
+            } catch (NewerTableAlreadyExistsException ignore) {
+                // Ignore, as this will happen if the SYSTEM.INDEX_BUILD already exists at this fixed timestamp.
+                // A TableAlreadyExistsException is not thrown, since the table only exists *after* this fixed timestamp.
+            }
         } catch (SQLException e) {
             sqlE = e;
         } finally {
@@ -95,6 +95,12 @@ public interface QueryServices extends SQLCloseable {
     public static final String ZOOKEEPER_ROOT_NODE_ATTRIB = "zookeeper.znode.parent";
     public static final String DISTINCT_VALUE_COMPRESS_THRESHOLD_ATTRIB = "phoenix.distinct.value.compress.threshold";
     public static final String SEQUENCE_CACHE_SIZE_ATTRIB = "phoenix.sequence.cacheSize";
+    public static final String INDEX_FAILURE_HANDLING_REBUILD_ATTRIB = "phoenix.index.failure.handling.rebuild";
+    public static final String INDEX_FAILURE_HANDLING_REBUILD_INTERVAL_ATTRIB = "phoenix.index.failure.handling.rebuild.interval";
+    public static final String INDEX_JOIN_BACK_MAX_KEYS_ATTRIB = "phoenix.index.joinBack.maxKeys";
+    public static final String IMMUTABLE_INDEX_COMMIT_MODE_ATTRIB = "phoenix.index.immutable.commitMode";
+    public static final String EXPLAIN_COST_ATTRIB = "phoenix.query.explainCost";
+    public static final String ROW_BATCH_SIZE_ATTRIB = "phoenix.query.rowBatchSize";
 
     
     /**
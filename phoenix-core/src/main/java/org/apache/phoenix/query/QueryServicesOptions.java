@@ -114,6 +114,13 @@ public class QueryServicesOptions {
     
     public static final int DEFAULT_SEQUENCE_CACHE_SIZE = 100;  // reserve 100 sequences at a time
     
+    public static final boolean DEFAULT_INDEX_FAILURE_HANDLING_REBUILD = true; // auto rebuild on
+    public static final long DEFAULT_INDEX_FAILURE_HANDLING_REBUILD_INTERVAL = 10000; // 10 secs
+    public static final int DEFAULT_INDEX_JOIN_BACK_MAX_KEYS = 10000; // row keys looked up through an index
+    public static final String DEFAULT_IMMUTABLE_INDEX_COMMIT_MODE = "SEQUENTIAL"; // write immutable indexes after the data
+    public static final boolean DEFAULT_EXPLAIN_COST = false; // add the estimated cost of the query plan to EXPLAIN
+    public static final int DEFAULT_ROW_BATCH_SIZE = 100; // rows of a non aggregate scan returned together, or 0 for one at a time
+    
     
     private final Configuration config;
     
@@ -97,7 +97,7 @@ public final class ColumnRef {
         boolean isIndex = table.getType() == PTableType.INDEX;
         if (SchemaUtil.isPKColumn(column)) {
             String name = column.getName().getString();
-            if (isIndex) {
+            if (isIndex && column.getExpressionStr() == null) {
                 name = IndexUtil.getDataColumnName(name);
             }
             return new RowKeyColumnExpression(
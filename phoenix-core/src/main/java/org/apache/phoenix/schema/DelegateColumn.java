@@ -68,4 +68,9 @@ public class DelegateColumn extends DelegateDatum implements PColumn {
     public Integer getArraySize() {
         return getDelegate().getArraySize();
     }
+
+    @Override
+    public String getExpressionStr() {
+        return getDelegate().getExpressionStr();
+    }
 }
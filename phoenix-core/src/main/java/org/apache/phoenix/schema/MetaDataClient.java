@@ -25,6 +25,7 @@ import static com.google.common.collect.Sets.newLinkedHashSetWithExpectedSize;
 import static org.apache.phoenix.exception.SQLExceptionCode.INSUFFICIENT_MULTI_TENANT_COLUMNS;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.ARRAY_SIZE;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.COLUMN_COUNT;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.COLUMN_DEF;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.COLUMN_NAME;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.COLUMN_SIZE;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.DATA_TABLE_NAME;
@@ -34,6 +35,7 @@ import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.DEFAULT_COLUMN_FAM
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.DISABLE_WAL;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.IMMUTABLE_ROWS;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.INDEX_STATE;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.INDEX_WHERE;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.LINK_TYPE;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.MULTI_TENANT;
 import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.NULLABLE;
@@ -77,10 +79,12 @@ import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.index.covered.update.ColumnReference;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.compile.ColumnResolver;
 import org.apache.phoenix.compile.FromCompiler;
+import org.apache.phoenix.compile.IndexExpressionCompiler;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.compile.PostDDLCompiler;
 import org.apache.phoenix.compile.PostIndexDDLCompiler;
@@ -90,11 +94,14 @@ import org.apache.phoenix.coprocessor.MetaDataProtocol.MutationCode;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.index.IndexBuildProgress;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.parse.AddColumnStatement;
 import org.apache.phoenix.parse.AlterIndexStatement;
 import org.apache.phoenix.parse.ColumnDef;
+import org.apache.phoenix.parse.ColumnParseNode;
 import org.apache.phoenix.parse.ColumnName;
 import org.apache.phoenix.parse.CreateIndexStatement;
 import org.apache.phoenix.parse.CreateSequenceStatement;
@@ -103,7 +110,9 @@ import org.apache.phoenix.parse.DropColumnStatement;
 import org.apache.phoenix.parse.DropIndexStatement;
 import org.apache.phoenix.parse.DropSequenceStatement;
 import org.apache.phoenix.parse.DropTableStatement;
+import org.apache.phoenix.parse.IndexKeyConstraint;
 import org.apache.phoenix.parse.NamedTableNode;
+import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.ParseNodeFactory;
 import org.apache.phoenix.parse.PrimaryKeyConstraint;
 import org.apache.phoenix.parse.TableName;
@@ -147,8 +156,9 @@ public class MetaDataClient {
             VIEW_STATEMENT + "," +
             DISABLE_WAL + "," +
             MULTI_TENANT + "," +
-            VIEW_TYPE +
-            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            VIEW_TYPE + "," +
+            INDEX_WHERE +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String CREATE_LINK =
             "UPSERT INTO " + TYPE_SCHEMA + ".\"" + TYPE_TABLE + "\"( " +
             TENANT_ID + "," +
@@ -197,8 +207,9 @@ public class MetaDataClient {
         ORDINAL_POSITION + "," + 
         SORT_ORDER + "," +
         DATA_TABLE_NAME + "," + // write this both in the column and table rows for access by metadata APIs
-        ARRAY_SIZE +
-        ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        ARRAY_SIZE + "," +
+        COLUMN_DEF +
+        ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String UPDATE_COLUMN_POSITION =
         "UPSERT INTO " + TYPE_SCHEMA + ".\"" + TYPE_TABLE + "\" ( " + 
         TENANT_ID + "," +
@@ -339,6 +350,7 @@ public class MetaDataClient {
         } else {
             colUpsert.setInt(13, column.getArraySize());
         }
+        colUpsert.setString(14, column.getExpressionStr());
         colUpsert.execute();
     }
 
@@ -376,7 +388,7 @@ public class MetaDataClient {
             }
             
             PColumn column = new PColumnImpl(PNameFactory.newName(columnName), familyName, def.getDataType(),
-                    def.getMaxLength(), def.getScale(), def.isNull(), position, sortOrder, def.getArraySize());
+                    def.getMaxLength(), def.getScale(), def.isNull(), position, sortOrder, def.getArraySize(), def.getExpressionStr());
             return column;
         } catch (IllegalArgumentException e) { // Based on precondition check in constructor
             throw new SQLException(e);
@@ -384,7 +396,7 @@ public class MetaDataClient {
     }
 
     public MutationState createTable(CreateTableStatement statement, byte[][] splits, PTable parent, String viewStatement, ViewType viewType) throws SQLException {
-        PTable table = createTableInternal(statement, splits, parent, viewStatement, viewType);
+        PTable table = createTableInternal(statement, splits, parent, viewStatement, viewType, null);
         if (table == null || table.getType() == PTableType.VIEW) {
             return new MutationState(0,connection);
         }
@@ -405,7 +417,7 @@ public class MetaDataClient {
         return connection.getQueryServices().updateData(plan);
     }
 
-    private MutationState buildIndexAtTimeStamp(PTable index, NamedTableNode dataTableNode) throws SQLException {
+    private MutationState buildIndexAtTimeStamp(PTable index, NamedTableNode dataTableNode, boolean resume) throws SQLException {
         // If our connection is at a fixed point-in-time, we need to open a new
         // connection so that our new index table is visible.
         Properties props = new Properties(connection.getClientInfo());
@@ -420,7 +432,7 @@ public class MetaDataClient {
         boolean success = false;
         SQLException sqlException = null;
         try {
-            MutationState state = newClientAtNextTimeStamp.buildIndex(index, tableRef);
+            MutationState state = newClientAtNextTimeStamp.buildIndex(index, tableRef, resume);
             success = true;
             return state;
         } catch (SQLException e) {
@@ -446,9 +458,9 @@ public class MetaDataClient {
         throw new IllegalStateException(); // impossible
     }
     
-    private MutationState buildIndex(PTable index, TableRef dataTableRef) throws SQLException {
+    private MutationState buildIndex(PTable index, TableRef dataTableRef, boolean resume) throws SQLException {
         PostIndexDDLCompiler compiler = new PostIndexDDLCompiler(connection, dataTableRef);
-        MutationPlan plan = compiler.compile(index);
+        MutationPlan plan = compiler.compile(index, resume);
         MutationState state = connection.getQueryServices().updateData(plan);
         AlterIndexStatement indexStatement = FACTORY.alterIndex(FACTORY.namedTable(null, 
                 TableName.create(index.getSchemaName().getString(), index.getTableName().getString())),
@@ -471,16 +483,21 @@ public class MetaDataClient {
      *    regardless of whether the column reference is prefixed with the column family name or not. It also
      *    has the side benefit of allowing the same named column in different column families to both be
      *    listed as an index column.
+     * 4) Name the column of an indexed expression, such as UPPER(A.B), by its SQL text. The text is kept
+     *    as the COLUMN_DEF of the index column, so that the expression can be compiled again to maintain
+     *    the index and to match it against the expressions of a query.
+     * 5) Keep the SQL text of the WHERE clause of a partial index as the INDEX_WHERE of the index, so that
+     *    only the data rows satisfying it are indexed.
      * @param statement
      * @param splits
      * @return MutationState from population of index table from data table
      * @throws SQLException
      */
     public MutationState createIndex(CreateIndexStatement statement, byte[][] splits) throws SQLException {
-        PrimaryKeyConstraint pk = statement.getIndexConstraint();
+        IndexKeyConstraint ik = statement.getIndexConstraint();
         TableName indexTableName = statement.getIndexTableName();
         
-        List<Pair<ColumnName, SortOrder>> indexedPkColumns = pk.getColumnNames();
+        List<Pair<ParseNode, SortOrder>> indexedPkColumns = ik.getColumns();
         List<ColumnName> includedColumns = statement.getIncludeColumns();
         TableRef tableRef = null;
         PTable table = null;
@@ -512,14 +529,33 @@ public class MetaDataClient {
                 List<ColumnDef> columnDefs = Lists.newArrayListWithExpectedSize(includedColumns.size() + indexedPkColumns.size());
                 
                 // First columns are the indexed ones
-                for (Pair<ColumnName, SortOrder> pair : indexedPkColumns) {
-                    ColumnName colName = pair.getFirst();
-                    PColumn col = resolver.resolveColumn(null, colName.getFamilyName(), colName.getColumnName()).getColumn();
-                    unusedPkColumns.remove(col);
-                    PDataType dataType = IndexUtil.getIndexColumnDataType(col);
-                    colName = ColumnName.caseSensitiveColumnName(IndexUtil.getIndexColumnName(col));
+                IndexExpressionCompiler expressionCompiler = null;
+                for (int i = 0; i < indexedPkColumns.size(); i++) {
+                    Pair<ParseNode, SortOrder> pair = indexedPkColumns.get(i);
+                    ParseNode node = pair.getFirst();
+                    ColumnName colName;
+                    if (node instanceof ColumnParseNode) {
+                        ColumnParseNode colNode = (ColumnParseNode)node;
+                        PColumn col = resolver.resolveColumn(null, colNode.getTableName(), colNode.getName()).getColumn();
+                        unusedPkColumns.remove(col);
+                        PDataType dataType = IndexUtil.getIndexColumnDataType(col);
+                        colName = ColumnName.caseSensitiveColumnName(IndexUtil.getIndexColumnName(col));
+                        columnDefs.add(FACTORY.columnDef(colName, dataType.getSqlTypeName(), col.isNullable(), col.getMaxLength(), col.getScale(), false, SortOrder.getDefault()));
+                    } else {
+                        // Index the value of an expression, named by its SQL text
+                        if (expressionCompiler == null) {
+                            expressionCompiler = new IndexExpressionCompiler(connection, dataTable);
+                        }
+                        Expression expression = expressionCompiler.compile(node);
+                        if (expression.getDataType() == null) {
+                            throw new SQLExceptionInfo.Builder(SQLExceptionCode.STATELESS_EXPRESSION_NOT_ALLOWED_IN_INDEX).setMessage(node.toString()).build().buildException();
+                        }
+                        String expressionStr = ik.getExpressionString(i).trim();
+                        PDataType dataType = IndexUtil.getIndexColumnDataType(true, expression.getDataType());
+                        colName = ColumnName.caseSensitiveColumnName(expressionStr);
+                        columnDefs.add(FACTORY.columnDef(colName, dataType.getSqlTypeName(), true, expression.getMaxLength(), expression.getScale(), false, SortOrder.getDefault(), expressionStr));
+                    }
                     allPkColumns.add(new Pair<ColumnName, SortOrder>(colName, pair.getSecond()));
-                    columnDefs.add(FACTORY.columnDef(colName, dataType.getSqlTypeName(), col.isNullable(), col.getMaxLength(), col.getScale(), false, SortOrder.getDefault()));
                 }
                 
                 // Next all the PK columns from the data table that aren't indexed
@@ -531,7 +567,7 @@ public class MetaDataClient {
                         columnDefs.add(FACTORY.columnDef(colName, dataType.getSqlTypeName(), col.isNullable(), col.getMaxLength(), col.getScale(), false, col.getSortOrder()));
                     }
                 }
-                pk = FACTORY.primaryKey(null, allPkColumns);
+                PrimaryKeyConstraint pk = FACTORY.primaryKey(null, allPkColumns);
                 
                 // Last all the included columns (minus any PK columns)
                 for (ColumnName colName : includedColumns) {
@@ -554,12 +590,25 @@ public class MetaDataClient {
                     }
                 }
                 
+                // Only the data rows satisfying the WHERE clause of a partial index are indexed
+                String indexWhere = null;
+                if (statement.getWhere() != null) {
+                    if (expressionCompiler == null) {
+                        expressionCompiler = new IndexExpressionCompiler(connection, dataTable);
+                    }
+                    Expression where = expressionCompiler.compile(statement.getWhere());
+                    if (where.getDataType() != PDataType.BOOLEAN) {
+                        throw TypeMismatchException.newException(PDataType.BOOLEAN, where.getDataType(), where.toString());
+                    }
+                    indexWhere = statement.getWhereString().trim();
+                }
+                
                 // Set DEFAULT_COLUMN_FAMILY_NAME of index to match data table
                 if (dataTable.getDefaultFamilyName() != null && dataTable.getType() != PTableType.VIEW) {
                     statement.getProps().put("", new Pair<String,Object>(DEFAULT_COLUMN_FAMILY_NAME,dataTable.getDefaultFamilyName().getString()));
                 }
                 CreateTableStatement tableStatement = FACTORY.createTable(indexTableName, statement.getProps(), columnDefs, pk, statement.getSplitNodes(), PTableType.INDEX, statement.ifNotExists(), null, null, statement.getBindCount());
-                table = createTableInternal(tableStatement, splits, dataTable, null, null); // TODO: tenant-specific index
+                table = createTableInternal(tableStatement, splits, dataTable, null, null, indexWhere); // TODO: tenant-specific index
                 break;
             } catch (ConcurrentTableMutationException e) { // Can happen if parent data table changes while above is in progress
                 if (retry) {
@@ -575,10 +624,10 @@ public class MetaDataClient {
         // If our connection is at a fixed point-in-time, we need to open a new
         // connection so that our new index table is visible.
         if (connection.getSCN() != null) {
-            return buildIndexAtTimeStamp(table, statement.getTable());
+            return buildIndexAtTimeStamp(table, statement.getTable(), false);
         }
         
-        return buildIndex(table, tableRef);
+        return buildIndex(table, tableRef, false);
     }
 
     public MutationState dropSequence(DropSequenceStatement statement) throws SQLException {
@@ -624,7 +673,7 @@ public class MetaDataClient {
         return null;
     }
     
-    private PTable createTableInternal(CreateTableStatement statement, byte[][] splits, final PTable parent, String viewStatement, ViewType viewType) throws SQLException {
+    private PTable createTableInternal(CreateTableStatement statement, byte[][] splits, final PTable parent, String viewStatement, ViewType viewType, String indexWhere) throws SQLException {
         final PTableType tableType = statement.getTableType();
         boolean wasAutoCommit = connection.getAutoCommit();
         connection.rollback();
@@ -917,7 +966,7 @@ public class MetaDataClient {
                         MetaDataProtocol.MIN_TABLE_TIMESTAMP, PTable.INITIAL_SEQ_NUM, PNameFactory.newName(QueryConstants.SYSTEM_TABLE_PK_NAME),
                         null, columns, null, Collections.<PTable>emptyList(), isImmutableRows, 
                         Collections.<PName>emptyList(), defaultFamilyName == null ? null : PNameFactory.newName(defaultFamilyName),
-                        null, Boolean.TRUE.equals(disableWAL), false, null);
+                        null, Boolean.TRUE.equals(disableWAL), false, null, null);
                 connection.addTable(table);
             } else if (tableType == PTableType.INDEX) {
                 if (tableProps.get(HTableDescriptor.MAX_FILESIZE) == null) {
@@ -977,6 +1026,7 @@ public class MetaDataClient {
             } else {
                 tableUpsert.setByte(16, viewType.getSerializedValue());
             }
+            tableUpsert.setString(17, indexWhere);
             tableUpsert.execute();
             
             tableMetaData.addAll(connection.getMutationState().toMutations().next().getSecond());
@@ -1020,7 +1070,7 @@ public class MetaDataClient {
                         pkName == null ? null : PNameFactory.newName(pkName), saltBucketNum, columns, dataTableName == null ? null : PNameFactory.newName(dataTableName), 
                         Collections.<PTable>emptyList(), isImmutableRows, physicalNames,
                         defaultFamilyName == null ? null : PNameFactory.newName(defaultFamilyName),
-                                viewStatement, Boolean.TRUE.equals(disableWAL), multiTenant, viewType);
+                                viewStatement, Boolean.TRUE.equals(disableWAL), multiTenant, viewType, indexWhere);
                 connection.addTable(table);
                 return table;
             }
@@ -1520,12 +1570,14 @@ public class MetaDataClient {
                 dropColumnMutations(table, tableColumnsToDrop, tableMetaData);
                 for (PTable index : table.getIndexes()) {
                     List<PColumn> indexColumnsToDrop = Lists.newArrayListWithExpectedSize(columnRefs.size());
+                    boolean isIndexDropped = false;
                     for(PColumn columnToDrop : tableColumnsToDrop) {
                         String indexColumnName = IndexUtil.getIndexColumnName(columnToDrop);
                         try {
                             PColumn indexColumn = index.getColumn(indexColumnName);
                             if (SchemaUtil.isPKColumn(indexColumn)) {
                                 indexesToDrop.add(new TableRef(index));
+                                isIndexDropped = true;
                             } else {
                                 indexColumnsToDrop.add(indexColumn);
                                 columnsToDrop.add(new ColumnRef(tableRef, columnToDrop.getPosition()));
@@ -1533,6 +1585,16 @@ public class MetaDataClient {
                         } catch (ColumnNotFoundException e) {
                         }
                     }
+                    // Drop an index whose indexed expressions can no longer be evaluated
+                    if (!isIndexDropped && IndexUtil.hasIndexedExpression(index)) {
+                        Set<ColumnReference> indexedColumns = index.getIndexMaintainer(table, connection).getIndexedColumns();
+                        for (PColumn columnToDrop : tableColumnsToDrop) {
+                            if (indexedColumns.contains(new ColumnReference(columnToDrop.getFamilyName().getBytes(), columnToDrop.getName().getBytes()))) {
+                                indexesToDrop.add(new TableRef(index));
+                                break;
+                            }
+                        }
+                    }
                     if(!indexColumnsToDrop.isEmpty()) {
                         incrementTableSeqNum(index, index.getType(), -1);
                         dropColumnMutations(index, indexColumnsToDrop, tableMetaData);
@@ -1693,18 +1755,22 @@ public class MetaDataClient {
             }
             if (newIndexState == PIndexState.BUILDING) {
                 PTable index = indexRef.getTable();
-                // First delete any existing rows of the index
-                Long scn = connection.getSCN();
-                long ts = scn == null ? HConstants.LATEST_TIMESTAMP : scn;
-                MutationPlan plan = new PostDDLCompiler(connection).compile(Collections.singletonList(indexRef), null, null, Collections.<PColumn>emptyList(), ts);
-                connection.getQueryServices().updateData(plan);
+                // Resume a prior build that failed part way through if it left checkpoints behind
+                boolean resume = !IndexBuildProgress.read(connection, index).isEmpty();
+                if (!resume) {
+                    // Otherwise first delete any existing rows of the index
+                    Long scn = connection.getSCN();
+                    long ts = scn == null ? HConstants.LATEST_TIMESTAMP : scn;
+                    MutationPlan plan = new PostDDLCompiler(connection).compile(Collections.singletonList(indexRef), null, null, Collections.<PColumn>emptyList(), ts);
+                    connection.getQueryServices().updateData(plan);
+                }
                 NamedTableNode dataTableNode = NamedTableNode.create(null, TableName.create(schemaName, dataTableName), Collections.<ColumnDef>emptyList());
                 // Next rebuild the index
                 if (connection.getSCN() != null) {
-                    return buildIndexAtTimeStamp(index, dataTableNode);
+                    return buildIndexAtTimeStamp(index, dataTableNode, resume);
                 }
                 TableRef dataTableRef = FromCompiler.getResolver(dataTableNode, connection).getTables().get(0);
-                return buildIndex(index, dataTableRef);
+                return buildIndex(index, dataTableRef, resume);
             }
             return new MutationState(1, connection);
         } catch (TableNotFoundException e) {
@@ -49,4 +49,9 @@ public abstract class PBaseColumn implements PColumn {
     public boolean isNullable() {
         return false;
     }
+
+    @Override
+    public String getExpressionStr() {
+        return null;
+    }
  }
@@ -48,4 +48,10 @@ public interface PColumn extends PDatum, Writable {
      * @return the declared array size or zero if this is not an array
      */
     Integer getArraySize();
+    
+    /**
+     * @return the SQL text of the expression from which the value of the column is derived
+     * or null if the column is not derived. Only set for the indexed expressions of an index.
+     */
+    String getExpressionStr();
 }
@@ -44,6 +44,7 @@ public class PColumnImpl implements PColumn {
     private int position;
     private SortOrder sortOrder;
     private Integer arraySize;
+    private String expressionStr;
 
     public PColumnImpl() {
     }
@@ -56,12 +57,24 @@ public class PColumnImpl implements PColumn {
                        boolean nullable,
                        int position,
                        SortOrder sortOrder, Integer arrSize) {
-        init(name, familyName, dataType, maxLength, scale, nullable, position, sortOrder, arrSize);
+        this(name, familyName, dataType, maxLength, scale, nullable, position, sortOrder, arrSize, null);
+    }
+
+    public PColumnImpl(PName name,
+                       PName familyName,
+                       PDataType dataType,
+                       Integer maxLength,
+                       Integer scale,
+                       boolean nullable,
+                       int position,
+                       SortOrder sortOrder, Integer arrSize,
+                       String expressionStr) {
+        init(name, familyName, dataType, maxLength, scale, nullable, position, sortOrder, arrSize, expressionStr);
     }
 
     public PColumnImpl(PColumn column, int position) {
         this(column.getName(), column.getFamilyName(), column.getDataType(), column.getMaxLength(),
-                column.getScale(), column.isNullable(), position, column.getSortOrder(), column.getArraySize());
+                column.getScale(), column.isNullable(), position, column.getSortOrder(), column.getArraySize(), column.getExpressionStr());
     }
 
     private void init(PName name,
@@ -72,7 +85,8 @@ public class PColumnImpl implements PColumn {
             boolean nullable,
             int position,
             SortOrder sortOrder,
-            Integer arrSize) {
+            Integer arrSize,
+            String expressionStr) {
     	Preconditions.checkNotNull(sortOrder);
         this.dataType = dataType;
         if (familyName == null) {
@@ -92,6 +106,7 @@ public class PColumnImpl implements PColumn {
         this.position = position;
         this.sortOrder = sortOrder;
         this.arraySize = arrSize;
+        this.expressionStr = expressionStr;
     }
 
     @Override
@@ -158,10 +173,14 @@ public class PColumnImpl implements PColumn {
         int scale = WritableUtils.readVInt(input);
         boolean nullable = input.readBoolean();
         int position = WritableUtils.readVInt(input);
-        SortOrder sortOrder = SortOrder.fromSystemValue(WritableUtils.readVInt(input));
+        // A negative sort order flags an indexed expression, so that other columns serialize as before
+        int sortOrderValue = WritableUtils.readVInt(input);
+        boolean hasExpressionStr = sortOrderValue < 0;
+        SortOrder sortOrder = SortOrder.fromSystemValue(Math.abs(sortOrderValue));
         int arrSize = WritableUtils.readVInt(input);
+        String expressionStr = hasExpressionStr ? Bytes.toString(Bytes.readByteArray(input)) : null;
         init(columnName, familyName, dataType, maxLength == NO_MAXLENGTH ? null : maxLength,
-                scale == NO_SCALE ? null : scale, nullable, position, sortOrder, arrSize == -1 ? null : arrSize);
+                scale == NO_SCALE ? null : scale, nullable, position, sortOrder, arrSize == -1 ? null : arrSize, expressionStr);
     }
 
     @Override
@@ -173,8 +192,12 @@ public class PColumnImpl implements PColumn {
         WritableUtils.writeVInt(output, scale == null ? NO_SCALE : scale);
         output.writeBoolean(nullable);
         WritableUtils.writeVInt(output, position);
-        WritableUtils.writeVInt(output, sortOrder.getSystemValue());
+        // Encode the presence of an indexed expression in the sign of the sort order
+        WritableUtils.writeVInt(output, sortOrder.getSystemValue() * (expressionStr == null ? 1 : -1));
         WritableUtils.writeVInt(output, arraySize == null ? -1 : arraySize);
+        if (expressionStr != null) {
+            Bytes.writeByteArray(output, Bytes.toBytes(expressionStr));
+        }
     }
     
     @Override
@@ -205,4 +228,9 @@ public class PColumnImpl implements PColumn {
     public Integer getArraySize() {
         return arraySize;
     }
+
+    @Override
+    public String getExpressionStr() {
+        return expressionStr;
+    }
 }
\ No newline at end of file
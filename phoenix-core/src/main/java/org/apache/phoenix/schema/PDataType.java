@@ -38,6 +38,7 @@ import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.DateUtil;
 import org.apache.phoenix.util.NumberUtil;
+import org.apache.phoenix.util.ScaledLong;
 import org.apache.phoenix.util.StringUtil;
 
 import com.google.common.base.Preconditions;
@@ -6519,6 +6520,136 @@ public enum PDataType {
         return v;
     }
 
+    /**
+     * Serialize a decimal held as an unscaled long and a scale the same way as the equal
+     * BigDecimal, without creating it.
+     * @param unscaledValue the unscaled value of the decimal
+     * @param scale the scale of the decimal
+     * @return the serialized decimal
+     */
+    public static byte[] toBytes(long unscaledValue, int scale) {
+        if (unscaledValue == 0) {
+            return new byte[] {ZERO_BYTE};
+        }
+        // Normalize the same way as NumberUtil.normalize, a long never needing to be rounded
+        while (unscaledValue % 10 == 0) {
+            unscaledValue /= 10;
+            scale--;
+        }
+        byte[] result = new byte[getLength(unscaledValue, scale)];
+        toBytes(unscaledValue, scale, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Serialize a decimal held as an unscaled long and a scale the same way as the equal
+     * BigDecimal, without creating it.
+     * @param unscaledValue the unscaled value of the decimal
+     * @param scale the scale of the decimal
+     * @param result the byte array to contain the serialized bytes. Max size
+     * necessary would be 12 bytes.
+     * @param offset the offset into the byte array
+     * @return the number of bytes that make up the serialized decimal
+     */
+    public static int toBytes(long unscaledValue, int scale, byte[] result, int offset) {
+        if (unscaledValue == 0) {
+            result[offset] = ZERO_BYTE;
+            return 1;
+        }
+        while (unscaledValue % 10 == 0) {
+            unscaledValue /= 10;
+            scale--;
+        }
+        return toBytes(unscaledValue, scale, result, offset, getLength(unscaledValue, scale));
+    }
+
+    private static int getLength(long unscaledValue, int scale) {
+        int precision = 0;
+        for (long l = unscaledValue; l != 0; l /= 10) {
+            precision++;
+        }
+        // Same as the length of the equal BigDecimal
+        return (unscaledValue < 0 ? 2 : 1) + (precision +  1 + (scale % 2 == 0 ? 0 : 1)) / 2;
+    }
+
+    // Same as toBytes(BigDecimal, byte[], int, int) when the unscaled value fits in a long
+    private static int toBytes(long unscaledValue, int scale, byte[] result, final int offset, int length) {
+        int signum = unscaledValue < 0 ? -1 : 1;
+        int index = offset + length;
+        int expOffset = scale % 2 * (scale < 0 ? -1 : 1);
+        int multiplyBy = expOffset == 0 ? 1 : 10;
+        int digitOffset;
+        if (signum == 1) {
+            digitOffset = POS_DIGIT_OFFSET;
+            scale -= (length - 2) * 2;
+            result[offset] = (byte)((-(scale+expOffset)/2 + EXP_BYTE_OFFSET) | 0x80);
+        } else {
+            digitOffset = NEG_DIGIT_OFFSET;
+            // Scale adjustment shouldn't include terminal byte in length
+            scale -= (length - 2 - 1) * 2;
+            result[offset] = (byte)(~(-(scale+expOffset)/2 + EXP_BYTE_OFFSET + 128) & 0x7F);
+            result[--index] = NEG_TERMINAL_BYTE;
+        }
+        long l = unscaledValue;
+        do {
+            long divBy = 100/multiplyBy;
+            long digit = l % divBy;
+            l /= divBy;
+            result[--index] = (byte)(digit * multiplyBy + digitOffset);
+            multiplyBy = 1;
+        } while (l != 0);
+        return length;
+    }
+
+    /**
+     * Deserialize a decimal into an unscaled long and a scale, without creating a BigDecimal.
+     * @param bytes the bytes containing the number
+     * @param offset the offset into the byte array
+     * @param length the length of the serialized decimal
+     * @param value the decimal to set
+     * @return true if the decimal was set, and false if its unscaled value doesn't fit in a long
+     */
+    public static boolean toScaledLong(byte[] bytes, int offset, int length, ScaledLong value) {
+        if (length == 1 && bytes[offset] == ZERO_BYTE) {
+            value.set(0, 0);
+            return true;
+        }
+        int signum = ((bytes[offset] & 0x80) == 0) ? -1 : 1;
+        int scale;
+        int index;
+        int digitOffset;
+        long multiplier = 100L;
+        int begIndex = offset + 1;
+        if (signum == 1) {
+            scale = (byte)(((bytes[offset] & 0x7F) - 65) * -2);
+            index = offset + length;
+            digitOffset = POS_DIGIT_OFFSET;
+        } else {
+            scale = (byte)((~bytes[offset] - 65 - 128) * -2);
+            index = offset + length - (bytes[offset + length - 1] == NEG_TERMINAL_BYTE ? 1 : 0);
+            digitOffset = -NEG_DIGIT_OFFSET;
+        }
+        length = index - offset;
+        long l = signum * bytes[--index] - digitOffset;
+        if (l % 10 == 0) { // trailing zero
+            scale--; // drop trailing zero and compensate in the scale
+            l /= 10;
+            multiplier = 10;
+        }
+        while (index > begIndex) {
+            if (l >= MAX_LONG_FOR_DESERIALIZE || multiplier >= Long.MAX_VALUE / 100) {
+                return false;
+            }
+            int digit100 = signum * bytes[--index] - digitOffset;
+            l += digit100*multiplier;
+            multiplier *= 100;
+        }
+        // Update the scale based on the precision
+        scale += (length - 2) * 2;
+        value.set(l * signum, scale);
+        return true;
+    }
+
     // Calculate the precision and scale of a raw decimal bytes. Returns the values as an int
     // array. The first value is precision, the second value is scale.
     // Default scope for testing
@@ -19,6 +19,7 @@
  */
 package org.apache.phoenix.schema;
 
+import java.sql.SQLException;
 import java.util.List;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
@@ -26,6 +27,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.Writable;
 import org.apache.phoenix.client.KeyValueBuilder;
 import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.schema.stat.PTableStats;
 
 
@@ -268,8 +270,8 @@ public interface PTable extends Writable {
     PName getPhysicalName();
     boolean isImmutableRows();
 
-    void getIndexMaintainers(ImmutableBytesWritable ptr);
-    IndexMaintainer getIndexMaintainer(PTable dataTable);
+    void getIndexMaintainers(ImmutableBytesWritable ptr, PhoenixConnection connection) throws SQLException;
+    IndexMaintainer getIndexMaintainer(PTable dataTable, PhoenixConnection connection) throws SQLException;
     PName getDefaultFamilyName();
     
     boolean isWALDisabled();
@@ -277,4 +279,10 @@ public interface PTable extends Writable {
 
     ViewType getViewType();
     String getViewStatement();
+    
+    /**
+     * @return the SQL text of the WHERE clause of a partial index, restricting the
+     * data rows that are indexed, or null if every data row is indexed.
+     */
+    String getIndexWhere();
 }
@@ -48,7 +48,7 @@ public class PTableStatsImpl implements PTableStats {
 
     @Override
     public byte[][] getRegionGuidePosts(HRegionInfo region) {
-        return regionGuidePosts.get(region.getRegionNameAsString());
+        return regionGuidePosts == null ? null : regionGuidePosts.get(region.getRegionNameAsString());
     }
 
     @Override
@@ -28,7 +28,7 @@ import com.google.common.collect.ImmutableList;
 import org.apache.phoenix.util.KeyValueUtil;
 
 
-public class MultiKeyValueTuple implements Tuple {
+public class MultiKeyValueTuple implements PositionalTuple {
     private List<KeyValue> values;
     
     public MultiKeyValueTuple(List<KeyValue> values) {
@@ -82,4 +82,16 @@ public class MultiKeyValueTuple implements Tuple {
         ptr.set(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
         return true;
     }
+
+    @Override
+    public int getColumnPosition(byte[] family, byte[] qualifier, int position) {
+        return KeyValueUtil.getColumnLatestIndex(values, family, qualifier, position);
+    }
+
+    @Override
+    public boolean getColumnValue(int position, ImmutableBytesWritable ptr) {
+        KeyValue kv = values.get(position);
+        ptr.set(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+        return true;
+    }
 }
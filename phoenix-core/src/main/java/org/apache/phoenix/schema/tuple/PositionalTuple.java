@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.tuple;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+
+/**
+ *
+ * Tuple built from the rows of a scan giving access to a column value by position.
+ * The rows of a scan usually have their columns at the same positions, so the
+ * position of a column found for a row is checked first for the next row, which
+ * makes finding the column a single comparison instead of a search.
+ *
+ *
+ * @since 3.0.0
+ */
+public interface PositionalTuple extends Tuple {
+    /**
+     * Get the position of the column with the given family and qualifier name.
+     * @param family the column family of the column
+     * @param qualifier the column qualifier of the column
+     * @param position the position of the column in a previous tuple of the same scan,
+     * checked first, or -1 if unknown
+     * @return the position of the column, or -1 if not found
+     */
+    public int getColumnPosition(byte[] family, byte[] qualifier, int position);
+
+    /**
+     * Get the value of the column at the given position.
+     * @param position a position returned by {@link #getColumnPosition(byte[], byte[], int)}
+     * @param ptr the bytes pointer that will be updated to point to the
+     * value buffer.
+     * @return true if the tuple has a value for the column; otherwise false.
+     */
+    public boolean getColumnValue(int position, ImmutableBytesWritable ptr);
+}
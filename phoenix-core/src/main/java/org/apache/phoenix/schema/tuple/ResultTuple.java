@@ -19,16 +19,22 @@
  */
 package org.apache.phoenix.schema.tuple;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import org.apache.phoenix.util.KeyValueUtil;
 import org.apache.phoenix.util.ResultUtil;
 
 
-public class ResultTuple implements Tuple {
+public class ResultTuple implements PositionalTuple {
     private Result result;
+    private List<KeyValue> values;
     
     public ResultTuple(Result result) {
         this.result = result;
@@ -43,6 +49,15 @@ public class ResultTuple implements Tuple {
 
     public void setResult(Result result) {
         this.result = result;
+        this.values = null;
+    }
+    
+    private List<KeyValue> getValues() {
+        if (values == null) {
+            KeyValue[] kvs = result.raw();
+            values = kvs == null ? Collections.<KeyValue>emptyList() : Arrays.asList(kvs);
+        }
+        return values;
     }
     
     @Override
@@ -57,7 +72,7 @@ public class ResultTuple implements Tuple {
 
     @Override
     public KeyValue getValue(byte[] family, byte[] qualifier) {
-        return result.getColumnLatest(family, qualifier);
+        return KeyValueUtil.getColumnLatest(getValues(), family, qualifier);
     }
 
     @Override
@@ -101,4 +116,16 @@ public class ResultTuple implements Tuple {
         ptr.set(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
         return true;
     }
+
+    @Override
+    public int getColumnPosition(byte[] family, byte[] qualifier, int position) {
+        return KeyValueUtil.getColumnLatestIndex(getValues(), family, qualifier, position);
+    }
+
+    @Override
+    public boolean getColumnValue(int position, ImmutableBytesWritable ptr) {
+        KeyValue kv = result.raw()[position];
+        ptr.set(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+        return true;
+    }
 }
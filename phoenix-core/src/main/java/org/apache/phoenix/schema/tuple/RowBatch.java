@@ -0,0 +1,342 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.tuple;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.KeyValueUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * A batch of rows returned by a region scanner as the value of a single KeyValue,
+ * instead of one Result per row. The rows are laid out column by column for the
+ * distinct columns found in the batch, and decoded into offset and length arrays
+ * over the shared value buffer, so that getting a column value of a row is an
+ * array lookup with no KeyValue created.
+ *
+ * The row key of the KeyValue holding the batch is the row key of its last row,
+ * so that a scanner restarted after the batch resumes after its last row. A row
+ * may only have a single version of a column.
+ *
+ *
+ * @since 3.0.0
+ */
+public class RowBatch {
+    public static final byte[] ROW_BATCH_COLUMN_FAMILY = Bytes.toBytes("_b");
+    public static final byte[] ROW_BATCH_COLUMN_QUALIFIER = ByteUtil.EMPTY_BYTE_ARRAY;
+
+    private static final int ABSENT = -1;
+    private static final Comparator<KeyValue> COLUMN_COMPARATOR = new Comparator<KeyValue>() {
+        @Override
+        public int compare(KeyValue kv1, KeyValue kv2) {
+            int c = Bytes.compareTo(kv1.getBuffer(), kv1.getFamilyOffset(), kv1.getFamilyLength(),
+                    kv2.getBuffer(), kv2.getFamilyOffset(), kv2.getFamilyLength());
+            if (c != 0) {
+                return c;
+            }
+            return Bytes.compareTo(kv1.getBuffer(), kv1.getQualifierOffset(), kv1.getQualifierLength(),
+                    kv2.getBuffer(), kv2.getQualifierOffset(), kv2.getQualifierLength());
+        }
+    };
+
+    private final byte[] buffer;
+    private final byte[][] families;
+    private final byte[][] qualifiers;
+    private final int rowCount;
+    private final int[] keyOffsets;
+    private final int[] keyLengths;
+    private final int[] sizes;
+    // Indexed by row * column count + column
+    private final int[] valueOffsets;
+    private final int[] valueLengths;
+    private final long[] timestamps;
+
+    /**
+     * Decode the batch of rows held by a KeyValue.
+     * @param kv the KeyValue created by {@link #toKeyValue(List)}
+     */
+    public RowBatch(KeyValue kv) {
+        buffer = kv.getBuffer();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable(buffer, kv.getValueOffset(), kv.getValueLength());
+        int columnCount = ByteUtil.vintFromBytes(ptr);
+        families = new byte[columnCount][];
+        qualifiers = new byte[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            families[i] = readBytes(ptr);
+            qualifiers[i] = readBytes(ptr);
+        }
+        rowCount = ByteUtil.vintFromBytes(ptr);
+        keyOffsets = new int[rowCount];
+        keyLengths = new int[rowCount];
+        sizes = new int[rowCount];
+        valueOffsets = new int[rowCount * columnCount];
+        valueLengths = new int[rowCount * columnCount];
+        timestamps = new long[rowCount * columnCount];
+        for (int row = 0, index = 0; row < rowCount; row++) {
+            keyLengths[row] = ByteUtil.vintFromBytes(ptr);
+            keyOffsets[row] = ptr.getOffset();
+            ptr.set(buffer, keyOffsets[row] + keyLengths[row], ptr.getLength());
+            for (int i = 0; i < columnCount; i++, index++) {
+                // Value length plus one, with zero for a column absent from the row
+                int length = ByteUtil.vintFromBytes(ptr) - 1;
+                valueLengths[index] = length;
+                if (length != ABSENT) {
+                    sizes[row]++;
+                    timestamps[index] = ByteUtil.vlongFromBytes(ptr);
+                    valueOffsets[index] = ptr.getOffset();
+                    ptr.set(buffer, valueOffsets[index] + length, ptr.getLength());
+                }
+            }
+        }
+    }
+
+    private static byte[] readBytes(ImmutableBytesWritable ptr) {
+        int length = ByteUtil.vintFromBytes(ptr);
+        byte[] bytes = new byte[length];
+        System.arraycopy(ptr.get(), ptr.getOffset(), bytes, 0, length);
+        ptr.set(ptr.get(), ptr.getOffset() + length, ptr.getLength());
+        return bytes;
+    }
+
+    /**
+     * @param result a Result returned by a scanner
+     * @return true if the Result holds a batch of rows
+     */
+    public static boolean isRowBatch(Result result) {
+        if (result.size() != 1) {
+            return false;
+        }
+        KeyValue kv = result.raw()[0];
+        return Bytes.compareTo(ROW_BATCH_COLUMN_FAMILY, 0, ROW_BATCH_COLUMN_FAMILY.length, kv.getBuffer(), kv.getFamilyOffset(), kv.getFamilyLength()) == 0
+                && kv.getQualifierLength() == 0;
+    }
+
+    /**
+     * Encode rows into the value of a single KeyValue.
+     * @param rows the KeyValues of each row, sorted as returned by a scanner
+     * @return the KeyValue holding the batch
+     * @throws IOException
+     */
+    public static KeyValue toKeyValue(List<List<KeyValue>> rows) throws IOException {
+        List<KeyValue> columns = getColumns(rows);
+        int estimatedSize = 0;
+        for (List<KeyValue> row : rows) {
+            for (KeyValue kv : row) {
+                estimatedSize += kv.getRowLength() + kv.getValueLength() + 2 * WritableUtils.getVIntSize(Long.MAX_VALUE);
+            }
+        }
+        TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(estimatedSize);
+        try {
+            DataOutputStream output = new DataOutputStream(stream);
+            WritableUtils.writeVInt(output, columns.size());
+            for (KeyValue column : columns) {
+                WritableUtils.writeVInt(output, column.getFamilyLength());
+                output.write(column.getBuffer(), column.getFamilyOffset(), column.getFamilyLength());
+                WritableUtils.writeVInt(output, column.getQualifierLength());
+                output.write(column.getBuffer(), column.getQualifierOffset(), column.getQualifierLength());
+            }
+            WritableUtils.writeVInt(output, rows.size());
+            for (List<KeyValue> row : rows) {
+                KeyValue first = row.get(0);
+                WritableUtils.writeVInt(output, first.getRowLength());
+                output.write(first.getBuffer(), first.getRowOffset(), first.getRowLength());
+                // Both the row and the columns are in KeyValue order
+                int j = 0;
+                for (KeyValue column : columns) {
+                    KeyValue kv = j < row.size() ? row.get(j) : null;
+                    if (kv != null && COLUMN_COMPARATOR.compare(kv, column) == 0) {
+                        WritableUtils.writeVInt(output, kv.getValueLength() + 1);
+                        WritableUtils.writeVLong(output, kv.getTimestamp());
+                        output.write(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+                        j++;
+                    } else {
+                        WritableUtils.writeVInt(output, 0);
+                    }
+                }
+            }
+            List<KeyValue> lastRow = rows.get(rows.size() - 1);
+            KeyValue last = lastRow.get(0);
+            return KeyValueUtil.newKeyValue(last.getBuffer(), last.getRowOffset(), last.getRowLength(),
+                    ROW_BATCH_COLUMN_FAMILY, ROW_BATCH_COLUMN_QUALIFIER, last.getTimestamp(), stream.getBuffer(), 0, stream.size());
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Get one KeyValue for each of the distinct columns of the rows, in KeyValue order
+     */
+    private static List<KeyValue> getColumns(List<List<KeyValue>> rows) {
+        List<KeyValue> columns = Lists.newArrayList();
+        for (List<KeyValue> row : rows) {
+            for (KeyValue kv : row) {
+                int index = Collections.binarySearch(columns, kv, COLUMN_COMPARATOR);
+                if (index < 0) {
+                    columns.add(-(index + 1), kv);
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return the number of rows of the batch
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Get a row of the batch, which holds on to the buffer of the batch.
+     * @param row the zero-based row index between 0 and {@link #size()} exclusive
+     * @return the row
+     */
+    public Tuple getRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException(Integer.toString(row));
+        }
+        return new RowTuple(row);
+    }
+
+    private int getColumnIndex(byte[] family, byte[] qualifier, int position) {
+        if (position >= 0 && position < families.length
+                && Bytes.equals(qualifiers[position], qualifier) && Bytes.equals(families[position], family)) {
+            return position;
+        }
+        // The columns are in KeyValue order
+        int low = 0;
+        int high = families.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = Bytes.compareTo(families[mid], family);
+            if (c == 0) {
+                c = Bytes.compareTo(qualifiers[mid], qualifier);
+            }
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * A row of the batch, seen as a Tuple by the existing row at a time iterators.
+     */
+    private class RowTuple implements PositionalTuple {
+        private final int row;
+
+        private RowTuple(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public int size() {
+            return sizes[row];
+        }
+
+        @Override
+        public boolean isImmutable() {
+            return true;
+        }
+
+        @Override
+        public void getKey(ImmutableBytesWritable ptr) {
+            ptr.set(buffer, keyOffsets[row], keyLengths[row]);
+        }
+
+        @Override
+        public KeyValue getValue(int index) {
+            for (int i = 0, j = row * families.length, count = 0; i < families.length; i++, j++) {
+                if (valueLengths[j] != ABSENT && count++ == index) {
+                    return newKeyValue(i);
+                }
+            }
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+
+        @Override
+        public KeyValue getValue(byte[] family, byte[] qualifier) {
+            int i = getColumnIndex(family, qualifier, ABSENT);
+            if (i == ABSENT || valueLengths[row * families.length + i] == ABSENT) {
+                return null;
+            }
+            return newKeyValue(i);
+        }
+
+        @Override
+        public boolean getValue(byte[] family, byte[] qualifier, ImmutableBytesWritable ptr) {
+            int i = getColumnIndex(family, qualifier, ABSENT);
+            return i != ABSENT && getColumnValue(i, ptr);
+        }
+
+        @Override
+        public int getColumnPosition(byte[] family, byte[] qualifier, int position) {
+            return getColumnIndex(family, qualifier, position);
+        }
+
+        @Override
+        public boolean getColumnValue(int position, ImmutableBytesWritable ptr) {
+            int j = row * families.length + position;
+            if (valueLengths[j] == ABSENT) {
+                return false;
+            }
+            ptr.set(buffer, valueOffsets[j], valueLengths[j]);
+            return true;
+        }
+
+        private KeyValue newKeyValue(int column) {
+            int j = row * families.length + column;
+            return KeyValueUtil.newKeyValue(buffer, keyOffsets[row], keyLengths[row], families[column], qualifiers[column],
+                    timestamps[j], buffer, valueOffsets[j], valueLengths[j]);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("keyvalues={");
+            for (int i = 0; i < size(); i++) {
+                if (i > 0) {
+                    sb.append(", \n");
+                }
+                KeyValue kv = getValue(i);
+                sb.append(kv.toString()+"/value="+Bytes.toString(kv.getValue()));
+            }
+            sb.append("}\n");
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.tuple;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.index.ValueGetter;
+import org.apache.hadoop.hbase.index.covered.update.ColumnReference;
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.KeyValueUtil;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ *
+ * Tuple that exposes the state of a data row, as seen through a {@link ValueGetter},
+ * so that expressions may be evaluated against it. Used to evaluate the indexed
+ * expressions and the WHERE clause of an index when building an index row. Since a
+ * ValueGetter only provides the values of the columns, the KeyValues of the tuple are
+ * built from the row key and the values, at the latest time stamp, and the tuple is
+ * only made of the given columns of the row.
+ *
+ *
+ * @since 3.0.0
+ */
+public class ValueGetterTuple implements Tuple {
+    private final ValueGetter valueGetter;
+    private final ImmutableBytesWritable keyPtr;
+    private final Collection<ColumnReference> columns;
+    private List<KeyValue> keyValues;
+
+    /**
+     * @param valueGetter the state of the row or null if no column values are known
+     * @param keyPtr the row key
+     * @param columns the columns of the row that make up the tuple
+     */
+    public ValueGetterTuple(ValueGetter valueGetter, ImmutableBytesWritable keyPtr, Collection<ColumnReference> columns) {
+        this.valueGetter = valueGetter;
+        this.keyPtr = keyPtr;
+        this.columns = columns;
+    }
+
+    @Override
+    public void getKey(ImmutableBytesWritable ptr) {
+        ptr.set(keyPtr.get(), keyPtr.getOffset(), keyPtr.getLength());
+    }
+
+    private ImmutableBytesPtr getLatestValue(byte[] family, byte[] qualifier) {
+        if (valueGetter == null) {
+            return null;
+        }
+        try {
+            return valueGetter.getLatestValue(new ColumnReference(family, qualifier));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private KeyValue newKeyValue(byte[] family, byte[] qualifier, ImmutableBytesPtr value) {
+        return KeyValueUtil.newKeyValue(keyPtr, family, qualifier, HConstants.LATEST_TIMESTAMP, value.get(), value.getOffset(), value.getLength());
+    }
+
+    @Override
+    public KeyValue getValue(byte[] family, byte[] qualifier) {
+        ImmutableBytesPtr value = getLatestValue(family, qualifier);
+        if (value == null) {
+            return null;
+        }
+        return newKeyValue(family, qualifier, value);
+    }
+
+    @Override
+    public boolean getValue(byte[] family, byte[] qualifier, ImmutableBytesWritable ptr) {
+        ImmutableBytesPtr value = getLatestValue(family, qualifier);
+        if (value == null) {
+            return false;
+        }
+        ptr.set(value.get(), value.getOffset(), value.getLength());
+        return true;
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    private List<KeyValue> getKeyValues() {
+        if (keyValues == null) {
+            if (columns.isEmpty()) {
+                keyValues = Collections.emptyList();
+            } else {
+                // Same order as the KeyValues of a row
+                SortedSet<ColumnReference> sortedColumns = Sets.newTreeSet(columns);
+                keyValues = Lists.newArrayListWithExpectedSize(sortedColumns.size());
+                for (ColumnReference ref : sortedColumns) {
+                    ImmutableBytesPtr value = getLatestValue(ref.getFamily(), ref.getQualifier());
+                    if (value != null) {
+                        keyValues.add(newKeyValue(ref.getFamily(), ref.getQualifier(), value));
+                    }
+                }
+            }
+        }
+        return keyValues;
+    }
+
+    @Override
+    public int size() {
+        return getKeyValues().size();
+    }
+
+    @Override
+    public KeyValue getValue(int index) {
+        return getKeyValues().get(index);
+    }
+
+    @Override
+    public String toString() {
+        return "ValueGetterTuple[" + Bytes.toStringBinary(keyPtr.get(), keyPtr.getOffset(), keyPtr.getLength()) + "]";
+    }
+}
@@ -20,21 +20,45 @@
 package org.apache.phoenix.util;
 
 import au.com.bytecode.opencsv.CSVReader;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.IllegalDataException;
+import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.schema.SaltingUtil;
 
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /***
  * Upserts CSV data using Phoenix JDBC connection
@@ -43,12 +67,13 @@ import java.util.Map;
  * 
  */
 public class CSVLoader {
-
 	private final PhoenixConnection conn;
 	private final String tableName;
     private final List<String> columns;
     private final boolean isStrict;
     private final List<String> delimiter;
+    private final int numThreads;
+    private final boolean isPartitioned;
     private final Map<String,Character> ctrlTable = new HashMap<String,Character>() {
         {   put("1",'\u0001');
             put("2",'\u0002');
@@ -62,12 +87,25 @@ public class CSVLoader {
     
     private int unfoundColumnCount;
 
-    public CSVLoader(PhoenixConnection conn, String tableName, List<String> columns, boolean isStrict,List<String> delimiter) {
+    /**
+     * @param numThreads the number of threads upserting the rows, each through its own connection.
+     *  When more than one, the CSV lines are read by the calling thread and handed to the upserting
+     *  threads in chunks of the connection mutate batch size.
+     * @param isPartitioned when upserting from multiple threads, whether to assign the regions of the
+     *  table to the threads, so that each thread only writes to its own regions
+     */
+    public CSVLoader(PhoenixConnection conn, String tableName, List<String> columns, boolean isStrict, List<String> delimiter, int numThreads, boolean isPartitioned) {
         this.conn = conn;
         this.tableName = tableName;
         this.columns = columns;
         this.isStrict = isStrict;
         this.delimiter = delimiter;
+        this.numThreads = numThreads;
+        this.isPartitioned = isPartitioned;
+    }
+
+    public CSVLoader(PhoenixConnection conn, String tableName, List<String> columns, boolean isStrict,List<String> delimiter) {
+        this(conn,tableName,columns,isStrict,delimiter,1,false);
     }
 
 	public CSVLoader(PhoenixConnection conn, String tableName, List<String> columns, boolean isStrict) {
@@ -81,10 +119,23 @@ public class CSVLoader {
 	 * column value to correct type before upsert. Note: Column Names are
 	 * expected as first line of CSV file.
 	 * 
+	 * When loading into a table, the records are tokenized from the bytes of the
+	 * file and their fields encoded straight into their serialized form through
+	 * {@link CSVRowEncoder}, instead of going through Strings and JDBC.
+	 * 
 	 * @param fileName
 	 * @throws Exception
 	 */
 	public void upsert(String fileName) throws Exception {
+	    if (isDirectEncodingSupported()) {
+	        InputStream in = new FileInputStream(fileName);
+	        try {
+	            upsert(in);
+	        } finally {
+	            in.close();
+	        }
+	        return;
+	    }
         List<String> delimiter = this.delimiter;
         CSVReader reader;
         if ((delimiter != null) && (delimiter.size() == 3)) {
@@ -116,71 +167,612 @@ public class CSVLoader {
 	 * @param reader CSVReader instance
 	 * @throws Exception
 	 */
-	public void upsert(CSVReader reader) throws Exception {
+	public void upsert(final CSVReader reader) throws Exception {
 	    List<String> columns = this.columns;
 	    if (columns != null && columns.isEmpty()) {
 	        columns = Arrays.asList(reader.readNext());
 	    }
-		ColumnInfo[] columnInfo = generateColumnInfo(columns);
-        PreparedStatement stmt = null;
-        PreparedStatement[] stmtCache = null;
-		if (columns == null) {
-		    stmtCache = new PreparedStatement[columnInfo.length];
+		final ColumnInfo[] columnInfo = generateColumnInfo(columns);
+		final List<String> upsertColumns = columns;
+		RecordSource<String[]> source = new RecordSource<String[]>() {
+		    @Override
+		    public String[] next() throws Exception {
+		        return reader.readNext();
+		    }
+		};
+		RecordUpserterFactory<String[]> upserterFactory = new RecordUpserterFactory<String[]>() {
+		    @Override
+		    public RecordUpserter<String[]> newUpserter(PhoenixConnection connection) throws SQLException {
+		        return new RowUpserter(connection, upsertColumns, columnInfo);
+		    }
+		};
+		if (numThreads > 1) {
+		    upsertInParallel(source, upserterFactory, isPartitioned ? newKeyRangePartitioner(columnInfo) : null);
 		} else {
-		    String upsertStatement = QueryUtil.constructUpsertStatement(columnInfo, tableName, columnInfo.length - unfoundColumnCount);
-		    stmt = conn.prepareStatement(upsertStatement);
+		    upsert(source, upserterFactory);
 		}
-		String[] nextLine;
+	}
+
+    /**
+     * Upserts the CSV records read from the stream, tokenizing them from their bytes
+     * and encoding their fields straight into their serialized form. Only supported
+     * when {@link #isDirectEncodingSupported()}.
+     * 
+     * @param in the stream of CSV records
+     * @throws Exception
+     */
+    public void upsert(InputStream in) throws Exception {
+        CSVRecordReader reader = new CSVRecordReader(in, newTokenizer());
+        List<String> columns = this.columns;
+        if (columns != null && columns.isEmpty()) {
+            columns = reader.readHeader();
+        }
+        ColumnInfo[] columnInfo = generateColumnInfo(columns);
+        final List<String> columnNames = Lists.newArrayListWithExpectedSize(columnInfo.length);
+        for (ColumnInfo info : columnInfo) {
+            // Strip the quotes around the normalized name
+            columnNames.add(info == null ? null : info.getColumnName().substring(1, info.getColumnName().length() - 1));
+        }
+        final String fullTableName = getNormalizedTableName();
+        RecordUpserterFactory<byte[]> upserterFactory = new RecordUpserterFactory<byte[]>() {
+            @Override
+            public RecordUpserter<byte[]> newUpserter(PhoenixConnection connection) throws SQLException {
+                return new EncodedRowUpserter(CSVRowEncoder.newInstance(connection, fullTableName, columnNames), newTokenizer());
+            }
+        };
+        if (numThreads > 1) {
+            RecordPartitioner<byte[]> partitioner = null;
+            if (isPartitioned) {
+                PTable table = PhoenixRuntime.getTable(conn, fullTableName);
+                partitioner = new EncodedKeyRangePartitioner(CSVRowEncoder.newInstance(conn, fullTableName, columnNames), newTokenizer(), getRegionSplits(table));
+            }
+            upsertInParallel(reader, upserterFactory, partitioner);
+        } else {
+            upsert(reader, upserterFactory);
+        }
+    }
+
+    /**
+     * @return true if the records can be encoded straight from their bytes, which
+     * requires single byte delimiters and a table, as opposed to a view, loaded
+     * through a global connection
+     */
+    public boolean isDirectEncodingSupported() throws SQLException {
+        if (delimiter != null && delimiter.size() == 3) {
+            for (String field : delimiter) {
+                if (!CSVTokenizer.isSupportedCharacter(getCSVCustomField(field))) {
+                    return false;
+                }
+            }
+        }
+        if (conn.getTenantId() != null) {
+            return false;
+        }
+        return PhoenixRuntime.getTable(conn, getNormalizedTableName()).getType() == PTableType.TABLE;
+    }
+
+    private CSVTokenizer newTokenizer() {
+        if (delimiter != null && delimiter.size() == 3) {
+            return new CSVTokenizer((byte)getCSVCustomField(delimiter.get(0)), (byte)getCSVCustomField(delimiter.get(1)), (byte)getCSVCustomField(delimiter.get(2)));
+        }
+        return new CSVTokenizer();
+    }
+
+    private <R> void upsert(RecordSource<R> source, RecordUpserterFactory<R> upserterFactory) throws Exception {
+		R nextLine;
 		int rowCount = 0;
 		int upsertBatchSize = conn.getMutateBatchSize();
 		boolean wasAutoCommit = conn.getAutoCommit();
+		RecordUpserter<R> upserter = upserterFactory.newUpserter(conn);
 		try {
     		conn.setAutoCommit(false);
-    		Object upsertValue = null;
     		long start = System.currentTimeMillis();
     
     		// Upsert data based on SqlType of each column
-    		while ((nextLine = reader.readNext()) != null) {
-    		    if (columns == null) {
-    		        stmt = stmtCache[nextLine.length-1];
-    		        if (stmt == null) {
-    	                String upsertStatement = QueryUtil.constructUpsertStatement(columnInfo, tableName, nextLine.length);
-    	                stmt = conn.prepareStatement(upsertStatement);
-    	                stmtCache[nextLine.length-1] = stmt;
-    		        }
-    		    }
-    			for (int index = 0; index < columnInfo.length; index++) {
-    			    if (columnInfo[index] == null) {
-    			        continue;
-    			    }
-                    String line = nextLine[index];
-                    Integer info = columnInfo[index].getSqlType();
-                    upsertValue = convertTypeSpecificValue(line, info);
-    				if (upsertValue != null) {
-    					stmt.setObject(index + 1, upsertValue, columnInfo[index].getSqlType());
-    				} else {
-    					stmt.setNull(index + 1, columnInfo[index].getSqlType());
-    				}
-    			}
-    			stmt.execute();
+    		while ((nextLine = source.next()) != null) {
+    		    upserter.upsert(nextLine);
     
     			// Commit when batch size is reached
     			if (++rowCount % upsertBatchSize == 0) {
+    			    upserter.flush();
     				conn.commit();
     				System.out.println("Rows upserted: " + rowCount);
     			}
     		}
+    		upserter.flush();
     		conn.commit();
     		double elapsedDuration = ((System.currentTimeMillis() - start) / 1000.0);
     		System.out.println("CSV Upsert complete. " + rowCount + " rows upserted");
     		System.out.println("Time: " + elapsedDuration + " sec(s)\n");
 		} finally {
-		    if(stmt != null) {
-		        stmt.close();
-		    }
+		    upserter.close();
 		    if (wasAutoCommit) conn.setAutoCommit(true);
 		}
 	}
+
+    /**
+     * Pipelines the load: the calling thread reads the CSV records and hands them in
+     * chunks of the connection batch size to the worker threads, which each upsert
+     * and commit through their own connection. In partitioned mode each worker gets
+     * its own queue, fed with the rows of the regions assigned to it.
+     */
+    private <R> void upsertInParallel(RecordSource<R> source, RecordUpserterFactory<R> upserterFactory, RecordPartitioner<R> partitioner) throws Exception {
+        int upsertBatchSize = conn.getMutateBatchSize();
+        int numQueues = partitioner == null ? 1 : numThreads;
+        List<BlockingQueue<List<R>>> queues = Lists.newArrayListWithExpectedSize(numQueues);
+        List<List<R>> chunks = Lists.newArrayListWithExpectedSize(numQueues);
+        for (int i = 0; i < numQueues; i++) {
+            // Bound the queues so that reading doesn't get too far ahead of the upserts
+            queues.add(new ArrayBlockingQueue<List<R>>(partitioner == null ? 2 * numThreads : 2));
+            chunks.add(new ArrayList<R>(upsertBatchSize));
+        }
+        // Marks the end of the input in the queues of the workers
+        List<R> endOfInput = new ArrayList<R>(0);
+        AtomicReference<Exception> error = new AtomicReference<Exception>();
+        AtomicLong rowsUpserted = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("csv-loader-%s").build());
+        List<Future<Integer>> futures = Lists.newArrayListWithExpectedSize(numThreads);
+        long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(new UpsertWorker<R>(queues.get(i % numQueues), endOfInput, upserterFactory, error, rowsUpserted)));
+            }
+            R nextLine;
+            // Stop reading as soon as a worker fails, as the load is aborted anyway
+            while (error.get() == null && (nextLine = source.next()) != null) {
+                int queueIndex = partitioner == null ? 0 : partitioner.getPartition(nextLine) % numThreads;
+                List<R> chunk = chunks.get(queueIndex);
+                chunk.add(nextLine);
+                if (chunk.size() >= upsertBatchSize) {
+                    queues.get(queueIndex).put(chunk);
+                    chunks.set(queueIndex, new ArrayList<R>(upsertBatchSize));
+                }
+            }
+            for (int i = 0; i < numQueues; i++) {
+                if (!chunks.get(i).isEmpty()) {
+                    queues.get(i).put(chunks.get(i));
+                }
+            }
+        } finally {
+            // One end marker per worker, which keep taking chunks until they get it
+            for (int i = 0; i < numThreads; i++) {
+                queues.get(i % numQueues).put(endOfInput);
+            }
+            executor.shutdown();
+        }
+        int[] workerRowCounts = new int[numThreads];
+        long rowCount = 0;
+        for (int i = 0; i < numThreads; i++) {
+            try {
+                workerRowCounts[i] = futures.get(i).get();
+            } catch (ExecutionException e) {
+                error.compareAndSet(null, e.getCause() instanceof Exception ? (Exception)e.getCause() : e);
+            }
+            rowCount += workerRowCounts[i];
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        double elapsedDuration = ((System.currentTimeMillis() - start) / 1000.0);
+        System.out.println("CSV Upsert complete. " + rowCount + " rows upserted");
+        System.out.println("Time: " + elapsedDuration + " sec(s)");
+        System.out.println("Throughput: " + (elapsedDuration == 0 ? rowCount : Math.round(rowCount / elapsedDuration)) + " rows/sec using " + numThreads + " threads");
+        if (partitioner != null) {
+            System.out.println("Rows upserted per thread: " + Arrays.toString(workerRowCounts));
+        }
+        System.out.println();
+    }
+
+    private KeyRangePartitioner newKeyRangePartitioner(ColumnInfo[] columnInfo) throws SQLException {
+        String fullTableName = getNormalizedTableName();
+        PTable table = PhoenixRuntime.getTable(conn, fullTableName);
+        if (table.isMultiTenant() && conn.getTenantId() != null) {
+            System.out.println("Key range partitioning is not supported for tenant-specific connections, rows are not partitioned");
+            return null;
+        }
+        List<PColumn> pkColumns = table.getPKColumns();
+        int offset = table.getBucketNum() == null ? 0 : 1;
+        int[] pkIndexes = new int[pkColumns.size() - offset];
+        for (int i = offset; i < pkColumns.size(); i++) {
+            String columnName = '"' + pkColumns.get(i).getName().getString() + '"';
+            pkIndexes[i - offset] = -1;
+            for (int j = 0; j < columnInfo.length; j++) {
+                if (columnInfo[j] != null && columnInfo[j].getColumnName().equals(columnName)) {
+                    pkIndexes[i - offset] = j;
+                    break;
+                }
+            }
+            if (pkIndexes[i - offset] < 0) {
+                System.out.println("Key range partitioning requires all the primary key columns to be loaded, rows are not partitioned");
+                return null;
+            }
+        }
+        return new KeyRangePartitioner(fullTableName, table.getBucketNum(), pkIndexes, columnInfo, getRegionSplits(table));
+    }
+
+    private byte[][] getRegionSplits(PTable table) throws SQLException {
+        List<HRegionLocation> regions = conn.getQueryServices().getAllTableRegions(table.getPhysicalName().getBytes());
+        // The first region starts with the empty key, which doesn't split anything
+        byte[][] splits = new byte[Math.max(0, regions.size() - 1)][];
+        for (int i = 1; i < regions.size(); i++) {
+            splits[i - 1] = regions.get(i).getRegionInfo().getStartKey();
+        }
+        return splits;
+    }
+
+    private static int getRegionIndex(byte[][] splits, byte[] key) {
+        int pos = Arrays.binarySearch(splits, key, Bytes.BYTES_COMPARATOR);
+        return pos < 0 ? -(pos + 1) : pos + 1;
+    }
+
+    private String getNormalizedTableName() {
+        String schemaName = SchemaUtil.getSchemaNameFromFullName(tableName);
+        String name = SchemaUtil.getTableNameFromFullName(tableName);
+        return SchemaUtil.getTableName(schemaName.length() == 0 ? schemaName : SchemaUtil.normalizeIdentifier(schemaName), SchemaUtil.normalizeIdentifier(name));
+    }
+
+    /**
+     * Source of the CSV records, returning null once there are no more.
+     */
+    private interface RecordSource<R> {
+        R next() throws Exception;
+    }
+
+    /**
+     * Upserts CSV records through a connection. The rows must have been handed over
+     * to the connection once flush returns, as the connection is committed next.
+     */
+    private interface RecordUpserter<R> {
+        void upsert(R record) throws Exception;
+        void flush() throws SQLException;
+        void close() throws SQLException;
+    }
+
+    private interface RecordUpserterFactory<R> {
+        RecordUpserter<R> newUpserter(PhoenixConnection connection) throws SQLException;
+    }
+
+    /**
+     * Returns the index of the region a CSV record belongs to.
+     */
+    private interface RecordPartitioner<R> {
+        int getPartition(R record) throws Exception;
+    }
+
+    /**
+     * Binds the values of a CSV line to the upsert statement matching its number of
+     * values, and executes it.
+     */
+    private class RowUpserter implements RecordUpserter<String[]> {
+        private final PhoenixConnection connection;
+        private final ColumnInfo[] columnInfo;
+        private final PreparedStatement[] stmtCache;
+        private PreparedStatement stmt;
+
+        private RowUpserter(PhoenixConnection connection, List<String> columns, ColumnInfo[] columnInfo) throws SQLException {
+            this.connection = connection;
+            this.columnInfo = columnInfo;
+            if (columns == null) {
+                stmtCache = new PreparedStatement[columnInfo.length];
+            } else {
+                stmtCache = null;
+                String upsertStatement = QueryUtil.constructUpsertStatement(columnInfo, tableName, columnInfo.length - unfoundColumnCount);
+                stmt = connection.prepareStatement(upsertStatement);
+            }
+        }
+
+        @Override
+        public void upsert(String[] nextLine) throws Exception {
+            if (stmtCache != null) {
+                stmt = stmtCache[nextLine.length-1];
+                if (stmt == null) {
+                    String upsertStatement = QueryUtil.constructUpsertStatement(columnInfo, tableName, nextLine.length);
+                    stmt = connection.prepareStatement(upsertStatement);
+                    stmtCache[nextLine.length-1] = stmt;
+                }
+            }
+            for (int index = 0; index < columnInfo.length; index++) {
+                if (columnInfo[index] == null) {
+                    continue;
+                }
+                String line = nextLine[index];
+                Integer info = columnInfo[index].getSqlType();
+                Object upsertValue = convertTypeSpecificValue(line, info);
+                if (upsertValue != null) {
+                    stmt.setObject(index + 1, upsertValue, columnInfo[index].getSqlType());
+                } else {
+                    stmt.setNull(index + 1, columnInfo[index].getSqlType());
+                }
+            }
+            stmt.execute();
+        }
+
+        @Override
+        public void flush() {
+            // Executed statements are already part of the connection state
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (stmtCache != null) {
+                for (PreparedStatement cachedStmt : stmtCache) {
+                    if (cachedStmt != null) {
+                        cachedStmt.close();
+                    }
+                }
+            } else if (stmt != null) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Tokenizes CSV records from their bytes and encodes their fields into rows of
+     * the connection.
+     */
+    private static class EncodedRowUpserter implements RecordUpserter<byte[]> {
+        private final CSVRowEncoder encoder;
+        private final CSVTokenizer tokenizer;
+
+        private EncodedRowUpserter(CSVRowEncoder encoder, CSVTokenizer tokenizer) {
+            this.encoder = encoder;
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void upsert(byte[] record) throws Exception {
+            if (!tokenizer.tokenize(record, 0, record.length)) {
+                throw new IllegalDataException("Unterminated quoted field: " + Bytes.toString(record));
+            }
+            encoder.addRow(tokenizer);
+        }
+
+        @Override
+        public void flush() throws SQLException {
+            encoder.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Reads the CSV records of a stream as bytes, one line per record unless a
+     * quoted field spans multiple lines. Empty lines are skipped.
+     */
+    private static class CSVRecordReader implements RecordSource<byte[]> {
+        private final InputStream in;
+        private final CSVTokenizer tokenizer;
+        private final byte[] buf = new byte[64 * 1024];
+        private int pos;
+        private int limit;
+        private byte[] record = new byte[1024];
+        private int recordLength;
+
+        private CSVRecordReader(InputStream in, CSVTokenizer tokenizer) {
+            this.in = in;
+            this.tokenizer = tokenizer;
+        }
+
+        /**
+         * @return the fields of the first record, decoded as Strings
+         */
+        private List<String> readHeader() throws IOException {
+            byte[] header = next();
+            if (header == null) {
+                return Collections.emptyList();
+            }
+            tokenizer.tokenize(header, 0, header.length);
+            ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+            List<String> columns = Lists.newArrayListWithExpectedSize(tokenizer.getFieldCount());
+            for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+                tokenizer.getField(i, ptr);
+                columns.add(Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+            }
+            return columns;
+        }
+
+        @Override
+        public byte[] next() throws IOException {
+            do {
+                recordLength = 0;
+                if (!readLine()) {
+                    return null;
+                }
+            } while (recordLength == 0);
+            // Only a record with a quote character may go on over the next lines
+            if (indexOf(tokenizer.getQuote()) >= 0) {
+                while (!tokenizer.tokenize(record, 0, recordLength)) {
+                    append((byte)'\n');
+                    if (!readLine()) {
+                        break;
+                    }
+                }
+            }
+            return Arrays.copyOf(record, recordLength);
+        }
+
+        /**
+         * Append the next line to the record, without its line terminator
+         * @return false if the end of the stream was reached before reading anything
+         */
+        private boolean readLine() throws IOException {
+            int lineStart = recordLength;
+            boolean readAny = false;
+            while (true) {
+                if (pos == limit) {
+                    limit = Math.max(0, in.read(buf, 0, buf.length));
+                    pos = 0;
+                    if (limit == 0) {
+                        break;
+                    }
+                }
+                readAny = true;
+                int start = pos;
+                while (pos < limit && buf[pos] != '\n') {
+                    pos++;
+                }
+                append(buf, start, pos - start);
+                if (pos < limit) {
+                    pos++; // Skip the line feed
+                    break;
+                }
+            }
+            if (recordLength > lineStart && record[recordLength - 1] == '\r') {
+                recordLength--;
+            }
+            return readAny;
+        }
+
+        private int indexOf(byte b) {
+            for (int i = 0; i < recordLength; i++) {
+                if (record[i] == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void append(byte b) {
+            append(new byte[] {b}, 0, 1);
+        }
+
+        private void append(byte[] b, int offset, int length) {
+            if (recordLength + length > record.length) {
+                record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + length));
+            }
+            System.arraycopy(b, offset, record, recordLength, length);
+            recordLength += length;
+        }
+    }
+
+    /**
+     * Upserts the chunks of CSV records taken from its queue through its own connection,
+     * committing after each chunk. After a failure, keeps draining the queue so that the
+     * reader never blocks, until it gets the end marker.
+     */
+    private class UpsertWorker<R> implements Callable<Integer> {
+        private final BlockingQueue<List<R>> queue;
+        private final List<R> endOfInput;
+        private final RecordUpserterFactory<R> upserterFactory;
+        private final AtomicReference<Exception> error;
+        private final AtomicLong rowsUpserted;
+
+        private UpsertWorker(BlockingQueue<List<R>> queue, List<R> endOfInput, RecordUpserterFactory<R> upserterFactory,
+                AtomicReference<Exception> error, AtomicLong rowsUpserted) {
+            this.queue = queue;
+            this.endOfInput = endOfInput;
+            this.upserterFactory = upserterFactory;
+            this.error = error;
+            this.rowsUpserted = rowsUpserted;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            int rowCount = 0;
+            PhoenixConnection workerConn = null;
+            RecordUpserter<R> upserter = null;
+            try {
+                workerConn = new PhoenixConnection(conn);
+                workerConn.setAutoCommit(false);
+                upserter = upserterFactory.newUpserter(workerConn);
+            } catch (Exception e) {
+                error.compareAndSet(null, e);
+            }
+            try {
+                List<R> chunk;
+                while ((chunk = queue.take()) != endOfInput) {
+                    if (error.get() != null) {
+                        continue;
+                    }
+                    try {
+                        for (R nextLine : chunk) {
+                            upserter.upsert(nextLine);
+                        }
+                        upserter.flush();
+                        workerConn.commit();
+                        rowCount += chunk.size();
+                        System.out.println("Rows upserted: " + rowsUpserted.addAndGet(chunk.size()));
+                    } catch (Exception e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            } finally {
+                try {
+                    if (upserter != null) {
+                        upserter.close();
+                    }
+                } finally {
+                    if (workerConn != null) {
+                        workerConn.close();
+                    }
+                }
+            }
+            return rowCount;
+        }
+    }
+
+    /**
+     * Assigns each CSV line to the region its row key falls in, so that each worker
+     * only writes to its own set of regions.
+     */
+    private class KeyRangePartitioner implements RecordPartitioner<String[]> {
+        private final String fullTableName;
+        private final Integer bucketNum;
+        private final int[] pkIndexes;
+        private final ColumnInfo[] columnInfo;
+        private final byte[][] splits;
+
+        private KeyRangePartitioner(String fullTableName, Integer bucketNum, int[] pkIndexes, ColumnInfo[] columnInfo, byte[][] splits) {
+            this.fullTableName = fullTableName;
+            this.bucketNum = bucketNum;
+            this.pkIndexes = pkIndexes;
+            this.columnInfo = columnInfo;
+            this.splits = splits;
+        }
+
+        @Override
+        public int getPartition(String[] nextLine) throws Exception {
+            Object[] values = new Object[pkIndexes.length];
+            for (int i = 0; i < pkIndexes.length; i++) {
+                int index = pkIndexes[i];
+                values[i] = index < nextLine.length ? convertTypeSpecificValue(nextLine[index], columnInfo[index].getSqlType()) : null;
+            }
+            byte[] key = PhoenixRuntime.encodePK(conn, fullTableName, values);
+            if (bucketNum != null) {
+                key = ByteUtil.concat(new byte[] {SaltingUtil.getSaltingByte(key, 0, key.length, bucketNum)}, key);
+            }
+            return getRegionIndex(splits, key);
+        }
+    }
+
+    /**
+     * Assigns each CSV record to the region its row key falls in, encoding the key
+     * straight from the bytes of the record.
+     */
+    private static class EncodedKeyRangePartitioner implements RecordPartitioner<byte[]> {
+        private final CSVRowEncoder encoder;
+        private final CSVTokenizer tokenizer;
+        private final byte[][] splits;
+        private final ImmutableBytesWritable key = new ImmutableBytesWritable();
+
+        private EncodedKeyRangePartitioner(CSVRowEncoder encoder, CSVTokenizer tokenizer, byte[][] splits) {
+            this.encoder = encoder;
+            this.tokenizer = tokenizer;
+            this.splits = splits;
+        }
+
+        @Override
+        public int getPartition(byte[] record) throws Exception {
+            if (!tokenizer.tokenize(record, 0, record.length)) {
+                throw new IllegalDataException("Unterminated quoted field: " + Bytes.toString(record));
+            }
+            encoder.getRowKey(tokenizer, key);
+            return getRegionIndex(splits, key.copyBytes());
+        }
+    }
 	
 	/**
 	 * Gets CSV string input converted to correct type 
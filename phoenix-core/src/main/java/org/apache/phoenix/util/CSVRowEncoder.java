@@ -0,0 +1,347 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.google.common.collect.Maps;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.TableRef;
+
+/**
+ *
+ * Encodes the fields of tokenized CSV records straight into the serialized form of
+ * their column, and adds the resulting rows to the mutation state of the connection,
+ * as an UPSERT VALUES would. The integer and date/time types in the default date format
+ * are parsed from the bytes of the field and encoded through the codec of their type, and
+ * VARCHAR fields are copied as is, as they're already UTF-8. The other values go through
+ * {@link PDataType#toObject(String)}, as the JDBC based loading does.
+ *
+ * Only tables are supported, as views and tenant-specific connections need values
+ * that don't come from the CSV records.
+ *
+ *
+ * @since 3.0.0
+ */
+public class CSVRowEncoder {
+    private static final int DATE_TIME_LENGTH = "yyyy-MM-dd HH:mm:ss".length();
+    private static final int MAX_FAST_PATH_DIGITS = 18;
+
+    private final PhoenixConnection connection;
+    private final TableRef tableRef;
+    private final PColumn[] columns;
+    private final int[] pkSlotIndexes;
+    private final int numPKColumns;
+    private final int maxSize;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private Map<ImmutableBytesPtr,Map<PColumn,byte[]>> mutations = Maps.newHashMap();
+    private long longValue;
+
+    private CSVRowEncoder(PhoenixConnection connection, PTable table, PColumn[] columns) {
+        this.connection = connection;
+        this.tableRef = new TableRef(table);
+        this.columns = columns;
+        this.numPKColumns = table.getPKColumns().size();
+        this.pkSlotIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            pkSlotIndexes[i] = columns[i] == null ? -1 : table.getPKColumns().indexOf(columns[i]);
+        }
+        this.maxSize = connection.getQueryServices().getProps().getInt(QueryServices.MAX_MUTATION_SIZE_ATTRIB,QueryServicesOptions.DEFAULT_MAX_MUTATION_SIZE);
+    }
+
+    /**
+     * Create an encoder for the table, if it supports direct encoding
+     * @param connection the connection to add the rows to
+     * @param fullTableName the normalized name of the table
+     * @param columnNames the names of the columns of the CSV fields, in order, with null
+     *  for the fields to skip
+     * @return the encoder, or null if the table doesn't support direct encoding
+     * @throws SQLException if the table or one of the columns can't be found
+     */
+    public static CSVRowEncoder newInstance(PhoenixConnection connection, String fullTableName, List<String> columnNames) throws SQLException {
+        PTable table = PhoenixRuntime.getTable(connection, fullTableName);
+        if (table.getType() != PTableType.TABLE || connection.getTenantId() != null) {
+            return null;
+        }
+        PColumn[] columns = new PColumn[columnNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            String columnName = columnNames.get(i);
+            if (columnName != null) {
+                columns[i] = table.getColumn(columnName);
+            }
+        }
+        return new CSVRowEncoder(connection, table, columns);
+    }
+
+    /**
+     * Encode the fields of the last record tokenized and add the row to the pending rows.
+     * Fields beyond the known columns are ignored, and the columns beyond the last field
+     * are left unset.
+     * @param tokenizer the tokenizer holding the record
+     */
+    public void addRow(CSVTokenizer tokenizer) throws SQLException {
+        int nFields = Math.min(tokenizer.getFieldCount(), columns.length);
+        Map<PColumn,byte[]> columnValues = Maps.newHashMapWithExpectedSize(nFields);
+        byte[][] pkValues = newPKValues();
+        for (int i = 0; i < nFields; i++) {
+            PColumn column = columns[i];
+            if (column == null) {
+                continue;
+            }
+            tokenizer.getField(i, ptr);
+            byte[] value = encode(column, ptr.get(), ptr.getOffset(), ptr.getLength());
+            if (pkSlotIndexes[i] >= 0) {
+                pkValues[pkSlotIndexes[i]] = value;
+            } else {
+                columnValues.put(column, value);
+            }
+        }
+        ImmutableBytesPtr key = new ImmutableBytesPtr();
+        tableRef.getTable().newKey(key, pkValues);
+        mutations.put(key, columnValues);
+    }
+
+    /**
+     * Get the row key of the last record tokenized, salt byte included
+     * @param tokenizer the tokenizer holding the record
+     * @param key the pointer set to the row key
+     */
+    public void getRowKey(CSVTokenizer tokenizer, ImmutableBytesWritable key) throws SQLException {
+        int nFields = Math.min(tokenizer.getFieldCount(), columns.length);
+        byte[][] pkValues = newPKValues();
+        for (int i = 0; i < nFields; i++) {
+            if (pkSlotIndexes[i] >= 0) {
+                tokenizer.getField(i, ptr);
+                pkValues[pkSlotIndexes[i]] = encode(columns[i], ptr.get(), ptr.getOffset(), ptr.getLength());
+            }
+        }
+        tableRef.getTable().newKey(key, pkValues);
+    }
+
+    /**
+     * @return the number of rows added since the last flush
+     */
+    public int getRowCount() {
+        return mutations.size();
+    }
+
+    /**
+     * Hand the pending rows over to the mutation state of the connection, to be committed
+     * or retrieved through {@link PhoenixRuntime#getUncommittedDataIterator(java.sql.Connection)}
+     */
+    public void flush() throws SQLException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        MutationState state = new MutationState(tableRef, mutations, 0, maxSize, connection);
+        connection.getMutationState().join(state);
+        mutations = Maps.newHashMap();
+    }
+
+    private byte[][] newPKValues() {
+        byte[][] pkValues = new byte[numPKColumns][];
+        // Place holder for the salt byte, filled in by newKey
+        if (tableRef.getTable().getBucketNum() != null) {
+            pkValues[0] = new byte[] {0};
+        }
+        return pkValues;
+    }
+
+    private byte[] encode(PColumn column, byte[] b, int offset, int length) throws SQLException {
+        if (length == 0) {
+            // Like an empty String, an empty field means null
+            return ByteUtil.EMPTY_BYTE_ARRAY;
+        }
+        PDataType type = column.getDataType();
+        byte[] value = null;
+        switch (type) {
+        case VARCHAR:
+            // The max length is in characters, which can't be more than the number of bytes
+            if (column.getMaxLength() == null || length <= column.getMaxLength()) {
+                value = Arrays.copyOfRange(b, offset, offset + length);
+            }
+            break;
+        case BIGINT:
+        case UNSIGNED_LONG:
+            if (parseLong(b, offset, length) && (type == PDataType.BIGINT || longValue >= 0)) {
+                value = new byte[Bytes.SIZEOF_LONG];
+                type.getCodec().encodeLong(longValue, value, 0);
+            }
+            break;
+        case INTEGER:
+        case UNSIGNED_INT:
+            if (parseLong(b, offset, length) && longValue <= Integer.MAX_VALUE
+                    && longValue >= (type == PDataType.INTEGER ? Integer.MIN_VALUE : 0)) {
+                value = new byte[Bytes.SIZEOF_INT];
+                type.getCodec().encodeInt((int)longValue, value, 0);
+            }
+            break;
+        case SMALLINT:
+        case UNSIGNED_SMALLINT:
+            if (parseLong(b, offset, length) && longValue <= Short.MAX_VALUE
+                    && longValue >= (type == PDataType.SMALLINT ? Short.MIN_VALUE : 0)) {
+                value = new byte[Bytes.SIZEOF_SHORT];
+                type.getCodec().encodeShort((short)longValue, value, 0);
+            }
+            break;
+        case TINYINT:
+        case UNSIGNED_TINYINT:
+            if (parseLong(b, offset, length) && longValue <= Byte.MAX_VALUE
+                    && longValue >= (type == PDataType.TINYINT ? Byte.MIN_VALUE : 0)) {
+                value = new byte[Bytes.SIZEOF_BYTE];
+                type.getCodec().encodeByte((byte)longValue, value, 0);
+            }
+            break;
+        case DATE:
+        case TIME:
+        case UNSIGNED_DATE:
+        case UNSIGNED_TIME:
+            if (parseDateTime(b, offset, length) && (type == PDataType.DATE || type == PDataType.TIME || longValue >= 0)) {
+                value = new byte[Bytes.SIZEOF_LONG];
+                type.getCodec().encodeLong(longValue, value, 0);
+            }
+            break;
+        default:
+            break;
+        }
+        if (value == null) {
+            value = encodeThroughObject(column, Bytes.toString(b, offset, length));
+        }
+        if (column.getSortOrder() == SortOrder.DESC && value.length > 0) {
+            value = SortOrder.invert(value, 0, value.length);
+        }
+        return value;
+    }
+
+    private static byte[] encodeThroughObject(PColumn column, String s) throws SQLException {
+        PDataType type = column.getDataType();
+        Object object = type.toObject(s);
+        if (object == null) {
+            return ByteUtil.EMPTY_BYTE_ARRAY;
+        }
+        byte[] value = type.toBytes(object);
+        if (!type.isSizeCompatible(type, object, value, null, column.getMaxLength(), null, column.getScale())) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.DATA_INCOMPATIBLE_WITH_TYPE)
+                .setColumnName(column.getName().getString()).setMessage("value=" + s).build().buildException();
+        }
+        return type.coerceBytes(value, object, type, null, null, column.getMaxLength(), column.getScale());
+    }
+
+    /**
+     * Parse an optionally negative integer made of digits only, leaving anything
+     * else, including overflows, to the type itself.
+     */
+    private boolean parseLong(byte[] b, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        boolean isNegative = b[i] == '-';
+        if (isNegative) {
+            i++;
+        }
+        if (i == end || end - i > MAX_FAST_PATH_DIGITS) {
+            return false;
+        }
+        long v = 0;
+        for (; i < end; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            v = v * 10 + digit;
+        }
+        longValue = isNegative ? -v : v;
+        return true;
+    }
+
+    /**
+     * Parse a date in the default date format, yyyy-MM-dd HH:mm:ss, in GMT, leaving
+     * anything else, including the dates a lenient parser would roll over, to the type itself.
+     */
+    private boolean parseDateTime(byte[] b, int offset, int length) {
+        if (length != DATE_TIME_LENGTH || b[offset + 4] != '-' || b[offset + 7] != '-'
+                || b[offset + 10] != ' ' || b[offset + 13] != ':' || b[offset + 16] != ':') {
+            return false;
+        }
+        int year = parseDigits(b, offset, 4);
+        int month = parseDigits(b, offset + 5, 2);
+        int day = parseDigits(b, offset + 8, 2);
+        int hour = parseDigits(b, offset + 11, 2);
+        int minute = parseDigits(b, offset + 14, 2);
+        int second = parseDigits(b, offset + 17, 2);
+        // Stay clear of the switch to the Julian calendar of java.util.GregorianCalendar
+        if (year < 1583 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+        long days = getDaysSinceEpoch(year, month, day);
+        longValue = ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L;
+        return true;
+    }
+
+    private static int parseDigits(byte[] b, int offset, int length) {
+        int v = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            v = v * 10 + digit;
+        }
+        return v;
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+        case 4: case 6: case 9: case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    // Days from 1970-01-01 in the proleptic Gregorian calendar
+    private static long getDaysSinceEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400; // y is positive
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+
+/**
+ *
+ * Splits a CSV record held in a byte array into its fields, without decoding it
+ * into Strings. Fields without quote or escape characters are referenced in place
+ * in the record, the others are unescaped into a buffer owned by the tokenizer.
+ *
+ * Quoting follows the usual CSV rules: a field starting with a quote character, after
+ * optional white space, may contain separators and line breaks, and a doubled quote
+ * character stands for itself. The escape character makes the following quote or escape
+ * character part of the field. A quote character in the middle of an unquoted field is
+ * taken as is.
+ *
+ * The separator, quote and escape characters must be single byte (ASCII) characters,
+ * which leaves the multi-byte UTF-8 sequences untouched.
+ *
+ *
+ * @since 3.0.0
+ */
+public class CSVTokenizer {
+    public static final byte DEFAULT_SEPARATOR = ',';
+    public static final byte DEFAULT_QUOTE = '"';
+    public static final byte DEFAULT_ESCAPE = '\\';
+
+    private final byte separator;
+    private final byte quote;
+    private final byte escape;
+
+    private byte[] record;
+    private int fieldCount;
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private boolean[] isUnescaped = new boolean[16];
+    private byte[] buffer = new byte[256];
+    private int bufferLength;
+
+    public CSVTokenizer() {
+        this(DEFAULT_SEPARATOR, DEFAULT_QUOTE, DEFAULT_ESCAPE);
+    }
+
+    public CSVTokenizer(byte separator, byte quote, byte escape) {
+        this.separator = separator;
+        this.quote = quote;
+        this.escape = escape;
+    }
+
+    /**
+     * @return true if the character can be used as a separator, quote or escape character
+     */
+    public static boolean isSupportedCharacter(char c) {
+        return c < 0x80;
+    }
+
+    public byte getQuote() {
+        return quote;
+    }
+
+    /**
+     * Split the record into its fields. The fields reference the record, which must
+     * not be modified until they've been consumed.
+     * @param b the buffer containing the record, without its line terminator
+     * @param offset the offset of the record in the buffer
+     * @param length the length of the record
+     * @return false if the record ends within a quoted field, in which case the record
+     *  continues on the next line, and true otherwise
+     */
+    public boolean tokenize(byte[] b, int offset, int length) {
+        record = b;
+        fieldCount = 0;
+        bufferLength = 0;
+        int i = offset;
+        int end = offset + length;
+        while (true) {
+            int fieldStart = i;
+            // Fast path for the common case of a field without quote or escape characters
+            while (i < end && b[i] != separator && b[i] != quote && b[i] != escape) {
+                i++;
+            }
+            if (i == end || b[i] == separator) {
+                addField(fieldStart, i - fieldStart, false);
+            } else {
+                int unescapedStart = bufferLength;
+                append(b, fieldStart, i - fieldStart);
+                boolean inQuotes = false;
+                while (i < end) {
+                    byte c = b[i];
+                    if (c == escape && i + 1 < end && (b[i + 1] == quote || b[i + 1] == escape)) {
+                        append(b, i + 1, 1);
+                        i += 2;
+                    } else if (c == quote) {
+                        if (inQuotes) {
+                            if (i + 1 < end && b[i + 1] == quote) {
+                                append(b, i, 1);
+                                i += 2;
+                            } else {
+                                inQuotes = false;
+                                i++;
+                            }
+                        } else if (isWhiteSpace(buffer, unescapedStart, bufferLength)) {
+                            // Opening quote: drop any white space before it
+                            bufferLength = unescapedStart;
+                            inQuotes = true;
+                            i++;
+                        } else {
+                            append(b, i, 1);
+                            i++;
+                        }
+                    } else if (c == separator && !inQuotes) {
+                        break;
+                    } else {
+                        append(b, i, 1);
+                        i++;
+                    }
+                }
+                if (inQuotes) {
+                    return false;
+                }
+                addField(unescapedStart, bufferLength - unescapedStart, true);
+            }
+            if (i == end) {
+                return true;
+            }
+            i++; // Skip separator
+        }
+    }
+
+    /**
+     * @return the number of fields of the last record tokenized
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Point ptr at the bytes of a field of the last record tokenized
+     * @param index the index of the field
+     * @param ptr the pointer to set
+     */
+    public void getField(int index, ImmutableBytesWritable ptr) {
+        ptr.set(isUnescaped[index] ? buffer : record, offsets[index], lengths[index]);
+    }
+
+    private void addField(int offset, int length, boolean unescaped) {
+        if (fieldCount == offsets.length) {
+            int newLength = fieldCount * 2;
+            offsets = Arrays.copyOf(offsets, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            isUnescaped = Arrays.copyOf(isUnescaped, newLength);
+        }
+        offsets[fieldCount] = offset;
+        lengths[fieldCount] = length;
+        isUnescaped[fieldCount] = unescaped;
+        fieldCount++;
+    }
+
+    private void append(byte[] b, int offset, int length) {
+        if (bufferLength + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferLength + length));
+        }
+        System.arraycopy(b, offset, buffer, bufferLength, length);
+        bufferLength += length;
+    }
+
+    private static boolean isWhiteSpace(byte[] b, int offset, int end) {
+        for (int i = offset; i < end; i++) {
+            if (b[i] != ' ' && b[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -21,9 +21,11 @@ package org.apache.phoenix.util;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
@@ -32,16 +34,20 @@ import org.apache.hadoop.hbase.index.covered.update.ColumnReference;
 import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.phoenix.client.KeyValueBuilder;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.schema.ColumnFamilyNotFoundException;
 import org.apache.phoenix.schema.ColumnNotFoundException;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PColumnFamily;
 import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PIndexState;
 import org.apache.phoenix.schema.PTable;
 
 import com.google.common.collect.Lists;
@@ -145,10 +151,10 @@ public class IndexUtil {
     }
 
     public static List<Mutation> generateIndexData(final PTable table, PTable index,
-            List<Mutation> dataMutations, ImmutableBytesWritable ptr, KeyValueBuilder builder)
+            List<Mutation> dataMutations, ImmutableBytesWritable ptr, KeyValueBuilder builder, PhoenixConnection connection)
             throws SQLException {
         try {
-            IndexMaintainer maintainer = index.getIndexMaintainer(table);
+            IndexMaintainer maintainer = index.getIndexMaintainer(table, connection);
             maintainer.setKvBuilder(builder);
             List<Mutation> indexMutations = Lists.newArrayListWithExpectedSize(dataMutations.size());
            for (final Mutation dataMutation : dataMutations) {
@@ -183,7 +189,10 @@ public class IndexUtil {
                         }
                         
                     };
-                    indexMutations.add(maintainer.buildUpdateMutation(valueGetter, ptr, ts));
+                    Put put = maintainer.buildUpdateMutation(valueGetter, ptr, ts);
+                    if (put != null) {
+                        indexMutations.add(put);
+                    }
                 } else {
                     if (!maintainer.getIndexedColumns().isEmpty()) {
                         throw new SQLExceptionInfo.Builder(SQLExceptionCode.NO_DELETE_IF_IMMUTABLE_INDEX).setSchemaName(table.getSchemaName().getString())
@@ -201,4 +210,46 @@ public class IndexUtil {
     public static boolean isDataPKColumn(PColumn column) {
         return column.getName().getString().startsWith(INDEX_COLUMN_NAME_SEP);
     }
+
+    /**
+     * @return true if any of the indexed columns of the given index is an expression
+     * over the columns of the data table, as opposed to a data column.
+     */
+    public static boolean hasIndexedExpression(PTable index) {
+        for (PColumn column : index.getPKColumns()) {
+            if (column.getExpressionStr() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the mutation of the SYSTEM.TABLE row of an index that disables the index after
+     * the given index mutations failed to be written. The earliest time stamp of the failed
+     * mutations is recorded, so that the index may later be rebuilt from the data rows that
+     * changed since then instead of from scratch.
+     * @param indexTableName full name of the index table
+     * @param failedMutations index mutations that failed to be written
+     */
+    public static Mutation newDisableIndexMutation(String indexTableName, Collection<Mutation> failedMutations) {
+        // Mimic the Put that gets generated by the client on an update of the index state
+        Put put = new Put(SchemaUtil.getTableKeyFromFullName(indexTableName));
+        put.add(PhoenixDatabaseMetaData.TABLE_FAMILY_BYTES, PhoenixDatabaseMetaData.INDEX_STATE_BYTES, PIndexState.DISABLE.getSerializedBytes());
+        put.add(PhoenixDatabaseMetaData.TABLE_FAMILY_BYTES, PhoenixDatabaseMetaData.INDEX_DISABLE_TIMESTAMP_BYTES, PDataType.LONG.toBytes(getMinTimeStamp(failedMutations)));
+        return put;
+    }
+
+    private static long getMinTimeStamp(Collection<Mutation> mutations) {
+        long minTimeStamp = HConstants.LATEST_TIMESTAMP;
+        for (Mutation mutation : mutations) {
+            for (List<KeyValue> kvs : mutation.getFamilyMap().values()) {
+                for (KeyValue kv : kvs) {
+                    minTimeStamp = Math.min(minTimeStamp, kv.getTimestamp());
+                }
+            }
+        }
+        // Should not happen, but fall back to now rather than leaving a marker that can never be replayed
+        return minTimeStamp == HConstants.LATEST_TIMESTAMP ? EnvironmentEdgeManager.currentTimeMillis() : minTimeStamp;
+    }
 }
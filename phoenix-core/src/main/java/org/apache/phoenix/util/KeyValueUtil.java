@@ -90,8 +90,20 @@ public class KeyValueUtil {
      * @param qualifier
      */
     public static KeyValue getColumnLatest(List<KeyValue>kvs, byte[] family, byte[] qualifier) {
+        int pos = getColumnLatestIndex(kvs, family, qualifier);
+        return pos < 0 ? null : kvs.get(pos);
+    }
+
+    /**
+     * Binary search for the index of the latest column value without allocating memory in the process
+     * @param kvs
+     * @param family
+     * @param qualifier
+     * @return the index of the KeyValue, or -1 if not found
+     */
+    public static int getColumnLatestIndex(List<KeyValue>kvs, byte[] family, byte[] qualifier) {
         if (kvs.size() == 0) {
-        	return null;
+        	return -1;
         }
         KeyValue row = kvs.get(0);
         Comparator<KeyValue> comp = new SearchComparator(row.getBuffer(), row.getRowOffset(), row.getRowLength(), family, qualifier);
@@ -103,19 +115,37 @@ public class KeyValueUtil {
           // pos is now insertion point
         }
         if (pos == kvs.size()) {
-          return null; // doesn't exist
+          return -1; // doesn't exist
         }
     
         KeyValue kv = kvs.get(pos);
         if (Bytes.compareTo(kv.getBuffer(), kv.getFamilyOffset(), kv.getFamilyLength(),
                 family, 0, family.length) != 0) {
-            return null;
+            return -1;
         }
         if (Bytes.compareTo(kv.getBuffer(), kv.getQualifierOffset(), kv.getQualifierLength(),
                 qualifier, 0, qualifier.length) != 0) {
-            return null;
+            return -1;
+        }
+        return pos;
+    }
+
+    /**
+     * Get the index of the latest column value, first checking the index where it was found
+     * in a previous row, which saves the binary search when the rows have the same columns.
+     * @param kvs
+     * @param family
+     * @param qualifier
+     * @param position the index where the column was found in a previous row, or -1
+     * @return the index of the KeyValue, or -1 if not found
+     */
+    public static int getColumnLatestIndex(List<KeyValue>kvs, byte[] family, byte[] qualifier, int position) {
+        if (position >= 0 && position < kvs.size() && kvs.get(position).matchingColumn(family, qualifier)
+                // Must be the latest version of the column
+                && (position == 0 || !kvs.get(position - 1).matchingColumn(family, qualifier))) {
+            return position;
         }
-        return kv;
+        return getColumnLatestIndex(kvs, family, qualifier);
     }
 
     /*
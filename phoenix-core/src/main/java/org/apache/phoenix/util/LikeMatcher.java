@@ -0,0 +1,300 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ *
+ * Matches UTF-8 encoded values against a LIKE pattern without decoding them. The
+ * pattern is split on its '%' wildcards into segments of literal bytes and '_'
+ * wildcards. The first segment is matched at the start of the value and the last one
+ * at its end, unless the pattern starts or ends with '%', while the segments in between
+ * are searched for left to right. As each segment matches a fixed number of characters,
+ * matching each one as early as possible never prevents the following ones from matching,
+ * so no backtracking is needed.
+ * 
+ * This covers the common LIKE 'abc%', LIKE '%abc' and LIKE '%abc%' patterns as special
+ * cases, the latter using a Boyer-Moore-Horspool search.
+ *
+ *
+ * @since 3.0.0
+ */
+public class LikeMatcher {
+    private final Segment[] segments;
+    private final boolean startsWithWildcard;
+    private final boolean endsWithWildcard;
+
+    private LikeMatcher(Segment[] segments, boolean startsWithWildcard, boolean endsWithWildcard) {
+        this.segments = segments;
+        this.startsWithWildcard = startsWithWildcard;
+        this.endsWithWildcard = endsWithWildcard;
+    }
+
+    /**
+     * Compile a LIKE pattern, in which '%' matches zero or more characters, '_' matches
+     * any single character and '\' escapes the character following it.
+     * @param likePattern the LIKE pattern
+     * @return the matcher for the pattern
+     */
+    public static LikeMatcher compile(String likePattern) {
+        List<Segment> segments = new ArrayList<Segment>();
+        SegmentBuilder segment = new SegmentBuilder();
+        StringBuilder literal = new StringBuilder();
+        boolean startsWithWildcard = false;
+        boolean endsWithWildcard = false;
+        boolean wasSlash = false;
+        for (int i = 0; i < likePattern.length(); i++) {
+            char c = likePattern.charAt(i);
+            if (wasSlash) {
+                literal.append(c);
+                wasSlash = false;
+                endsWithWildcard = false;
+            } else if (c == StringUtil.SINGLE_CHAR_LIKE) {
+                segment.addLiteral(literal);
+                segment.addAnyOne();
+                endsWithWildcard = false;
+            } else if (c == StringUtil.MULTI_CHAR_LIKE) {
+                segment.addLiteral(literal);
+                if (segment.isEmpty()) {
+                    startsWithWildcard |= segments.isEmpty();
+                } else {
+                    segments.add(segment.build());
+                    segment = new SegmentBuilder();
+                }
+                endsWithWildcard = true;
+            } else if (c == '\\') {
+                // A trailing escape character escapes nothing and is ignored
+                wasSlash = true;
+            } else {
+                literal.append(c);
+                endsWithWildcard = false;
+            }
+        }
+        segment.addLiteral(literal);
+        if (!segment.isEmpty()) {
+            segments.add(segment.build());
+        }
+        return new LikeMatcher(segments.toArray(new Segment[segments.size()]), startsWithWildcard, endsWithWildcard);
+    }
+
+    /**
+     * @param b the buffer containing the UTF-8 encoded value, in ascending sort order
+     * @param offset the offset of the value
+     * @param length the length of the value
+     * @return true if the whole value matches the pattern, and false otherwise
+     */
+    public boolean matches(byte[] b, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        int first = 0;
+        int last = segments.length;
+        if (last == 0) {
+            return startsWithWildcard || length == 0;
+        }
+        if (!startsWithWildcard) {
+            start = segments[first++].matchForward(b, start, end);
+            if (start < 0) {
+                return false;
+            }
+            if (last == 1 && !endsWithWildcard) {
+                return start == end;
+            }
+        }
+        if (!endsWithWildcard) {
+            end = segments[--last].matchBackward(b, start, end);
+            if (end < 0) {
+                return false;
+            }
+        }
+        for (int i = first; i < last; i++) {
+            start = segments[i].find(b, start, end);
+            if (start < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isContinuationByte(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    private static int getCharLength(byte b) {
+        int c = b & 0xff;
+        if (c < 0xC0) {
+            // ASCII, or an invalid lead byte taken as a single character
+            return 1;
+        }
+        return c < 0xE0 ? 2 : c < 0xF0 ? 3 : 4;
+    }
+
+    private static class SegmentBuilder {
+        private byte[] bytes = new byte[16];
+        private boolean[] isAnyOne = new boolean[16];
+        private int length;
+        private int minLength;
+        private boolean hasAnyOne;
+
+        private void addLiteral(StringBuilder literal) {
+            if (literal.length() == 0) {
+                return;
+            }
+            // Encode whole runs of literal characters, which keeps surrogate pairs together
+            byte[] b = Bytes.toBytes(literal.toString());
+            for (int i = 0; i < b.length; i++) {
+                add(b[i], false);
+            }
+            literal.setLength(0);
+        }
+
+        private void addAnyOne() {
+            add((byte)0, true);
+            hasAnyOne = true;
+        }
+
+        private void add(byte b, boolean anyOne) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+                isAnyOne = Arrays.copyOf(isAnyOne, length * 2);
+            }
+            bytes[length] = b;
+            isAnyOne[length] = anyOne;
+            length++;
+            minLength++;
+        }
+
+        private boolean isEmpty() {
+            return length == 0;
+        }
+
+        private Segment build() {
+            return new Segment(Arrays.copyOf(bytes, length), hasAnyOne ? Arrays.copyOf(isAnyOne, length) : null, minLength);
+        }
+    }
+
+    /**
+     * Literal bytes and '_' wildcards between two '%' wildcards of the pattern.
+     */
+    private static class Segment {
+        private final byte[] bytes;
+        // Null when the segment has no '_', and may then be searched for with Boyer-Moore-Horspool
+        private final boolean[] isAnyOne;
+        private final int minLength;
+        private final int[] skip;
+
+        private Segment(byte[] bytes, boolean[] isAnyOne, int minLength) {
+            this.bytes = bytes;
+            this.isAnyOne = isAnyOne;
+            this.minLength = minLength;
+            if (isAnyOne == null) {
+                skip = new int[256];
+                Arrays.fill(skip, bytes.length);
+                for (int i = 0; i < bytes.length - 1; i++) {
+                    skip[bytes[i] & 0xff] = bytes.length - 1 - i;
+                }
+            } else {
+                skip = null;
+            }
+        }
+
+        /**
+         * @return the end of the segment matched from start, or -1 if it doesn't match there
+         */
+        private int matchForward(byte[] b, int start, int end) {
+            if (end - start < minLength) {
+                return -1;
+            }
+            int pos = start;
+            for (int i = 0; i < bytes.length; i++) {
+                if (pos >= end) {
+                    return -1;
+                }
+                if (isAnyOne != null && isAnyOne[i]) {
+                    pos += getCharLength(b[pos]);
+                    if (pos > end) {
+                        return -1;
+                    }
+                } else if (b[pos++] != bytes[i]) {
+                    return -1;
+                }
+            }
+            return pos;
+        }
+
+        /**
+         * @return the start of the segment matched up to end, or -1 if it doesn't match there
+         */
+        private int matchBackward(byte[] b, int start, int end) {
+            if (end - start < minLength) {
+                return -1;
+            }
+            int pos = end;
+            for (int i = bytes.length - 1; i >= 0; i--) {
+                if (pos <= start) {
+                    return -1;
+                }
+                if (isAnyOne != null && isAnyOne[i]) {
+                    pos--;
+                    while (pos > start && isContinuationByte(b[pos])) {
+                        pos--;
+                    }
+                } else if (b[--pos] != bytes[i]) {
+                    return -1;
+                }
+            }
+            return pos;
+        }
+
+        /**
+         * @return the end of the first match of the segment between start and end,
+         *  or -1 if there is none
+         */
+        private int find(byte[] b, int start, int end) {
+            if (skip == null) {
+                for (int pos = start; end - pos >= minLength; pos++) {
+                    // Matches may only start on a character boundary
+                    if (!isContinuationByte(b[pos])) {
+                        int matchEnd = matchForward(b, pos, end);
+                        if (matchEnd >= 0) {
+                            return matchEnd;
+                        }
+                    }
+                }
+                return -1;
+            }
+            int m = bytes.length;
+            for (int pos = start; pos <= end - m; pos += skip[b[pos + m - 1] & 0xff]) {
+                int i = m - 1;
+                while (i >= 0 && b[pos + i] == bytes[i]) {
+                    i--;
+                }
+                if (i < 0) {
+                    return pos + m;
+                }
+            }
+            return -1;
+        }
+    }
+}
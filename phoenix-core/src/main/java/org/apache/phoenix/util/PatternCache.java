@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.SortOrder;
+
+/**
+ *
+ * Small bounded cache of objects compiled from a VARCHAR pattern, keyed on the bytes
+ * of the pattern. Used by expressions whose pattern argument isn't a literal, so that
+ * the patterns repeating across rows are compiled once instead of once per row. The
+ * least recently used pattern is evicted once the cache is full. Not thread safe, as
+ * an expression is evaluated by a single thread.
+ *
+ *
+ * @since 3.0.0
+ */
+public abstract class PatternCache<T> {
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    private final ImmutableBytesPtr lookupKey = new ImmutableBytesPtr();
+    private final Map<ImmutableBytesPtr, T> cache;
+
+    public PatternCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public PatternCache(final int maxSize) {
+        this.cache = new LinkedHashMap<ImmutableBytesPtr, T>(Math.min(maxSize, 16), 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ImmutableBytesPtr, T> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the compiled form of the pattern pointed to by ptr, compiling it on a cache miss.
+     * @param ptr the bytes pointer to the non null pattern
+     * @param sortOrder the sort order of the pattern
+     * @return the compiled pattern
+     */
+    public T get(ImmutableBytesWritable ptr, SortOrder sortOrder) {
+        lookupKey.set(ptr.get(), ptr.getOffset(), ptr.getLength());
+        T compiled = cache.get(lookupKey);
+        // Don't hold on to the buffer of the row
+        lookupKey.set(ByteUtil.EMPTY_BYTE_ARRAY);
+        if (compiled == null) {
+            compiled = compile((String)PDataType.VARCHAR.toObject(ptr, sortOrder));
+            cache.put(new ImmutableBytesPtr(ptr.copyBytes()), compiled);
+        }
+        return compiled;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    protected abstract T compile(String pattern);
+}
@@ -105,12 +105,14 @@ public class PhoenixRuntime {
     private static final String HEADER_OPTION = "-h";
     private static final String STRICT_OPTION = "-s";
     private static final String CSV_OPTION = "-d";
+    private static final String THREADS_OPTION = "-w";
+    private static final String PARTITIONED_OPTION = "-r";
     private static final String HEADER_IN_LINE = "in-line";
     private static final String SQL_FILE_EXT = ".sql";
     private static final String CSV_FILE_EXT = ".csv";
     
     private static void usageError() {
-        System.err.println("Usage: psql [-t table-name] [-h comma-separated-column-names | in-line] [-d field-delimiter-char quote-char escape-char]<zookeeper>  <path-to-sql-or-csv-file>...\n" +
+        System.err.println("Usage: psql [-t table-name] [-h comma-separated-column-names | in-line] [-d field-delimiter-char quote-char escape-char] [-w num-threads [-r]] <zookeeper>  <path-to-sql-or-csv-file>...\n" +
                 "  By default, the name of the CSV file is used to determine the Phoenix table into which the CSV data is loaded\n" +
                 "  and the ordinal value of the columns determines the mapping.\n" +
                 "  -t overrides the table into which the CSV data is loaded\n" +
@@ -120,12 +122,15 @@ public class PhoenixRuntime {
                 "  -s uses strict mode by throwing an exception if a column name doesn't match during CSV loading.\n" +
                 "  -d uses custom delimiters for CSV loader, need to specify single char for field delimiter, phrase delimiter, and escape char.\n" +
                 "     number is NOT usually a delimiter and shall be taken as 1 -> ctrl A, 2 -> ctrl B ... 9 -> ctrl I. \n" +
+                "  -w loads the CSV data with the given number of threads, each upserting through its own connection.\n" +
+                "  -r assigns the regions of the table to the loading threads, so that each thread only writes to its own regions.\n" +
                 "Examples:\n" +
                 "  psql localhost my_ddl.sql\n" +
                 "  psql localhost my_ddl.sql my_table.csv\n" +
                 "  psql -t my_table my_cluster:1825 my_table2012-Q3.csv\n" +
                 "  psql -t my_table -h col1,col2,col3 my_cluster:1825 my_table2012-Q3.csv\n" +
-                "  psql -t my_table -h col1,col2,col3 -d 1 2 3 my_cluster:1825 my_table2012-Q3.csv\n"
+                "  psql -t my_table -h col1,col2,col3 -d 1 2 3 my_cluster:1825 my_table2012-Q3.csv\n" +
+                "  psql -t my_table -w 16 -r my_cluster:1825 my_table2012-Q3.csv\n"
         );
         System.exit(-1);
     }
@@ -147,6 +152,8 @@ public class PhoenixRuntime {
             List<String> columns = null;
             boolean isStrict = false;
             List<String> delimiter = new ArrayList<String>();
+            int numThreads = 1;
+            boolean isPartitioned = false;
 
             int i = 0;
             for (; i < args.length; i++) {
@@ -179,6 +186,20 @@ public class PhoenixRuntime {
                             usageError();
                         }
                     }
+                } else if (THREADS_OPTION.equals(args[i])) {
+                    if (++i == args.length) {
+                        usageError();
+                    }
+                    try {
+                        numThreads = Integer.parseInt(args[i]);
+                    } catch (NumberFormatException e) {
+                        usageError();
+                    }
+                    if (numThreads < 1) {
+                        usageError();
+                    }
+                } else if (PARTITIONED_OPTION.equals(args[i])) {
+                    isPartitioned = true;
                 } else {
                     break;
                 }
@@ -199,7 +220,7 @@ public class PhoenixRuntime {
                     if (tableName == null) {
                         tableName = fileName.substring(fileName.lastIndexOf(File.separatorChar) + 1, fileName.length()-CSV_FILE_EXT.length());
                     }
-                    CSVLoader csvLoader = new CSVLoader(conn, tableName, columns, isStrict, delimiter);
+                    CSVLoader csvLoader = new CSVLoader(conn, tableName, columns, isStrict, delimiter, numThreads, isPartitioned);
                     csvLoader.upsert(fileName);
                 } else {
                     usageError();
@@ -316,7 +337,15 @@ public class PhoenixRuntime {
         };
     }
     
-    private static PTable getTable(Connection conn, String name) throws SQLException {
+    /**
+     * Get the table through the connection, updating its metadata cache from the
+     * server if the table isn't in it yet.
+     * @param conn an open JDBC connection
+     * @param name the full table name
+     * @return the table
+     * @throws SQLException if the table cannot be found
+     */
+    public static PTable getTable(Connection conn, String name) throws SQLException {
         PTable table = null;
         PhoenixConnection pconn = conn.unwrap(PhoenixConnection.class);
         try {
@@ -3,6 +3,12 @@ package org.apache.phoenix.util;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDriver;
+import org.apache.phoenix.query.QueryServices;
 
 public class QueryUtil {
 	
@@ -61,6 +67,30 @@ public class QueryUtil {
 		return PhoenixRuntime.JDBC_PROTOCOL + PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR + server;
 	}
 
+    /**
+     * Get the url of the cluster described by the given HBase configuration
+     */
+    public static String getConnectionUrl(Configuration conf) {
+        StringBuilder buf = new StringBuilder(getUrl(conf.get(QueryServices.ZOOKEEPER_QUARUM_ATTRIB, "localhost")));
+        String port = conf.get(QueryServices.ZOOKEEPER_PORT_ATTRIB);
+        if (port != null) {
+            buf.append(PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR).append(port);
+        }
+        String rootNode = conf.get(QueryServices.ZOOKEEPER_ROOT_NODE_ATTRIB);
+        if (rootNode != null) {
+            buf.append(PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR).append(rootNode);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Get a connection to the cluster described by the given HBase configuration,
+     * for use by server-side code such as coprocessors.
+     */
+    public static PhoenixConnection getConnection(Configuration conf, Properties props) throws SQLException {
+        return PhoenixDriver.INSTANCE.connect(getConnectionUrl(conf), props).unwrap(PhoenixConnection.class);
+    }
+
     public static String getExplainPlan(ResultSet rs) throws SQLException {
         StringBuilder buf = new StringBuilder();
         while (rs.next()) {
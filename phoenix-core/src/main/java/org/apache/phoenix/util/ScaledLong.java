@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import java.math.BigDecimal;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.SortOrder;
+
+import com.google.common.math.LongMath;
+
+/**
+ *
+ * Mutable decimal held as an unscaled long and a scale, used to do DECIMAL arithmetic
+ * without creating BigDecimal instances for as long as the values fit in a long. Every
+ * operation returns false, leaving the value unchanged, when its result doesn't fit,
+ * in which case the caller falls back to BigDecimal arithmetic.
+ *
+ *
+ * @since 3.0.0
+ */
+public class ScaledLong {
+    private long unscaledValue;
+    private int scale;
+    private byte[] invertedBytes;
+
+    public long getUnscaledValue() {
+        return unscaledValue;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public void set(long unscaledValue, int scale) {
+        this.unscaledValue = unscaledValue;
+        this.scale = scale;
+    }
+
+    /**
+     * Set the value to the decimal or integral number pointed to by ptr.
+     * @param ptr the bytes pointer to the non null value
+     * @param type the type of the value
+     * @param sortOrder the sort order of the value
+     * @return false if the value isn't a decimal or integral number fitting in a long
+     */
+    public boolean set(ImmutableBytesWritable ptr, PDataType type, SortOrder sortOrder) {
+        if (type == PDataType.DECIMAL) {
+            byte[] bytes = ptr.get();
+            int offset = ptr.getOffset();
+            int length = ptr.getLength();
+            if (sortOrder == SortOrder.DESC) {
+                if (invertedBytes == null || invertedBytes.length < length) {
+                    invertedBytes = new byte[length];
+                }
+                bytes = SortOrder.invert(bytes, offset, invertedBytes, 0, length);
+                offset = 0;
+            }
+            return PDataType.toScaledLong(bytes, offset, length, this);
+        }
+        if (type.isCoercibleTo(PDataType.LONG)) {
+            set(type.getCodec().decodeLong(ptr, sortOrder), 0);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean add(ScaledLong value) {
+        return add(value.unscaledValue, value.scale);
+    }
+
+    public boolean add(long unscaledValue, int scale) {
+        try {
+            int resultScale = Math.max(this.scale, scale);
+            long result = LongMath.checkedAdd(rescale(this.unscaledValue, this.scale, resultScale), rescale(unscaledValue, scale, resultScale));
+            set(result, resultScale);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    public boolean subtract(ScaledLong value) {
+        if (value.unscaledValue == Long.MIN_VALUE) {
+            return false;
+        }
+        return add(-value.unscaledValue, value.scale);
+    }
+
+    public boolean multiply(ScaledLong value) {
+        try {
+            long result = LongMath.checkedMultiply(unscaledValue, value.unscaledValue);
+            set(result, scale + value.scale);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Same as {@link NumberUtil#setDecimalWidthAndScale(BigDecimal, int, int)}.
+     * @return false if the value doesn't fit the precision or if it no longer fits in a long
+     */
+    public boolean setDecimalWidthAndScale(int precision, int scale) {
+        // Same digits before the decimal point as the BigDecimal
+        int digits = 0;
+        for (long l = unscaledValue; l != 0; l /= 10) {
+            digits++;
+        }
+        if (precision - scale < Math.max(digits, 1) - this.scale) {
+            return false;
+        }
+        try {
+            set(rescale(unscaledValue, this.scale, scale), scale);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    // Rounds down when decreasing the scale, like BigDecimal.ROUND_DOWN
+    private static long rescale(long unscaledValue, int scale, int newScale) {
+        if (newScale >= scale) {
+            return newScale == scale ? unscaledValue : LongMath.checkedMultiply(unscaledValue, LongMath.checkedPow(10, newScale - scale));
+        }
+        if (scale - newScale > 18) {
+            return 0;
+        }
+        return unscaledValue / LongMath.pow(10, scale - newScale);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaledValue, scale);
+    }
+
+    public byte[] toBytes() {
+        return PDataType.toBytes(unscaledValue, scale);
+    }
+
+    public int toBytes(byte[] bytes, int offset) {
+        return PDataType.toBytes(unscaledValue, scale, bytes, offset);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.index.parallel;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestFairTaskScheduler {
+
+  /**
+   * A queue of blocked tasks must not hold all the threads of the pool
+   */
+  @Test
+  public void testSlowQueueDoesNotStarveOtherQueues() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      FairTaskScheduler scheduler = new FairTaskScheduler(pool, 1);
+      final CountDownLatch slowTableDown = new CountDownLatch(1);
+      List<Future<Boolean>> slowWrites = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < 3; i++) {
+        slowWrites.add(scheduler.submit("slow", new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            slowTableDown.await();
+            return true;
+          }
+        }));
+      }
+      Future<Boolean> fastWrite = scheduler.submit("fast", new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          return true;
+        }
+      });
+      assertTrue("Write to the healthy queue was starved",
+        fastWrite.get(10, TimeUnit.SECONDS));
+      for (Future<Boolean> slowWrite : slowWrites) {
+        assertFalse("Slow write completed before being released", slowWrite.isDone());
+      }
+
+      // the slow queue drains once unblocked
+      slowTableDown.countDown();
+      for (Future<Boolean> slowWrite : slowWrites) {
+        assertTrue(slowWrite.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRejectedTasksAreCancelled() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(1);
+    pool.shutdown();
+    FairTaskScheduler scheduler = new FairTaskScheduler(pool, 1);
+    Future<Boolean> future = scheduler.submit(null, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return true;
+      }
+    });
+    assertTrue("Task rejected by the pool wasn't cancelled", future.isCancelled());
+  }
+}
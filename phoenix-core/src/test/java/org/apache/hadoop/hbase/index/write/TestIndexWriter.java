@@ -52,11 +52,14 @@ import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.google.common.collect.Multimap;
+
 import org.apache.hadoop.hbase.index.StubAbortable;
 import org.apache.hadoop.hbase.index.TableName;
 import org.apache.hadoop.hbase.index.exception.IndexWriteException;
 import org.apache.hadoop.hbase.index.exception.SingleIndexWriteFailureException;
 import org.apache.hadoop.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.metrics.MetricsIndexerSource;
 
 public class TestIndexWriter {
   private static final Log LOG = LogFactory.getLog(TestIndexWriter.class);
@@ -283,4 +286,48 @@ public class TestIndexWriter {
     primaryWriter.join();
     assertTrue("Writer should have failed because of the stop we issued", failedWrite[0]);
   }
-}
\ No newline at end of file
+
+  /**
+   * Failures handed to the failure policy should be counted against the index table that failed
+   * @throws Exception on failure
+   */
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testFailuresCountedPerIndexTable() throws Exception {
+    Abortable abort = new StubAbortable();
+    Stoppable stop = Mockito.mock(Stoppable.class);
+    ExecutorService exec = Executors.newFixedThreadPool(2);
+    Map<ImmutableBytesPtr, HTableInterface> tables = new HashMap<ImmutableBytesPtr, HTableInterface>();
+    FakeTableFactory factory = new FakeTableFactory(tables);
+
+    byte[] tableName = Bytes.add(this.testName.getTableName(), new byte[] { 1, 2, 3, 4 });
+    byte[] tableName2 = this.testName.getTableName();
+    Put m = new Put(row);
+    m.add(Bytes.toBytes("family"), Bytes.toBytes("qual"), null);
+    List<Pair<Mutation, byte[]>> indexUpdates = new ArrayList<Pair<Mutation, byte[]>>();
+    indexUpdates.add(new Pair<Mutation, byte[]>(m, tableName));
+    indexUpdates.add(new Pair<Mutation, byte[]>(m, tableName2));
+
+    // first table fails, second one succeeds
+    HTableInterface table = Mockito.mock(HTableInterface.class);
+    Mockito.when(table.batch(Mockito.anyList())).thenThrow(
+      new IOException("Intentional IOException for failed first write."));
+    Mockito.when(table.getTableName()).thenReturn(tableName);
+    HTableInterface table2 = Mockito.mock(HTableInterface.class);
+    Mockito.when(table2.getTableName()).thenReturn(tableName2);
+    tables.put(new ImmutableBytesPtr(tableName), table);
+    tables.put(new ImmutableBytesPtr(tableName2), table2);
+
+    ParallelWriterIndexCommitter committer = new ParallelWriterIndexCommitter();
+    committer.setup(factory, exec, abort, stop, 2);
+    IndexFailurePolicy policy = Mockito.mock(IndexFailurePolicy.class);
+    MetricsIndexerSource metrics = Mockito.mock(MetricsIndexerSource.class);
+    IndexWriter writer = new IndexWriter(committer, policy, metrics);
+    writer.writeAndKillYourselfOnFailure(indexUpdates);
+
+    Mockito.verify(policy).handleFailure(Mockito.any(Multimap.class), Mockito.any(Exception.class));
+    Mockito.verify(metrics).incrementIndexWriteFailures(Bytes.toString(tableName));
+    Mockito.verify(metrics, Mockito.never()).incrementIndexWriteFailures(Bytes.toString(tableName2));
+    writer.stop(this.testName.getTableNameString() + " finished");
+  }
+}
@@ -20,19 +20,29 @@
 package org.apache.hadoop.hbase.index.write.recovery;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -47,6 +57,9 @@ public class TestPerRegionIndexWriteCache {
   private static final byte[] qual = Bytes.toBytes("qual");
   private static final byte[] val = Bytes.toBytes("val");
 
+  @Rule
+  public TemporaryFolder spillDir = new TemporaryFolder();
+
   Put p = new Put(row);
   Put p2 = new Put(Bytes.toBytes("other row"));
   {
@@ -79,7 +92,7 @@ public class TestPerRegionIndexWriteCache {
   };
 
   @Test
-  public void testAddRemoveSingleRegion() {
+  public void testAddRemoveSingleRegion() throws Exception {
     PerRegionIndexWriteCache cache = new PerRegionIndexWriteCache();
     HTableInterfaceReference t1 = new HTableInterfaceReference(new ImmutableBytesPtr(Bytes.toBytes("t1")));
     List<Mutation> mutations = new ArrayList<Mutation>();
@@ -101,7 +114,7 @@ public class TestPerRegionIndexWriteCache {
   }
 
   @Test
-  public void testMultipleAddsForSingleRegion() {
+  public void testMultipleAddsForSingleRegion() throws Exception {
     PerRegionIndexWriteCache cache = new PerRegionIndexWriteCache();
     HTableInterfaceReference t1 =
         new HTableInterfaceReference(new ImmutableBytesPtr(Bytes.toBytes("t1")));
@@ -126,7 +139,7 @@ public class TestPerRegionIndexWriteCache {
   }
 
   @Test
-  public void testMultipleRegions() {
+  public void testMultipleRegions() throws Exception {
     PerRegionIndexWriteCache cache = new PerRegionIndexWriteCache();
     HTableInterfaceReference t1 =
         new HTableInterfaceReference(new ImmutableBytesPtr(Bytes.toBytes("t1")));
@@ -167,4 +180,87 @@ public class TestPerRegionIndexWriteCache {
     // references around to these edits and have a memory leak
     assertNull("Got an entry for a region we removed", cache.getEdits(r1));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testSpillToDisk() throws Exception {
+    // tiny heap size so every add spills
+    PerRegionIndexWriteCache cache = new PerRegionIndexWriteCache(1, spillDir.getRoot());
+    HTableInterfaceReference t1 =
+        new HTableInterfaceReference(new ImmutableBytesPtr(Bytes.toBytes("t1")));
+    HTableInterfaceReference t2 =
+        new HTableInterfaceReference(new ImmutableBytesPtr(Bytes.toBytes("t2")));
+    Delete d = new Delete(row);
+    d.deleteColumns(family, qual);
+    cache.addEdits(r1, t1, Lists.<Mutation> newArrayList(p, p2));
+    cache.addEdits(r1, t2, Lists.<Mutation> newArrayList(d));
+    cache.addEdits(r2, t1, Lists.<Mutation> newArrayList(p2));
+    assertEquals("Edits weren't spilled to disk", 2, spillDir.getRoot().listFiles().length);
+
+    // the edits come back one at a time, as each one is bigger than the max heap size
+    List<Mutation> t1Edits = new ArrayList<Mutation>();
+    List<Mutation> t2Edits = new ArrayList<Mutation>();
+    for (Multimap<HTableInterfaceReference, Mutation> edits = cache.getEdits(r1); edits != null; edits =
+        cache.getEdits(r1)) {
+      assertEquals("Got an unexpected batch size", 1, edits.size());
+      t1Edits.addAll(edits.get(t1));
+      t2Edits.addAll(edits.get(t2));
+    }
+    assertEquals(toStrings(Lists.<Mutation> newArrayList(p, p2)), toStrings(t1Edits));
+    assertEquals(toStrings(Lists.<Mutation> newArrayList(d)), toStrings(t2Edits));
+    assertEquals("Replayed spill file wasn't deleted", 1, spillDir.getRoot().listFiles().length);
+
+    Multimap<HTableInterfaceReference, Mutation> edits = cache.getEdits(r2);
+    assertEquals(toStrings(Lists.<Mutation> newArrayList(p2)), toStrings(edits.get(t1)));
+    assertNull("Got an entry for a region we removed", cache.getEdits(r2));
+    assertTrue("Replayed spill file wasn't deleted", spillDir.getRoot().listFiles().length == 0);
+  }
+
+  @Test
+  public void testRemoveEditsDeletesSpillFiles() throws Exception {
+    PerRegionIndexWriteCache cache = new PerRegionIndexWriteCache(1, spillDir.getRoot());
+    HTableInterfaceReference t1 =
+        new HTableInterfaceReference(new ImmutableBytesPtr(Bytes.toBytes("t1")));
+    cache.addEdits(r1, t1, Lists.<Mutation> newArrayList(p));
+    cache.addEdits(r2, t1, Lists.<Mutation> newArrayList(p2));
+    assertEquals("Edits weren't spilled to disk", 2, spillDir.getRoot().listFiles().length);
+
+    assertTrue("Didn't find the edits of the region", cache.removeEdits(r1));
+    assertFalse("Found edits for a region we removed", cache.removeEdits(r1));
+    assertNull("Got an entry for a region we removed", cache.getEdits(r1));
+    assertEquals("Spill file of removed region wasn't deleted", 1,
+      spillDir.getRoot().listFiles().length);
+    Multimap<HTableInterfaceReference, Mutation> edits = cache.getEdits(r2);
+    assertEquals(toStrings(Lists.<Mutation> newArrayList(p2)), toStrings(edits.get(t1)));
+  }
+
+  @Test
+  public void testSharedCachePerRegionServer() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.set(PerRegionIndexWriteCache.SPILL_DIR_CONF_KEY, spillDir.getRoot().getPath());
+    ServerName server = new ServerName("testSharedCache", 1234, 1L);
+    // a spill file left behind by a previous run of the region server
+    File serverSpillDir = new File(spillDir.getRoot(), "testSharedCache_1234");
+    assertTrue(serverSpillDir.mkdirs());
+    File staleSpillFile = new File(serverSpillDir, "index-edits-stale.spill");
+    assertTrue(staleSpillFile.createNewFile());
+
+    PerRegionIndexWriteCache cache = PerRegionIndexWriteCache.getSharedCache(conf, server);
+    assertFalse("Stale spill file wasn't deleted", staleSpillFile.exists());
+    // a restarted region server has a new start code, but uses the same directory
+    assertSame("Regions of the same server don't share the cache", cache,
+      PerRegionIndexWriteCache.getSharedCache(conf, new ServerName("testSharedCache", 1234, 2L)));
+    assertNotSame("Regions of different servers share the cache", cache,
+      PerRegionIndexWriteCache.getSharedCache(conf, new ServerName("testSharedCache", 1235, 1L)));
+  }
+
+  /**
+   * Mutations don't implement equals, so compare their string representations instead
+   */
+  private static List<String> toStrings(Collection<Mutation> mutations) {
+    List<String> strings = new ArrayList<String>();
+    for (Mutation m : mutations) {
+      strings.add(m.toString());
+    }
+    return strings;
+  }
+}
@@ -1,7 +1,12 @@
 package org.apache.hadoop.hbase.regionserver.wal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,7 +26,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.apache.hadoop.hbase.index.IndexTestingUtils;
+import org.apache.hadoop.hbase.index.wal.CompactIndexedKeyValueCodec;
 import org.apache.hadoop.hbase.index.wal.IndexedKeyValue;
+import org.apache.hadoop.hbase.index.wal.KeyValueCodec;
 
 /**
  * Simple test to read/write simple files via our custom {@link WALEditCodec} to ensure properly
@@ -102,9 +109,75 @@ public class TestReadWriteKeyValuesWithCodec {
     addMutation(mixed, p, FAMILY);
     edits.add(mixed);
 
+    WALEdit manyIndexUpdates = new WALEdit();
+    addMutation(manyIndexUpdates, p, FAMILY);
+    for (IndexedKeyValue indexKv : getIndexUpdates(10)) {
+      manyIndexUpdates.add(indexKv);
+    }
+    edits.add(manyIndexUpdates);
+
     return edits;
   }
 
+  /**
+   * @return index updates across a couple of index tables, with rows sharing a common prefix, as
+   *         written by the index maintenance of a batch of data rows.
+   */
+  private List<IndexedKeyValue> getIndexUpdates(int count) {
+    List<IndexedKeyValue> updates = new ArrayList<IndexedKeyValue>();
+    byte[][] tables = new byte[][] { Bytes.toBytes("targetTable"), Bytes.toBytes("otherTable") };
+    long ts = 1000;
+    for (int i = 0; i < count; i++) {
+      byte[] indexRow = Bytes.toBytes("indexedValue" + i + "\u0000row" + i);
+      byte[] table = tables[i % tables.length];
+      Delete delete = new Delete(indexRow, ts + i, null);
+      delete.deleteFamily(FAMILY, ts + i);
+      updates.add(new IndexedKeyValue(table, delete));
+      Put put = new Put(indexRow, ts + i);
+      put.add(FAMILY, Bytes.toBytes("_0"), ts + i, new byte[0]);
+      put.add(FAMILY, Bytes.toBytes("coveredColumn"), ts + i, Bytes.toBytes("value" + i));
+      put.setAttribute("attribute", Bytes.toBytes(i));
+      updates.add(new IndexedKeyValue(table, put));
+    }
+    return updates;
+  }
+
+  /**
+   * Compare the size of an edit full of index updates with the legacy and compact encodings, and
+   * ensure both can be read back.
+   */
+  @Test
+  public void testCompactEncodingOfIndexUpdates() throws Exception {
+    List<IndexedKeyValue> updates = getIndexUpdates(100);
+
+    ByteArrayOutputStream legacyBytes = new ByteArrayOutputStream();
+    DataOutputStream legacyOut = new DataOutputStream(legacyBytes);
+    legacyOut.writeInt(updates.size());
+    for (IndexedKeyValue update : updates) {
+      KeyValueCodec.write(legacyOut, update);
+    }
+    legacyOut.close();
+
+    ByteArrayOutputStream compactBytes = new ByteArrayOutputStream();
+    DataOutputStream compactOut = new DataOutputStream(compactBytes);
+    CompactIndexedKeyValueCodec compactCodec = new CompactIndexedKeyValueCodec();
+    compactOut.writeInt(updates.size());
+    for (IndexedKeyValue update : updates) {
+      KeyValueCodec.write(compactOut, update, compactCodec);
+    }
+    compactOut.close();
+
+    assertTrue("Compact encoding (" + compactBytes.size() + " bytes) should be less than half the "
+        + "size of the legacy encoding (" + legacyBytes.size() + " bytes)",
+      compactBytes.size() * 2 < legacyBytes.size());
+
+    for (ByteArrayOutputStream bytes : new ByteArrayOutputStream[] { legacyBytes, compactBytes }) {
+      List<KeyValue> read =
+          KeyValueCodec.readKeyValues(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      assertEquals(updates, read);
+    }
+  }
+
   /**
    * Add all the {@link KeyValue}s in the {@link Mutation}, for the pass family, to the given
    * {@link WALEdit}.
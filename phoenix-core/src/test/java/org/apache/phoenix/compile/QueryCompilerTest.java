@@ -1120,6 +1120,42 @@ public class QueryCompilerTest extends BaseConnectionlessQueryTest {
         }
     }
     
+    @Test
+    public void testInvalidIndexedExpression() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().execute("CREATE TABLE t (k1 VARCHAR, v1 VARCHAR, v2 DATE CONSTRAINT pk PRIMARY KEY(k1))");
+        assertInvalidIndexedExpression(conn, "COUNT(v1)", SQLExceptionCode.AGGREGATE_EXPRESSION_NOT_ALLOWED_IN_INDEX);
+        assertInvalidIndexedExpression(conn, "CURRENT_DATE()", SQLExceptionCode.NON_DETERMINISTIC_EXPRESSION_NOT_ALLOWED_IN_INDEX);
+        assertInvalidIndexedExpression(conn, "UPPER('a')", SQLExceptionCode.STATELESS_EXPRESSION_NOT_ALLOWED_IN_INDEX);
+    }
+    
+    @Test
+    public void testInvalidPartialIndexWhere() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().execute("CREATE TABLE t (k1 VARCHAR, v1 VARCHAR, v2 DATE CONSTRAINT pk PRIMARY KEY(k1))");
+        try {
+            conn.createStatement().execute("CREATE INDEX i ON t (v1) WHERE v2 > CURRENT_DATE()");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(SQLExceptionCode.NON_DETERMINISTIC_EXPRESSION_NOT_ALLOWED_IN_INDEX.getErrorCode(), e.getErrorCode());
+        }
+        try {
+            conn.createStatement().execute("CREATE INDEX i ON t (v1) WHERE v1 = 1");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(SQLExceptionCode.TYPE_MISMATCH.getErrorCode(), e.getErrorCode());
+        }
+    }
+    
+    private static void assertInvalidIndexedExpression(Connection conn, String expression, SQLExceptionCode code) throws Exception {
+        try {
+            conn.createStatement().execute("CREATE INDEX i ON t (" + expression + ")");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(code.getErrorCode(), e.getErrorCode());
+        }
+    }
+    
     @Test
     public void testInvalidNegativeArrayIndex() throws Exception {
     	String query = "SELECT a_double_array[-20] FROM table_with_array";
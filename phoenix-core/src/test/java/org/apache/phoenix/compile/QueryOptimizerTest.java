@@ -21,16 +21,29 @@ package org.apache.phoenix.compile;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.util.List;
 
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
+import org.apache.phoenix.execute.IndexJoinBackPlan;
+import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.optimize.QueryPlanCost;
 import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.schema.PMetaData;
+import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.util.SchemaUtil;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 public class QueryOptimizerTest extends BaseConnectionlessQueryTest {
     
     public static final String SCHEMA_NAME = "";
@@ -297,4 +310,107 @@ public class QueryOptimizerTest extends BaseConnectionlessQueryTest {
         QueryPlan plan = stmt.optimizeQuery(query);
         assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testChooseIndexOnExpression() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().execute("CREATE TABLE t (k INTEGER NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR) IMMUTABLE_ROWS=true");
+        conn.createStatement().execute("CREATE INDEX idx ON t(UPPER(v1)) INCLUDE (v2)");
+        PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+        QueryPlan plan = stmt.optimizeQuery("SELECT k, v2 FROM t WHERE upper(v1) = 'BAR'");
+        assertEquals("IDX", plan.getTableRef().getTable().getTableName().getString());
+        plan = stmt.optimizeQuery("SELECT k FROM t WHERE UPPER(v1) >= 'A' AND UPPER(v1) < 'B'");
+        assertEquals("IDX", plan.getTableRef().getTable().getTableName().getString());
+        plan = stmt.optimizeQuery("SELECT UPPER(v1) FROM t ORDER BY UPPER(v1)");
+        assertEquals("IDX", plan.getTableRef().getTable().getTableName().getString());
+        assertEquals(OrderBy.FWD_ROW_KEY_ORDER_BY,plan.getOrderBy());
+    }
+    
+    @Test
+    public void testChooseTableOverIndexOnOtherExpression() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().execute("CREATE TABLE t (k INTEGER NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR) IMMUTABLE_ROWS=true");
+        conn.createStatement().execute("CREATE INDEX idx ON t(UPPER(v1)) INCLUDE (v2)");
+        PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+        QueryPlan plan = stmt.optimizeQuery("SELECT k, v2 FROM t WHERE LOWER(v1) = 'bar'");
+        assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
+        // The indexed column itself is not in the index
+        plan = stmt.optimizeQuery("SELECT k, v1 FROM t WHERE UPPER(v1) = 'BAR'");
+        assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
+    }
+    
+    @Test
+    public void testChoosePartialIndexOnlyIfImplied() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().execute("CREATE TABLE t (k INTEGER NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR) IMMUTABLE_ROWS=true");
+        conn.createStatement().execute("CREATE INDEX idx ON t(v2) INCLUDE (v1) WHERE v1 = 'OPEN'");
+        PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+        QueryPlan plan = stmt.optimizeQuery("SELECT k FROM t WHERE v2 = 'x' AND v1 = 'OPEN'");
+        assertEquals("IDX", plan.getTableRef().getTable().getTableName().getString());
+        // The index doesn't have the rows for which v1 isn't 'OPEN'
+        plan = stmt.optimizeQuery("SELECT k FROM t WHERE v2 = 'x'");
+        assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
+        plan = stmt.optimizeQuery("SELECT k FROM t WHERE v2 = 'x' AND v1 = 'CLOSED'");
+        assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
+        plan = stmt.optimizeQuery("SELECT k FROM t WHERE v2 = 'x' OR v1 = 'OPEN'");
+        assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
+        plan = stmt.optimizeQuery("SELECT /*+ INDEX(t idx) */ k FROM t WHERE v2 = 'x'");
+        assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
+    }
+    
+    @Test
+    public void testChooseIndexWithJoinBack() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().execute("CREATE TABLE t (k INTEGER NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR, v3 VARCHAR)");
+        conn.createStatement().execute("CREATE INDEX idx ON t(v1) INCLUDE (v2)");
+        PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+        QueryPlan plan = stmt.optimizeQuery("SELECT k, v3 FROM t WHERE v1 = 'bar' AND v3 = 'foo'");
+        assertTrue(plan instanceof IndexJoinBackPlan);
+        assertEquals("T", plan.getTableRef().getTable().getTableName().getString());
+        assertEquals("IDX", ((IndexJoinBackPlan)plan).getIndexPlan().getTableRef().getTable().getTableName().getString());
+        // Covered by the index, so no need to join back
+        plan = stmt.optimizeQuery("SELECT k, v2 FROM t WHERE v1 = 'bar'");
+        assertEquals("IDX", plan.getTableRef().getTable().getTableName().getString());
+        // The index doesn't narrow down the rows to look at
+        plan = stmt.optimizeQuery("SELECT k, v3 FROM t WHERE v2 = 'bar'");
+        assertFalse(plan instanceof IndexJoinBackPlan);
+        plan = stmt.optimizeQuery("SELECT k, v3 FROM t WHERE v3 = 'foo'");
+        assertFalse(plan instanceof IndexJoinBackPlan);
+        // Point lookup on the data table trumps the index
+        plan = stmt.optimizeQuery("SELECT k, v3 FROM t WHERE k = 1 AND v1 = 'bar'");
+        assertFalse(plan instanceof IndexJoinBackPlan);
+    }
+
+    @Test
+    public void testPlanCostFromRegions() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().execute("CREATE TABLE t (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR, v3 VARCHAR)");
+        conn.createStatement().execute("CREATE INDEX idx ON t(v1)");
+        PMetaData metaData = conn.unwrap(PhoenixConnection.class).getPMetaData();
+        PTable table = metaData.getTable("T");
+        PTable index = metaData.getTable("IDX");
+        byte[] tableName = table.getPhysicalName().getBytes();
+        byte[][] splits = new byte[][] {HConstants.EMPTY_START_ROW, Bytes.toBytes("b"), Bytes.toBytes("c"), Bytes.toBytes("d"), HConstants.EMPTY_END_ROW};
+        List<HRegionLocation> regions = Lists.newArrayList();
+        for (int i = 0; i < splits.length - 1; i++) {
+            regions.add(new HRegionLocation(new HRegionInfo(tableName, splits[i], splits[i+1]), "localhost", -1));
+        }
+        
+        QueryPlanCost fullScan = QueryPlanCost.estimate(table, regions, HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+        assertTrue(fullScan.hasStats());
+        assertEquals(4, fullScan.getScannedChunks());
+        assertEquals(4, fullScan.getTotalChunks());
+        QueryPlanCost rangeScan = QueryPlanCost.estimate(table, regions, Bytes.toBytes("b"), Bytes.toBytes("bb"));
+        assertEquals(1, rangeScan.getScannedChunks());
+        assertEquals(0.25, rangeScan.getScannedFraction(), 0);
+        assertTrue(rangeScan.compareTo(fullScan) < 0);
+        
+        // Scanning the same fraction of the narrower index is cheaper
+        QueryPlanCost indexScan = QueryPlanCost.estimate(index, regions, HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+        assertTrue(indexScan.getRowWidth() < fullScan.getRowWidth());
+        assertTrue(indexScan.compareTo(fullScan) < 0);
+        
+        // A single region gives us nothing to go by
+        assertFalse(QueryPlanCost.estimate(table, regions.subList(0, 1), HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW).hasStats());
+    }
+}
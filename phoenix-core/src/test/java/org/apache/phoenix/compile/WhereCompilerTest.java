@@ -68,7 +68,6 @@ import org.apache.phoenix.util.DateUtil;
 import org.apache.phoenix.util.NumberUtil;
 import org.apache.phoenix.util.SchemaUtil;
 import org.apache.phoenix.util.StringUtil;
-import org.junit.Ignore;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
@@ -483,6 +482,48 @@ public class WhereCompilerTest extends BaseConnectionlessQueryTest {
         assertDegenerate(plan.getContext());
     }
 
+    @Test
+    public void testContradictoryRangesFilter() throws SQLException {
+        String tenantId = "000000000000001";
+        String query = "select * from atable where organization_id='" + tenantId + "' and a_integer > 5 and a_integer <= 3";
+        PhoenixConnection pconn = DriverManager.getConnection(getUrl(), TEST_PROPERTIES).unwrap(PhoenixConnection.class);
+        PhoenixPreparedStatement pstmt = new PhoenixPreparedStatement(pconn, query);
+        QueryPlan plan = pstmt.optimizeQuery();
+        assertDegenerate(plan.getContext());
+    }
+
+    @Test
+    public void testMergedRangesFilter() throws SQLException {
+        String tenantId = "000000000000001";
+        String query = "select * from atable where organization_id='" + tenantId + "' and a_integer > 3 and a_integer is not null and a_integer > 5 and a_integer > 3";
+        PhoenixConnection pconn = DriverManager.getConnection(getUrl(), TEST_PROPERTIES).unwrap(PhoenixConnection.class);
+        PhoenixPreparedStatement pstmt = new PhoenixPreparedStatement(pconn, query);
+        QueryPlan plan = pstmt.optimizeQuery();
+        Scan scan = plan.getContext().getScan();
+        assertEquals(
+            singleKVFilter(constantComparison(
+                CompareOp.GREATER,
+                BaseConnectionlessQueryTest.A_INTEGER,
+                5)),
+            scan.getFilter());
+    }
+
+    @Test
+    public void testOrEqualitiesToInFilter() throws SQLException {
+        String tenantId = "000000000000001";
+        String query = "select * from atable where organization_id='" + tenantId + "' and (a_string = 'a' or a_string = 'b' or a_string = 'a')";
+        PhoenixConnection pconn = DriverManager.getConnection(getUrl(), TEST_PROPERTIES).unwrap(PhoenixConnection.class);
+        PhoenixPreparedStatement pstmt = new PhoenixPreparedStatement(pconn, query);
+        QueryPlan plan = pstmt.optimizeQuery();
+        Scan scan = plan.getContext().getScan();
+        assertEquals(
+            singleKVFilter(in(
+                BaseConnectionlessQueryTest.A_STRING,
+                "a",
+                "b")),
+            scan.getFilter());
+    }
+
     @Test
     public void testFalseFilter() throws SQLException {
         String tenantId = "000000000000001";
@@ -616,7 +657,26 @@ public class WhereCompilerTest extends BaseConnectionlessQueryTest {
             filter);
     }
 
-    @Test @Ignore("OR not yet optimized")
+    @Test
+    public void testInListFilterWithDuplicates() throws SQLException {
+        String tenantId1 = "000000000000001";
+        String tenantId2 = "000000000000002";
+        String query = String.format("select * from %s where organization_id IN ('%s','%s','%s','%s')",
+                ATABLE_NAME, tenantId2, tenantId1, tenantId2, tenantId1);
+        PhoenixConnection pconn = DriverManager.getConnection(getUrl(), TEST_PROPERTIES).unwrap(PhoenixConnection.class);
+        PhoenixPreparedStatement pstmt = new PhoenixPreparedStatement(pconn, query);
+        QueryPlan plan = pstmt.optimizeQuery();
+        Scan scan = plan.getContext().getScan();
+        assertArrayEquals(PDataType.VARCHAR.toBytes(tenantId1), scan.getStartRow());
+        assertArrayEquals(ByteUtil.nextKey(PDataType.VARCHAR.toBytes(tenantId2)), scan.getStopRow());
+        assertEquals(
+            Collections.singletonList(Arrays.asList(
+                pointRange(tenantId1),
+                pointRange(tenantId2))),
+            plan.getContext().getScanRanges().getRanges());
+    }
+
+    @Test
     public void testOr2InFilter() throws SQLException {
         String tenantId1 = "000000000000001";
         String tenantId2 = "000000000000002";
@@ -44,6 +44,7 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
 import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
 import org.apache.phoenix.expression.OrExpression;
 import org.apache.phoenix.filter.RowKeyComparisonFilter;
 import org.apache.phoenix.filter.SkipScanFilter;
@@ -1054,7 +1055,7 @@ public class WhereOptimizerTest extends BaseConnectionlessQueryTest {
                 PDataType.CHAR.getKeyRange(PDataType.CHAR.toBytes(tenantId2), true, PDataType.CHAR.toBytes(tenantId2), true)));
         assertEquals(expectedRanges, ranges);
         assertEquals(1, extractedNodes.size());
-        assertTrue(extractedNodes.iterator().next() instanceof OrExpression);
+        assertTrue(extractedNodes.iterator().next() instanceof InListExpression);
         byte[] startRow = PDataType.VARCHAR.toBytes(tenantId1);
         assertArrayEquals(startRow, scan.getStartRow());
         assertArrayEquals(ByteUtil.nextKey(PDataType.VARCHAR.toBytes(tenantId2)), scan.getStopRow());
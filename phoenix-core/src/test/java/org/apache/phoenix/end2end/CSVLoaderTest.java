@@ -25,6 +25,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.StringReader;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -155,6 +156,35 @@ public class CSVLoaderTest extends BaseHBaseManagedTimeTest {
     }
     
     
+    @Test
+    public void testCSVUpsertInParallel() throws Exception {
+        // Create table
+        String statements = "CREATE TABLE IF NOT EXISTS " + STOCK_TABLE + "(SYMBOL VARCHAR NOT NULL PRIMARY KEY, COMPANY VARCHAR) SPLIT ON ('D','M');";
+        PhoenixConnection conn = DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class);
+        PhoenixRuntime.executeStatements(conn, new StringReader(statements), null);
+        
+        for (boolean isPartitioned : new boolean[] {false, true}) {
+            // Upsert CSV file
+            CSVLoader csvUtil = new CSVLoader(conn, STOCK_TABLE, Arrays.<String>asList(STOCK_COLUMNS), true, null, 3, isPartitioned);
+            CSVReader reader = new CSVReader(new StringReader(STOCK_CSV_VALUES));
+            csvUtil.upsert(reader);
+    
+            // Compare Phoenix ResultSet with CSV file content
+            PreparedStatement statement = conn.prepareStatement("SELECT SYMBOL, COMPANY FROM " + STOCK_TABLE);
+            ResultSet phoenixResultSet = statement.executeQuery();
+            reader = new CSVReader(new StringReader(STOCK_CSV_VALUES));
+            String[] csvData;
+            while ((csvData = reader.readNext()) != null) {
+                assertTrue (phoenixResultSet.next());
+                for (int i=0; i<csvData.length; i++) {
+                    assertEquals(csvData[i], phoenixResultSet.getString(i+1));
+                }
+            }
+            assertFalse(phoenixResultSet.next());
+        }
+        conn.close();
+    }
+    
     @Test
     public void testCSVUpsertWithNoColumns() throws Exception {
         // Create table
@@ -284,6 +314,74 @@ public class CSVLoaderTest extends BaseHBaseManagedTimeTest {
         conn.close();
     }
     
+    @Test
+    public void testAllDatatypesEncodedFromBytes() throws Exception {
+        // Create table
+        String statements = "CREATE TABLE IF NOT EXISTS " 
+                + DATATYPE_TABLE +
+                " (CKEY VARCHAR NOT NULL PRIMARY KEY," +
+                "  CVARCHAR VARCHAR, CINTEGER INTEGER, CDECIMAL DECIMAL(31,10), CUNSIGNED_INT UNSIGNED_INT, CBOOLEAN BOOLEAN, CBIGINT BIGINT, CUNSIGNED_LONG UNSIGNED_LONG, CTIME TIME, CDATE DATE);";
+        PhoenixConnection conn = DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class);
+        PhoenixRuntime.executeStatements(conn, new StringReader(statements), null);
+        
+        // Upsert CSV bytes, encoded without going through JDBC
+        CSVLoader csvUtil = new CSVLoader(conn, DATATYPE_TABLE, Collections.<String>emptyList(), true); 
+        assertTrue(csvUtil.isDirectEncodingSupported());
+        csvUtil.upsert(new ByteArrayInputStream(DATATYPES_CSV_VALUES.getBytes()));
+
+        // Compare Phoenix ResultSet with CSV file content
+        PreparedStatement statement = conn
+                .prepareStatement("SELECT CKEY, CVARCHAR, CINTEGER, CDECIMAL, CUNSIGNED_INT, CBOOLEAN, CBIGINT, CUNSIGNED_LONG, CTIME, CDATE FROM "
+                        + DATATYPE_TABLE);
+        ResultSet phoenixResultSet = statement.executeQuery();
+        CSVReader reader = new CSVReader(new StringReader(DATATYPES_CSV_VALUES));
+        reader.readNext();
+        String[] csvData;
+        while ((csvData = reader.readNext()) != null) {
+            assertTrue (phoenixResultSet.next());
+            for (int i=0; i<csvData.length - 2; i++) {
+                assertEquals(csvData[i], phoenixResultSet.getObject(i+1).toString().toUpperCase());
+            }
+            // special case for matching date, time values
+            assertEquals(DateUtil.parseTime(csvData[8]), phoenixResultSet.getTime("CTIME"));
+            assertEquals(DateUtil.parseDate(csvData[9]), phoenixResultSet.getDate("CDATE"));
+        }
+        assertFalse(phoenixResultSet.next());
+        conn.close();
+    }
+    
+    @Test
+    public void testQuotedFieldsEncodedFromBytesInParallel() throws Exception {
+        // Create table
+        String statements = "CREATE TABLE IF NOT EXISTS " + STOCK_TABLE + "(SYMBOL VARCHAR NOT NULL PRIMARY KEY, COMPANY VARCHAR) SPLIT ON ('D','M');";
+        PhoenixConnection conn = DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class);
+        PhoenixRuntime.executeStatements(conn, new StringReader(statements), null);
+        String csv = "AAPL,\"APPLE, Inc.\"\r\n" +
+                "\n" +
+                "GOOG,\"Google\nInc.\"\n" +
+                "MSFT,\"Micro\"\"soft\"\n" +
+                "WMT,Walmart";
+        
+        for (boolean isPartitioned : new boolean[] {false, true}) {
+            // Upsert CSV bytes
+            CSVLoader csvUtil = new CSVLoader(conn, STOCK_TABLE, Arrays.<String>asList(STOCK_COLUMNS), true, null, 3, isPartitioned);
+            csvUtil.upsert(new ByteArrayInputStream(csv.getBytes()));
+    
+            PreparedStatement statement = conn.prepareStatement("SELECT SYMBOL, COMPANY FROM " + STOCK_TABLE);
+            ResultSet phoenixResultSet = statement.executeQuery();
+            assertTrue(phoenixResultSet.next());
+            assertEquals("APPLE, Inc.", phoenixResultSet.getString(2));
+            assertTrue(phoenixResultSet.next());
+            assertEquals("Google\nInc.", phoenixResultSet.getString(2));
+            assertTrue(phoenixResultSet.next());
+            assertEquals("Micro\"soft", phoenixResultSet.getString(2));
+            assertTrue(phoenixResultSet.next());
+            assertEquals("Walmart", phoenixResultSet.getString(2));
+            assertFalse(phoenixResultSet.next());
+        }
+        conn.close();
+    }
+    
     @Test
     public void testCaseSensitiveCSVUpsertWithColumns() throws Exception {
         // Create table
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class CommonSubexpressionAggregateTest extends BaseHBaseManagedTimeTest {
+    private void initTable(Connection conn) throws Exception {
+        String ddl = "CREATE TABLE CSE_TEST (k1 INTEGER NOT NULL, k2 INTEGER NOT NULL, a INTEGER, b INTEGER CONSTRAINT pk PRIMARY KEY (k1, k2))";
+        conn.createStatement().execute(ddl);
+        String dml = "UPSERT INTO CSE_TEST VALUES(?,?,?,?)";
+        PreparedStatement stmt = conn.prepareStatement(dml);
+        upsert(stmt, 1, 1, 1, 2);
+        upsert(stmt, 1, 2, 2, 1);
+        upsert(stmt, 2, 1, 3, 3);
+        upsert(stmt, 2, 2, 1, 5);
+        upsert(stmt, 3, 1, 4, 4);
+        conn.commit();
+    }
+
+    private static void upsert(PreparedStatement stmt, int k1, int k2, int a, int b) throws Exception {
+        stmt.setInt(1, k1);
+        stmt.setInt(2, k2);
+        stmt.setInt(3, a);
+        stmt.setInt(4, b);
+        stmt.execute();
+    }
+
+    private static void assertRow(ResultSet rs, int value, long sum) throws Exception {
+        assertTrue(rs.next());
+        assertEquals(value, rs.getInt(1));
+        assertEquals(sum, rs.getLong(2));
+    }
+
+    @Test
+    public void testGroupByExpressionAlsoAggregated() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        initTable(conn);
+
+        ResultSet rs = conn.createStatement().executeQuery("SELECT a+b, SUM(a+b) FROM CSE_TEST GROUP BY a+b ORDER BY a+b");
+        assertRow(rs, 3, 6);
+        assertRow(rs, 6, 12);
+        assertRow(rs, 8, 8);
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT k1+k2, SUM(k1+k2) FROM CSE_TEST GROUP BY k1+k2 ORDER BY k1+k2");
+        assertRow(rs, 2, 2);
+        assertRow(rs, 3, 6);
+        assertRow(rs, 4, 8);
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testDistinctCountOfAggregatedExpression() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        initTable(conn);
+
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(DISTINCT a+b), SUM(a+b) FROM CSE_TEST");
+        assertRow(rs, 3, 26);
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT COUNT(DISTINCT a+b), SUM(a+b) FROM CSE_TEST GROUP BY k1");
+        assertRow(rs, 1, 6);
+        assertRow(rs, 1, 12);
+        assertRow(rs, 1, 8);
+        assertFalse(rs.next());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class RegexpColumnPatternTest extends BaseHBaseManagedTimeTest {
+    private void initTable(Connection conn) throws Exception {
+        String ddl = "CREATE TABLE PATTERN_TEST (k INTEGER NOT NULL PRIMARY KEY, str VARCHAR, lpat VARCHAR, pat VARCHAR, rep VARCHAR, pos INTEGER)";
+        conn.createStatement().execute(ddl);
+        String dml = "UPSERT INTO PATTERN_TEST VALUES(?,?,?,?,?,?)";
+        PreparedStatement stmt = conn.prepareStatement(dml);
+        upsert(stmt, 1, "abc-123", "%-1%", "[0-9]+", "#", 1);
+        upsert(stmt, 2, "xyz-456", "abc%", "[a-z]+", "_", 5);
+        upsert(stmt, 3, "abc-789", "a_c%", "c", "C", 2);
+        conn.commit();
+    }
+
+    private static void upsert(PreparedStatement stmt, int k, String str, String lpat, String pat, String rep, int pos) throws Exception {
+        stmt.setInt(1, k);
+        stmt.setString(2, str);
+        stmt.setString(3, lpat);
+        stmt.setString(4, pat);
+        stmt.setString(5, rep);
+        stmt.setInt(6, pos);
+        stmt.execute();
+    }
+
+    @Test
+    public void testLikeColumnPattern() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        initTable(conn);
+
+        ResultSet rs = conn.createStatement().executeQuery("SELECT k, str LIKE lpat FROM PATTERN_TEST");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertTrue(rs.getBoolean(2));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.getBoolean(2));
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        assertTrue(rs.getBoolean(2));
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT k FROM PATTERN_TEST WHERE str LIKE lpat");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testRegexpReplaceColumnPattern() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        initTable(conn);
+
+        ResultSet rs = conn.createStatement().executeQuery("SELECT REGEXP_REPLACE(str, pat, rep) FROM PATTERN_TEST");
+        assertTrue(rs.next());
+        assertEquals("abc-#", rs.getString(1));
+        assertTrue(rs.next());
+        assertEquals("_-456", rs.getString(1));
+        assertTrue(rs.next());
+        assertEquals("abC-789", rs.getString(1));
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT k FROM PATTERN_TEST WHERE REGEXP_REPLACE(str, pat, rep) = '_-456'");
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testRegexpSubstrColumnPatternAndOffset() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl());
+        initTable(conn);
+
+        ResultSet rs = conn.createStatement().executeQuery("SELECT REGEXP_SUBSTR(str, '[a-z0-9]+', pos) FROM PATTERN_TEST");
+        assertTrue(rs.next());
+        assertEquals("abc", rs.getString(1));
+        assertTrue(rs.next());
+        assertEquals("456", rs.getString(1));
+        assertTrue(rs.next());
+        assertEquals("bc", rs.getString(1));
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT k FROM PATTERN_TEST WHERE REGEXP_SUBSTR(str, '[0-9]+', pos) = '456'");
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT k FROM PATTERN_TEST WHERE REGEXP_SUBSTR(str, pat, pos) = 'c'");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        assertFalse(rs.next());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.phoenix.execute.MutationState.ImmutableIndexCommitMode;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PIndexState;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.StringUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * 
+ * Test for failure to write an immutable index in the background. Keep in its own
+ * separate test, as the index table is destroyed.
+ *
+ */
+public class ImmutableIndexEventualCommitTest extends BaseIndexTest {
+
+    @BeforeClass 
+    public static void doSetup() throws Exception {
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(4);
+        props.put(QueryServices.IMMUTABLE_INDEX_COMMIT_MODE_ATTRIB, ImmutableIndexCommitMode.EVENTUAL.name());
+        props.put("hbase.client.retries.number", Integer.toString(2));
+        props.put("hbase.client.pause", Integer.toString(100));
+        // Leave the index disabled, as its table is destroyed
+        props.put(QueryServices.INDEX_FAILURE_HANDLING_REBUILD_ATTRIB, Boolean.FALSE.toString());
+        // Must update config before starting server
+        startServer(getUrl(), new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static String getIndexState(Connection conn) throws Exception {
+        ResultSet rs = conn.getMetaData().getTables(null, StringUtil.escapeLike(SCHEMA_NAME), INDEX_TABLE_NAME, new String[] {PTableType.INDEX.toString()});
+        assertTrue(rs.next());
+        assertEquals(INDEX_TABLE_NAME, rs.getString(3));
+        String indexState = rs.getString("INDEX_STATE");
+        assertFalse(rs.next());
+        return indexState;
+    }
+
+    @Test
+    public void testIndexWriteFailureDisablesIndex() throws Exception {
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR) IMMUTABLE_ROWS=true");
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v1) INCLUDE (v2)");
+            assertEquals(PIndexState.ACTIVE.toString(), getIndexState(conn));
+
+            HBaseAdmin admin = conn.unwrap(PhoenixConnection.class).getQueryServices().getAdmin();
+            try {
+                admin.disableTable(INDEX_TABLE_FULL_NAME);
+                admin.deleteTable(INDEX_TABLE_FULL_NAME);
+            } finally {
+                admin.close();
+            }
+
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?,?)");
+            stmt.setString(1, "a");
+            stmt.setString(2, "x");
+            stmt.setString(3, "1");
+            stmt.execute();
+            // The commit doesn't wait for the index to be written, so it doesn't see the failure
+            conn.commit();
+
+            ResultSet rs = conn.createStatement().executeQuery("SELECT /*+ NO_INDEX */ k, v1, v2 FROM " + DATA_TABLE_FULL_NAME);
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertEquals("x", rs.getString(2));
+            assertEquals("1", rs.getString(3));
+            assertFalse(rs.next());
+
+            // The failed index write disables the index in the background
+            long endTime = System.currentTimeMillis() + 30000;
+            String indexState = getIndexState(conn);
+            while (!PIndexState.DISABLE.toString().equals(indexState) && System.currentTimeMillis() < endTime) {
+                Thread.sleep(100);
+                indexState = getIndexState(conn);
+            }
+            assertEquals(PIndexState.DISABLE.toString(), indexState);
+        } finally {
+            conn.close();
+        }
+    }
+}
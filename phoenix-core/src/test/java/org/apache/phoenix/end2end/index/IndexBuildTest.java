@@ -0,0 +1,249 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessor.UngroupedAggregateRegionObserver;
+import org.apache.phoenix.index.IndexBuildProgress;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * 
+ * Test the server-side build of an index: the build itself, the resume of a build
+ * from its checkpoints and the catch up of the data rows changed during the build.
+ *
+ */
+public class IndexBuildTest extends BaseIndexTest {
+
+    @BeforeClass 
+    public static void doSetup() throws Exception {
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(1);
+        // Checkpoint after every couple of index rows
+        props.put(QueryServices.MUTATE_BATCH_SIZE_ATTRIB, Integer.toString(2));
+        // Must update config before starting server
+        startServer(getUrl(), new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    /**
+     * Writes to the data table while the first pass of an index build scans it,
+     * like a client that does not know about the index yet would.
+     */
+    public static class WriteDuringBuildRegionObserver extends BaseRegionObserver {
+        private static volatile boolean writeDuringBuild = false;
+
+        @Override
+        public RegionScanner preScannerOpen(ObserverContext<RegionCoprocessorEnvironment> c, Scan scan, RegionScanner s) throws IOException {
+            if (writeDuringBuild && scan.getAttribute(UngroupedAggregateRegionObserver.BUILD_INDEX) != null
+                    && scan.getAttribute(UngroupedAggregateRegionObserver.BUILD_INDEX_CATCH_UP) == null) {
+                writeDuringBuild = false;
+                HRegion region = c.getEnvironment().getRegion();
+                Put put = new Put(Bytes.toBytes("c"));
+                put.add(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, Bytes.toBytes("V1"), Bytes.toBytes("w"));
+                region.put(put);
+                region.delete(new Delete(Bytes.toBytes("b")), true);
+            }
+            return s;
+        }
+    }
+
+    private static void populateTable(Connection conn, String... keys) throws Exception {
+        conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR)");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?)");
+        for (String key : keys) {
+            stmt.setString(1, key);
+            stmt.setString(2, "x" + key);
+            stmt.execute();
+        }
+        conn.commit();
+    }
+
+    private static void assertIndexRows(Connection conn, String... values) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM " + INDEX_TABLE_FULL_NAME);
+        for (int i = 0; i < values.length; i += 2) {
+            assertTrue(rs.next());
+            assertEquals(values[i], rs.getString(1));
+            assertEquals(values[i+1], rs.getString(2));
+        }
+        assertFalse(rs.next());
+    }
+
+    private static void assertNoCheckpoints(Connection conn) throws Exception {
+        HTableInterface htable = conn.unwrap(PhoenixConnection.class).getQueryServices().getTable(PhoenixDatabaseMetaData.INDEX_BUILD_TABLE_NAME_BYTES);
+        try {
+            ResultScanner scanner = htable.getScanner(new Scan());
+            try {
+                assertNull(scanner.next());
+            } finally {
+                scanner.close();
+            }
+        } finally {
+            htable.close();
+        }
+    }
+
+    @Test
+    public void testServerSideBuild() throws Exception {
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            populateTable(conn, "a", "b", "c", "d", "e");
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v1)");
+            assertIndexRows(conn, "xa", "a", "xb", "b", "xc", "c", "xd", "d", "xe", "e");
+            // The checkpoints are removed once the build is complete
+            assertNoCheckpoints(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            populateTable(conn, "a", "b", "c", "d");
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v1)");
+
+            PhoenixConnection pconn = conn.unwrap(PhoenixConnection.class);
+            byte[] indexTableName = Bytes.toBytes(INDEX_TABLE_FULL_NAME);
+            // Remove the index rows, as if the build had failed before writing any
+            HTableInterface htable = pconn.getQueryServices().getTable(indexTableName);
+            try {
+                List<Delete> deletes = Lists.newArrayList();
+                Scan scan = new Scan();
+                scan.setMaxVersions();
+                ResultScanner scanner = htable.getScanner(scan);
+                try {
+                    for (Result result = scanner.next(); result != null; result = scanner.next()) {
+                        for (KeyValue kv : result.raw()) {
+                            Delete delete = new Delete(kv.getRow());
+                            delete.deleteColumn(kv.getFamily(), kv.getQualifier(), kv.getTimestamp());
+                            deletes.add(delete);
+                        }
+                    }
+                } finally {
+                    scanner.close();
+                }
+                htable.delete(deletes);
+            } finally {
+                htable.close();
+            }
+            assertIndexRows(conn);
+
+            // Checkpoint the data rows up to "b" as indexed by a prior build
+            Thread.sleep(1);
+            long buildTimeStamp = System.currentTimeMillis();
+            htable = pconn.getQueryServices().getTable(PhoenixDatabaseMetaData.INDEX_BUILD_TABLE_NAME_BYTES);
+            try {
+                htable.put(IndexBuildProgress.newCheckpoint(indexTableName, ByteUtil.EMPTY_BYTE_ARRAY, ByteUtil.EMPTY_BYTE_ARRAY, Bytes.toBytes("b"), buildTimeStamp, 2, false));
+            } finally {
+                htable.close();
+            }
+
+            // Only the data rows after the checkpoint are indexed by the resumed build
+            conn.createStatement().execute("ALTER INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " REBUILD");
+            assertIndexRows(conn, "xc", "c", "xd", "d");
+            assertNoCheckpoints(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testCatchUpOfChangesDuringBuild() throws Exception {
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            populateTable(conn, "a", "b", "c");
+            HBaseAdmin admin = conn.unwrap(PhoenixConnection.class).getQueryServices().getAdmin();
+            try {
+                HTableDescriptor desc = admin.getTableDescriptor(Bytes.toBytes(DATA_TABLE_FULL_NAME));
+                desc.addCoprocessor(WriteDuringBuildRegionObserver.class.getName());
+                admin.disableTable(DATA_TABLE_FULL_NAME);
+                admin.modifyTable(Bytes.toBytes(DATA_TABLE_FULL_NAME), desc);
+                admin.enableTable(DATA_TABLE_FULL_NAME);
+            } finally {
+                admin.close();
+            }
+
+            WriteDuringBuildRegionObserver.writeDuringBuild = true;
+            try {
+                conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v1)");
+                assertFalse(WriteDuringBuildRegionObserver.writeDuringBuild);
+            } finally {
+                WriteDuringBuildRegionObserver.writeDuringBuild = false;
+            }
+
+            // The row updated during the build is indexed with its new value and
+            // the row deleted during the build no longer has an index row
+            assertIndexRows(conn, "w", "c", "xa", "a");
+            ResultSet rs = conn.createStatement().executeQuery("SELECT k FROM " + DATA_TABLE_FULL_NAME + " WHERE v1 >= 'w'");
+            assertTrue(rs.next());
+            assertEquals("c", rs.getString(1));
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertFalse(rs.next());
+        } finally {
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import org.apache.phoenix.util.QueryUtil;
+import org.junit.Test;
+
+public class IndexExpressionTest extends BaseIndexTest {
+
+    private static void upsert(PreparedStatement stmt, String k, String v1, String v2) throws Exception {
+        stmt.setString(1, k);
+        stmt.setString(2, v1);
+        stmt.setString(3, v2);
+        stmt.execute();
+    }
+
+    @Test
+    public void testMutableIndexOnExpression() throws Exception {
+        String query;
+        ResultSet rs;
+
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR)");
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (UPPER(v1)) INCLUDE (v2)");
+
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?,?)");
+            upsert(stmt, "a", "foo", "1");
+            upsert(stmt, "b", "Bar", "2");
+            conn.commit();
+
+            query = "SELECT k, v2 FROM " + DATA_TABLE_FULL_NAME + " WHERE UPPER(v1) = 'BAR'";
+            rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+            assertEquals("CLIENT PARALLEL 1-WAY RANGE SCAN OVER " + INDEX_TABLE_FULL_NAME + " ['BAR']", QueryUtil.getExplainPlan(rs));
+
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("b", rs.getString(1));
+            assertEquals("2", rs.getString(2));
+            assertFalse(rs.next());
+
+            // Changing the column of the indexed expression must move the index row
+            upsert(stmt, "b", "baz", "2");
+            upsert(stmt, "c", "bAR", "3");
+            conn.commit();
+
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("c", rs.getString(1));
+            assertEquals("3", rs.getString(2));
+            assertFalse(rs.next());
+
+            query = "SELECT UPPER(v1), k FROM " + DATA_TABLE_FULL_NAME;
+            rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+            assertEquals("CLIENT PARALLEL 1-WAY FULL SCAN OVER " + INDEX_TABLE_FULL_NAME + "\n    SERVER FILTER BY FIRST KEY ONLY", QueryUtil.getExplainPlan(rs));
+
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("BAR", rs.getString(1));
+            assertEquals("c", rs.getString(2));
+            assertTrue(rs.next());
+            assertEquals("BAZ", rs.getString(1));
+            assertEquals("b", rs.getString(2));
+            assertTrue(rs.next());
+            assertEquals("FOO", rs.getString(1));
+            assertEquals("a", rs.getString(2));
+            assertFalse(rs.next());
+
+            conn.createStatement().execute("DELETE FROM " + DATA_TABLE_FULL_NAME + " WHERE k = 'c'");
+            conn.commit();
+
+            rs = conn.createStatement().executeQuery("SELECT k FROM " + DATA_TABLE_FULL_NAME + " WHERE UPPER(v1) = 'BAR'");
+            assertFalse(rs.next());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testImmutableIndexOnExpressionBuiltFromExistingRows() throws Exception {
+        String query;
+        ResultSet rs;
+
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR) IMMUTABLE_ROWS=true");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?,?)");
+            upsert(stmt, "a", "abc", "1");
+            upsert(stmt, "b", "xyz", "2");
+            conn.commit();
+
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (SUBSTR(v1, 1, 2), v2)");
+            upsert(stmt, "c", "abd", "3");
+            conn.commit();
+
+            query = "SELECT k FROM " + DATA_TABLE_FULL_NAME + " WHERE SUBSTR(v1, 1, 2) = 'ab'";
+            rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+            assertEquals("CLIENT PARALLEL 1-WAY RANGE SCAN OVER " + INDEX_TABLE_FULL_NAME + " ['ab']", QueryUtil.getExplainPlan(rs));
+
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertTrue(rs.next());
+            assertEquals("c", rs.getString(1));
+            assertFalse(rs.next());
+        } finally {
+            conn.close();
+        }
+    }
+}
@@ -99,7 +99,7 @@ public class IndexMetadataTest extends BaseHBaseManagedTimeTest{
         ImmutableBytesWritable ptr = new ImmutableBytesWritable();
         String fullTableName = SchemaUtil.getTableName(schemaName, tableName);
         conn.createStatement().executeQuery("SELECT count(*) FROM " + fullTableName).next(); // client side cache will update
-        conn.unwrap(PhoenixConnection.class).getPMetaData().getTable(fullTableName).getIndexMaintainers(ptr);
+        conn.unwrap(PhoenixConnection.class).getPMetaData().getTable(fullTableName).getIndexMaintainers(ptr, conn.unwrap(PhoenixConnection.class));
         assertTrue(ptr.getLength() > 0);
     }
     
@@ -107,7 +107,7 @@ public class IndexMetadataTest extends BaseHBaseManagedTimeTest{
         ImmutableBytesWritable ptr = new ImmutableBytesWritable();
         String fullTableName = SchemaUtil.getTableName(schemaName, tableName);
         conn.createStatement().executeQuery("SELECT count(*) FROM " + fullTableName).next(); // client side cache will update
-        conn.unwrap(PhoenixConnection.class).getPMetaData().getTable(fullTableName).getIndexMaintainers(ptr);
+        conn.unwrap(PhoenixConnection.class).getPMetaData().getTable(fullTableName).getIndexMaintainers(ptr, conn.unwrap(PhoenixConnection.class));
         assertTrue(ptr.getLength() == 0);
     }
     
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PIndexState;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.StringUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * 
+ * Test that an index disabled by a failure of the region server to write to it
+ * is rebuilt in the background from the data rows that changed since the failure.
+ * Keep in its own separate test, as the failure makes tests run after it fail.
+ *
+ */
+public class MutableIndexFailureRebuildTest extends BaseMutableIndexTest {
+    private static final long REBUILD_INTERVAL_MS = 1000;
+
+    @BeforeClass 
+    public static void doSetup() throws Exception {
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(3);
+        props.put("hbase.client.retries.number", Integer.toString(2));
+        props.put("hbase.client.pause", Integer.toString(1000));
+        props.put(QueryServices.INDEX_FAILURE_HANDLING_REBUILD_INTERVAL_ATTRIB, Long.toString(REBUILD_INTERVAL_MS));
+        // Must update config before starting server
+        startServer(getUrl(), new ReadOnlyProps(props.entrySet().iterator()));
+    }
+    
+    public static class FailingRegionObserver extends BaseRegionObserver {
+        private static volatile boolean failWrites = false;
+
+        @Override
+        public void prePut(ObserverContext<RegionCoprocessorEnvironment> c, Put put, WALEdit edit, boolean writeToWAL) throws IOException {
+            if (failWrites) {
+                throw new DoNotRetryIOException("Simulated failure to write to index");
+            }
+        }
+    }
+
+    private static PIndexState getIndexState(Connection conn) throws SQLException {
+        ResultSet rs = conn.getMetaData().getTables(null, StringUtil.escapeLike(SCHEMA_NAME), INDEX_TABLE_NAME, new String[] {PTableType.INDEX.toString()});
+        assertTrue(rs.next());
+        assertEquals(INDEX_TABLE_NAME, rs.getString(3));
+        PIndexState state = PIndexState.valueOf(rs.getString("INDEX_STATE"));
+        assertFalse(rs.next());
+        return state;
+    }
+
+    @Test
+    public void testDisabledIndexIsRebuiltFromChangedRows() throws Exception {
+        String query;
+        ResultSet rs;
+        
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR)");
+        conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v1) INCLUDE (v2)");
+        assertEquals(PIndexState.ACTIVE, getIndexState(conn));
+
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?,?)");
+        stmt.setString(1, "a");
+        stmt.setString(2, "x");
+        stmt.setString(3, "1");
+        stmt.execute();
+        stmt.setString(1, "b");
+        stmt.setString(2, "y");
+        stmt.setString(3, "2");
+        stmt.execute();
+        conn.commit();
+
+        HBaseAdmin admin = conn.unwrap(PhoenixConnection.class).getQueryServices().getAdmin();
+        try {
+            HTableDescriptor desc = admin.getTableDescriptor(Bytes.toBytes(INDEX_TABLE_FULL_NAME));
+            desc.addCoprocessor(FailingRegionObserver.class.getName());
+            admin.disableTable(INDEX_TABLE_FULL_NAME);
+            admin.modifyTable(Bytes.toBytes(INDEX_TABLE_FULL_NAME), desc);
+            admin.enableTable(INDEX_TABLE_FULL_NAME);
+        } finally {
+            admin.close();
+        }
+        FailingRegionObserver.failWrites = true;
+        try {
+            // Update the indexed column of an existing row while the index cannot be written to
+            stmt.setString(1, "a");
+            stmt.setString(2, "z");
+            stmt.setString(3, "3");
+            stmt.execute();
+            try {
+                conn.commit();
+                fail();
+            } catch (SQLException e) {
+            }
+            assertEquals(PIndexState.DISABLE, getIndexState(conn));
+
+            // Delete a row while the index is disabled. A new connection sees the index as disabled
+            // and so doesn't maintain it, leaving the rebuild to delete the index row of "b".
+            Connection deleteConn = DriverManager.getConnection(getUrl(), props);
+            try {
+                deleteConn.createStatement().execute("DELETE FROM " + DATA_TABLE_FULL_NAME + " WHERE k = 'b'");
+                deleteConn.commit();
+            } finally {
+                deleteConn.close();
+            }
+        } finally {
+            FailingRegionObserver.failWrites = false;
+        }
+
+        // Wait for the index to be rebuilt in the background
+        PIndexState state = getIndexState(conn);
+        for (int i = 0; i < 60 && state != PIndexState.ACTIVE; i++) {
+            Thread.sleep(REBUILD_INTERVAL_MS);
+            state = getIndexState(conn);
+        }
+        assertEquals(PIndexState.ACTIVE, state);
+
+        // The stale index row of "a" and the index row of the deleted "b" must be gone and the new one of "a" present
+        query = "SELECT * FROM " + DATA_TABLE_FULL_NAME;
+        rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+        assertEquals("CLIENT PARALLEL 1-WAY FULL SCAN OVER " + INDEX_TABLE_FULL_NAME, QueryUtil.getExplainPlan(rs));
+
+        rs = conn.createStatement().executeQuery(query);
+        assertTrue(rs.next());
+        assertEquals("a",rs.getString("k"));
+        assertEquals("z",rs.getString("v1"));
+        assertEquals("3",rs.getString("v2"));
+        assertFalse(rs.next());
+        conn.close();
+    }
+}
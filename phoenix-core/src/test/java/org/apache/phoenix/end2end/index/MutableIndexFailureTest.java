@@ -41,6 +41,7 @@ import org.junit.Test;
 import com.google.common.collect.Maps;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.schema.PIndexState;
 import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.util.ReadOnlyProps;
@@ -57,9 +58,11 @@ import org.apache.phoenix.util.StringUtil;
 public class MutableIndexFailureTest extends BaseMutableIndexTest {
     @BeforeClass 
     public static void doSetup() throws Exception {
-        Map<String,String> props = Maps.newHashMapWithExpectedSize(1);
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(3);
         props.put("hbase.client.retries.number", Integer.toString(2));
         props.put("hbase.client.pause", Integer.toString(5000));
+        // Leave the index disabled, as its table is destroyed (see MutableIndexFailureRebuildTest)
+        props.put(QueryServices.INDEX_FAILURE_HANDLING_REBUILD_ATTRIB, Boolean.FALSE.toString());
         // Must update config before starting server
         startServer(getUrl(), new ReadOnlyProps(props.entrySet().iterator()));
     }
@@ -770,4 +770,51 @@ public class MutableIndexTest extends BaseMutableIndexTest {
             conn.close();
         }
     }
+
+    @Test
+    public void testIndexWithJoinBack() throws Exception {
+        String query;
+        ResultSet rs;
+        
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k1 VARCHAR NOT NULL, k2 INTEGER NOT NULL, v1 VARCHAR, v2 VARCHAR CONSTRAINT pk PRIMARY KEY (k1, k2))");
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v1)");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?,?,?)");
+            for (int i = 0; i < 10; i++) {
+                stmt.setString(1, i % 2 == 0 ? "a" : "b");
+                stmt.setInt(2, i);
+                stmt.setString(3, i < 3 ? "x" : "y");
+                stmt.setString(4, Integer.toString(i));
+                stmt.execute();
+            }
+            conn.commit();
+            
+            query = "SELECT k1, k2, v2 FROM " + DATA_TABLE_FULL_NAME + " WHERE v1 = 'x' AND v2 <> '1'";
+            rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+            String plan = QueryUtil.getExplainPlan(rs);
+            assertTrue(plan.startsWith("CLIENT PARALLEL 1-WAY RANGE SCAN OVER " + INDEX_TABLE_FULL_NAME + " ['x']"));
+            assertTrue(plan.endsWith("    SKIP-SCAN-JOIN BACK TO " + DATA_TABLE_FULL_NAME + " (MAX 10000 KEYS)"));
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertEquals(0, rs.getInt(2));
+            assertEquals("0", rs.getString(3));
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertEquals(2, rs.getInt(2));
+            assertEquals("2", rs.getString(3));
+            assertFalse(rs.next());
+            
+            query = "SELECT count(v2) FROM " + DATA_TABLE_FULL_NAME + " WHERE v1 = 'z'";
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+            assertFalse(rs.next());
+        } finally {
+            conn.close();
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class PartialIndexTest extends BaseIndexTest {
+
+    private static void upsert(PreparedStatement stmt, String k, String v1, String v2) throws Exception {
+        stmt.setString(1, k);
+        stmt.setString(2, v1);
+        stmt.setString(3, v2);
+        stmt.execute();
+    }
+
+    private static int getIndexRowCount(Connection conn) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + INDEX_TABLE_FULL_NAME);
+        assertTrue(rs.next());
+        return rs.getInt(1);
+    }
+
+    @Test
+    public void testMutablePartialIndex() throws Exception {
+        String query;
+        ResultSet rs;
+
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR)");
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v2) INCLUDE (v1) WHERE v1 = 'OPEN'");
+
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?,?)");
+            upsert(stmt, "a", "OPEN", "x");
+            upsert(stmt, "b", "CLOSED", "x");
+            upsert(stmt, "c", "OPEN", "y");
+            conn.commit();
+            // Only the rows satisfying the WHERE clause are indexed
+            assertEquals(2, getIndexRowCount(conn));
+
+            query = "SELECT k FROM " + DATA_TABLE_FULL_NAME + " WHERE v1 = 'OPEN' AND v2 = 'x'";
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertFalse(rs.next());
+
+            // A row that stops satisfying the WHERE clause loses its index row,
+            // while a row that starts satisfying it gains one
+            upsert(stmt, "a", "CLOSED", "x");
+            upsert(stmt, "b", "OPEN", "x");
+            conn.commit();
+            assertEquals(2, getIndexRowCount(conn));
+
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("b", rs.getString(1));
+            assertFalse(rs.next());
+
+            // The data table is used when the query may select rows that are not indexed
+            query = "SELECT k FROM " + DATA_TABLE_FULL_NAME + " WHERE v2 = 'x'";
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertTrue(rs.next());
+            assertEquals("b", rs.getString(1));
+            assertFalse(rs.next());
+
+            conn.createStatement().execute("DELETE FROM " + DATA_TABLE_FULL_NAME + " WHERE k = 'b'");
+            conn.commit();
+            assertEquals(1, getIndexRowCount(conn));
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testImmutablePartialIndexBuiltFromExistingRows() throws Exception {
+        Properties props = new Properties(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(false);
+        try {
+            conn.createStatement().execute("CREATE TABLE " + DATA_TABLE_FULL_NAME + " (k VARCHAR NOT NULL PRIMARY KEY, v1 VARCHAR, v2 VARCHAR) IMMUTABLE_ROWS=true");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + DATA_TABLE_FULL_NAME + " VALUES(?,?,?)");
+            upsert(stmt, "a", "OPEN", "x");
+            upsert(stmt, "b", "CLOSED", "y");
+            conn.commit();
+
+            conn.createStatement().execute("CREATE INDEX " + INDEX_TABLE_NAME + " ON " + DATA_TABLE_FULL_NAME + " (v2) INCLUDE (v1) WHERE v1 = 'OPEN'");
+            assertEquals(1, getIndexRowCount(conn));
+            upsert(stmt, "c", "OPEN", "z");
+            upsert(stmt, "d", "CLOSED", "z");
+            conn.commit();
+            assertEquals(2, getIndexRowCount(conn));
+
+            ResultSet rs = conn.createStatement().executeQuery("SELECT k FROM " + DATA_TABLE_FULL_NAME + " WHERE v1 = 'OPEN' AND v2 >= 'x'");
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertTrue(rs.next());
+            assertEquals("c", rs.getString(1));
+            assertFalse(rs.next());
+        } finally {
+            conn.close();
+        }
+    }
+}
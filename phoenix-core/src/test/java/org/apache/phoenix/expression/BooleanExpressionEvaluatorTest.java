@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.junit.Test;
+
+import org.apache.phoenix.expression.function.LengthFunction;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.SortOrder;
+
+
+public class BooleanExpressionEvaluatorTest {
+
+    @Test
+    public void testLongComparisons() throws Exception {
+        Expression five = LiteralExpression.newConstant(5L, PDataType.LONG);
+        Expression fiveInverted = LiteralExpression.newConstant(5, PDataType.INTEGER, SortOrder.DESC);
+        Expression three = LiteralExpression.newConstant(3, PDataType.UNSIGNED_INT);
+        for (CompareOp op : new CompareOp[] {CompareOp.LESS, CompareOp.LESS_OR_EQUAL, CompareOp.EQUAL, CompareOp.NOT_EQUAL, CompareOp.GREATER_OR_EQUAL, CompareOp.GREATER}) {
+            assertSameResult(new ComparisonExpression(op, Arrays.asList(five, three)));
+            assertSameResult(new ComparisonExpression(op, Arrays.asList(three, five)));
+            assertSameResult(new ComparisonExpression(op, Arrays.asList(five, fiveInverted)));
+        }
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        Expression seven = LiteralExpression.newConstant(7L, PDataType.LONG);
+        Expression two = LiteralExpression.newConstant(2, PDataType.INTEGER);
+        // LENGTH('abcd') isn't specialized, so it's evaluated by the expression itself
+        Expression length = new LengthFunction(Arrays.<Expression>asList(LiteralExpression.newConstant("abcd", PDataType.VARCHAR)));
+        List<Expression> children = Arrays.asList(seven, two, length);
+        Expression[] arithmetic = new Expression[] {
+                new LongAddExpression(children), new LongSubtractExpression(children),
+                new LongMultiplyExpression(children), new LongDivideExpression(children)};
+        for (Expression lhs : arithmetic) {
+            for (Expression rhs : arithmetic) {
+                assertSameResult(new ComparisonExpression(CompareOp.GREATER, Arrays.asList(lhs, rhs)));
+                assertSameResult(new ComparisonExpression(CompareOp.EQUAL, Arrays.asList(lhs, rhs)));
+            }
+        }
+    }
+
+    @Test
+    public void testAndOrNot() throws Exception {
+        Expression one = LiteralExpression.newConstant(1L, PDataType.LONG);
+        Expression two = LiteralExpression.newConstant(2L, PDataType.LONG);
+        Expression isTrue = new ComparisonExpression(CompareOp.LESS, Arrays.asList(one, two));
+        Expression isFalse = new ComparisonExpression(CompareOp.GREATER, Arrays.asList(one, two));
+        Expression isUnknown = new ComparisonExpression(CompareOp.EQUAL, Arrays.asList(one, LiteralExpression.newConstant(null, PDataType.LONG)));
+        Expression[] values = new Expression[] {isTrue, isFalse, isUnknown};
+        for (Expression lhs : values) {
+            for (Expression rhs : values) {
+                assertSameResult(new AndExpression(Arrays.asList(lhs, rhs)));
+                assertSameResult(new OrExpression(Arrays.asList(lhs, rhs)));
+                assertSameResult(new NotExpression(new AndExpression(Arrays.asList(lhs, rhs))));
+            }
+        }
+    }
+
+    @Test
+    public void testNothingToSpecialize() throws Exception {
+        Expression a = LiteralExpression.newConstant("a", PDataType.VARCHAR);
+        Expression b = LiteralExpression.newConstant("b", PDataType.VARCHAR);
+        assertNull(BooleanExpressionEvaluator.compile(new ComparisonExpression(CompareOp.LESS, Arrays.asList(a, b))));
+    }
+
+    private static void assertSameResult(Expression expression) {
+        BooleanExpressionEvaluator evaluator = BooleanExpressionEvaluator.compile(expression);
+        assertNotNull(expression.toString(), evaluator);
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        int expected;
+        if (!expression.evaluate(null, ptr) || ptr.getLength() == 0) {
+            expected = BooleanExpressionEvaluator.UNKNOWN;
+        } else {
+            expected = Boolean.TRUE.equals(PDataType.BOOLEAN.toObject(ptr)) ? BooleanExpressionEvaluator.TRUE : BooleanExpressionEvaluator.FALSE;
+        }
+        assertEquals(expression.toString(), expected, evaluator.evaluate(null));
+    }
+}
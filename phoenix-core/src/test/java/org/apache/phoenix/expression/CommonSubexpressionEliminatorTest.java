@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.junit.Test;
+
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+
+public class CommonSubexpressionEliminatorTest {
+
+    @Test
+    public void testSharedSubexpressionEvaluatedOncePerRow() throws Exception {
+        CountingExpression column = new CountingExpression();
+        Expression one = LiteralExpression.newConstant(1L, PDataType.LONG);
+        Expression two = LiteralExpression.newConstant(2L, PDataType.LONG);
+        Expression groupBy = new LongAddExpression(Arrays.<Expression>asList(column, one));
+        Expression aggregated = new LongMultiplyExpression(Arrays.<Expression>asList(new LongAddExpression(Arrays.<Expression>asList(column, one)), two));
+        Expression where = new ComparisonExpression(CompareOp.GREATER, Arrays.<Expression>asList(new LongAddExpression(Arrays.<Expression>asList(column, one)), two));
+
+        CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+        eliminator.add(groupBy);
+        eliminator.add(aggregated);
+        eliminator.add(where);
+        assertTrue(eliminator.hasCommonSubexpressions());
+        groupBy = eliminator.rewrite(groupBy);
+        aggregated = eliminator.rewrite(aggregated);
+        where = eliminator.rewrite(where);
+        assertSame(groupBy, aggregated.getChildren().get(0));
+        assertSame(groupBy, where.getChildren().get(0));
+
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (long value = 1; value <= 3; value++) {
+            column.value = value;
+            column.count = 0;
+            eliminator.nextRow();
+            assertTrue(groupBy.evaluate(null, ptr));
+            assertEquals(value + 1, PDataType.LONG.toObject(ptr));
+            assertTrue(aggregated.evaluate(null, ptr));
+            assertEquals((value + 1) * 2, PDataType.LONG.toObject(ptr));
+            assertTrue(where.evaluate(null, ptr));
+            assertEquals(value + 1 > 2, PDataType.BOOLEAN.toObject(ptr));
+            assertEquals(1, column.count);
+        }
+    }
+
+    @Test
+    public void testDifferentSubexpressionsNotShared() throws Exception {
+        CountingExpression column = new CountingExpression();
+        Expression addOne = new LongAddExpression(Arrays.<Expression>asList(column, LiteralExpression.newConstant(1L, PDataType.LONG)));
+        Expression addTwo = new LongAddExpression(Arrays.<Expression>asList(column, LiteralExpression.newConstant(2L, PDataType.LONG)));
+        Expression castToInt = new CoerceExpression(addOne, PDataType.INTEGER);
+        Expression castOtherToInt = new CoerceExpression(addTwo, PDataType.INTEGER);
+        CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+        eliminator.add(castToInt);
+        eliminator.add(castOtherToInt);
+        assertFalse(eliminator.hasCommonSubexpressions());
+    }
+
+    @Test
+    public void testMemoizedValueSurvivesReuseOfChildBuffer() throws Exception {
+        CountingExpression column = new CountingExpression();
+        BufferReusingExpression reusing = new BufferReusingExpression(column);
+        CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+        eliminator.add(reusing);
+        eliminator.add(reusing);
+        assertTrue(eliminator.hasCommonSubexpressions());
+        Expression memoized = eliminator.rewrite(reusing);
+
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        column.value = 5;
+        eliminator.nextRow();
+        assertTrue(memoized.evaluate(null, ptr));
+        assertEquals(5L, PDataType.LONG.toObject(ptr));
+        // The child overwrites its buffer, e.g. when evaluated on behalf of another expression
+        Arrays.fill(reusing.buffer, (byte)0);
+        assertTrue(memoized.evaluate(null, ptr));
+        assertEquals(5L, PDataType.LONG.toObject(ptr));
+        assertEquals(1, column.count);
+    }
+
+    @Test
+    public void testMemoizedValueOfPreviousRowNotOverwritten() throws Exception {
+        CountingExpression column = new CountingExpression();
+        BufferReusingExpression reusing = new BufferReusingExpression(column);
+        CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+        eliminator.add(reusing);
+        eliminator.add(reusing);
+        Expression memoized = eliminator.rewrite(reusing);
+
+        // Held across rows, like the current group by key
+        ImmutableBytesWritable previous = new ImmutableBytesWritable();
+        column.value = 5;
+        eliminator.nextRow();
+        assertTrue(memoized.evaluate(null, previous));
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        column.value = 6;
+        eliminator.nextRow();
+        assertTrue(memoized.evaluate(null, ptr));
+        assertEquals(6L, PDataType.LONG.toObject(ptr));
+        assertEquals(5L, PDataType.LONG.toObject(previous));
+    }
+
+    /**
+     * Evaluates into a buffer of its own, reused across evaluations
+     */
+    private static class BufferReusingExpression extends BaseSingleExpression {
+        private final byte[] buffer = new byte[PDataType.LONG.getByteSize()];
+
+        private BufferReusingExpression(Expression child) {
+            super(child);
+        }
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            if (!getChild().evaluate(tuple, ptr)) {
+                return false;
+            }
+            System.arraycopy(ptr.get(), ptr.getOffset(), buffer, 0, buffer.length);
+            ptr.set(buffer);
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PDataType.LONG;
+        }
+    }
+
+    private static class CountingExpression extends BaseTerminalExpression {
+        private long value;
+        private int count;
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            count++;
+            ptr.set(PDataType.LONG.toBytes(value));
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PDataType.LONG;
+        }
+    }
+}
@@ -25,7 +25,14 @@ import static org.junit.Assert.assertTrue;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.PColumnImpl;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PNameFactory;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
 import org.junit.Test;
 
 public class LikeExpressionTest {
@@ -41,4 +48,22 @@ public class LikeExpressionTest {
         assertTrue(evaluated);
         assertEquals(Boolean.FALSE,result);
     }
+
+    @Test
+    public void testColumnPattern() throws Exception {
+        byte[] family = Bytes.toBytes("f1");
+        byte[] qualifier = Bytes.toBytes("PAT");
+        Expression p = new KeyValueColumnExpression(new PColumnImpl(PNameFactory.newName(qualifier), PNameFactory.newName(family),
+                PDataType.VARCHAR, null, null, true, 0, SortOrder.getDefault(), null));
+        LiteralExpression v = LiteralExpression.newConstant("149na7-app1-2-");
+        LikeExpression e = new LikeExpression(Arrays.<Expression>asList(v,p));
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        String[] patterns = {"%-w", "149%", "%app_-2-", "149%", "%-2"};
+        Boolean[] results = {Boolean.FALSE, Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, Boolean.FALSE};
+        for (int i = 0; i < patterns.length; i++) {
+            KeyValue kv = new KeyValue(Bytes.toBytes("r"), family, qualifier, PDataType.VARCHAR.toBytes(patterns[i]));
+            assertTrue(e.evaluate(new SingleKeyValueTuple(kv), ptr));
+            assertEquals(patterns[i], results[i], e.getDataType().toObject(ptr));
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.function.RegexpReplaceFunction;
+import org.apache.phoenix.expression.function.RegexpSubstrFunction;
+import org.apache.phoenix.schema.PColumnImpl;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PNameFactory;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.junit.Test;
+
+public class RegexpFunctionTest {
+    private static final byte[] ROW = Bytes.toBytes("r");
+    private static final byte[] FAMILY = Bytes.toBytes("f1");
+
+    private static Expression newColumn(String name, PDataType type, int position) {
+        return new KeyValueColumnExpression(new PColumnImpl(PNameFactory.newName(name), PNameFactory.newName(FAMILY),
+                type, null, null, true, position, SortOrder.getDefault(), null));
+    }
+
+    // Key values must be passed in qualifier order
+    private static Tuple newTuple(String[] names, byte[][] values) {
+        List<KeyValue> kvs = new ArrayList<KeyValue>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            kvs.add(new KeyValue(ROW, FAMILY, Bytes.toBytes(names[i]), values[i]));
+        }
+        return new MultiKeyValueTuple(kvs);
+    }
+
+    private static Tuple newTuple(String str, String pat, String rep, int off) {
+        return newTuple(new String[] {"OFF", "PAT", "REP", "STR"}, new byte[][] {
+                PDataType.INTEGER.toBytes(off), PDataType.VARCHAR.toBytes(pat),
+                PDataType.VARCHAR.toBytes(rep), PDataType.VARCHAR.toBytes(str)});
+    }
+
+    private static String evaluate(Expression e, Tuple tuple) {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertTrue(e.evaluate(tuple, ptr));
+        return (String)e.getDataType().toObject(ptr);
+    }
+
+    private static <T extends Expression> T roundTrip(T e, T copy) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dOut = new DataOutputStream(baos);
+        e.write(dOut);
+        dOut.flush();
+        byte[] bytes = baos.toByteArray();
+        copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length)));
+        return copy;
+    }
+
+    @Test
+    public void testRegexpReplaceColumnPatternAndReplaceStr() throws Exception {
+        Expression str = newColumn("STR", PDataType.VARCHAR, 0);
+        Expression pat = newColumn("PAT", PDataType.VARCHAR, 1);
+        Expression rep = newColumn("REP", PDataType.VARCHAR, 2);
+        RegexpReplaceFunction e = new RegexpReplaceFunction(Arrays.<Expression>asList(str, pat, rep));
+        assertEquals("a#c#", evaluate(e, newTuple("abcb", "b", "#", 1)));
+        assertEquals("Xbcb", evaluate(e, newTuple("abcb", "^a", "X", 1)));
+        RegexpReplaceFunction copy = roundTrip(e, new RegexpReplaceFunction());
+        assertEquals("ab-b", evaluate(copy, newTuple("abcb", "c", "-", 1)));
+    }
+
+    @Test
+    public void testRegexpSubstrColumnPatternAndOffset() throws Exception {
+        Expression str = newColumn("STR", PDataType.VARCHAR, 0);
+        Expression pat = newColumn("PAT", PDataType.VARCHAR, 1);
+        Expression off = newColumn("OFF", PDataType.INTEGER, 3);
+        RegexpSubstrFunction e = new RegexpSubstrFunction(Arrays.<Expression>asList(str, pat, off));
+        assertEquals("12", evaluate(e, newTuple("a12b34", "[0-9]+", "", 1)));
+        assertEquals("34", evaluate(e, newTuple("a12b34", "[0-9]+", "", 4)));
+        assertEquals("b", evaluate(e, newTuple("a12b34", "[a-z]", "", 2)));
+    }
+
+    @Test
+    public void testRegexpSubstrKeepsPatternAfterDeserialization() throws Exception {
+        Expression str = newColumn("STR", PDataType.VARCHAR, 0);
+        RegexpSubstrFunction e = new RegexpSubstrFunction(Arrays.<Expression>asList(str,
+                LiteralExpression.newConstant("[0-9]+"), LiteralExpression.newConstant(1)));
+        RegexpSubstrFunction copy = roundTrip(e, new RegexpSubstrFunction());
+        Tuple tuple = newTuple(new String[] {"STR"}, new byte[][] {PDataType.VARCHAR.toBytes("a12b34")});
+        assertEquals("12", evaluate(copy, tuple));
+
+        Expression pat = newColumn("PAT", PDataType.VARCHAR, 1);
+        Expression off = newColumn("OFF", PDataType.INTEGER, 3);
+        e = new RegexpSubstrFunction(Arrays.<Expression>asList(str, pat, off));
+        copy = roundTrip(e, new RegexpSubstrFunction());
+        assertEquals("34", evaluate(copy, newTuple("a12b34", "[0-9]+", "", 4)));
+    }
+}
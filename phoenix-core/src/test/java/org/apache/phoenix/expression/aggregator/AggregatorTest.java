@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.SortOrder;
+import org.junit.Test;
+
+
+public class AggregatorTest {
+
+    @Test
+    public void testSumReusesBuffer() throws Exception {
+        LongSumAggregator aggregator = new LongSumAggregator();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertFalse(aggregator.evaluate(null, ptr));
+        aggregator.aggregate(null, new ImmutableBytesWritable(PDataType.LONG.toBytes(3L)));
+        aggregator.aggregate(null, new ImmutableBytesWritable(PDataType.LONG.toBytes(4L)));
+        assertTrue(aggregator.evaluate(null, ptr));
+        assertEquals(7L, PDataType.LONG.toObject(ptr));
+        byte[] buffer = ptr.get();
+
+        aggregator.reset();
+        assertFalse(aggregator.evaluate(null, ptr));
+        aggregator.aggregate(null, new ImmutableBytesWritable(PDataType.LONG.toBytes(5L)));
+        assertTrue(aggregator.evaluate(null, ptr));
+        assertEquals(5L, PDataType.LONG.toObject(ptr));
+        assertSame(buffer, ptr.get());
+    }
+
+    @Test
+    public void testCountReusesBuffer() throws Exception {
+        CountAggregator aggregator = new CountAggregator();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertTrue(aggregator.evaluate(null, ptr));
+        assertEquals(0L, PDataType.LONG.toObject(ptr));
+        byte[] buffer = ptr.get();
+        aggregator.aggregate(null, ptr);
+        aggregator.reset();
+        aggregator.aggregate(null, ptr);
+        aggregator.aggregate(null, ptr);
+        assertTrue(aggregator.evaluate(null, ptr));
+        assertEquals(2L, PDataType.LONG.toObject(ptr));
+        assertSame(buffer, ptr.get());
+    }
+
+    @Test
+    public void testMinCopiesValue() throws Exception {
+        MinAggregator aggregator = new MinAggregator(SortOrder.getDefault()) {
+            @Override
+            public PDataType getDataType() {
+                return PDataType.VARCHAR;
+            }
+        };
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertFalse(aggregator.evaluate(null, ptr));
+        byte[] b = PDataType.VARCHAR.toBytes("xbcx");
+        aggregator.aggregate(null, new ImmutableBytesWritable(b, 1, 2));
+        aggregator.aggregate(null, new ImmutableBytesWritable(PDataType.VARCHAR.toBytes("c")));
+        // The value is kept even if the buffer it came from is overwritten
+        b[1] = 'z';
+        assertTrue(aggregator.evaluate(null, ptr));
+        assertEquals("bc", PDataType.VARCHAR.toObject(ptr));
+        byte[] buffer = ptr.get();
+
+        aggregator.aggregate(null, new ImmutableBytesWritable(PDataType.VARCHAR.toBytes("a")));
+        assertTrue(aggregator.evaluate(null, ptr));
+        assertEquals("a", PDataType.VARCHAR.toObject(ptr));
+        assertSame(buffer, ptr.get());
+
+        aggregator.reset();
+        assertFalse(aggregator.evaluate(null, ptr));
+        aggregator.aggregate(null, new ImmutableBytesWritable(PDataType.VARCHAR.toBytes("longer value")));
+        assertTrue(aggregator.evaluate(null, ptr));
+        assertEquals("longer value", PDataType.VARCHAR.toObject(ptr));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.LongAddExpression;
+import org.apache.phoenix.schema.PColumnImpl;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.PNameFactory;
+import org.apache.phoenix.schema.SortOrder;
+import org.junit.Test;
+
+public class BooleanExpressionFilterTest {
+    private static final byte[] FAMILY = Bytes.toBytes("f1");
+    private static final byte[] QUALIFIER = Bytes.toBytes("A");
+
+    private static byte[] toBytes(BooleanExpressionFilter filter) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dOut = new DataOutputStream(baos);
+        filter.write(dOut);
+        dOut.flush();
+        return baos.toByteArray();
+    }
+
+    private static Expression newAddOne(Expression column) throws Exception {
+        return new LongAddExpression(Arrays.<Expression>asList(column, LiteralExpression.newConstant(1L, PDataType.LONG)));
+    }
+
+    @Test
+    public void testRepeatedSubexpressionsKeptInDeserializedExpression() throws Exception {
+        Expression column = new KeyValueColumnExpression(new PColumnImpl(PNameFactory.newName(QUALIFIER), PNameFactory.newName(FAMILY),
+                PDataType.LONG, null, null, true, 0, SortOrder.getDefault(), null));
+        // A + 1 > 2 AND A + 1 < 5
+        Expression where = new AndExpression(Arrays.<Expression>asList(
+                new ComparisonExpression(CompareOp.GREATER, Arrays.<Expression>asList(newAddOne(column), LiteralExpression.newConstant(2L, PDataType.LONG))),
+                new ComparisonExpression(CompareOp.LESS, Arrays.<Expression>asList(newAddOne(column), LiteralExpression.newConstant(5L, PDataType.LONG)))));
+        SingleCQKeyValueComparisonFilter filter = new SingleCQKeyValueComparisonFilter(where);
+        byte[] bytes = toBytes(filter);
+
+        SingleCQKeyValueComparisonFilter copy = new SingleCQKeyValueComparisonFilter();
+        copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length)));
+        assertEquals(filter, copy);
+        assertEquals(filter.hashCode(), copy.hashCode());
+        assertEquals(filter.toString(), copy.toString());
+        assertArrayEquals(bytes, toBytes(copy));
+
+        byte[] row = Bytes.toBytes("r");
+        copy.reset();
+        assertEquals(ReturnCode.INCLUDE, copy.filterKeyValue(new KeyValue(row, FAMILY, QUALIFIER, PDataType.LONG.toBytes(2L))));
+        copy.reset();
+        assertEquals(ReturnCode.NEXT_ROW, copy.filterKeyValue(new KeyValue(row, FAMILY, QUALIFIER, PDataType.LONG.toBytes(4L))));
+    }
+}
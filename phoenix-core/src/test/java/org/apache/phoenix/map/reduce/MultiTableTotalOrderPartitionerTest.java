@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.map.reduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+public class MultiTableTotalOrderPartitionerTest {
+
+    @Test
+    public void testPartitionPerRegionOfEachTable() {
+        Configuration conf = new Configuration(false);
+        byte[][][] startKeys = new byte[][][] {
+                { HConstants.EMPTY_START_ROW, Bytes.toBytes("c"), Bytes.toBytes("m") },
+                { HConstants.EMPTY_START_ROW },
+                { HConstants.EMPTY_START_ROW, Bytes.toBytes("f") },
+        };
+        int numPartitions = MultiTableTotalOrderPartitioner.configure(conf, new String[] {"T", "I1", "I2"}, startKeys);
+        assertEquals(6, numPartitions);
+
+        MultiTableTotalOrderPartitioner partitioner = new MultiTableTotalOrderPartitioner();
+        partitioner.setConf(conf);
+        assertEquals(0, getPartition(partitioner, "T", "a", numPartitions));
+        assertEquals(1, getPartition(partitioner, "T", "c", numPartitions));
+        assertEquals(1, getPartition(partitioner, "T", "k", numPartitions));
+        assertEquals(2, getPartition(partitioner, "T", "z", numPartitions));
+        assertEquals(3, getPartition(partitioner, "I1", "a", numPartitions));
+        assertEquals(3, getPartition(partitioner, "I1", "z", numPartitions));
+        assertEquals(4, getPartition(partitioner, "I2", "e", numPartitions));
+        assertEquals(5, getPartition(partitioner, "I2", "f", numPartitions));
+    }
+
+    @Test
+    public void testRawComparatorMatchesCompareTo() throws IOException {
+        TableRowkeyPair[] pairs = new TableRowkeyPair[] {
+                new TableRowkeyPair(Bytes.toBytes("I"), Bytes.toBytes("b")),
+                new TableRowkeyPair(Bytes.toBytes("I"), Bytes.toBytes("ba")),
+                new TableRowkeyPair(Bytes.toBytes("IDX"), Bytes.toBytes("a")),
+                new TableRowkeyPair(Bytes.toBytes("T"), Bytes.toBytes("a")),
+        };
+        WritableComparator comparator = WritableComparator.get(TableRowkeyPair.class);
+        for (TableRowkeyPair p1 : pairs) {
+            byte[] b1 = serialize(p1);
+            for (TableRowkeyPair p2 : pairs) {
+                byte[] b2 = serialize(p2);
+                int expected = Integer.signum(p1.compareTo(p2));
+                assertEquals(p1 + " vs " + p2, expected, Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)));
+            }
+        }
+        assertTrue(pairs[0].compareTo(pairs[3]) < 0);
+    }
+
+    private static int getPartition(MultiTableTotalOrderPartitioner partitioner, String table, String row, int numPartitions) {
+        return partitioner.getPartition(new TableRowkeyPair(Bytes.toBytes(table), Bytes.toBytes(row)), null, numPartitions);
+    }
+
+    private static byte[] serialize(TableRowkeyPair pair) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        pair.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
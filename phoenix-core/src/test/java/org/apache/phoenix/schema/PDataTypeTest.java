@@ -39,6 +39,7 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
 
+import org.apache.phoenix.util.ScaledLong;
 import org.apache.phoenix.util.TestUtil;
 
 
@@ -827,6 +828,38 @@ public class PDataTypeTest {
         assertEquals(0, PDataType.DOUBLE.compareTo(Double.valueOf(101), BigDecimal.valueOf(101.0), PDataType.DECIMAL));
     }
 
+    @Test
+    public void testScaledLongDecimal() {
+        long[] unscaledValues = {0, 1, -1, 10, -1000, 12345, -98765432, Long.MAX_VALUE, Long.MIN_VALUE, 999999999999999999L};
+        ScaledLong value = new ScaledLong();
+        for (long unscaledValue : unscaledValues) {
+            for (int scale = -5; scale <= 20; scale++) {
+                BigDecimal bd = BigDecimal.valueOf(unscaledValue, scale);
+                byte[] b = PDataType.DECIMAL.toBytes(bd);
+                assertTrue(Arrays.equals(b, PDataType.toBytes(unscaledValue, scale)));
+                if (PDataType.toScaledLong(b, 0, b.length, value)) {
+                    assertEquals(0, bd.compareTo(value.toBigDecimal()));
+                } else {
+                    // Only when more digits than a long can hold are left to decode
+                    assertTrue(bd.stripTrailingZeros().precision() > 15);
+                }
+            }
+        }
+        ScaledLong other = new ScaledLong();
+        value.set(12345, 2);
+        other.set(-5, 4);
+        assertTrue(value.add(other));
+        assertEquals(0, new BigDecimal("123.4495").compareTo(value.toBigDecimal()));
+        assertTrue(value.multiply(other));
+        assertEquals(0, new BigDecimal("-0.06172475").compareTo(value.toBigDecimal()));
+        assertTrue(value.setDecimalWidthAndScale(5, 2));
+        assertEquals(0, new BigDecimal("-0.06").compareTo(value.toBigDecimal()));
+        value.set(Long.MAX_VALUE, 0);
+        other.set(1, 0);
+        assertFalse(value.add(other));
+        assertEquals(Long.MAX_VALUE, value.getUnscaledValue());
+    }
+
     @Test
     public void testBigDecimal() {
         byte[] b;
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.tuple;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import org.apache.phoenix.util.KeyValueUtil;
+
+
+public class RowBatchTest {
+    private static final byte[] CF = Bytes.toBytes("a");
+    private static final byte[] CQ1 = Bytes.toBytes("c1");
+    private static final byte[] CQ2 = Bytes.toBytes("c2");
+    private static final byte[] CQ3 = Bytes.toBytes("c3");
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRowBatch() throws Exception {
+        List<KeyValue> row1 = Arrays.asList(
+                KeyValueUtil.newKeyValue(Bytes.toBytes("r1"), CF, CQ1, 1, Bytes.toBytes("v11")),
+                KeyValueUtil.newKeyValue(Bytes.toBytes("r1"), CF, CQ3, 2, Bytes.toBytes("v13")));
+        List<KeyValue> row2 = Arrays.asList(
+                KeyValueUtil.newKeyValue(Bytes.toBytes("r2"), CF, CQ2, 3, Bytes.toBytes("v22")),
+                KeyValueUtil.newKeyValue(Bytes.toBytes("r2"), CF, CQ3, 4, Bytes.toBytes("")));
+        KeyValue kv = RowBatch.toKeyValue(Arrays.asList(row1, row2));
+        assertArrayEquals(Bytes.toBytes("r2"), kv.getRow());
+        assertTrue(RowBatch.isRowBatch(new Result(Arrays.asList(kv))));
+        assertFalse(RowBatch.isRowBatch(new Result(row1)));
+
+        RowBatch batch = new RowBatch(kv);
+        assertEquals(2, batch.size());
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        Tuple tuple = batch.getRow(0);
+        tuple.getKey(ptr);
+        assertEquals("r1", Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        assertEquals(2, tuple.size());
+        assertTrue(tuple.getValue(CF, CQ1, ptr));
+        assertEquals("v11", Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        assertFalse(tuple.getValue(CF, CQ2, ptr));
+        assertNull(tuple.getValue(CF, CQ2));
+        assertEquals(row1.get(1), tuple.getValue(1));
+        assertEquals(2, tuple.getValue(1).getTimestamp());
+
+        tuple = batch.getRow(1);
+        tuple.getKey(ptr);
+        assertEquals("r2", Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        assertEquals(2, tuple.size());
+        assertFalse(tuple.getValue(CF, CQ1, ptr));
+        assertTrue(tuple.getValue(CF, CQ2, ptr));
+        assertEquals("v22", Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        assertTrue(tuple.getValue(CF, CQ3, ptr));
+        assertEquals(0, ptr.getLength());
+        assertEquals(row2.get(0), tuple.getValue(0));
+        assertArrayEquals(row2.get(0).getValue(), tuple.getValue(0).getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testColumnPosition() throws Exception {
+        List<KeyValue> row1 = Arrays.asList(
+                KeyValueUtil.newKeyValue(Bytes.toBytes("r1"), CF, CQ1, 1, Bytes.toBytes("v11")),
+                KeyValueUtil.newKeyValue(Bytes.toBytes("r1"), CF, CQ2, 1, Bytes.toBytes("v12")));
+        List<KeyValue> row2 = Arrays.asList(
+                KeyValueUtil.newKeyValue(Bytes.toBytes("r2"), CF, CQ2, 1, Bytes.toBytes("v22")));
+        RowBatch batch = new RowBatch(RowBatch.toKeyValue(Arrays.asList(row1, row2)));
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        PositionalTuple tuple = (PositionalTuple)batch.getRow(0);
+        int position = tuple.getColumnPosition(CF, CQ2, -1);
+        assertEquals(1, position);
+        assertEquals(-1, tuple.getColumnPosition(CF, CQ3, position));
+        assertTrue(tuple.getColumnValue(position, ptr));
+        assertEquals("v12", Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        tuple = (PositionalTuple)batch.getRow(1);
+        assertEquals(position, tuple.getColumnPosition(CF, CQ2, position));
+        assertTrue(tuple.getColumnValue(position, ptr));
+        assertEquals("v22", Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        assertFalse(tuple.getColumnValue(tuple.getColumnPosition(CF, CQ1, position), ptr));
+
+        // The column is at another position in a row with different columns
+        MultiKeyValueTuple multiTuple = new MultiKeyValueTuple(row2);
+        assertEquals(0, multiTuple.getColumnPosition(CF, CQ2, position));
+        multiTuple.setKeyValues(row1);
+        assertEquals(1, multiTuple.getColumnPosition(CF, CQ2, 0));
+        assertEquals(-1, multiTuple.getColumnPosition(CF, CQ3, 1));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+
+public class CSVTokenizerTest {
+
+    @Test
+    public void testPlainFields() {
+        assertFields(new CSVTokenizer(), "a,bc,,d", "a", "bc", "", "d");
+        assertFields(new CSVTokenizer(), "", "");
+        assertFields(new CSVTokenizer(), "a,", "a", "");
+    }
+
+    @Test
+    public void testQuotedFields() {
+        assertFields(new CSVTokenizer(), "\"a,b\",c", "a,b", "c");
+        assertFields(new CSVTokenizer(), "  \"a\"\"b\",c", "a\"b", "c");
+        assertFields(new CSVTokenizer(), "a\"b,c", "a\"b", "c");
+        assertFields(new CSVTokenizer(), "\"a\\\"b\",\\\\", "a\"b", "\\");
+        assertFields(new CSVTokenizer(), "\"a\nb\"", "a\nb");
+    }
+
+    @Test
+    public void testUnterminatedQuote() {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        byte[] b = Bytes.toBytes("a,\"b");
+        assertFalse(tokenizer.tokenize(b, 0, b.length));
+    }
+
+    @Test
+    public void testCustomCharacters() {
+        assertFields(new CSVTokenizer((byte)'\u0001', (byte)'\u0002', (byte)'\u0003'),
+                "a\u0001\u0002b\u0001c\u0002\u0001d", "a", "b\u0001c", "d");
+    }
+
+    @Test
+    public void testMultiByteCharacters() {
+        assertFields(new CSVTokenizer(), "\u00e9t\u00e9,\"\u4e2d,\u6587\"", "\u00e9t\u00e9", "\u4e2d,\u6587");
+    }
+
+    private static void assertFields(CSVTokenizer tokenizer, String record, String... expectedFields) {
+        // Tokenize the record in the middle of a buffer, to check offsets are honored
+        byte[] b = Bytes.add(Bytes.toBytes("xx"), Bytes.toBytes(record), Bytes.toBytes("yy"));
+        assertTrue(tokenizer.tokenize(b, 2, b.length - 4));
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        List<String> fields = new ArrayList<String>();
+        for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+            tokenizer.getField(i, ptr);
+            fields.add(Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        }
+        assertEquals(Arrays.asList(expectedFields), fields);
+    }
+}
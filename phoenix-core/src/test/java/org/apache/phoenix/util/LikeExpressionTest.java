@@ -20,8 +20,10 @@
 package org.apache.phoenix.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
 
 import org.apache.phoenix.expression.LikeExpression;
@@ -38,5 +40,52 @@ public class LikeExpressionTest {
         assertEquals("PR?O%UCT%M*TRI_S", LikeExpression.wildCardToLike("PR\\?O*UCT*M\\*TRI?S"));
     }
     
+    @Test
+    public void testLikeMatcher() {
+        assertMatches("abc", "abc");
+        assertNotMatches("abc", "abcd");
+        assertMatches("ab%", "ab", "abc", "abxyz");
+        assertNotMatches("ab%", "a", "xab");
+        assertMatches("%bc", "bc", "abc", "xyzbc");
+        assertNotMatches("%bc", "bcd", "b");
+        assertMatches("%check%", "check", "/checkout", "a/b/checkout/c");
+        assertNotMatches("%check%", "chec", "/cheque");
+        assertMatches("a%b%c", "abc", "aXbYc", "abbbc", "acbc");
+        assertNotMatches("a%b%c", "ac", "abcx", "acb");
+        assertMatches("a_c", "abc", "a\u00e9c", "a\u4e2dc");
+        assertNotMatches("a_c", "ac", "abbc");
+        assertMatches("%a_c%", "xxa\u4e2dcyy", "aac");
+        assertMatches("%_b", "ab", "\u00e9b");
+        assertNotMatches("%_b", "b");
+        assertMatches("%", "", "a", "abc");
+        assertMatches("%%a%%", "a", "bab");
+        assertMatches("a\\%", "a%");
+        assertNotMatches("a\\%", "ab");
+        assertMatches("a\\_b", "a_b");
+        assertNotMatches("a\\_b", "axb");
+        assertMatches("aa%aa", "aaaa", "aaXaa");
+        assertNotMatches("aa%aa", "aaa");
+    }
+    
+    private static void assertMatches(String pattern, String... values) {
+        LikeMatcher matcher = LikeMatcher.compile(pattern);
+        for (String value : values) {
+            assertTrue(value + " LIKE " + pattern, matches(matcher, value));
+        }
+    }
+    
+    private static void assertNotMatches(String pattern, String... values) {
+        LikeMatcher matcher = LikeMatcher.compile(pattern);
+        for (String value : values) {
+            assertFalse(value + " NOT LIKE " + pattern, matches(matcher, value));
+        }
+    }
+    
+    private static boolean matches(LikeMatcher matcher, String value) {
+        // Match in the middle of a buffer, to check offsets are honored
+        byte[] b = Bytes.add(Bytes.toBytes("x"), Bytes.toBytes(value), Bytes.toBytes("y"));
+        return matcher.matches(b, 1, b.length - 2);
+    }
+    
 
 }
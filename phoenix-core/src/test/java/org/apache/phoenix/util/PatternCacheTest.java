@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.PDataType;
+import org.apache.phoenix.schema.SortOrder;
+import org.junit.Test;
+
+
+public class PatternCacheTest {
+    private static class CountingPatternCache extends PatternCache<Pattern> {
+        private int compileCount;
+
+        public CountingPatternCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected Pattern compile(String pattern) {
+            compileCount++;
+            return Pattern.compile(pattern);
+        }
+    }
+
+    private static ImmutableBytesWritable ptr(String pattern) {
+        // Surround the pattern with other bytes, as in a row
+        byte[] b = PDataType.VARCHAR.toBytes("xx" + pattern + "yy");
+        return new ImmutableBytesWritable(b, 2, b.length - 4);
+    }
+
+    @Test
+    public void testPatternCache() throws Exception {
+        CountingPatternCache cache = new CountingPatternCache(2);
+        Pattern a = cache.get(ptr("a.*"), SortOrder.ASC);
+        assertEquals("a.*", a.pattern());
+        assertSame(a, cache.get(ptr("a.*"), SortOrder.ASC));
+        assertEquals(1, cache.compileCount);
+
+        Pattern b = cache.get(ptr("b+"), SortOrder.ASC);
+        assertEquals("b+", b.pattern());
+        assertSame(a, cache.get(ptr("a.*"), SortOrder.ASC));
+        assertEquals(2, cache.compileCount);
+
+        // Evicts b+, the least recently used pattern
+        cache.get(ptr("c?"), SortOrder.ASC);
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get(ptr("a.*"), SortOrder.ASC));
+        assertEquals(3, cache.compileCount);
+        assertNotSame(b, cache.get(ptr("b+"), SortOrder.ASC));
+        assertEquals(4, cache.compileCount);
+    }
+
+    @Test
+    public void testDescPattern() throws Exception {
+        CountingPatternCache cache = new CountingPatternCache(2);
+        byte[] b = SortOrder.invert(PDataType.VARCHAR.toBytes("a.*"), 0, 3);
+        Pattern a = cache.get(new ImmutableBytesWritable(b), SortOrder.DESC);
+        assertEquals("a.*", a.pattern());
+        assertSame(a, cache.get(new ImmutableBytesWritable(b.clone()), SortOrder.DESC));
+        assertEquals(1, cache.compileCount);
+    }
+}
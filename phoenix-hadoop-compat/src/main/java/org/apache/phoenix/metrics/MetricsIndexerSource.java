@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.metrics;
+
+/**
+ *
+ * Metrics of the index maintenance done on the region server, broken down per table.
+ * The build metrics are tracked per data table, as the index updates of a data row
+ * are built together, while the write metrics are tracked per index table, so that
+ * the latency of a degraded index table stands out.
+ *
+ * Implementations are provided for each Hadoop version by the compat modules and
+ * found through {@link MetricsIndexerSourceFactory}.
+ *
+ *
+ * @since 3.0.0
+ */
+public interface MetricsIndexerSource {
+    public static final String METRICS_NAME = "PhoenixIndexer";
+    public static final String METRICS_CONTEXT = "phoenix";
+    public static final String METRICS_DESCRIPTION = "Metrics about the index maintenance done by Phoenix";
+    public static final String METRICS_JMX_CONTEXT = "RegionServer,sub=" + METRICS_NAME;
+
+    public static final String BATCH_PRIOR_STATE_READ_TIME = "batchPriorStateReadTime";
+    public static final String BATCH_PRIOR_STATE_READ_TIME_DESC = "Time spent reading the current state of a batch of data rows being indexed in bulk, before building their index updates, in milliseconds";
+    public static final String ROW_PRIOR_STATE_READ_TIME = "rowPriorStateReadTime";
+    public static final String ROW_PRIOR_STATE_READ_TIME_DESC = "Time spent reading the current state of a single data row being indexed, while building its index updates, in milliseconds";
+    public static final String INDEX_BUILD_TIME = "indexBuildTime";
+    public static final String INDEX_BUILD_TIME_DESC = "Time spent building the index updates of a batch of data rows, including reading their prior state, in milliseconds";
+    public static final String INDEX_UPDATES = "indexUpdates";
+    public static final String INDEX_UPDATES_DESC = "Number of index updates written";
+    public static final String INDEX_WRITE_TIME = "indexWriteTime";
+    public static final String INDEX_WRITE_TIME_DESC = "Time spent writing a batch of index updates, in milliseconds";
+    public static final String INDEX_WRITE_LATENCY = "indexWriteLatency";
+    public static final String INDEX_WRITE_LATENCY_DESC = "Percentiles of the time spent writing a batch of index updates, in milliseconds";
+    public static final String INDEX_WRITE_FAILURES = "indexWriteFailures";
+    public static final String INDEX_WRITE_FAILURES_DESC = "Number of failed index writes handed to the index failure policy";
+
+    /**
+     * @param dataTableName the data table being indexed
+     * @param time the time spent reading the prior state of a batch of data rows in bulk, in milliseconds
+     */
+    public void updateBatchPriorStateReadTime(String dataTableName, long time);
+
+    /**
+     * @param dataTableName the data table being indexed
+     * @param time the time spent reading the prior state of a single data row, in milliseconds
+     */
+    public void updateRowPriorStateReadTime(String dataTableName, long time);
+
+    /**
+     * @param dataTableName the data table being indexed
+     * @param time the time spent building the index updates, in milliseconds
+     */
+    public void updateIndexBuildTime(String dataTableName, long time);
+
+    /**
+     * @param indexTableName the index table written to
+     * @param numUpdates the number of index updates written
+     * @param time the time spent writing the index updates, in milliseconds
+     */
+    public void updateIndexWriteTime(String indexTableName, int numUpdates, long time);
+
+    /**
+     * @param indexTableName the index table that couldn't be written to
+     */
+    public void incrementIndexWriteFailures(String indexTableName);
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ *
+ * Factory for the {@link MetricsIndexerSource} of the region server. The implementation
+ * matching the Hadoop version is loaded through a {@link ServiceLoader} from the compat
+ * module on the classpath. If there is none, the metrics are dropped.
+ *
+ *
+ * @since 3.0.0
+ */
+public class MetricsIndexerSourceFactory {
+    private static final MetricsIndexerSource NO_OP_SOURCE = new MetricsIndexerSource() {
+        @Override
+        public void updateBatchPriorStateReadTime(String dataTableName, long time) {
+        }
+
+        @Override
+        public void updateRowPriorStateReadTime(String dataTableName, long time) {
+        }
+
+        @Override
+        public void updateIndexBuildTime(String dataTableName, long time) {
+        }
+
+        @Override
+        public void updateIndexWriteTime(String indexTableName, int numUpdates, long time) {
+        }
+
+        @Override
+        public void incrementIndexWriteFailures(String indexTableName) {
+        }
+    };
+
+    private static MetricsIndexerSource source;
+
+    private MetricsIndexerSourceFactory() {
+    }
+
+    /**
+     * @return the metrics source shared by all the regions of the region server
+     */
+    public static synchronized MetricsIndexerSource getIndexerSource() {
+        if (source == null) {
+            Iterator<MetricsIndexerSource> sources = ServiceLoader.load(MetricsIndexerSource.class).iterator();
+            source = sources.hasNext() ? sources.next() : NO_OP_SOURCE;
+        }
+        return source;
+    }
+}
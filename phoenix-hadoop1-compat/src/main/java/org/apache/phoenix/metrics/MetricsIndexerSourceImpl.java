@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.metrics2.MetricsBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricMutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MetricMutableStat;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+
+/**
+ *
+ * Hadoop 1 implementation of {@link MetricsIndexerSource}. The metrics of each table
+ * are registered the first time the table is seen. The times are published with their
+ * min, max and standard deviation: the metrics of Hadoop 1 have no percentiles, so
+ * {@link #INDEX_WRITE_LATENCY} is only published with Hadoop 2.
+ *
+ *
+ * @since 3.0.0
+ */
+public class MetricsIndexerSourceImpl implements MetricsIndexerSource, MetricsSource {
+    private final MetricsRegistry registry = new MetricsRegistry(METRICS_NAME);
+    private final ConcurrentMap<String, MetricMutableStat> stats = new ConcurrentHashMap<String, MetricMutableStat>();
+    private final ConcurrentMap<String, MetricMutableCounterLong> counters = new ConcurrentHashMap<String, MetricMutableCounterLong>();
+
+    public MetricsIndexerSourceImpl() {
+        // No-op if the region server already initialized the metrics system
+        DefaultMetricsSystem.initialize(METRICS_CONTEXT);
+        registry.setContext(METRICS_CONTEXT);
+        DefaultMetricsSystem.INSTANCE.register(METRICS_JMX_CONTEXT, METRICS_DESCRIPTION, this);
+    }
+
+    private static String getMetricName(String tableName, String metricName) {
+        return "table_" + tableName + "_" + metricName;
+    }
+
+    private MetricMutableStat getStat(String tableName, String metricName, String description) {
+        String name = getMetricName(tableName, metricName);
+        MetricMutableStat stat = stats.get(name);
+        if (stat == null) {
+            synchronized (registry) {
+                stat = stats.get(name);
+                if (stat == null) {
+                    stat = registry.newStat(name, description, "Ops", "Time", true);
+                    stats.put(name, stat);
+                }
+            }
+        }
+        return stat;
+    }
+
+    private MetricMutableCounterLong getCounter(String tableName, String metricName, String description) {
+        String name = getMetricName(tableName, metricName);
+        MetricMutableCounterLong counter = counters.get(name);
+        if (counter == null) {
+            synchronized (registry) {
+                counter = counters.get(name);
+                if (counter == null) {
+                    counter = registry.newCounter(name, description, 0L);
+                    counters.put(name, counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    @Override
+    public void updateBatchPriorStateReadTime(String dataTableName, long time) {
+        getStat(dataTableName, BATCH_PRIOR_STATE_READ_TIME, BATCH_PRIOR_STATE_READ_TIME_DESC).add(time);
+    }
+
+    @Override
+    public void updateRowPriorStateReadTime(String dataTableName, long time) {
+        getStat(dataTableName, ROW_PRIOR_STATE_READ_TIME, ROW_PRIOR_STATE_READ_TIME_DESC).add(time);
+    }
+
+    @Override
+    public void updateIndexBuildTime(String dataTableName, long time) {
+        getStat(dataTableName, INDEX_BUILD_TIME, INDEX_BUILD_TIME_DESC).add(time);
+    }
+
+    @Override
+    public void updateIndexWriteTime(String indexTableName, int numUpdates, long time) {
+        getStat(indexTableName, INDEX_WRITE_TIME, INDEX_WRITE_TIME_DESC).add(time);
+        getCounter(indexTableName, INDEX_UPDATES, INDEX_UPDATES_DESC).incr(numUpdates);
+    }
+
+    @Override
+    public void incrementIndexWriteFailures(String indexTableName) {
+        getCounter(indexTableName, INDEX_WRITE_FAILURES, INDEX_WRITE_FAILURES_DESC).incr();
+    }
+
+    @Override
+    public void getMetrics(MetricsBuilder builder, boolean all) {
+        registry.snapshot(builder.addRecord(METRICS_NAME), all);
+    }
+}